@@ -7,4 +7,61 @@ create table limits_per_hour
     limit_name     varchar         not null check ( limit_name in ('min', 'max') ),
     limit_value    int             not null check ( limit_value >= 1024 and limit_value <= 1073741824 ),
     effective_date timestamp       not null
-);
\ No newline at end of file
+);
+
+create index limits_per_hour_effective_date_idx on limits_per_hour (effective_date);
+
+-- notify the application about changed limits, so it does not have to wait for the next poll,
+-- payload is the table and the operation, so the inserted limits are loaded incrementally,
+-- the channel is LimitsChangeListener.CHANNEL
+create or replace function notify_limits_changed() returns trigger as
+$$
+begin
+    perform pg_notify('limits_changed', tg_table_name || ':' || lower(tg_op));
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger limits_per_hour_changed
+    after insert or update or delete
+    on limits_per_hour
+    for each statement
+execute procedure notify_limits_changed();
+
+-- limits of the parts of the traffic: packets, which source or destination belongs to the network
+-- and which port of the same endpoint is in the range
+drop table if exists limit_rules;
+create table limit_rules
+(
+    id             serial primary key,
+    rule_name      varchar   not null unique,
+    network        varchar   not null,
+    port_from      int       not null default 0,
+    port_to        int       not null default 65535,
+    min_value      bigint    not null check ( min_value >= 0 ),
+    max_value      bigint    not null,
+    enabled        boolean   not null default true,
+    effective_date timestamp not null default now(),
+    check ( port_from >= 0 and port_from <= port_to and port_to <= 65535 ),
+    check ( min_value <= max_value )
+);
+
+create trigger limit_rules_changed
+    after insert or update or delete
+    on limit_rules
+    for each statement
+execute procedure notify_limits_changed();
+
+-- interval aggregates, partitioned by day, partitions are created and dropped by the application
+drop table if exists traffic_history;
+create table traffic_history
+(
+    sensor          varchar   not null,
+    interval_start  timestamp not null,
+    duration_millis bigint    not null,
+    bytes           bigint    not null,
+    packets         bigint    not null,
+    received        bigint    not null,
+    dropped         bigint    not null,
+    if_dropped      bigint    not null
+) partition by range (interval_start);
@@ -1,11 +1,55 @@
 package com.ishvatov.traffic;
 
-import com.ishvatov.traffic.exception.PcapRuntimeException;
-import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.capture.CaptureBackend;
+import com.ishvatov.traffic.capture.CaptureChannel;
+import com.ishvatov.traffic.capture.CaptureInterfaces;
+import com.ishvatov.traffic.capture.CapturePipeline;
+import com.ishvatov.traffic.capture.CaptureProfile;
+import com.ishvatov.traffic.capture.CaptureStats;
+import com.ishvatov.traffic.capture.PacketAccountant;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.PcapCaptureChannel;
+import com.ishvatov.traffic.capture.PcapStatsMonitor;
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import com.ishvatov.traffic.capture.WindowState;
+import com.ishvatov.traffic.cluster.ClusterRole;
+import com.ishvatov.traffic.cluster.ClusterTraffic;
+import com.ishvatov.traffic.cluster.PartialCountPublisher;
+import com.ishvatov.traffic.cluster.WindowAggregator;
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.history.TrafficHistoryPartitions;
+import com.ishvatov.traffic.history.TrafficHistoryWriter;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.limits.LimitsCache;
+import com.ishvatov.traffic.limits.LimitsChangeListener;
+import com.ishvatov.traffic.metrics.LatencyHistogram;
+import com.ishvatov.traffic.metrics.MetricsRegistry;
+import com.ishvatov.traffic.metrics.PrometheusEndpoint;
+import com.ishvatov.traffic.persistence.SpillLog;
+import com.ishvatov.traffic.persistence.WindowCheckpoint;
+import com.ishvatov.traffic.replay.PcapReplay;
+import com.ishvatov.traffic.replay.ReplayResult;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.LimitRulesCache;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.rules.RuleUsage;
 import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import com.ishvatov.traffic.startup.EarlyCapture;
+import com.ishvatov.traffic.startup.FirstPacketProbe;
+import com.ishvatov.traffic.startup.StartupTimer;
+import com.ishvatov.traffic.telemetry.TelemetryPublisher;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.TrafficInterval;
+import com.ishvatov.traffic.wire.TrafficRecord;
 import com.ishvatov.traffic.utils.Pair;
 import lombok.RequiredArgsConstructor;
-import org.pcap4j.core.*;
+import org.pcap4j.core.PcapHandle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,12 +57,27 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.PropertySource;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 @EnableScheduling
 @SpringBootApplication
@@ -28,22 +87,44 @@ public class TrafficCounterApplication implements CommandLineRunner {
     // logger
     private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCounterApplication.class);
 
-    // pcap handler initialization constants
-    private static final int INFINITE_PACKET_NUMBER = -1;
-    private static final String DEFAULT_DEV = "any";
-    private static final int SNAP_LEN = 65536;
-    private static final int TIMEOUT = 10;
-
     // autowired dependencies
-    private final ReadWriteLock lock;
     private final TrafficService trafficService;
+    private final AlertPublisher alertPublisher;
+    private final AlertTracker alertTracker;
+    private final LimitsCache limitsCache;
+    private final LimitsChangeListener limitsChangeListener;
+    private final LimitRulesCache limitRulesCache;
+    private final RuleClassifier ruleClassifier;
     private final ScheduledExecutorService scheduler;
+    private final TrafficCounter trafficCounter;
+    private final PacketStatsReporter packetStatsReporter;
+    private final CapturePipeline capturePipeline;
+    private final CaptureInterfaces captureInterfaces;
+    private final CaptureProfile captureProfile;
+    private final PcapStatsMonitor pcapStatsMonitor;
+    private final PacketAccountant packetAccountant;
+    private final FlowAggregator flowAggregator;
+    private final HeavyHitterDetector heavyHitterDetector;
+    private final SlidingWindow slidingWindow;
+    private final TelemetryPublisher telemetryPublisher;
+    private final TrafficHistoryWriter trafficHistoryWriter;
+    private final TrafficHistoryPartitions trafficHistoryPartitions;
+    private final MetricsRegistry metricsRegistry;
+    private final PrometheusEndpoint prometheusEndpoint;
+    private final KafkaAdmin kafkaAdmin;
+    private final EarlyCapture earlyCapture;
+    private final StartupTimer startupTimer;
+    private final PartialCountPublisher partialCountPublisher;
+    private final WindowAggregator windowAggregator;
+    private final KafkaMessageListenerContainer<String, TrafficRecord> partialCountContainer;
+    private final WindowCheckpoint windowCheckpoint;
+    private final SpillLog spillLog;
 
-    @Value("${time.read.value}")
-    private int readTimeValue;
+    @Value("${time.rollover.value}")
+    private int rolloverTimeValue;
 
-    @Value("${time.read.units}")
-    private TimeUnit readTimeUnits;
+    @Value("${time.rollover.units}")
+    private TimeUnit rolloverTimeUnits;
 
     @Value("${time.write.value}")
     private int writeTimeValue;
@@ -51,32 +132,236 @@ public class TrafficCounterApplication implements CommandLineRunner {
     @Value("${time.write.units}")
     private TimeUnit writeTimeUnits;
 
-    // Shared mutable variable, which stores the information about limits
-    private Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits = new Pair<>(null, null);
+    @Value("${time.stats.value}")
+    private int statsTimeValue;
+
+    @Value("${time.stats.units}")
+    private TimeUnit statsTimeUnits;
+
+    @Value("${time.evaluate.value}")
+    private int evaluateTimeValue;
+
+    @Value("${time.evaluate.units}")
+    private TimeUnit evaluateTimeUnits;
+
+    @Value("${time.telemetry.value}")
+    private int telemetryTimeValue;
+
+    @Value("${time.telemetry.units}")
+    private TimeUnit telemetryTimeUnits;
+
+    @Value("${time.history.value}")
+    private int historyTimeValue;
+
+    @Value("${time.history.units}")
+    private TimeUnit historyTimeUnits;
+
+    @Value("${history.enabled}")
+    private boolean historyEnabled;
+
+    @Value("${limits.notify.enabled}")
+    private boolean limitsNotifyEnabled;
+
+    @Value("${capture.backend}")
+    private CaptureBackend captureBackend;
+
+    @Value("${capture.replay.files}")
+    private String[] replayFiles;
+
+    @Value("${metrics.jmx.enabled}")
+    private boolean jmxEnabled;
+
+    @Value("${metrics.prometheus.enabled}")
+    private boolean prometheusEnabled;
 
-    // Pcap handler, which is used to interact with pcap api
-    private PcapHandle pcapHandler = null;
+    @Value("${kafka.admin.deferred}")
+    private boolean kafkaAdminDeferred;
 
-    // stores the amount of the traffic that has already been transferred.
-    private int totalTransferredData = 0;
+    @Value("${cluster.role}")
+    private ClusterRole clusterRole;
 
-    // stores the amount of the traffic that has been transferred previously.
-    private int previousTransferredData = 0;
+    @Value("${persistence.checkpoint.enabled}")
+    private boolean checkpointEnabled;
+
+    @Value("${persistence.checkpoint.interval-seconds}")
+    private int checkpointIntervalSeconds;
+
+    @Value("${persistence.spill.enabled}")
+    private boolean spillEnabled;
+
+    @Value("${persistence.spill.replay-interval-seconds}")
+    private int spillReplayIntervalSeconds;
+
+    // capture channels of the interfaces, which are run by the capture pipeline
+    private final List<CaptureChannel> captureChannels = new CopyOnWriteArrayList<>();
+
+    // packet time in nanoseconds of the next top talkers interval rollover during the replay
+    private long nextReplayRollover = 0;
+
+    // top talkers and heavy hitters of the last finished interval, which are attached to the alerts
+    private volatile TopTalkers lastTopTalkers = TopTalkers.EMPTY;
+
+    // latency of the traffic validation and of the limits fetching, created with the other metrics
+    private LatencyHistogram evaluationLatency;
+    private LatencyHistogram limitsFetchLatency;
 
     public static void main(String[] args) {
-        SpringApplication.run(TrafficCounterApplication.class, args);
+        SpringApplication application = new SpringApplication(TrafficCounterApplication.class);
+        application.addListeners(new EarlyCapture(new StartupTimer()));
+        application.run(args);
+    }
+
+    /**
+     * Registers the runtime metrics of the components and exports them via JMX, if enabled.
+     * Prometheus endpoint is started only with the live capture and by the aggregator.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        evaluationLatency = metricsRegistry.histogram(
+                "traffic_evaluation_seconds", "Time of the traffic validation against the limits and the rules"
+        );
+        limitsFetchLatency = metricsRegistry.histogram(
+                "traffic_limits_fetch_seconds", "Time of the limits and the limit rules fetching from the database"
+        );
+        metricsRegistry.register(
+                "traffic_alert_send_seconds",
+                "Latency from publishing of the alert to its acknowledgement by kafka",
+                alertPublisher.getMetrics().getLatency()
+        );
+
+        // captured traffic and the pcap handle statistics
+        metricsRegistry.counter("traffic_bytes_total", "Captured bytes", trafficCounter::sum);
+        metricsRegistry.counter("traffic_packets_total", "Captured packets", packetStatsReporter::getPackets);
+        metricsRegistry.labeled(
+                "traffic_pcap_received_total", "Packets, received by the pcap filter",
+                MetricsRegistry.Type.COUNTER, "interface", () -> pcapStats(CaptureStats::getReceived)
+        );
+        metricsRegistry.labeled(
+                "traffic_pcap_dropped_total", "Packets, dropped because there was no room in the kernel buffer",
+                MetricsRegistry.Type.COUNTER, "interface", () -> pcapStats(CaptureStats::getDropped)
+        );
+        metricsRegistry.labeled(
+                "traffic_pcap_if_dropped_total", "Packets, dropped by the network interface or its driver",
+                MetricsRegistry.Type.COUNTER, "interface", () -> pcapStats(CaptureStats::getIfDropped)
+        );
+
+        // flow aggregation
+        metricsRegistry.gauge(
+                "traffic_flows", "Flows, tracked by the flow table", flowAggregator::getFlowCount
+        );
+
+        // queues
+        metricsRegistry.counter(
+                "traffic_pipeline_dropped_total", "Packets, dropped because the pipeline buffers were full",
+                capturePipeline::getDropped
+        );
+        metricsRegistry.gauge(
+                "traffic_pipeline_queue_depth", "Packets, waiting in the pipeline buffers", capturePipeline::getQueueDepth
+        );
+        if (scheduler instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) scheduler;
+            metricsRegistry.gauge(
+                    "traffic_scheduler_queue_depth", "Tasks, waiting in the scheduler queue",
+                    () -> executor.getQueue().size()
+            );
+            metricsRegistry.gauge(
+                    "traffic_scheduler_active_threads", "Scheduler threads, which are running the tasks",
+                    executor::getActiveCount
+            );
+        }
+        metricsRegistry.gauge(
+                "traffic_history_queue_depth", "Intervals, waiting to be written into the traffic history",
+                trafficHistoryWriter::getQueueSize
+        );
+        metricsRegistry.gauge(
+                "traffic_telemetry_pending", "Telemetry intervals, waiting to be sent", telemetryPublisher::getPendingSize
+        );
+
+        // alerts delivery
+        metricsRegistry.counter(
+                "traffic_alerts_acknowledged_total", "Alerts, acknowledged by kafka",
+                alertPublisher.getMetrics()::getAcknowledged
+        );
+        metricsRegistry.counter(
+                "traffic_alerts_failed_total", "Alerts, which were not delivered after all the retries",
+                alertPublisher.getMetrics()::getFailed
+        );
+        metricsRegistry.counter(
+                "traffic_alerts_dropped_total", "Alerts, rejected because the outbox was full",
+                alertPublisher.getMetrics()::getDropped
+        );
+        metricsRegistry.gauge(
+                "traffic_alert_outbox_size", "Alerts, which are accepted and not yet completed",
+                alertPublisher::getOutboxSize
+        );
+        metricsRegistry.counter(
+                "traffic_alerts_spilled_total", "Alerts, written into the spill log instead of being sent",
+                alertPublisher.getMetrics()::getSpilled
+        );
+        metricsRegistry.gauge(
+                "traffic_alert_spill_size", "Alerts in the spill log, waiting for the broker",
+                alertPublisher::getSpilledSize
+        );
+        metricsRegistry.gauge(
+                "traffic_alert_open_breaches", "Limits, whose breach is open and not yet resolved",
+                alertTracker::getActiveCount
+        );
+
+        // partial counts of the sensors and their aggregation
+        metricsRegistry.gauge(
+                "traffic_partial_counts_pending", "Finished windows of the sensor, which are not sent yet",
+                partialCountPublisher::getPendingSize
+        );
+        metricsRegistry.counter(
+                "traffic_partial_counts_dropped_total", "Windows of the sensor, dropped because the queue was full",
+                partialCountPublisher::getDropped
+        );
+        metricsRegistry.gauge(
+                "traffic_cluster_windows", "Windows, kept by the aggregator", windowAggregator::getWindowCount
+        );
+        metricsRegistry.counter(
+                "traffic_cluster_late_total", "Partial counts, which arrived after their period was evaluated",
+                windowAggregator::getLate
+        );
+
+        if (jmxEnabled) {
+            metricsRegistry.registerMBeans(ManagementFactory.getPlatformMBeanServer());
+        }
     }
 
     @PreDestroy
     public void freeResources() throws InterruptedException {
-        // stop the executor service
+        // stop the executor service, the pending alert retries are still run
         scheduler.shutdown();
         if (!scheduler.awaitTermination(1, TimeUnit.MINUTES)) {
             scheduler.shutdownNow();
         }
 
-        // close the Pcap handler
-        pcapHandler.close();
+        // send the batched alerts including the retried ones, failed alerts can not be retried anymore
+        alertPublisher.flush();
+
+        // checkpoint the sliding window once more, the files are closed with the context
+        checkpoint();
+
+        // write the remaining traffic history
+        trafficHistoryWriter.stop();
+
+        // stop listening to the limits changes
+        limitsChangeListener.stop();
+
+        // stop consuming the partial counts
+        partialCountContainer.stop();
+
+        // stop the capture pipeline and close the capture channels
+        capturePipeline.stop();
+        captureChannels.forEach(CaptureChannel::close);
+        earlyCapture.close();
+
+        // stop exporting the metrics
+        prometheusEndpoint.stop();
+        if (jmxEnabled) {
+            metricsRegistry.unregisterMBeans(ManagementFactory.getPlatformMBeanServer());
+        }
 
         // log about shutdown
         LOGGER.info("Application is shutdown!");
@@ -84,104 +369,498 @@ public class TrafficCounterApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) {
+        // init filter if needed, options are handled by spring
+        String filter = CaptureProfile.commandLineFilter(args);
+
+        if (replayFiles.length != 0) {
+            earlyCapture.close();
+            replay(filter);
+            return;
+        }
+
+        if (clusterRole == ClusterRole.AGGREGATOR) {
+            earlyCapture.close();
+            aggregate();
+            return;
+        }
+
         try {
-            // initialize the pcap interface
-            PcapNetworkInterface pcapNetworkInterface = Pcaps.getDevByName(DEFAULT_DEV);
+            // continue the window of the previous run before any packet is counted
+            openSpillLog();
+            restoreWindow();
 
-            // init filter if needed
-            String filter = null;
-            if (args.length != 0) {
-                filter = String.format("net %s", args[0]);
+            for (String name : captureInterfaces.getNames()) {
+                // take the handle, opened before the context, or open the configured backend with the profile and filter
+                PcapHandle earlyHandle = earlyCapture.take(name);
+                CaptureChannel channel = earlyHandle != null
+                        ? new PcapCaptureChannel(earlyHandle)
+                        : captureBackend.open(captureProfile, name, filter);
+                captureChannels.add(channel);
+                pcapStatsMonitor.register(name, channel);
             }
+            earlyCapture.close();
 
-            LOGGER.info(
-                    "Using the following device: {} with the following filter: {}",
-                    pcapNetworkInterface,
-                    filter == null ? "None" : filter
+            // start capture loop of every interface in the dedicated capture thread
+            capturePipeline.startChannels(captureChannels);
+            startupTimer.mark(StartupTimer.CAPTURE_STARTED);
+
+            // serve the metrics
+            startPrometheusEndpoint();
+
+            // refresh limits as soon as they are changed in the database
+            if (limitsNotifyEnabled) {
+                limitsChangeListener.start();
+            }
+
+            // schedule and start fetching limits process, which is a fallback for the missed notifications
+            scheduler.scheduleAtFixedRate(
+                    this::fetchLimits, 0, writeTimeValue, writeTimeUnits
             );
 
-            // open pcap handle which is used to set listeners and get the results
-            pcapHandler = pcapNetworkInterface.openLive(
-                    SNAP_LEN,
-                    PcapNetworkInterface.PromiscuousMode.PROMISCUOUS,
-                    TIMEOUT
+            // schedule packet statistics reports
+            scheduler.scheduleAtFixedRate(
+                    this::reportStatistics, statsTimeValue, statsTimeValue, statsTimeUnits
             );
 
-            // set filter
-            if (filter != null) {
-                pcapHandler.setFilter(filter, BpfProgram.BpfCompileMode.OPTIMIZE);
+            // schedule the checkpoints of the sliding window and the replay of the spilled alerts
+            scheduler.scheduleAtFixedRate(
+                    this::checkpoint, checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS
+            );
+            scheduler.scheduleAtFixedRate(
+                    alertPublisher::replaySpilled, 0, spillReplayIntervalSeconds, TimeUnit.SECONDS
+            );
+
+            // write traffic history in the background, keep the daily partitions ready
+            if (historyEnabled) {
+                trafficHistoryWriter.start();
+                scheduler.scheduleAtFixedRate(
+                        this::maintainHistory, 0, historyTimeValue, historyTimeUnits
+                );
             }
 
-            // start pcap loop
-            scheduler.execute(
-                    () -> {
-                        try {
-                            // add listener on the handler
-                            pcapHandler.loop(
-                                    INFINITE_PACKET_NUMBER,
-                                    (PcapPacket packet) -> {
-                                        totalTransferredData += packet.length();
-                                        LOGGER.info(
-                                                String.format(
-                                                        "Received packet!\n\tCurrent data amount: %s\n\tPrevious: %s",
-                                                        totalTransferredData,
-                                                        previousTransferredData
-                                                )
-                                        );
-                                    }
-                            );
-                        } catch (Exception exception) {
-                            throw new PcapRuntimeException(exception);
-                        }
-                    }
+            // schedule traffic telemetry, first call only remembers the initial counters
+            scheduler.scheduleAtFixedRate(
+                    this::publishTelemetry, 0, telemetryTimeValue, telemetryTimeUnits
+            );
+
+            // schedule top talkers interval rollover
+            scheduler.scheduleAtFixedRate(
+                    this::rolloverInterval, rolloverTimeValue, rolloverTimeValue, rolloverTimeUnits
+            );
+
+            // schedule  traffic validation process, the sensor publishes the traffic to the aggregator instead
+            Runnable validation = clusterRole == ClusterRole.SENSOR ? this::publishPartialCount : this::validateTraffic;
+            scheduler.scheduleAtFixedRate(
+                    validation, 0, evaluateTimeValue, evaluateTimeUnits
             );
 
-            // schedule and start fetching limits process
+            // create the kafka topics in the background, alerts are sent to the existing ones meanwhile
+            if (kafkaAdminDeferred) {
+                scheduler.execute(this::createTopics);
+            }
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Following error has occurred: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Starts the aggregator, which captures nothing, merges the partial counts of the sensors
+     * and validates their total traffic against the limits.
+     */
+    public void aggregate() {
+        try {
+            openSpillLog();
+            startPrometheusEndpoint();
+
+            // refresh limits as soon as they are changed in the database
+            if (limitsNotifyEnabled) {
+                limitsChangeListener.start();
+            }
+
+            // schedule and start fetching limits process, which is a fallback for the missed notifications
             scheduler.scheduleAtFixedRate(
                     this::fetchLimits, 0, writeTimeValue, writeTimeUnits
             );
 
-            // schedule  traffic validation process
+            // consume the partial counts of the last period and the new ones
+            partialCountContainer.start();
+            LOGGER.info("Aggregating the partial counts of the sensors");
+
+            // schedule validation of the traffic of all the sensors
+            scheduler.scheduleAtFixedRate(
+                    this::validateClusterTraffic, 0, evaluateTimeValue, evaluateTimeUnits
+            );
+
+            // the spill log is forced with the checkpoint interval, there is no window to checkpoint
             scheduler.scheduleAtFixedRate(
-                    this::validateTraffic, readTimeValue, readTimeValue, readTimeUnits
+                    this::checkpoint, checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS
             );
+            scheduler.scheduleAtFixedRate(
+                    alertPublisher::replaySpilled, 0, spillReplayIntervalSeconds, TimeUnit.SECONDS
+            );
+
+            if (kafkaAdminDeferred) {
+                scheduler.execute(this::createTopics);
+            }
         } catch (Exception ex) {
             LOGGER.error(String.format("Following error has occurred: %s", ex.getMessage()), ex);
         }
     }
 
     /**
-     * Synchronized block.
+     * Replays the configured capture files through the packet accounting and the traffic
+     * validation as fast as possible. Traffic is validated and top talkers are rolled over
+     * by the packet timestamps against the limits, which were effective at the packet time.
+     * Limits are fetched once before the replay.
+     *
+     * @param filter BPF filter, applied to each file, or null
      */
-    public void fetchLimits() {
-        lock.writeLock().lock();
+    public void replay(String filter) {
+        try {
+            limitsCache.reload();
+            limitRulesCache.refresh();
+            LOGGER.info("Replaying {} with the following filter: {}", Arrays.toString(replayFiles),
+                    CaptureProfile.describe(filter));
+
+            PcapReplay replay = new PcapReplay(
+                    new FirstPacketProbe(packetAccountant, startupTimer),
+                    this::replayEvaluation,
+                    evaluateTimeUnits.toNanos(evaluateTimeValue)
+            );
+            for (String file : replayFiles) {
+                PcapHandle handle = captureProfile.openOffline(file.trim(), filter);
+                try {
+                    replay.replay(handle);
+                } finally {
+                    handle.close();
+                }
+            }
+
+            ReplayResult result = replay.finish();
+            LOGGER.info("Replay is finished: {}", result);
+            reportStatistics();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Replay was interrupted!");
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Replay has failed: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Validates the replayed traffic at the provided packet time and rolls over
+     * the top talkers interval each rollover period.
+     *
+     * @param timestampNanos packet time in nanoseconds since epoch
+     */
+    public void replayEvaluation(long timestampNanos) {
+        if (timestampNanos >= nextReplayRollover) {
+            if (nextReplayRollover != 0) {
+                rolloverInterval();
+            }
+            nextReplayRollover = timestampNanos + rolloverTimeUnits.toNanos(rolloverTimeValue);
+        }
+        validateTraffic(timestampNanos, limitsCache.get(TimeUnit.NANOSECONDS.toMillis(timestampNanos)));
+    }
+
+    /**
+     * Logs the statistics of the captured packets, of the pcap handles, of the capture pipeline
+     * and of the alerts delivery.
+     */
+    public void reportStatistics() {
+        packetStatsReporter.report();
+        pcapStatsMonitor.report();
+        capturePipeline.report();
+        alertPublisher.report();
+    }
+
+    /**
+     * Publishes the traffic and pcap statistics of the finished telemetry interval
+     * and puts it into the traffic history.
+     */
+    public void publishTelemetry() {
+        CaptureStats stats = pcapStatsMonitor.total();
+        TrafficInterval interval = telemetryPublisher.collect(
+                System.currentTimeMillis(),
+                trafficCounter.sum(),
+                packetStatsReporter.getPackets(),
+                stats.getReceived(),
+                stats.getDropped(),
+                stats.getIfDropped()
+        );
+        if (historyEnabled && interval != null && !trafficHistoryWriter.offer(interval)) {
+            LOGGER.warn("Traffic history queue is full, interval is dropped!");
+        }
+    }
+
+    /**
+     * Publishes the traffic of this sensor to the aggregator and validates the limit rules,
+     * which are not known to the aggregator.
+     */
+    public void publishPartialCount() {
+        long now = System.currentTimeMillis();
+        partialCountPublisher.collect(now, trafficCounter.sum(), packetStatsReporter.getPackets());
+        validateRules(TimeUnit.MILLISECONDS.toNanos(now), this::getLastTopTalkers);
+    }
+
+    /**
+     * Validates the traffic of all the sensors during the period, which ends at the watermark
+     * of the aggregator, against the limits, which were effective at its end.
+     */
+    public void validateClusterTraffic() {
+        long start = System.nanoTime();
         try {
-            limits.update(trafficService.fetchTrafficLimits());
-            LOGGER.info(String.format("Fetched limits from database: %s!", limits));
+            ClusterTraffic traffic = windowAggregator.evaluate(System.currentTimeMillis());
+            validateTotal(
+                    TimeUnit.MILLISECONDS.toNanos(traffic.getTimestamp()),
+                    traffic.getBytes(),
+                    traffic.isFull(),
+                    traffic.getSensors(),
+                    limitsCache.get(traffic.getTimestamp()),
+                    () -> TopTalkers.EMPTY
+            );
         } finally {
-            lock.writeLock().unlock();
+            evaluationLatency.recordSince(start);
         }
     }
 
     /**
-     * Synchronized block.
+     * Writes the sliding window into the checkpoint and forces the checkpoint and the spill log,
+     * if they are forced periodically. Errors are logged, so the following checkpoints are not cancelled.
      */
-    public void validateTraffic() {
-        lock.readLock().lock();
+    public void checkpoint() {
         try {
-            // make thread local copy of the variable to prevent
-            // data loose due to the variable value update in the 'loop' thread
-            int tempTotal = totalTransferredData;
-            int difference = tempTotal - previousTransferredData;
-            previousTransferredData = tempTotal;
-
-            if (trafficService.validateTrafficAndSendNotification(difference, limits)) {
-                LOGGER.info("Current traffic [{}] is out of range! Notification was sent!", difference);
-            } else {
-                LOGGER.info("Current traffic is in range!");
+            if (windowCheckpoint.isOpen()) {
+                // the bytes, counted since the last evaluation, are checkpointed too
+                long now = System.currentTimeMillis();
+                slidingWindow.advance(TimeUnit.MILLISECONDS.toNanos(now), trafficCounter.sum());
+                windowCheckpoint.write(slidingWindow.snapshot(), now);
             }
+            windowCheckpoint.sync();
+            spillLog.sync();
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Checkpoint was not written: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Creates the configured kafka topics, which were not created during the fast start.
+     */
+    public void createTopics() {
+        if (kafkaAdmin.initialize()) {
+            LOGGER.info("Kafka topics are created!");
+        } else {
+            LOGGER.warn("Kafka topics were not created, broker is not available!");
+        }
+    }
+
+    /**
+     * Creates the traffic history partitions ahead of time and drops the expired ones.
+     */
+    public void maintainHistory() {
+        try {
+            trafficHistoryPartitions.maintain(Instant.now());
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Traffic history partitions were not maintained: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Reloads the limits, if they were changed, and refreshes the limit rules, active limits are switched
+     * by the limits cache itself.
+     * Errors are logged, so the following polls are not cancelled.
+     */
+    public void fetchLimits() {
+        long start = System.nanoTime();
+        try {
+            limitsCache.poll();
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Limits were not fetched: %s", ex.getMessage()), ex);
+        }
+        try {
+            limitRulesCache.refresh();
+        } catch (Exception ex) {
+            LOGGER.error(String.format("Limit rules were not fetched: %s", ex.getMessage()), ex);
+        }
+        limitsFetchLatency.recordSince(start);
+    }
+
+    /**
+     * Finishes the current top talkers and heavy hitters interval.
+     */
+    public void rolloverInterval() {
+        Pair<List<TopTalker>, List<TopTalker>> heavyHitters = heavyHitterDetector.rollover();
+        TopTalkers topTalkers = flowAggregator.rollover()
+                .withHeavyHitters(heavyHitters.getFirst(), heavyHitters.getSecond());
+        lastTopTalkers = topTalkers;
+        LOGGER.info("Top talkers of the finished interval: {}", topTalkers);
+    }
+
+    /**
+     * Advances the sliding window over the lock-free counter
+     * and validates the amount of traffic in the last hour.
+     */
+    public void validateTraffic() {
+        validateTraffic(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()), limitsCache.get());
+    }
+
+    /**
+     * Validates the amount of traffic in the last hour at the provided time.
+     *
+     * @param now    current time in nanoseconds since epoch, wall clock or packet time
+     * @param limits limits, which are active at the provided time, or null
+     */
+    public void validateTraffic(long now, Limits limits) {
+        long start = System.nanoTime();
+        try {
+            evaluate(now, limits);
         } finally {
-            lock.readLock().unlock();
+            evaluationLatency.recordSince(start);
+        }
+    }
+
+    private void evaluate(long now, Limits limits) {
+        long current = slidingWindow.advance(now, trafficCounter.sum());
+        Map<String, Long> interfaces = captureInterfaces.advance(now);
+        Supplier<TopTalkers> topTalkers = this::getLastTopTalkers;
+
+        validateRules(now, topTalkers);
+        validateTotal(now, current, slidingWindow.isFull(), interfaces, limits, topTalkers);
+    }
+
+    /**
+     * Validates the total amount of traffic in the last hour, repeated alerts are coalesced by the service.
+     *
+     * @param now        current time in nanoseconds since epoch
+     * @param current    amount of traffic in the last hour
+     * @param full       true, if the traffic covers the whole hour
+     * @param traffic    amount of traffic of every capture interface or sensor
+     * @param limits     limits, which are active at the provided time, or null
+     * @param topTalkers supplier of the top talkers, which are attached to the alert
+     */
+    private void validateTotal(
+            long now,
+            long current,
+            boolean full,
+            Map<String, Long> traffic,
+            Limits limits,
+            Supplier<TopTalkers> topTalkers
+    ) {
+        if (limits == null) {
+            LOGGER.warn("Limits are not fetched or not effective yet, traffic is not validated!");
+            return;
+        }
+
+        // until the window covers the whole hour only the maximum limit can be exceeded, but a pending
+        // or an open breach still gets every sample, so it is resolved as soon as the traffic is back in the limits
+        if (!full) {
+            if (current <= limits.getMax() && !alertTracker.isBreached(AlertRecord.GLOBAL_SOURCE)) {
+                return;
+            }
+            limits = limits.withoutMin();
+        }
+
+        long timestamp = TimeUnit.NANOSECONDS.toMillis(now);
+        if (trafficService.validateTrafficAndSendNotification(timestamp, current, traffic, limits, topTalkers)) {
+            LOGGER.info("Current traffic [{}] is out of range! Notification was sent!", current);
+        } else {
+            LOGGER.debug("Current traffic is in range!");
+        }
+    }
+
+    /**
+     * Opens the spill log of the alerts, alerts are dropped as before, if it can not be opened.
+     */
+    private void openSpillLog() {
+        if (!spillEnabled) {
+            return;
+        }
+        try {
+            spillLog.open();
+        } catch (IOException ex) {
+            LOGGER.error(String.format("Spill log was not opened: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Opens the checkpoint and restores the sliding window, if the checkpoint is recent enough,
+     * the traffic between the checkpoint and the restart is not known and is counted as zero.
+     */
+    private void restoreWindow() {
+        if (!checkpointEnabled) {
+            return;
+        }
+        try {
+            windowCheckpoint.open();
+        } catch (IOException ex) {
+            LOGGER.error(String.format("Window checkpoint was not opened: %s", ex.getMessage()), ex);
+            return;
+        }
+
+        WindowState state = windowCheckpoint.read();
+        long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        if (state == null) {
+            LOGGER.info("There is no window checkpoint, the window starts empty");
+        } else if (slidingWindow.restore(state, now, trafficCounter.sum())) {
+            LOGGER.info("Sliding window is restored from the checkpoint: {} bytes", slidingWindow.sum());
+        } else {
+            LOGGER.warn("Window checkpoint is outdated or does not match the window, the window starts empty");
+        }
+    }
+
+    /**
+     * @return top talkers and heavy hitters of the last finished interval.
+     */
+    private TopTalkers getLastTopTalkers() {
+        return lastTopTalkers;
+    }
+
+    /**
+     * Starts serving the metrics, the application goes on without them if the port is not available.
+     */
+    private void startPrometheusEndpoint() {
+        if (!prometheusEnabled) {
+            return;
+        }
+        try {
+            prometheusEndpoint.start();
+        } catch (IOException ex) {
+            LOGGER.error(String.format("Prometheus endpoint was not started: %s", ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * @param counter counter of the pcap statistics
+     * @return value of the counter by capture interface.
+     */
+    private Map<String, Long> pcapStats(ToLongFunction<CaptureStats> counter) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        pcapStatsMonitor.snapshot().forEach((name, stats) -> values.put(name, counter.applyAsLong(stats)));
+        return values;
+    }
+
+    /**
+     * Validates the traffic of each limit rule at the provided time, repeated alerts
+     * of the rule are coalesced by the service.
+     *
+     * @param now        current time in nanoseconds since epoch, wall clock or packet time
+     * @param topTalkers supplier of the top talkers, which are attached to the alerts
+     */
+    public void validateRules(long now, Supplier<TopTalkers> topTalkers) {
+        // forget the alert states of the deleted rules
+        Set<String> sources = new HashSet<>();
+        sources.add(AlertRecord.GLOBAL_SOURCE);
+        ruleClassifier.getRules().forEach(rule -> sources.add(rule.getName()));
+        alertTracker.retain(sources);
+
+        List<RuleUsage> usages = ruleClassifier.evaluate(now);
+        if (usages.isEmpty()) {
+            return;
+        }
+
+        long timestamp = TimeUnit.NANOSECONDS.toMillis(now);
+        for (LimitRule rule : trafficService.validateRulesAndSendNotifications(timestamp, usages, topTalkers)) {
+            LOGGER.info("Traffic of the rule [{}] is out of range! Notification was sent!", rule.getName());
         }
     }
 }
@@ -0,0 +1,119 @@
+package com.ishvatov.traffic.alert;
+
+import com.ishvatov.traffic.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivery metrics of the {@link AlertPublisher}. Updated from the evaluation thread
+ * and from the kafka producer callbacks, so all the counters are contention free adders.
+ *
+ * @author ishvatov
+ */
+public class AlertMetrics {
+    // alerts, accepted into the outbox
+    private final LongAdder published = new LongAdder();
+
+    // alerts, acknowledged by the broker
+    private final LongAdder acknowledged = new LongAdder();
+
+    // alerts, which were not delivered after all the retries
+    private final LongAdder failed = new LongAdder();
+
+    // alerts, rejected because the outbox was full
+    private final LongAdder dropped = new LongAdder();
+
+    // failed send attempts, which were retried
+    private final LongAdder retried = new LongAdder();
+
+    // alerts, written into the spill log, and the spilled alerts, acknowledged by the broker
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    // latency from publishing to acknowledgement of the delivered alerts
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void onPublished() {
+        published.increment();
+    }
+
+    void onAcknowledged(long latency) {
+        acknowledged.increment();
+        latencyNanos.add(latency);
+        maxLatencyNanos.accumulate(latency);
+        this.latency.record(latency);
+    }
+
+    void onFailed() {
+        failed.increment();
+    }
+
+    void onDropped() {
+        dropped.increment();
+    }
+
+    void onRetried() {
+        retried.increment();
+    }
+
+    void onSpilled() {
+        spilled.increment();
+    }
+
+    void onReplayed() {
+        replayed.increment();
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getAcknowledged() {
+        return acknowledged.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    public long getReplayed() {
+        return replayed.sum();
+    }
+
+    /**
+     * @return mean latency from publishing to acknowledgement in nanoseconds.
+     */
+    public long getMeanLatencyNanos() {
+        long count = acknowledged.sum();
+        return count == 0 ? 0 : latencyNanos.sum() / count;
+    }
+
+    /**
+     * @return maximum latency from publishing to acknowledgement in nanoseconds.
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    /**
+     * @return histogram of the latency from publishing to acknowledgement, including the retries.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
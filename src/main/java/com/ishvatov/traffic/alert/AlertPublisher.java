@@ -0,0 +1,320 @@
+package com.ishvatov.traffic.alert;
+
+import com.ishvatov.traffic.persistence.SpillLog;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.BinaryRecordDeserializer;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import com.ishvatov.traffic.wire.WireReader;
+import com.ishvatov.traffic.wire.WireWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the alerts to the kafka alert topic asynchronously. The caller never waits
+ * for the broker: the alert is accepted into the bounded in-memory outbox and is removed
+ * from it after the acknowledgement or after the last failed retry. If the outbox is full,
+ * the alert is dropped. Alerts are keyed by sensor and source ({@link AlertRecord#GLOBAL_SOURCE}
+ * for the global limits or the name of the limit rule), so the alerts of one source are ordered
+ * and different sources spread across partitions.
+ * <p>
+ * If the spill log is open, the alerts, which were not sent after all the retries or did not fit
+ * into the outbox, are written into it instead, and so are all the new alerts, until the spill log
+ * is replayed, so that they are sent in order, once the broker is back.
+ *
+ * @author ishvatov
+ */
+public class AlertPublisher {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(AlertPublisher.class);
+
+    // dependencies
+    private final KafkaTemplate<String, TrafficRecord> kafkaTemplate;
+    private final ScheduledExecutorService scheduler;
+    private final SpillLog spillLog;
+
+    // publisher configuration
+    private final String topicName;
+    private final String sensorName;
+    private final int outboxCapacity;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    // permits of the outbox, one per accepted and not yet completed alert
+    private final Semaphore outbox;
+
+    private final AlertMetrics metrics = new AlertMetrics();
+
+    // true, while a spilled alert is being sent
+    private final AtomicBoolean replaying = new AtomicBoolean();
+
+    // values, which were taken during the previous report
+    private long previousAcknowledged;
+    private long previousReportNanos = System.nanoTime();
+
+    /**
+     * @param kafkaTemplate      template, which sends the alerts
+     * @param scheduler          scheduler of the retries
+     * @param spillLog           log of the alerts, which were not sent, or null
+     * @param topicName          name of the alert topic
+     * @param sensorName         name of this sensor, first part of the alert key
+     * @param outboxCapacity     maximum number of not completed alerts
+     * @param maxRetries         number of retries after the failed send
+     * @param retryBackoffMillis delay before the first retry, doubled on each next one
+     */
+    public AlertPublisher(
+            KafkaTemplate<String, TrafficRecord> kafkaTemplate,
+            ScheduledExecutorService scheduler,
+            SpillLog spillLog,
+            String topicName,
+            String sensorName,
+            int outboxCapacity,
+            int maxRetries,
+            long retryBackoffMillis
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.scheduler = scheduler;
+        this.spillLog = spillLog;
+        this.topicName = topicName;
+        this.sensorName = sensorName;
+        this.outboxCapacity = outboxCapacity;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.outbox = new Semaphore(outboxCapacity);
+    }
+
+    /**
+     * Accepts the alert into the outbox and starts sending it. Never blocks.
+     *
+     * @param source  limits, which the alert is about: the global ones or the limit rule
+     * @param record  alert record
+     * @return true, if the alert was accepted or spilled, false, if the outbox and the spill log are full.
+     */
+    public boolean publish(String source, TrafficRecord record) {
+        String key = keyOf(source);
+
+        // the alerts behind the spilled ones are spilled too, so that their order is kept
+        if (spillLog != null && !spillLog.isEmpty()) {
+            if (spill(key, record)) {
+                metrics.onPublished();
+                return true;
+            }
+            metrics.onDropped();
+            LOGGER.warn("Spill log is full, alert from {} is dropped!", source);
+            return false;
+        }
+
+        if (!outbox.tryAcquire()) {
+            if (spill(key, record)) {
+                metrics.onPublished();
+                return true;
+            }
+            metrics.onDropped();
+            LOGGER.warn("Alert outbox is full, alert from {} is dropped!", source);
+            return false;
+        }
+        metrics.onPublished();
+        send(key, record, System.nanoTime(), 0);
+        return true;
+    }
+
+    /**
+     * Sends the spilled alerts one by one in the order they were spilled, each one is removed from
+     * the spill log after its acknowledgement. Stops at the first failed send, so it is called
+     * periodically and goes on, once the broker is back.
+     */
+    public void replaySpilled() {
+        if (spillLog == null || spillLog.isEmpty() || !replaying.compareAndSet(false, true)) {
+            return;
+        }
+        replayNext();
+    }
+
+    /**
+     * @return number of the alerts in the spill log.
+     */
+    public int getSpilledSize() {
+        return spillLog == null ? 0 : spillLog.size();
+    }
+
+    /**
+     * @param source limits, which the alert is about: the global ones or the limit rule
+     * @return key of the alerts of the source.
+     */
+    public String keyOf(String source) {
+        return sensorName + '/' + source;
+    }
+
+    /**
+     * Sends all the batched records immediately, blocks until they are completed.
+     */
+    public void flush() {
+        kafkaTemplate.flush();
+    }
+
+    /**
+     * @return number of the accepted and not yet completed alerts.
+     */
+    public int getOutboxSize() {
+        return outboxCapacity - outbox.availablePermits();
+    }
+
+    public AlertMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Logs the delivery metrics since the previous report.
+     */
+    public synchronized void report() {
+        long now = System.nanoTime();
+        long acknowledged = metrics.getAcknowledged();
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - previousReportNanos));
+        LOGGER.info(
+                "Alerts acknowledged: {} ({}/min), failed: {}, dropped: {}, retried: {}, " +
+                        "spilled: {} (replayed: {}, pending: {}), outbox: {}/{}, latency mean/max: {}/{} ms",
+                acknowledged,
+                (acknowledged - previousAcknowledged) * TimeUnit.MINUTES.toMillis(1) / elapsedMillis,
+                metrics.getFailed(),
+                metrics.getDropped(),
+                metrics.getRetried(),
+                metrics.getSpilled(),
+                metrics.getReplayed(),
+                getSpilledSize(),
+                getOutboxSize(),
+                outboxCapacity,
+                TimeUnit.NANOSECONDS.toMillis(metrics.getMeanLatencyNanos()),
+                TimeUnit.NANOSECONDS.toMillis(metrics.getMaxLatencyNanos())
+        );
+        previousAcknowledged = acknowledged;
+        previousReportNanos = now;
+    }
+
+    private void send(String key, TrafficRecord record, long publishedNanos, int attempt) {
+        ListenableFuture<SendResult<String, TrafficRecord>> future;
+        try {
+            future = kafkaTemplate.send(topicName, key, record);
+        } catch (RuntimeException ex) {
+            onFailure(key, record, publishedNanos, attempt, ex);
+            return;
+        }
+        future.addCallback(
+                result -> onSuccess(publishedNanos),
+                ex -> onFailure(key, record, publishedNanos, attempt, ex)
+        );
+    }
+
+    private void onSuccess(long publishedNanos) {
+        metrics.onAcknowledged(System.nanoTime() - publishedNanos);
+        outbox.release();
+    }
+
+    private void onFailure(String key, TrafficRecord record, long publishedNanos, int attempt, Throwable ex) {
+        if (attempt < maxRetries) {
+            try {
+                metrics.onRetried();
+                scheduler.schedule(
+                        () -> send(key, record, publishedNanos, attempt + 1),
+                        retryBackoffMillis << attempt,
+                        TimeUnit.MILLISECONDS
+                );
+                LOGGER.warn("Alert {} was not sent (attempt {}): {}", key, attempt + 1, ex.getMessage());
+                return;
+            } catch (RejectedExecutionException rejected) {
+                LOGGER.warn("Alert {} retry was rejected, scheduler is shutdown!", key);
+            }
+        }
+        outbox.release();
+        if (spill(key, record)) {
+            LOGGER.warn("Alert {} was not sent and is spilled: {}", key, ex.getMessage());
+            return;
+        }
+        metrics.onFailed();
+        LOGGER.error(String.format("Alert %s was not sent: %s", key, ex.getMessage()), ex);
+    }
+
+    /**
+     * Writes the key and the record in the binary format into the spill log.
+     *
+     * @return true, if the alert was spilled, false, if the spill log is full or not open.
+     */
+    private boolean spill(String key, TrafficRecord record) {
+        if (spillLog == null) {
+            return false;
+        }
+        WireWriter writer = new WireWriter(512);
+        writer.writeString(key);
+        BinaryRecordSerializer.write(writer, record);
+        if (!spillLog.append(writer.toByteArray())) {
+            return false;
+        }
+        metrics.onSpilled();
+        return true;
+    }
+
+    private void replayNext() {
+        byte[] entry = spillLog.peek();
+        if (entry == null) {
+            replaying.set(false);
+            return;
+        }
+
+        String key;
+        TrafficRecord record;
+        try {
+            WireReader reader = new WireReader(entry);
+            key = reader.readString();
+            record = BinaryRecordDeserializer.read(reader);
+        } catch (RuntimeException ex) {
+            // record of an older format or a damaged one is never sent
+            spillLog.remove();
+            metrics.onFailed();
+            LOGGER.error(String.format("Spilled alert is not readable and is dropped: %s", ex.getMessage()), ex);
+            replayLater();
+            return;
+        }
+
+        long replayedNanos = System.nanoTime();
+        ListenableFuture<SendResult<String, TrafficRecord>> future;
+        try {
+            future = kafkaTemplate.send(topicName, key, record);
+        } catch (RuntimeException ex) {
+            onReplayFailure(key, ex);
+            return;
+        }
+        future.addCallback(
+                result -> {
+                    metrics.onReplayed();
+                    metrics.onAcknowledged(System.nanoTime() - replayedNanos);
+                    spillLog.remove();
+                    replayLater();
+                },
+                ex -> onReplayFailure(key, ex)
+        );
+    }
+
+    /**
+     * Continues the replay in the scheduler, not in the producer callback.
+     */
+    private void replayLater() {
+        try {
+            scheduler.execute(this::replayNext);
+        } catch (RejectedExecutionException rejected) {
+            replaying.set(false);
+        }
+    }
+
+    private void onReplayFailure(String key, Throwable ex) {
+        replaying.set(false);
+        LOGGER.warn("Spilled alert {} was not sent, {} alerts wait for the broker: {}", key, spillLog.size(), ex.getMessage());
+    }
+}
@@ -0,0 +1,230 @@
+package com.ishvatov.traffic.alert;
+
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.wire.AlertStatus;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Alert state machine of every limit, which decides, whether an alert has to be sent about the
+ * evaluated traffic, so a long or a flapping breach produces a bounded number of alerts:
+ * <ul>
+ * <li>a breach starts, when the traffic is out of limits by more than the enter margin, and is opened
+ * only if it lasts for the minimum breach duration;</li>
+ * <li>the breaches of the open one are coalesced into one {@link AlertStatus#ONGOING} alert
+ * with the running peak and number of breaches per update interval;</li>
+ * <li>the breach is resolved only when the traffic is back in the limits by more than the exit margin,
+ * and the next breach of the limit is not opened during the suppression window after that.</li>
+ * </ul>
+ * Margins are fractions of the limit, for example 0.05 is 5 percent of the maximum or of the minimum.
+ * <p>
+ * If the returned alert is not sent, the transition is taken back by {@link #revert(String)},
+ * so the alert is returned again by the next evaluation of the limit.
+ *
+ * @author ishvatov
+ */
+public class AlertTracker {
+    // margins of the limits, which the traffic has to cross to start and to resolve the breach
+    private final double enterMargin;
+    private final double exitMargin;
+
+    // durations in milliseconds
+    private final long minBreachMillis;
+    private final long updateIntervalMillis;
+    private final long suppressionMillis;
+
+    // state of every limit by the source of the alerts
+    private final Map<String, State> states = new HashMap<>();
+
+    // state of every limit before its last returned alert
+    private final Map<String, State> previous = new HashMap<>();
+
+    /**
+     * @param enterMargin          fraction of the limit, by which the traffic has to be out of it to start the breach
+     * @param exitMargin           fraction of the limit, by which the traffic has to be in it to resolve the breach
+     * @param minBreachMillis      minimum duration of the breach, after which it is opened
+     * @param updateIntervalMillis minimum interval between the alerts about one breach
+     * @param suppressionMillis    time after the resolved breach, during which the new one is not opened
+     */
+    public AlertTracker(
+            double enterMargin,
+            double exitMargin,
+            long minBreachMillis,
+            long updateIntervalMillis,
+            long suppressionMillis
+    ) {
+        if (enterMargin < 0 || exitMargin < 0 || minBreachMillis < 0 || updateIntervalMillis < 0 || suppressionMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid alert margins %s, %s or durations %s, %s, %s ms!",
+                    enterMargin, exitMargin, minBreachMillis, updateIntervalMillis, suppressionMillis
+            ));
+        }
+        this.enterMargin = enterMargin;
+        this.exitMargin = exitMargin;
+        this.minBreachMillis = minBreachMillis;
+        this.updateIntervalMillis = updateIntervalMillis;
+        this.suppressionMillis = suppressionMillis;
+    }
+
+    /**
+     * Moves the state machine of the limit with the evaluated traffic.
+     *
+     * @param source    source of the alerts about the limit
+     * @param timestamp time of the evaluation, milliseconds since epoch
+     * @param current   evaluated amount of traffic
+     * @param limits    limits of the traffic
+     * @return alert, which has to be sent, or null.
+     */
+    public synchronized AlertUpdate track(String source, long timestamp, long current, Limits limits) {
+        State state = states.computeIfAbsent(source, key -> new State());
+        State before = state.copy();
+        boolean entered = current > limits.getMax() + margin(limits.getMax(), enterMargin)
+                || current < limits.getMin() - margin(limits.getMin(), enterMargin);
+
+        if (state.phase == Phase.ACTIVE) {
+            boolean exited = current <= limits.getMax() - margin(limits.getMax(), exitMargin)
+                    && current >= limits.getMin() + margin(limits.getMin(), exitMargin);
+            if (exited) {
+                state.phase = Phase.NORMAL;
+                state.quietUntil = timestamp + suppressionMillis;
+                AlertUpdate update = new AlertUpdate(AlertStatus.RESOLVED, state.since, state.peak, state.breaches);
+                return returned(source, before, update);
+            }
+
+            // traffic between the exit and the enter margins keeps the breach, but is not counted
+            if (limits.isExceeded(current)) {
+                state.record(current, limits);
+            }
+            if (timestamp - state.lastSent < updateIntervalMillis) {
+                return null;
+            }
+            state.lastSent = timestamp;
+            AlertUpdate update = new AlertUpdate(AlertStatus.ONGOING, state.since, state.peak, state.breaches);
+            return returned(source, before, update);
+        }
+
+        // the breach is started and opened only by the continuous traffic beyond the enter margin
+        if (!entered) {
+            state.phase = Phase.NORMAL;
+            return null;
+        }
+        if (state.phase == Phase.NORMAL) {
+            if (timestamp < state.quietUntil) {
+                return null;
+            }
+            state.start(timestamp);
+        }
+        state.record(current, limits);
+        if (timestamp - state.since < minBreachMillis) {
+            return null;
+        }
+
+        state.phase = Phase.ACTIVE;
+        state.lastSent = timestamp;
+        AlertUpdate update = new AlertUpdate(AlertStatus.OPEN, state.since, state.peak, state.breaches);
+        return returned(source, before, update);
+    }
+
+    /**
+     * Takes back the transition of the limit, which returned the last alert, for example
+     * because the alert was not sent.
+     *
+     * @param source source of the alerts about the limit
+     */
+    public synchronized void revert(String source) {
+        State before = previous.remove(source);
+        if (before != null) {
+            states.put(source, before);
+        }
+    }
+
+    /**
+     * @param source source of the alerts about the limit
+     * @return true, if the limit has a pending or an open breach.
+     */
+    public synchronized boolean isBreached(String source) {
+        State state = states.get(source);
+        return state != null && state.phase != Phase.NORMAL;
+    }
+
+    /**
+     * Forgets the states of the limits, which do not exist anymore, for example of the deleted rules.
+     *
+     * @param sources sources of the alerts about the existing limits
+     */
+    public synchronized void retain(Collection<String> sources) {
+        states.keySet().retainAll(sources);
+        previous.keySet().retainAll(sources);
+    }
+
+    /**
+     * @return number of the limits, which have an open breach.
+     */
+    public synchronized int getActiveCount() {
+        return (int) states.values().stream().filter(state -> state.phase == Phase.ACTIVE).count();
+    }
+
+    private AlertUpdate returned(String source, State before, AlertUpdate update) {
+        previous.put(source, before);
+        return update;
+    }
+
+    private static long margin(long limit, double fraction) {
+        return (long) (limit * fraction);
+    }
+
+    private enum Phase {
+        // traffic is in the limits or the breach is suppressed
+        NORMAL,
+
+        // breach has started, but has not lasted for the minimum duration yet
+        PENDING,
+
+        // breach is open, its alert is sent
+        ACTIVE
+    }
+
+    private static final class State {
+        private Phase phase = Phase.NORMAL;
+
+        // running values of the current breach
+        private long since;
+        private long peak;
+        private long peakDistance;
+        private long breaches;
+
+        // time of the last sent alert and the end of the suppression window, milliseconds since epoch
+        private long lastSent;
+        private long quietUntil = Long.MIN_VALUE;
+
+        private State copy() {
+            State copy = new State();
+            copy.phase = phase;
+            copy.since = since;
+            copy.peak = peak;
+            copy.peakDistance = peakDistance;
+            copy.breaches = breaches;
+            copy.lastSent = lastSent;
+            copy.quietUntil = quietUntil;
+            return copy;
+        }
+
+        private void start(long timestamp) {
+            phase = Phase.PENDING;
+            since = timestamp;
+            peakDistance = -1;
+            breaches = 0;
+        }
+
+        private void record(long current, Limits limits) {
+            long distance = current > limits.getMax() ? current - limits.getMax() : limits.getMin() - current;
+            if (distance > peakDistance) {
+                peak = current;
+                peakDistance = distance;
+            }
+            breaches++;
+        }
+    }
+}
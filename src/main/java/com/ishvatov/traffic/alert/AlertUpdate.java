@@ -0,0 +1,24 @@
+package com.ishvatov.traffic.alert;
+
+import com.ishvatov.traffic.wire.AlertStatus;
+import lombok.Value;
+
+/**
+ * Alert, which has to be sent about the breach of one limit.
+ *
+ * @author ishvatov
+ */
+@Value
+public class AlertUpdate {
+    // status of the breach
+    AlertStatus status;
+
+    // start of the breach, milliseconds since epoch
+    long since;
+
+    // amount of traffic, which was the farthest out of limits during the breach
+    long peak;
+
+    // number of the out of limits evaluations during the breach
+    long breaches;
+}
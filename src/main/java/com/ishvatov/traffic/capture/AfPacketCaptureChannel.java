@@ -0,0 +1,330 @@
+package com.ishvatov.traffic.capture;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.pcap4j.packet.namednumber.DataLinkType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * {@link CaptureChannel} of the Linux AF_PACKET socket with the TPACKET_V3 receive ring, which is
+ * mapped into the process: the kernel writes the packets directly into the blocks of the ring and
+ * the capture thread reads them in place with the {@link TpacketV3Ring}, so, unlike the pcap loop,
+ * neither a packet object nor a copy of its data is created per packet.
+ * <p>
+ * The named device is captured with its link layer header ({@link DataLinkType#EN10MB}), the
+ * "any" device is captured without it ({@link DataLinkType#RAW}), so the lengths of its packets
+ * do not include the link layer header. BPF filters are not supported. Requires 64-bit Linux.
+ *
+ * @author ishvatov
+ */
+public class AfPacketCaptureChannel implements CaptureChannel {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(AfPacketCaptureChannel.class);
+
+    // device, which captures the packets of all the interfaces
+    public static final String ANY_DEVICE = "any";
+
+    // loopback device, whose outgoing packets are skipped
+    private static final String LOOPBACK_DEVICE = "lo";
+
+    // socket constants from <linux/if_packet.h> and <linux/if_ether.h>
+    private static final int AF_PACKET = 17;
+    private static final int SOCK_RAW = 3;
+    private static final int SOCK_DGRAM = 2;
+    private static final short ETH_P_ALL = 0x0003;
+    private static final int SOL_PACKET = 263;
+    private static final int PACKET_ADD_MEMBERSHIP = 1;
+    private static final int PACKET_RX_RING = 5;
+    private static final int PACKET_STATISTICS = 6;
+    private static final int PACKET_VERSION = 10;
+    private static final int TPACKET_V3 = 2;
+    private static final int PACKET_MR_PROMISC = 1;
+
+    // memory and poll constants from <sys/mman.h> and <poll.h>
+    private static final int PROT_READ_WRITE = 0x1 | 0x2;
+    private static final int MAP_SHARED = 0x1;
+    private static final int POLLIN = 0x1;
+    private static final int EINTR = 4;
+
+    // sizes of the native structures
+    private static final int SOCKADDR_LL_SIZE = 20;
+    private static final int PACKET_MREQ_SIZE = 16;
+    private static final int TPACKET_REQ3_SIZE = 28;
+    private static final int TPACKET_STATS_V3_SIZE = 12;
+    private static final int POLLFD_SIZE = 8;
+
+    // ring geometry: blocks are filled by the kernel as a whole, frames only bound the packet size
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final int FRAME_SIZE = 1 << 11;
+    private static final int DEFAULT_RING_SIZE = 1 << 22;
+
+    // maximum time of the poll, so the broken loop returns soon
+    private static final int POLL_TIMEOUT_MILLIS = 100;
+
+    private final String device;
+    private final int fd;
+    private final Pointer ring;
+    private final long ringSize;
+    private final TpacketV3Ring reader;
+    private final DataLinkType dataLinkType;
+
+    // buffers of the poll and of the statistics, allocated once
+    private final Memory pollFd = new Memory(POLLFD_SIZE);
+    private final Memory stats = new Memory(TPACKET_STATS_V3_SIZE);
+    private final Memory statsLength = new Memory(Integer.BYTES);
+
+    // counters, accumulated because the kernel resets them on every read
+    private long received = 0;
+    private long dropped = 0;
+
+    private volatile boolean stopped = false;
+    private boolean looping = false;
+    private boolean closed = false;
+
+    private AfPacketCaptureChannel(String device, int fd, Pointer ring, long ringSize, TpacketV3Ring reader,
+                                   DataLinkType dataLinkType) {
+        this.device = device;
+        this.fd = fd;
+        this.ring = ring;
+        this.ringSize = ringSize;
+        this.reader = reader;
+        this.dataLinkType = dataLinkType;
+        pollFd.setInt(0, fd);
+        pollFd.setShort(4, (short) POLLIN);
+    }
+
+    /**
+     * Opens the socket of the device and maps its receive ring. The ring takes the kernel buffer size of the profile,
+     * the packets are delivered, when the block is full or after the read timeout of the profile.
+     *
+     * @param profile          settings of the capture.
+     * @param device           name of the device or "any".
+     * @param additionalFilter BPF expression, must be empty together with the filter of the profile.
+     * @return opened channel.
+     * @throws IOException if the socket can not be opened or the ring can not be mapped.
+     */
+    public static AfPacketCaptureChannel open(CaptureProfile profile, String device, String additionalFilter)
+            throws IOException {
+        String filter = CaptureProfile.combine(profile.getFilter(), additionalFilter);
+        if (filter != null) {
+            throw new IllegalArgumentException("BPF filters are not supported by the AF_PACKET capture: " + filter);
+        }
+
+        boolean any = ANY_DEVICE.equals(device);
+        int bufferSize = profile.getBufferSize() > 0 ? profile.getBufferSize() : DEFAULT_RING_SIZE;
+        int blockCount = Math.max(2, bufferSize / BLOCK_SIZE);
+        long ringSize = (long) BLOCK_SIZE * blockCount;
+        if (ringSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("AF_PACKET ring must be smaller than 2 GiB: " + ringSize);
+        }
+
+        int fd = -1;
+        try {
+            fd = LibC.socket(AF_PACKET, any ? SOCK_DGRAM : SOCK_RAW, htons(ETH_P_ALL) & 0xFFFF);
+            int ifIndex = any ? 0 : LibC.if_nametoindex(device);
+            if (!any && ifIndex == 0) {
+                throw new IOException("Unknown capture device: " + device);
+            }
+
+            Memory version = new Memory(Integer.BYTES);
+            version.setInt(0, TPACKET_V3);
+            LibC.setsockopt(fd, SOL_PACKET, PACKET_VERSION, version, Integer.BYTES);
+
+            Memory request = new Memory(TPACKET_REQ3_SIZE);
+            request.clear();
+            request.setInt(0, BLOCK_SIZE);
+            request.setInt(4, blockCount);
+            request.setInt(8, FRAME_SIZE);
+            request.setInt(12, BLOCK_SIZE / FRAME_SIZE * blockCount);
+            request.setInt(16, profile.isImmediateMode() ? 1 : Math.max(1, profile.getTimeoutMillis()));
+            LibC.setsockopt(fd, SOL_PACKET, PACKET_RX_RING, request, TPACKET_REQ3_SIZE);
+
+            Pointer ring = LibC.mmap(null, ringSize, PROT_READ_WRITE, MAP_SHARED, fd, 0);
+            try {
+                Memory address = new Memory(SOCKADDR_LL_SIZE);
+                address.clear();
+                address.setShort(0, (short) AF_PACKET);
+                address.setShort(2, htons(ETH_P_ALL));
+                address.setInt(4, ifIndex);
+                LibC.bind(fd, address, SOCKADDR_LL_SIZE);
+
+                if (!any && profile.getPromiscuousMode() == PcapNetworkInterface.PromiscuousMode.PROMISCUOUS) {
+                    Memory membership = new Memory(PACKET_MREQ_SIZE);
+                    membership.clear();
+                    membership.setInt(0, ifIndex);
+                    membership.setShort(4, (short) PACKET_MR_PROMISC);
+                    LibC.setsockopt(fd, SOL_PACKET, PACKET_ADD_MEMBERSHIP, membership, PACKET_MREQ_SIZE);
+                }
+
+                TpacketV3Ring reader = new TpacketV3Ring(
+                        ring.getByteBuffer(0, ringSize),
+                        BLOCK_SIZE,
+                        blockCount,
+                        profile.getSnaplen(),
+                        LibC.if_nametoindex(LOOPBACK_DEVICE)
+                );
+                LOGGER.info(
+                        "Opened {} with AF_PACKET: ring of {} blocks of {} bytes, block timeout {} ms",
+                        device,
+                        blockCount,
+                        BLOCK_SIZE,
+                        request.getInt(16)
+                );
+                return new AfPacketCaptureChannel(
+                        device, fd, ring, ringSize, reader, any ? DataLinkType.RAW : DataLinkType.EN10MB
+                );
+            } catch (RuntimeException ex) {
+                LibC.munmap(ring, ringSize);
+                throw ex;
+            }
+        } catch (LastErrorException ex) {
+            closeQuietly(fd);
+            throw new IOException(String.format("AF_PACKET capture of %s can not be opened: %s", device, ex.getMessage()), ex);
+        } catch (IOException | RuntimeException ex) {
+            closeQuietly(fd);
+            throw ex;
+        }
+    }
+
+    @Override
+    public DataLinkType getDataLinkType() {
+        return dataLinkType;
+    }
+
+    @Override
+    public void loop(Receiver receiver) throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("AF_PACKET channel is closed: " + device);
+            }
+            looping = true;
+        }
+        try {
+            while (!stopped) {
+                if (reader.read(receiver) >= 0) {
+                    continue;
+                }
+                try {
+                    pollFd.setShort(6, (short) 0);
+                    LibC.poll(pollFd, 1, POLL_TIMEOUT_MILLIS);
+                } catch (LastErrorException ex) {
+                    if (ex.getErrorCode() != EINTR) {
+                        throw new IOException(String.format("Poll of %s has failed: %s", device, ex.getMessage()), ex);
+                    }
+                }
+            }
+            LOGGER.info("AF_PACKET loop of {} was stopped!", device);
+        } finally {
+            synchronized (this) {
+                looping = false;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void breakLoop() {
+        stopped = true;
+    }
+
+    @Override
+    public synchronized CaptureStats getStats() throws IOException {
+        if (closed) {
+            throw new IOException("AF_PACKET channel is closed: " + device);
+        }
+        try {
+            statsLength.setInt(0, TPACKET_STATS_V3_SIZE);
+            LibC.getsockopt(fd, SOL_PACKET, PACKET_STATISTICS, stats, statsLength);
+        } catch (LastErrorException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        // the number of the packets includes the dropped ones, like the pcap counters
+        received += stats.getInt(0) & 0xFFFFFFFFL;
+        dropped += stats.getInt(4) & 0xFFFFFFFFL;
+        return new CaptureStats(received, dropped, 0);
+    }
+
+    /**
+     * Breaks the loop, waits until it returns and releases the ring and the socket.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        stopped = true;
+        // the ring can not be unmapped, while the capture thread reads it, so the interrupt is only
+        // remembered and the loop, which returns within the poll timeout, is awaited anyway
+        boolean interrupted = false;
+        while (looping) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        closed = true;
+        try {
+            LibC.munmap(ring, ringSize);
+        } catch (LastErrorException ex) {
+            LOGGER.warn("AF_PACKET ring of {} was not unmapped: {}", device, ex.getMessage());
+        }
+        closeQuietly(fd);
+    }
+
+    private static short htons(short value) {
+        return ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? value : Short.reverseBytes(value);
+    }
+
+    private static void closeQuietly(int fd) {
+        if (fd < 0) {
+            return;
+        }
+        try {
+            LibC.close(fd);
+        } catch (LastErrorException ex) {
+            LOGGER.warn("AF_PACKET socket was not closed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Functions of the C library, which are bound with the JNA direct mapping.
+     */
+    private static final class LibC {
+        static {
+            Native.register(LibC.class, "c");
+        }
+
+        private LibC() {
+        }
+
+        static native int socket(int domain, int type, int protocol) throws LastErrorException;
+
+        static native int setsockopt(int fd, int level, int name, Pointer value, int length) throws LastErrorException;
+
+        static native int getsockopt(int fd, int level, int name, Pointer value, Pointer length) throws LastErrorException;
+
+        static native int bind(int fd, Pointer address, int length) throws LastErrorException;
+
+        static native int if_nametoindex(String name);
+
+        static native Pointer mmap(Pointer address, long length, int protection, int flags, int fd, long offset)
+                throws LastErrorException;
+
+        static native int munmap(Pointer address, long length) throws LastErrorException;
+
+        static native int poll(Pointer fds, long count, int timeoutMillis) throws LastErrorException;
+
+        static native int close(int fd) throws LastErrorException;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapNativeException;
+
+import java.io.IOException;
+
+/**
+ * Implementation of the live capture of the interfaces.
+ *
+ * @author ishvatov
+ */
+public enum CaptureBackend {
+    /**
+     * Pcap handle of the libpcap, every packet is copied into a new packet object. Portable, supports BPF filters.
+     */
+    PCAP {
+        @Override
+        public CaptureChannel open(CaptureProfile profile, String device, String additionalFilter) throws IOException {
+            try {
+                return new PcapCaptureChannel(profile.open(device, additionalFilter));
+            } catch (PcapNativeException | NotOpenException ex) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+        }
+    },
+
+    /**
+     * Memory-mapped TPACKET_V3 ring of the Linux AF_PACKET socket, the packets are read in place.
+     */
+    AF_PACKET {
+        @Override
+        public CaptureChannel open(CaptureProfile profile, String device, String additionalFilter) throws IOException {
+            return AfPacketCaptureChannel.open(profile, device, additionalFilter);
+        }
+    };
+
+    /**
+     * Opens the live capture of the device.
+     *
+     * @param profile          settings of the capture.
+     * @param device           name of the device.
+     * @param additionalFilter BPF expression, which is combined with the filter of the profile, or null.
+     * @return opened channel.
+     * @throws IOException if the capture can not be opened.
+     */
+    public abstract CaptureChannel open(CaptureProfile profile, String device, String additionalFilter)
+            throws IOException;
+}
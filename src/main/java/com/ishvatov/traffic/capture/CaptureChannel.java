@@ -0,0 +1,65 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of the captured packets, which is run by the capture thread of the {@link CapturePipeline}.
+ * The packets are passed to the {@link Receiver} either as the arrays, copied by the capture library,
+ * or in place, as the regions of the buffer, which is shared with the kernel.
+ *
+ * @author ishvatov
+ */
+public interface CaptureChannel {
+    /**
+     * Receiver of the captured packets, called only by the capture thread. The data is valid only during the call.
+     */
+    interface Receiver {
+        /**
+         * @param length    length of the packet in bytes.
+         * @param timestamp capture timestamp in nanoseconds since epoch.
+         * @param data      captured bytes of the packet.
+         */
+        void onPacket(int length, long timestamp, byte[] data);
+
+        /**
+         * @param length         length of the packet in bytes.
+         * @param timestamp      capture timestamp in nanoseconds since epoch.
+         * @param buffer         buffer, which contains the packet.
+         * @param offset         offset of the packet's first byte in the buffer.
+         * @param capturedLength number of the captured bytes of the packet.
+         */
+        void onPacket(int length, long timestamp, ByteBuffer buffer, int offset, int capturedLength);
+    }
+
+    /**
+     * @return link layer type of the captured packets.
+     */
+    DataLinkType getDataLinkType();
+
+    /**
+     * Passes the captured packets to the receiver until the {@link #breakLoop()} or the end of the capture.
+     *
+     * @param receiver receiver of the packets.
+     * @throws IOException if the capture has failed.
+     */
+    void loop(Receiver receiver) throws IOException;
+
+    /**
+     * Makes the loop return, may be called from any thread.
+     */
+    void breakLoop();
+
+    /**
+     * @return cumulative counters of the channel.
+     * @throws IOException if the counters are not available.
+     */
+    CaptureStats getStats() throws IOException;
+
+    /**
+     * Releases the resources of the channel.
+     */
+    void close();
+}
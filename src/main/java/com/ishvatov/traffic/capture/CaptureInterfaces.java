@@ -0,0 +1,97 @@
+package com.ishvatov.traffic.capture;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Capture interfaces and their share of the pipeline workers: interface with index i
+ * is captured by the workers [i * workersPerInterface, (i + 1) * workersPerInterface).
+ * Keeps the sliding window of every interface over its cells of the {@link PerWorkerTrafficCounter},
+ * so the amount of traffic in the window can be reported per interface.
+ *
+ * @author ishvatov
+ */
+public class CaptureInterfaces {
+    private final List<String> names;
+    private final int workersPerInterface;
+    private final TrafficCounter trafficCounter;
+    private final SlidingWindow[] windows;
+
+    /**
+     * @param names               names of the capture interfaces.
+     * @param workersPerInterface number of the pipeline workers of every interface.
+     * @param trafficCounter      counter of the whole traffic, must be a {@link PerWorkerTrafficCounter}
+     *                            if there are several interfaces.
+     * @param bucketNanos         duration of one bucket of the windows.
+     * @param buckets             number of the buckets in the windows.
+     */
+    public CaptureInterfaces(
+            List<String> names,
+            int workersPerInterface,
+            TrafficCounter trafficCounter,
+            long bucketNanos,
+            int buckets
+    ) {
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("At least one capture interface is required!");
+        }
+        if (names.size() > 1 && !(trafficCounter instanceof PerWorkerTrafficCounter)) {
+            throw new IllegalArgumentException(String.format(
+                    "Traffic of %d interfaces can not be counted by %s!",
+                    names.size(),
+                    trafficCounter.getClass().getSimpleName()
+            ));
+        }
+        this.names = Collections.unmodifiableList(names);
+        this.workersPerInterface = workersPerInterface;
+        this.trafficCounter = trafficCounter;
+        this.windows = new SlidingWindow[names.size()];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = new SlidingWindow(bucketNanos, buckets);
+        }
+    }
+
+    /**
+     * @return names of the capture interfaces.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return total number of the pipeline workers.
+     */
+    public int getWorkers() {
+        return names.size() * workersPerInterface;
+    }
+
+    /**
+     * @param index index of the interface.
+     * @return total amount of bytes, which have been captured on the interface since the start.
+     */
+    public long sum(int index) {
+        if (trafficCounter instanceof PerWorkerTrafficCounter) {
+            return ((PerWorkerTrafficCounter) trafficCounter).sum(
+                    index * workersPerInterface,
+                    (index + 1) * workersPerInterface
+            );
+        }
+        return trafficCounter.sum();
+    }
+
+    /**
+     * Moves the windows of all the interfaces to the provided time.
+     *
+     * @param timestampNanos current time in nanoseconds.
+     * @return amount of bytes in the window of every interface, in the order of the interfaces.
+     */
+    public Map<String, Long> advance(long timestampNanos) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (int i = 0; i < windows.length; i++) {
+            totals.put(names.get(i), windows[i].advance(timestampNanos, sum(i)));
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,347 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.core.PcapHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Staged capture pipeline. The dedicated capture thread of every capture source ({@link CaptureChannel})
+ * runs its loop and only copies the packets into the {@link PacketRingBuffer}s of the
+ * source (workers are split evenly between the sources, packets of the source are distributed
+ * round-robin between its workers), worker threads drain the buffers and pass the packets
+ * to the {@link PacketHandler}, so slow accounting never blocks libpcap and the sources
+ * never share a buffer, a worker or a counter.
+ * <p>
+ * When all the buffers of the source are full, the packet is either dropped and counted
+ * ({@link OverflowPolicy#DROP}) or the capture thread waits for the free slot
+ * ({@link OverflowPolicy#BLOCK}), which pushes back to the kernel buffer.
+ *
+ * @author ishvatov
+ */
+public class CapturePipeline {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(CapturePipeline.class);
+
+    // pipeline constants
+    private static final int DRAIN_BATCH = 256;
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Behaviour of the capture thread, when all the buffers are full.
+     */
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+
+    private final PacketRingBuffer[] buffers;
+    private final PacketHandler handler;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread[] workers;
+
+    private volatile boolean running = false;
+    private volatile List<CaptureSource> sources = Collections.emptyList();
+
+    /**
+     * @param workers        number of the worker threads.
+     * @param bufferCapacity capacity of every worker's buffer, must be a power of two.
+     * @param overflowPolicy behaviour of the capture thread, when all the buffers are full.
+     * @param handler        handler of the packets.
+     */
+    public CapturePipeline(int workers, int bufferCapacity, OverflowPolicy overflowPolicy, PacketHandler handler) {
+        this.buffers = new PacketRingBuffer[workers];
+        this.workers = new Thread[workers];
+        this.overflowPolicy = overflowPolicy;
+        this.handler = handler;
+        for (int i = 0; i < workers; i++) {
+            buffers[i] = new PacketRingBuffer(bufferCapacity);
+        }
+    }
+
+    /**
+     * Starts the worker threads and the capture thread, which runs the pcap loop on the provided handle.
+     *
+     * @param pcapHandle opened pcap handle.
+     */
+    public void start(PcapHandle pcapHandle) {
+        start(Collections.singletonList(pcapHandle));
+    }
+
+    /**
+     * Starts the worker threads and the capture thread per handle, which runs the pcap loop on it.
+     *
+     * @param pcapHandles opened pcap handles, number of the workers must be divisible by their number.
+     */
+    public void start(List<PcapHandle> pcapHandles) {
+        startChannels(pcapHandles.stream().map(PcapCaptureChannel::new).collect(Collectors.toList()));
+    }
+
+    /**
+     * Starts the worker threads and the capture thread per channel, which runs the loop of it.
+     * Source with index i is handled by the workers [i * workers / sources, (i + 1) * workers / sources).
+     *
+     * @param channels opened capture channels, number of the workers must be divisible by their number.
+     */
+    public synchronized void startChannels(List<? extends CaptureChannel> channels) {
+        if (running) {
+            throw new IllegalStateException("Capture pipeline is already running!");
+        }
+        if (channels.isEmpty() || buffers.length % channels.size() != 0) {
+            throw new IllegalArgumentException(String.format(
+                    "%d workers can not be split between %d capture sources!", buffers.length, channels.size()
+            ));
+        }
+        running = true;
+
+        int workersPerSource = buffers.length / channels.size();
+        List<CaptureSource> started = new ArrayList<>(channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            CaptureSource source = new CaptureSource(i, channels.get(i), i * workersPerSource, workersPerSource);
+            for (int worker = source.firstBuffer; worker < source.firstBuffer + workersPerSource; worker++) {
+                handler.onStart(worker, source.channel.getDataLinkType());
+            }
+            started.add(source);
+        }
+        sources = started;
+
+        for (int i = 0; i < workers.length; i++) {
+            int index = i;
+            workers[i] = new Thread(() -> work(index), "pcap-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        for (CaptureSource source : sources) {
+            source.thread.start();
+        }
+    }
+
+    /**
+     * Breaks the capture loops, waits until the workers handle all the buffered packets and stops them.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        for (CaptureSource source : sources) {
+            source.channel.breakLoop();
+        }
+        for (CaptureSource source : sources) {
+            source.thread.join(TimeUnit.SECONDS.toMillis(1));
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Waits until the capture threads finish the capture loops (for example, when the
+     * offline capture files end) and the workers handle all the buffered packets.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        for (CaptureSource source : sources) {
+            source.thread.join();
+        }
+        while (getQueueDepth() != 0) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Logs the counters of the pipeline.
+     */
+    public void report() {
+        LOGGER.info(
+                "Capture pipeline: published {}, dropped {}, back-pressure waits {}, queue depth {}/{}",
+                getPublished(),
+                getDropped(),
+                getBackPressureWaits(),
+                getQueueDepth(),
+                buffers.length * buffers[0].getCapacity()
+        );
+        if (sources.size() > 1) {
+            for (int i = 0; i < sources.size(); i++) {
+                CaptureSource source = sources.get(i);
+                LOGGER.info(
+                        "Capture source {}: published {}, dropped {}, back-pressure waits {}",
+                        i,
+                        source.published.get(),
+                        source.dropped.get(),
+                        source.backPressureWaits.get()
+                );
+            }
+        }
+    }
+
+    /**
+     * @return number of the packets, which were copied into the buffers.
+     */
+    public long getPublished() {
+        long published = 0;
+        for (CaptureSource source : sources) {
+            published += source.published.get();
+        }
+        return published;
+    }
+
+    /**
+     * @return number of the packets, which were dropped because all the buffers were full.
+     */
+    public long getDropped() {
+        long dropped = 0;
+        for (CaptureSource source : sources) {
+            dropped += source.dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * @return number of times the capture threads waited for a free slot.
+     */
+    public long getBackPressureWaits() {
+        long waits = 0;
+        for (CaptureSource source : sources) {
+            waits += source.backPressureWaits.get();
+        }
+        return waits;
+    }
+
+    /**
+     * @return number of the packets, which are waiting in all the buffers.
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (PacketRingBuffer buffer : buffers) {
+            depth += buffer.size();
+        }
+        return depth;
+    }
+
+    private void work(int index) {
+        PacketRingBuffer buffer = buffers[index];
+        int idle = 0;
+        while (running || buffer.size() != 0) {
+            if (buffer.drain(index, handler, DRAIN_BATCH) != 0) {
+                idle = 0;
+            } else if (++idle < IDLE_SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Capture source: capture channel, its capture thread and its slice of the buffers.
+     */
+    private final class CaptureSource implements CaptureChannel.Receiver {
+        private final CaptureChannel channel;
+        private final int firstBuffer;
+        private final int bufferCount;
+
+        // counters, updated only by the capture thread of the source
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong backPressureWaits = new AtomicLong();
+
+        // offset of the buffer, which receives the next packet, and number of the failed offers
+        // of the current packet, used only by the capture thread
+        private int next = 0;
+        private int attempts = 0;
+
+        private final Thread thread;
+
+        private CaptureSource(int index, CaptureChannel channel, int firstBuffer, int bufferCount) {
+            this.channel = channel;
+            this.firstBuffer = firstBuffer;
+            this.bufferCount = bufferCount;
+            this.thread = new Thread(this::capture, "pcap-capture-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Copies the packet into one of the buffers of the source.
+         */
+        @Override
+        public void onPacket(int length, long timestamp, byte[] data) {
+            attempts = 0;
+            while (!nextBuffer().offer(length, timestamp, data)) {
+                if (isDropped()) {
+                    return;
+                }
+            }
+            published.lazySet(published.get() + 1);
+        }
+
+        /**
+         * Copies the packet, which is read in place, into one of the buffers of the source.
+         */
+        @Override
+        public void onPacket(int length, long timestamp, ByteBuffer data, int offset, int capturedLength) {
+            attempts = 0;
+            while (!nextBuffer().offer(length, timestamp, data, offset, capturedLength)) {
+                if (isDropped()) {
+                    return;
+                }
+            }
+            published.lazySet(published.get() + 1);
+        }
+
+        /**
+         * @return buffer of the source, which receives the next packet, the buffers are used in turn.
+         */
+        private PacketRingBuffer nextBuffer() {
+            PacketRingBuffer buffer = buffers[firstBuffer + next];
+            if (++next == bufferCount) {
+                next = 0;
+            }
+            return buffer;
+        }
+
+        /**
+         * Counts the failed offer of the current packet and applies the overflow policy,
+         * once all the buffers of the source were full.
+         *
+         * @return true, if the packet is dropped, false, if it is offered to the next buffer.
+         */
+        private boolean isDropped() {
+            if (++attempts < bufferCount) {
+                return false;
+            }
+            attempts = 0;
+            if (overflowPolicy == OverflowPolicy.DROP) {
+                dropped.lazySet(dropped.get() + 1);
+                return true;
+            }
+            backPressureWaits.lazySet(backPressureWaits.get() + 1);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            return false;
+        }
+
+        private void capture() {
+            try {
+                channel.loop(this);
+            } catch (IOException exception) {
+                LOGGER.error(String.format("Following error has occurred in the capture loop: %s", exception.getMessage()), exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.ishvatov.traffic.capture;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.pcap4j.core.BpfProgram;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.pcap4j.core.Pcaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Settings of the pcap handles. Only the first {@link #snaplen} bytes of the packets
+ * are copied from the kernel, which is enough for the headers, the original wire
+ * length of the truncated packet is still counted. The configured BPF expression is
+ * compiled for every handle and combined with the additional filter from the command line.
+ *
+ * @author ishvatov
+ */
+@Getter
+@RequiredArgsConstructor
+public class CaptureProfile {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(CaptureProfile.class);
+
+    // maximum number of the captured bytes of the packet
+    private final int snaplen;
+
+    private final PcapNetworkInterface.PromiscuousMode promiscuousMode;
+
+    // read timeout, ignored in the immediate mode
+    private final int timeoutMillis;
+
+    // size of the kernel buffer in bytes, 0 keeps the default of the platform
+    private final int bufferSize;
+
+    // packets are delivered as soon as they arrive, without buffering in the kernel
+    private final boolean immediateMode;
+
+    private final PcapHandle.TimestampPrecision timestampPrecision;
+
+    // BPF expression, empty if all the packets are captured
+    private final String filter;
+
+    /**
+     * Opens the live capture handle of the device.
+     *
+     * @param device           name of the device.
+     * @param additionalFilter BPF expression, which is combined with the configured one, or null.
+     * @return activated pcap handle with the filter.
+     * @throws PcapNativeException if the handle can not be opened or the filter can not be compiled
+     * @throws NotOpenException    if the handle is closed
+     */
+    public PcapHandle open(String device, String additionalFilter) throws PcapNativeException, NotOpenException {
+        PcapHandle.Builder builder = new PcapHandle.Builder(device)
+                .snaplen(snaplen)
+                .promiscuousMode(promiscuousMode)
+                .timeoutMillis(timeoutMillis)
+                .immediateMode(immediateMode)
+                .timestampPrecision(timestampPrecision);
+        if (bufferSize > 0) {
+            builder.bufferSize(bufferSize);
+        }
+
+        PcapHandle handle = builder.build();
+        try {
+            applyFilter(handle, additionalFilter);
+        } catch (PcapNativeException | NotOpenException | RuntimeException ex) {
+            handle.close();
+            throw ex;
+        }
+        LOGGER.info(
+                "Opened {}: snaplen {}, buffer {}, immediate mode {}, {} timestamps, filter: {}",
+                device,
+                snaplen,
+                bufferSize > 0 ? bufferSize : "default",
+                immediateMode,
+                timestampPrecision,
+                describe(combine(filter, additionalFilter))
+        );
+        return handle;
+    }
+
+    /**
+     * Opens the offline capture file with the same timestamp precision and filter.
+     *
+     * @param file             path of the capture file.
+     * @param additionalFilter BPF expression, which is combined with the configured one, or null.
+     * @return pcap handle with the filter.
+     * @throws PcapNativeException if the file can not be opened or the filter can not be compiled
+     * @throws NotOpenException    if the handle is closed
+     */
+    public PcapHandle openOffline(String file, String additionalFilter) throws PcapNativeException, NotOpenException {
+        PcapHandle handle = Pcaps.openOffline(file, timestampPrecision);
+        try {
+            applyFilter(handle, additionalFilter);
+        } catch (PcapNativeException | NotOpenException | RuntimeException ex) {
+            handle.close();
+            throw ex;
+        }
+        return handle;
+    }
+
+    /**
+     * @param args command line arguments of the application.
+     * @return filter of the first argument, which is not an option, e.g. "net 10.0.0.0/8", or null.
+     */
+    public static String commandLineFilter(String... args) {
+        return Arrays.stream(args)
+                .filter(arg -> !arg.startsWith("--"))
+                .findFirst()
+                .map(net -> String.format("net %s", net))
+                .orElse(null);
+    }
+
+    /**
+     * @param first  BPF expression or null.
+     * @param second BPF expression or null.
+     * @return expression, which matches the packets, matched by both, or null if both are empty.
+     */
+    public static String combine(String first, String second) {
+        boolean hasFirst = first != null && !first.trim().isEmpty();
+        boolean hasSecond = second != null && !second.trim().isEmpty();
+        if (hasFirst && hasSecond) {
+            return String.format("(%s) and (%s)", first.trim(), second.trim());
+        }
+        if (hasFirst) {
+            return first.trim();
+        }
+        return hasSecond ? second.trim() : null;
+    }
+
+    /**
+     * @param filter BPF expression or null.
+     * @return the expression or "None", if it is empty.
+     */
+    public static String describe(String filter) {
+        return filter == null ? "None" : filter;
+    }
+
+    private void applyFilter(PcapHandle handle, String additionalFilter) throws PcapNativeException, NotOpenException {
+        String expression = combine(filter, additionalFilter);
+        if (expression != null) {
+            handle.setFilter(expression, BpfProgram.BpfCompileMode.OPTIMIZE);
+        }
+    }
+}
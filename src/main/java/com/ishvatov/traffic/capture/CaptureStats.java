@@ -0,0 +1,36 @@
+package com.ishvatov.traffic.capture;
+
+import lombok.Value;
+
+/**
+ * Cumulative packet counters of the pcap handles.
+ *
+ * @author ishvatov
+ */
+@Value
+public class CaptureStats {
+    public static final CaptureStats EMPTY = new CaptureStats(0, 0, 0);
+
+    // packets, received by the filter
+    long received;
+
+    // packets, dropped because there was no room in the kernel buffer
+    long dropped;
+
+    // packets, dropped by the network interface or its driver
+    long ifDropped;
+
+    /**
+     * @return sum of these and the provided counters.
+     */
+    public CaptureStats plus(CaptureStats other) {
+        return new CaptureStats(received + other.received, dropped + other.dropped, ifDropped + other.ifDropped);
+    }
+
+    /**
+     * @return difference between these and the provided counters.
+     */
+    public CaptureStats minus(CaptureStats other) {
+        return new CaptureStats(received - other.received, dropped - other.dropped, ifDropped - other.ifDropped);
+    }
+}
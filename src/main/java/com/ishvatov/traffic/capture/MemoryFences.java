@@ -0,0 +1,58 @@
+package com.ishvatov.traffic.capture;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * Memory fences of the memory, which is shared with the kernel. Java 8 has no public fences,
+ * so the ones of sun.misc.Unsafe are looked up once by reflection, without a compile time
+ * reference to the internal API. The handles are constant, so the calls are inlined into
+ * the fences by the compiler.
+ *
+ * @author ishvatov
+ */
+final class MemoryFences {
+    private static final MethodHandle LOAD_FENCE;
+    private static final MethodHandle FULL_FENCE;
+
+    static {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodType type = MethodType.methodType(void.class);
+            LOAD_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "loadFence", type).bindTo(unsafe);
+            FULL_FENCE = MethodHandles.lookup().findVirtual(unsafeClass, "fullFence", type).bindTo(unsafe);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Memory fences are not available", ex);
+        }
+    }
+
+    private MemoryFences() {
+    }
+
+    /**
+     * Loads before the fence are not reordered with the loads and stores after it.
+     */
+    static void loadFence() {
+        try {
+            LOAD_FENCE.invokeExact();
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Loads and stores before the fence are not reordered with the loads and stores after it.
+     */
+    static void fullFence() {
+        try {
+            FULL_FENCE.invokeExact();
+        } catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
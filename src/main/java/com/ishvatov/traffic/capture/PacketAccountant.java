@@ -0,0 +1,79 @@
+package com.ishvatov.traffic.capture;
+
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * {@link PacketHandler}, which accounts the captured packets: adds them
+ * to the traffic counter, used by the validation, and to the packet statistics.
+ * IP packets are decoded once into the per-worker {@link PacketHeaders} and
+ * passed to the per-flow aggregates, to the heavy hitter sketches and to the limit rules.
+ *
+ * @author ishvatov
+ */
+public class PacketAccountant implements PacketHandler {
+    private final TrafficCounter trafficCounter;
+    private final PacketStatsReporter packetStatsReporter;
+    private final FlowAggregator flowAggregator;
+    private final HeavyHitterDetector heavyHitterDetector;
+    private final RuleClassifier ruleClassifier;
+
+    // reusable per-worker decoders
+    private final PacketHeaders[] packetHeaders;
+
+    // link layer types of the capture sources, per worker
+    private final DataLinkType[] linkTypes;
+
+    public PacketAccountant(
+            int workers,
+            TrafficCounter trafficCounter,
+            PacketStatsReporter packetStatsReporter,
+            FlowAggregator flowAggregator,
+            HeavyHitterDetector heavyHitterDetector,
+            RuleClassifier ruleClassifier
+    ) {
+        this.trafficCounter = trafficCounter;
+        this.packetStatsReporter = packetStatsReporter;
+        this.flowAggregator = flowAggregator;
+        this.heavyHitterDetector = heavyHitterDetector;
+        this.ruleClassifier = ruleClassifier;
+        this.packetHeaders = new PacketHeaders[workers];
+        this.linkTypes = new DataLinkType[workers];
+        for (int i = 0; i < workers; i++) {
+            packetHeaders[i] = new PacketHeaders();
+            linkTypes[i] = DataLinkType.EN10MB;
+        }
+    }
+
+    @Override
+    public void onStart(DataLinkType dataLinkType) {
+        for (int i = 0; i < linkTypes.length; i++) {
+            onStart(i, dataLinkType);
+        }
+    }
+
+    /**
+     * Sets the link layer type of the worker. Workers are started after
+     * this call, so the plain array store is published by the thread start.
+     */
+    @Override
+    public void onStart(int worker, DataLinkType dataLinkType) {
+        linkTypes[worker] = dataLinkType;
+    }
+
+    @Override
+    public void onPacket(int worker, int length, long timestamp, byte[] headers, int offset, int headerLength) {
+        trafficCounter.add(worker, length);
+        packetStatsReporter.record(worker, length);
+
+        PacketHeaders decoded = packetHeaders[worker];
+        if (decoded.decode(linkTypes[worker], headers, offset, headerLength)) {
+            flowAggregator.record(worker, length, timestamp, decoded);
+            heavyHitterDetector.record(worker, length, decoded);
+            ruleClassifier.record(worker, length, decoded);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * Consumer of the packets, which were copied from the pcap loop into the
+ * {@link PacketRingBuffer}. Called by the pipeline worker threads, so
+ * implementations must be safe for concurrent calls with different worker indexes.
+ *
+ * @author ishvatov
+ */
+public interface PacketHandler {
+    /**
+     * Called once before the first packet is captured.
+     *
+     * @param dataLinkType link layer type of the capture.
+     */
+    default void onStart(DataLinkType dataLinkType) {
+    }
+
+    /**
+     * Called once before the first packet of the capture source, which
+     * is handled by the worker, is captured.
+     *
+     * @param worker       index of the worker thread.
+     * @param dataLinkType link layer type of the capture source.
+     */
+    default void onStart(int worker, DataLinkType dataLinkType) {
+        onStart(dataLinkType);
+    }
+
+    /**
+     * Handles the captured packet. Header bytes are valid only during this call.
+     *
+     * @param worker       index of the worker thread, which handles the packet.
+     * @param length       length of the packet in bytes.
+     * @param timestamp    capture timestamp of the packet in nanoseconds since epoch.
+     * @param headers      array, which contains the first bytes of the packet.
+     * @param offset       offset of the packet's first byte in the headers array.
+     * @param headerLength number of the copied packet bytes.
+     */
+    void onPacket(int worker, int length, long timestamp, byte[] headers, int offset, int headerLength);
+}
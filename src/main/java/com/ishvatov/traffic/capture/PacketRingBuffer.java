@@ -0,0 +1,154 @@
+package com.ishvatov.traffic.capture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded single-producer single-consumer ring buffer of the captured packets.
+ * All the slots are preallocated as primitive arrays: for every packet only its
+ * length, timestamp and first {@link #HEADER_LENGTH} bytes are copied, so neither
+ * the producer nor the consumer allocates.
+ *
+ * @author ishvatov
+ */
+public final class PacketRingBuffer {
+    // number of the packet bytes, which are copied into the buffer - enough
+    // for the link layer, IPv4 with options or IPv6 and TCP/UDP ports
+    public static final int HEADER_LENGTH = 96;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final int[] headerLengths;
+    private final byte[] headers;
+
+    // sequence of the next slot to read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // sequence of the next slot to write, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // producer's cached value of the head, reduces cross-core traffic
+    private long cachedHead = 0;
+
+    /**
+     * @param capacity capacity of the buffer, must be a power of two.
+     */
+    public PacketRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.lengths = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.headerLengths = new int[capacity];
+        this.headers = new byte[capacity * HEADER_LENGTH];
+    }
+
+    /**
+     * Copies the packet into the next free slot. Must be called only by the producer thread.
+     *
+     * @param length    length of the packet in bytes.
+     * @param timestamp capture timestamp in nanoseconds since epoch.
+     * @param data      raw data of the packet, only the first bytes are copied.
+     * @return false, if the buffer is full and the packet was not copied, true otherwise.
+     */
+    public boolean offer(int length, long timestamp, byte[] data) {
+        long sequence = tail.get();
+        if (sequence - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (sequence - cachedHead >= capacity) {
+                return false;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        int headerLength = Math.min(data.length, HEADER_LENGTH);
+        lengths[index] = length;
+        timestamps[index] = timestamp;
+        headerLengths[index] = headerLength;
+        System.arraycopy(data, 0, headers, index * HEADER_LENGTH, headerLength);
+
+        tail.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Copies the packet, which is read in place from the buffer, into the next free slot.
+     * Must be called only by the producer thread.
+     *
+     * @param length         length of the packet in bytes.
+     * @param timestamp      capture timestamp in nanoseconds since epoch.
+     * @param buffer         buffer, which contains the packet, only the first bytes are copied.
+     * @param offset         offset of the packet's first byte in the buffer.
+     * @param capturedLength number of the captured bytes of the packet.
+     * @return false, if the buffer is full and the packet was not copied, true otherwise.
+     */
+    public boolean offer(int length, long timestamp, ByteBuffer buffer, int offset, int capturedLength) {
+        long sequence = tail.get();
+        if (sequence - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (sequence - cachedHead >= capacity) {
+                return false;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        int headerLength = Math.min(capturedLength, HEADER_LENGTH);
+        lengths[index] = length;
+        timestamps[index] = timestamp;
+        headerLengths[index] = headerLength;
+        // absolute reads do not touch the position of the shared buffer
+        int headersOffset = index * HEADER_LENGTH;
+        for (int i = 0; i < headerLength; i++) {
+            headers[headersOffset + i] = buffer.get(offset + i);
+        }
+
+        tail.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * Passes up to limit packets to the handler and frees their slots.
+     * Must be called only by the consumer thread.
+     *
+     * @param worker  index of the consumer, passed to the handler.
+     * @param handler handler of the packets.
+     * @param limit   maximum number of the packets to handle.
+     * @return number of the handled packets.
+     */
+    public int drain(int worker, PacketHandler handler, int limit) {
+        long sequence = head.get();
+        int available = (int) Math.min(tail.get() - sequence, limit);
+        for (int i = 0; i < available; i++) {
+            int index = (int) (sequence + i) & mask;
+            handler.onPacket(
+                    worker,
+                    lengths[index],
+                    timestamps[index],
+                    headers,
+                    index * HEADER_LENGTH,
+                    headerLengths[index]
+            );
+        }
+
+        if (available > 0) {
+            head.lazySet(sequence + available);
+        }
+        return available;
+    }
+
+    /**
+     * @return number of the packets, which are waiting in the buffer.
+     */
+    public int size() {
+        long sequence = head.get();
+        return (int) (tail.get() - sequence);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
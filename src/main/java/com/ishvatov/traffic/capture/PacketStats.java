@@ -0,0 +1,140 @@
+package com.ishvatov.traffic.capture;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Allocation-free running aggregates of the captured packets: number of packets,
+ * number of bytes, min/max packet size and the packet size histogram. Updated
+ * only by the pcap loop thread, values are published with the ordered stores,
+ * so they can be read from any other thread via {@link #snapshot()}.
+ * <p>
+ * Histogram buckets are power of two ranges: [0, 64), [64, 128), [128, 256), ...,
+ * the last bucket contains all the packets bigger than 64 KB.
+ *
+ * @author ishvatov
+ */
+public final class PacketStats {
+    // number of the histogram buckets and the upper bound of the first one
+    public static final int BUCKETS = 12;
+    private static final int FIRST_BUCKET_SHIFT = 6;
+
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    // min and max of the current interval, reset by the writer, when epoch changes
+    private final AtomicInteger min = new AtomicInteger();
+    private final AtomicInteger max = new AtomicInteger();
+    private volatile long epoch = 0;
+    private long writerEpoch = -1;
+
+    // number of the packets left until the next sampled one, used only by the writer
+    private int sampleCountdown = 0;
+
+    /**
+     * Records the packet. Must be called from a single thread.
+     *
+     * @param length length of the packet in bytes.
+     */
+    public void record(int length) {
+        packets.lazySet(packets.get() + 1);
+        bytes.lazySet(bytes.get() + length);
+
+        int bucket = bucketOf(length);
+        histogram.lazySet(bucket, histogram.get(bucket) + 1);
+
+        long currentEpoch = epoch;
+        if (currentEpoch != writerEpoch) {
+            writerEpoch = currentEpoch;
+            min.lazySet(length);
+            max.lazySet(length);
+        } else if (length < min.get()) {
+            min.lazySet(length);
+        } else if (length > max.get()) {
+            max.lazySet(length);
+        }
+    }
+
+    /**
+     * Counts down the packets of the writer until the next sampled one. Must be called from the writer thread.
+     *
+     * @param sampleRate every sampleRate-th packet is sampled, must be positive.
+     * @return true, if the packet is sampled.
+     */
+    public boolean sample(int sampleRate) {
+        if (++sampleCountdown < sampleRate) {
+            return false;
+        }
+        sampleCountdown = 0;
+        return true;
+    }
+
+    /**
+     * @return cumulative number of the recorded packets, does not affect the min/max interval.
+     */
+    public long getPackets() {
+        return packets.get();
+    }
+
+    /**
+     * Takes the snapshot of the cumulative values and starts new min/max interval.
+     * Min and max may miss the packets, which are recorded concurrently with this call.
+     *
+     * @return {@link Snapshot} of the statistics.
+     */
+    public Snapshot snapshot() {
+        int currentMin = min.get();
+        int currentMax = max.get();
+        epoch++;
+
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = histogram.get(i);
+        }
+        return new Snapshot(System.nanoTime(), packets.get(), bytes.get(), currentMin, currentMax, buckets);
+    }
+
+    /**
+     * @param length length of the packet.
+     * @return index of the histogram bucket for the provided length.
+     */
+    static int bucketOf(int length) {
+        int bucket = 32 - Integer.numberOfLeadingZeros(length >>> FIRST_BUCKET_SHIFT);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * @param bucket index of the histogram bucket.
+     * @return exclusive upper bound of the bucket in bytes.
+     */
+    public static long upperBoundOf(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << (bucket + FIRST_BUCKET_SHIFT);
+    }
+
+    /**
+     * Immutable snapshot of the cumulative statistics, min and max are
+     * related only to the interval since the previous snapshot.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public static final class Snapshot {
+        private final long nanoTime;
+        private final long packets;
+        private final long bytes;
+        private final int min;
+        private final int max;
+
+        @Getter(AccessLevel.NONE)
+        private final long[] histogram;
+
+        public long getHistogram(int bucket) {
+            return histogram[bucket];
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ishvatov.traffic.capture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces the per-packet logging of the capture loop: packets are only recorded
+ * into the {@link PacketStats} aggregates and the summary line is logged once
+ * per reporting interval. Optionally every N-th packet is logged at DEBUG level.
+ * Every writer thread has its own aggregates, which are merged during the report.
+ *
+ * @author ishvatov
+ */
+public class PacketStatsReporter {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PacketStatsReporter.class);
+
+    private final PacketStats[] stats;
+    private final int sampleRate;
+
+    // snapshots, which were taken during the previous report
+    private final PacketStats.Snapshot[] previous;
+
+    /**
+     * @param writers    number of the threads, which record the packets.
+     * @param sampleRate every sampleRate-th packet is logged at DEBUG level, 0 disables sampling.
+     */
+    public PacketStatsReporter(int writers, int sampleRate) {
+        this.stats = new PacketStats[writers];
+        this.sampleRate = sampleRate;
+        this.previous = new PacketStats.Snapshot[writers];
+        for (int i = 0; i < writers; i++) {
+            stats[i] = new PacketStats();
+            previous[i] = stats[i].snapshot();
+        }
+    }
+
+    /**
+     * Records the packet. Called on the capture hot path, every writer
+     * must use only its own index.
+     *
+     * @param writer index of the writer thread.
+     * @param length length of the packet in bytes.
+     */
+    public void record(int writer, int length) {
+        stats[writer].record(length);
+        // the countdown is kept in the stats of the writer, so the writers do not share a cache line
+        if (sampleRate > 0 && stats[writer].sample(sampleRate)) {
+            LOGGER.debug("Sampled packet (1 of {}): {} bytes", sampleRate, length);
+        }
+    }
+
+    /**
+     * @return cumulative number of the packets, recorded by all the writers.
+     */
+    public long getPackets() {
+        long packets = 0;
+        for (PacketStats writerStats : stats) {
+            packets += writerStats.getPackets();
+        }
+        return packets;
+    }
+
+    /**
+     * Logs the summary of the packets, which were captured since the previous report.
+     */
+    public synchronized void report() {
+        long packets = 0;
+        long bytes = 0;
+        long elapsedNanos = 0;
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        long[] histogram = new long[PacketStats.BUCKETS];
+
+        for (int writer = 0; writer < stats.length; writer++) {
+            PacketStats.Snapshot current = stats[writer].snapshot();
+            long writerPackets = current.getPackets() - previous[writer].getPackets();
+            if (writerPackets != 0) {
+                packets += writerPackets;
+                bytes += current.getBytes() - previous[writer].getBytes();
+                min = Math.min(min, current.getMin());
+                max = Math.max(max, current.getMax());
+                for (int i = 0; i < PacketStats.BUCKETS; i++) {
+                    histogram[i] += current.getHistogram(i) - previous[writer].getHistogram(i);
+                }
+            }
+            elapsedNanos = Math.max(elapsedNanos, current.getNanoTime() - previous[writer].getNanoTime());
+            previous[writer] = current;
+        }
+
+        StringBuilder buckets = new StringBuilder();
+        for (int i = 0; i < PacketStats.BUCKETS; i++) {
+            if (histogram[i] != 0) {
+                long bound = PacketStats.upperBoundOf(i);
+                buckets.append(bound == Long.MAX_VALUE ? ">=" + PacketStats.upperBoundOf(i - 1) : "<" + bound)
+                        .append(':')
+                        .append(histogram[i])
+                        .append(' ');
+            }
+        }
+
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        LOGGER.info(
+                "Captured {} packets, {} bytes, {} pps; size min/mean/max: {}/{}/{}; histogram: [{}]",
+                packets,
+                bytes,
+                packets * 1000 / elapsedMillis,
+                packets == 0 ? 0 : min,
+                packets == 0 ? 0 : bytes / packets,
+                packets == 0 ? 0 : max,
+                buckets.toString().trim()
+        );
+    }
+}
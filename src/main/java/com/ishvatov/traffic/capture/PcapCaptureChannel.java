@@ -0,0 +1,87 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PacketListener;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapPacket;
+import org.pcap4j.core.PcapStat;
+import org.pcap4j.packet.namednumber.DataLinkType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CaptureChannel} of the pcap handle: the pcap loop copies every packet into
+ * a new {@link PcapPacket}, whose data is passed to the receiver.
+ *
+ * @author ishvatov
+ */
+public class PcapCaptureChannel implements CaptureChannel {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PcapCaptureChannel.class);
+
+    private static final int INFINITE_PACKET_NUMBER = -1;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final PcapHandle handle;
+
+    /**
+     * @param handle opened live or offline pcap handle.
+     */
+    public PcapCaptureChannel(PcapHandle handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public DataLinkType getDataLinkType() {
+        return handle.getDlt();
+    }
+
+    @Override
+    public void loop(Receiver receiver) throws IOException {
+        PacketListener listener = (PcapPacket packet) -> {
+            Instant timestamp = packet.getTimestamp();
+            long nanos = timestamp.getEpochSecond() * NANOS_PER_SECOND + timestamp.getNano();
+            receiver.onPacket(packet.getOriginalLength(), nanos, packet.getRawData());
+        };
+        try {
+            handle.loop(INFINITE_PACKET_NUMBER, listener);
+        } catch (InterruptedException exception) {
+            LOGGER.info("Pcap loop was stopped!");
+        } catch (PcapNativeException | NotOpenException exception) {
+            throw new IOException(exception.getMessage(), exception);
+        }
+    }
+
+    @Override
+    public void breakLoop() {
+        try {
+            handle.breakLoop();
+        } catch (NotOpenException exception) {
+            LOGGER.warn("Pcap handle is already closed!");
+        }
+    }
+
+    @Override
+    public CaptureStats getStats() throws IOException {
+        try {
+            PcapStat stat = handle.getStats();
+            return new CaptureStats(
+                    stat.getNumPacketsReceived(),
+                    stat.getNumPacketsDropped(),
+                    stat.getNumPacketsDroppedByIf()
+            );
+        } catch (PcapNativeException | NotOpenException exception) {
+            throw new IOException(exception.getMessage(), exception);
+        }
+    }
+
+    @Override
+    public void close() {
+        handle.close();
+    }
+}
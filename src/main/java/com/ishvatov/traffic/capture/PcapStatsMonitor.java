@@ -0,0 +1,115 @@
+package com.ishvatov.traffic.capture;
+
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapStat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the {@link PcapStat} counters of the live pcap handles (and the same counters of the
+ * other {@link CaptureChannel}s), so the packets, dropped by the kernel and by the interfaces,
+ * are visible in the periodic reports and in the telemetry. Counters of the last successful read
+ * are kept for the channels, whose statistics are not available anymore.
+ *
+ * @author ishvatov
+ */
+public class PcapStatsMonitor {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PcapStatsMonitor.class);
+
+    private final List<Source> sources = new ArrayList<>();
+
+    /**
+     * Starts to monitor the handle.
+     *
+     * @param name   name of the capture interface.
+     * @param handle opened live pcap handle.
+     */
+    public void register(String name, PcapHandle handle) {
+        register(name, new PcapCaptureChannel(handle));
+    }
+
+    /**
+     * Starts to monitor the channel.
+     *
+     * @param name    name of the capture interface.
+     * @param channel opened live capture channel.
+     */
+    public synchronized void register(String name, CaptureChannel channel) {
+        sources.add(new Source(name, channel));
+    }
+
+    /**
+     * @return cumulative counters of all the handles.
+     */
+    public synchronized CaptureStats total() {
+        CaptureStats total = CaptureStats.EMPTY;
+        for (Source source : sources) {
+            total = total.plus(source.read());
+        }
+        return total;
+    }
+
+    /**
+     * @return cumulative counters of every handle by the name of its interface.
+     */
+    public synchronized Map<String, CaptureStats> snapshot() {
+        Map<String, CaptureStats> snapshot = new LinkedHashMap<>();
+        for (Source source : sources) {
+            snapshot.merge(source.name, source.read(), CaptureStats::plus);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Logs the counters of every handle since the previous report.
+     */
+    public synchronized void report() {
+        for (Source source : sources) {
+            CaptureStats current = source.read();
+            CaptureStats delta = current.minus(source.reported);
+            source.reported = current;
+
+            long lost = delta.getDropped() + delta.getIfDropped();
+            long seen = delta.getReceived() + delta.getIfDropped();
+            LOGGER.info(
+                    "Pcap {}: received {}, dropped {}, dropped by interface {} ({}%)",
+                    source.name,
+                    delta.getReceived(),
+                    delta.getDropped(),
+                    delta.getIfDropped(),
+                    seen == 0 ? "0.00" : String.format("%.2f", 100.0 * lost / seen)
+            );
+        }
+    }
+
+    /**
+     * Monitored channel with the counters of the last read and of the last report.
+     */
+    private static final class Source {
+        private final String name;
+        private final CaptureChannel channel;
+        private CaptureStats last = CaptureStats.EMPTY;
+        private CaptureStats reported = CaptureStats.EMPTY;
+
+        private Source(String name, CaptureChannel channel) {
+            this.name = name;
+            this.channel = channel;
+        }
+
+        private CaptureStats read() {
+            try {
+                last = channel.getStats();
+            } catch (IOException ex) {
+                LOGGER.warn("Pcap statistics of {} are not available: {}", name, ex.getMessage());
+            }
+            return last;
+        }
+    }
+}
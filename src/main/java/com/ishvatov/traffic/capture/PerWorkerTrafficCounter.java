@@ -0,0 +1,57 @@
+package com.ishvatov.traffic.capture;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link TrafficCounter} implementation with the own cache line padded cell for
+ * every pipeline worker. Each cell has a single writer, so it is updated with
+ * the ordered (release) store and without the contention of the shared cells.
+ * The total is merged by summing the cells without any lock, the cells of one
+ * capture interface give the total of the interface.
+ *
+ * @author ishvatov
+ */
+public final class PerWorkerTrafficCounter implements TrafficCounter {
+    // distance between the cells of the neighbour workers: 64 bytes cache line
+    private static final int STRIDE = 8;
+
+    private final AtomicLongArray cells;
+    private final int workers;
+
+    /**
+     * @param workers number of the workers, which update the counter.
+     */
+    public PerWorkerTrafficCounter(int workers) {
+        this.workers = workers;
+        // first and last cells are padded from the neighbour objects as well
+        this.cells = new AtomicLongArray((workers + 1) * STRIDE);
+    }
+
+    @Override
+    public void add(int worker, long bytes) {
+        int index = indexOf(worker);
+        cells.lazySet(index, cells.get(index) + bytes);
+    }
+
+    @Override
+    public long sum() {
+        return sum(0, workers);
+    }
+
+    /**
+     * @param from index of the first worker, inclusive.
+     * @param to   index of the last worker, exclusive.
+     * @return total amount of bytes, which have been added by the workers since the start.
+     */
+    public long sum(int from, int to) {
+        long sum = 0;
+        for (int worker = from; worker < to; worker++) {
+            sum += cells.get(indexOf(worker));
+        }
+        return sum;
+    }
+
+    private static int indexOf(int worker) {
+        return (worker + 1) * STRIDE - 1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.ishvatov.traffic.capture;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link TrafficCounter} implementation for the case, when only one thread
+ * (pcap loop thread) updates the counter. The value is stored in a cache line
+ * padded long field and is published with the ordered (release) store,
+ * readers use volatile (acquire) load. The worker index is ignored, concurrent calls of the
+ * {@link #add(int, long)} from several threads will lose updates - use {@link StripedTrafficCounter}
+ * or {@link PerWorkerTrafficCounter} instead.
+ *
+ * @author ishvatov
+ */
+public final class SingleWriterTrafficCounter extends RhsPadding implements TrafficCounter {
+    private static final AtomicLongFieldUpdater<Value> VALUE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+    @Override
+    public void add(int worker, long bytes) {
+        VALUE_UPDATER.lazySet(this, value + bytes);
+    }
+
+    @Override
+    public long sum() {
+        return value;
+    }
+}
+
+/**
+ * Padding before the counter value, which prevents false sharing.
+ */
+abstract class LhsPadding {
+    protected long p01, p02, p03, p04, p05, p06, p07;
+}
+
+/**
+ * Holder of the counter value.
+ */
+abstract class Value extends LhsPadding {
+    protected volatile long value;
+}
+
+/**
+ * Padding after the counter value, which prevents false sharing.
+ */
+abstract class RhsPadding extends Value {
+    protected long p09, p10, p11, p12, p13, p14, p15;
+}
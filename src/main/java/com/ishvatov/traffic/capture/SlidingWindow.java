@@ -0,0 +1,139 @@
+package com.ishvatov.traffic.capture;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window over the monotonic {@link TrafficCounter} total. The window is a ring
+ * of time buckets, each bucket stores the counter value at the end of its time slot,
+ * so the amount of bytes in the last N buckets is the difference between the newest and
+ * the oldest value. Advancing the window and querying its sum are O(1) (amortized over
+ * the skipped buckets) and add nothing to the capture hot path.
+ *
+ * @author ishvatov
+ */
+public final class SlidingWindow {
+    private final long bucketNanos;
+    private final int buckets;
+
+    // counter values at the end of the last buckets + 1 time slots
+    private final long[] values;
+
+    private long firstSlot = -1;
+    private long currentSlot = -1;
+
+    /**
+     * @param bucketNanos duration of one bucket.
+     * @param buckets     number of the buckets in the window.
+     */
+    public SlidingWindow(long bucketNanos, int buckets) {
+        if (bucketNanos <= 0 || buckets <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid sliding window bucket %s ns or bucket count %s!", bucketNanos, buckets)
+            );
+        }
+        this.bucketNanos = bucketNanos;
+        this.buckets = buckets;
+        this.values = new long[buckets + 1];
+    }
+
+    /**
+     * Moves the window to the provided time and records the current counter value.
+     * The bytes of the time slots without a call are attributed to the latest slot.
+     *
+     * @param timestampNanos current time in nanoseconds.
+     * @param total          current value of the monotonic counter.
+     * @return amount of bytes in the window.
+     */
+    public synchronized long advance(long timestampNanos, long total) {
+        long slot = timestampNanos / bucketNanos;
+        if (currentSlot < 0) {
+            Arrays.fill(values, total);
+            firstSlot = slot;
+            currentSlot = slot;
+        } else if (slot > currentSlot) {
+            long previous = values[index(currentSlot)];
+            long last = Math.min(slot - 1, currentSlot + buckets);
+            for (long skipped = currentSlot + 1; skipped <= last; skipped++) {
+                values[index(skipped)] = previous;
+            }
+            currentSlot = slot;
+        }
+        values[index(currentSlot)] = total;
+        return sum();
+    }
+
+    /**
+     * @return amount of bytes in the window.
+     */
+    public synchronized long sum() {
+        if (currentSlot < 0) {
+            return 0;
+        }
+        return values[index(currentSlot)] - values[index(currentSlot - buckets)];
+    }
+
+    /**
+     * @return true, if the window has been advanced for at least its full length.
+     */
+    public synchronized boolean isFull() {
+        return currentSlot >= 0 && currentSlot - firstSlot >= buckets;
+    }
+
+    /**
+     * @return copy of the window state, or null, if the window has not been advanced yet.
+     */
+    public synchronized WindowState snapshot() {
+        if (currentSlot < 0) {
+            return null;
+        }
+        return new WindowState(bucketNanos, firstSlot, currentSlot, values.clone());
+    }
+
+    /**
+     * Restores the state of the window, which was taken before the restart. The restored values
+     * are shifted to continue from the current counter value, the bytes of the time slots between
+     * the snapshot and the restore are not known and are counted as zero.
+     *
+     * @param state          state of the window, taken with the same bucket duration and count
+     * @param timestampNanos current time in nanoseconds.
+     * @param total          current value of the monotonic counter.
+     * @return true, if the state was restored, false, if it does not match the window or is outdated.
+     */
+    public synchronized boolean restore(WindowState state, long timestampNanos, long total) {
+        long slot = timestampNanos / bucketNanos;
+        if (currentSlot >= 0
+                || state.getBucketNanos() != bucketNanos
+                || state.getValues().length != values.length
+                || state.getCurrentSlot() > slot
+                || slot - state.getCurrentSlot() >= buckets) {
+            return false;
+        }
+
+        long[] restored = state.getValues();
+        long shift = total - restored[index(state.getCurrentSlot())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = restored[i] + shift;
+        }
+        firstSlot = state.getFirstSlot();
+        currentSlot = state.getCurrentSlot();
+        return true;
+    }
+
+    /**
+     * @return number of the buckets in the window.
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return length of the window in nanoseconds.
+     */
+    public long getLengthNanos() {
+        return bucketNanos * buckets;
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) values.length);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ishvatov.traffic.capture;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TrafficCounter} implementation, which is based on the {@link LongAdder}
+ * striped cells and therefore can be safely updated from any number of threads,
+ * the worker index is ignored.
+ *
+ * @author ishvatov
+ */
+public final class StripedTrafficCounter implements TrafficCounter {
+    private final LongAdder value = new LongAdder();
+
+    @Override
+    public void add(int worker, long bytes) {
+        value.add(bytes);
+    }
+
+    @Override
+    public long sum() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,66 @@
+package com.ishvatov.traffic.capture;
+
+import com.ishvatov.traffic.metrics.LatencyHistogram;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * {@link PacketHandler}, which records the processing time of every N-th packet
+ * of the wrapped handler into the latency histogram. Other packets are passed
+ * through without reading the clock, so the cost of the timing on the hot path
+ * is one decrement per packet.
+ *
+ * @author ishvatov
+ */
+public class TimedPacketHandler implements PacketHandler {
+    // distance between the countdowns of the workers, so they do not share a cache line
+    private static final int PADDING = 16;
+
+    private final PacketHandler handler;
+    private final LatencyHistogram latency;
+    private final int sampleRate;
+
+    // number of packets left until the next timed one, per worker
+    private final int[] sampleCountdown;
+
+    /**
+     * @param workers    number of the worker threads.
+     * @param handler    wrapped handler.
+     * @param latency    histogram of the processing time.
+     * @param sampleRate every sampleRate-th packet is timed, must be positive.
+     */
+    public TimedPacketHandler(int workers, PacketHandler handler, LatencyHistogram latency, int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid sample rate: %d", sampleRate));
+        }
+        this.handler = handler;
+        this.latency = latency;
+        this.sampleRate = sampleRate;
+        this.sampleCountdown = new int[workers * PADDING];
+        for (int i = 0; i < workers; i++) {
+            sampleCountdown[i * PADDING] = sampleRate;
+        }
+    }
+
+    @Override
+    public void onStart(DataLinkType dataLinkType) {
+        handler.onStart(dataLinkType);
+    }
+
+    @Override
+    public void onStart(int worker, DataLinkType dataLinkType) {
+        handler.onStart(worker, dataLinkType);
+    }
+
+    @Override
+    public void onPacket(int worker, int length, long timestamp, byte[] headers, int offset, int headerLength) {
+        int slot = worker * PADDING;
+        if (--sampleCountdown[slot] != 0) {
+            handler.onPacket(worker, length, timestamp, headers, offset, headerLength);
+            return;
+        }
+        sampleCountdown[slot] = sampleRate;
+        long start = System.nanoTime();
+        handler.onPacket(worker, length, timestamp, headers, offset, headerLength);
+        latency.recordSince(start);
+    }
+}
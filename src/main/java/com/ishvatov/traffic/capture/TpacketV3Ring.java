@@ -0,0 +1,130 @@
+package com.ishvatov.traffic.capture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reader of the TPACKET_V3 receive ring, which is shared with the kernel. The ring consists of
+ * the blocks of the same size, every block starts with the block descriptor and contains the
+ * packets, the kernel fills the block and hands it to the user space by setting
+ * {@link #TP_STATUS_USER} in its status. The packets are passed to the receiver in place, as the
+ * regions of the ring, and the block is handed back to the kernel, so nothing is allocated and
+ * nothing but the status word is written per block.
+ * <p>
+ * The packet socket sees every packet of the loopback interface twice, as the outgoing and as
+ * the incoming one, so the outgoing copies are skipped like libpcap does.
+ * <p>
+ * The block status is the only synchronization with the kernel, so, like the acquire and release
+ * atomics of libpcap, the reads of the block are fenced after the status is seen and before it
+ * is handed back, see {@link MemoryFences}.
+ * <p>
+ * Must be used only by one thread.
+ *
+ * @author ishvatov
+ */
+public final class TpacketV3Ring {
+    // block status bits
+    public static final int TP_STATUS_KERNEL = 0;
+    public static final int TP_STATUS_USER = 1;
+
+    // offsets of the block descriptor fields (struct tpacket_block_desc with tpacket_hdr_v1)
+    static final int BLOCK_STATUS_OFFSET = 8;
+    static final int BLOCK_NUM_PACKETS_OFFSET = 12;
+    static final int BLOCK_FIRST_PACKET_OFFSET = 16;
+
+    // offsets of the packet header fields (struct tpacket3_hdr)
+    static final int PACKET_NEXT_OFFSET = 0;
+    static final int PACKET_SEC_OFFSET = 4;
+    static final int PACKET_NSEC_OFFSET = 8;
+    static final int PACKET_SNAPLEN_OFFSET = 12;
+    static final int PACKET_LEN_OFFSET = 16;
+    static final int PACKET_MAC_OFFSET = 24;
+
+    // offsets of the link layer address fields (struct sockaddr_ll), which follows the aligned packet header
+    static final int PACKET_ADDRESS_OFFSET = 48;
+    static final int ADDRESS_IFINDEX_OFFSET = PACKET_ADDRESS_OFFSET + 4;
+    static final int ADDRESS_PKTTYPE_OFFSET = PACKET_ADDRESS_OFFSET + 10;
+    static final int PACKET_OUTGOING = 4;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final ByteBuffer ring;
+    private final int blockSize;
+    private final int blockCount;
+    private final int snaplen;
+    private final int loopbackIndex;
+
+    // index of the block, which is handed to the user space next
+    private int block = 0;
+
+    /**
+     * @param ring          mapped ring, its order is changed to the native one.
+     * @param blockSize     size of every block in bytes.
+     * @param blockCount    number of the blocks.
+     * @param snaplen       maximum number of the packet bytes, which are passed to the receiver.
+     * @param loopbackIndex index of the loopback interface, whose outgoing packets are skipped, or 0.
+     */
+    public TpacketV3Ring(ByteBuffer ring, int blockSize, int blockCount, int snaplen, int loopbackIndex) {
+        if ((long) blockSize * blockCount > ring.capacity()) {
+            throw new IllegalArgumentException(String.format(
+                    "%d blocks of %d bytes do not fit into the ring of %d bytes", blockCount, blockSize, ring.capacity()
+            ));
+        }
+        this.ring = ring.order(ByteOrder.nativeOrder());
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.snaplen = snaplen;
+        this.loopbackIndex = loopbackIndex;
+    }
+
+    /**
+     * @return true, if the next block is filled by the kernel and can be read.
+     */
+    public boolean isReady() {
+        return (ring.getInt(block * blockSize + BLOCK_STATUS_OFFSET) & TP_STATUS_USER) != 0;
+    }
+
+    /**
+     * Passes all the packets of the next block to the receiver and hands the block back to the kernel.
+     *
+     * @param receiver receiver of the packets.
+     * @return number of the packets in the block or -1, if the block is not filled by the kernel yet.
+     */
+    public int read(CaptureChannel.Receiver receiver) {
+        int blockOffset = block * blockSize;
+        if ((ring.getInt(blockOffset + BLOCK_STATUS_OFFSET) & TP_STATUS_USER) == 0) {
+            return -1;
+        }
+        // acquire: the packets are not read before the status, which the kernel has written after them
+        MemoryFences.loadFence();
+
+        int packets = ring.getInt(blockOffset + BLOCK_NUM_PACKETS_OFFSET);
+        int packetOffset = blockOffset + ring.getInt(blockOffset + BLOCK_FIRST_PACKET_OFFSET);
+        for (int i = 0; i < packets; i++) {
+            if (loopbackIndex != 0
+                    && ring.get(packetOffset + ADDRESS_PKTTYPE_OFFSET) == PACKET_OUTGOING
+                    && ring.getInt(packetOffset + ADDRESS_IFINDEX_OFFSET) == loopbackIndex) {
+                packetOffset += ring.getInt(packetOffset + PACKET_NEXT_OFFSET);
+                continue;
+            }
+            long timestamp = (ring.getInt(packetOffset + PACKET_SEC_OFFSET) & 0xFFFFFFFFL) * NANOS_PER_SECOND
+                    + (ring.getInt(packetOffset + PACKET_NSEC_OFFSET) & 0xFFFFFFFFL);
+            receiver.onPacket(
+                    ring.getInt(packetOffset + PACKET_LEN_OFFSET),
+                    timestamp,
+                    ring,
+                    packetOffset + (ring.getShort(packetOffset + PACKET_MAC_OFFSET) & 0xFFFF),
+                    Math.min(ring.getInt(packetOffset + PACKET_SNAPLEN_OFFSET), snaplen)
+            );
+            packetOffset += ring.getInt(packetOffset + PACKET_NEXT_OFFSET);
+        }
+
+        // release: all the reads of the block are done, before the kernel may fill it again
+        MemoryFences.fullFence();
+        ring.putInt(blockOffset + BLOCK_STATUS_OFFSET, TP_STATUS_KERNEL);
+        if (++block == blockCount) {
+            block = 0;
+        }
+        return packets;
+    }
+}
@@ -0,0 +1,25 @@
+package com.ishvatov.traffic.capture;
+
+/**
+ * Accumulates the amount of the captured traffic. Implementations are
+ * updated from the pcap loop thread and read from the validation thread,
+ * so all of them must be safe for this kind of publication.
+ *
+ * @author ishvatov
+ */
+public interface TrafficCounter {
+    /**
+     * Adds the provided amount of bytes, transferred by the packet, which was
+     * handled by the pipeline worker. Every worker must use only its own index.
+     * Called on the capture hot path, so implementations must not block or allocate.
+     *
+     * @param worker index of the worker thread.
+     * @param bytes  amount of the transferred bytes.
+     */
+    void add(int worker, long bytes);
+
+    /**
+     * @return total amount of bytes, which have been added since the start.
+     */
+    long sum();
+}
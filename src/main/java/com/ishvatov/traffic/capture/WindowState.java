@@ -0,0 +1,21 @@
+package com.ishvatov.traffic.capture;
+
+import lombok.Value;
+
+/**
+ * Copy of the {@link SlidingWindow} state, which is checkpointed and restored after a restart.
+ *
+ * @author ishvatov
+ */
+@Value
+public class WindowState {
+    // duration of one bucket in nanoseconds
+    long bucketNanos;
+
+    // first and current time slots of the window
+    long firstSlot;
+    long currentSlot;
+
+    // counter values at the end of the time slots, indexed as in the window
+    long[] values;
+}
@@ -0,0 +1,25 @@
+package com.ishvatov.traffic.cluster;
+
+/**
+ * Role of the application instance in the deployment.
+ *
+ * @author ishvatov
+ */
+public enum ClusterRole {
+    /**
+     * Captures the traffic and validates it against the limits by itself.
+     */
+    STANDALONE,
+
+    /**
+     * Captures the traffic and publishes its partial counts to the aggregator.
+     * Limit rules are still validated by the sensor.
+     */
+    SENSOR,
+
+    /**
+     * Captures nothing, merges the partial counts of all the sensors and validates
+     * their total traffic against the limits.
+     */
+    AGGREGATOR
+}
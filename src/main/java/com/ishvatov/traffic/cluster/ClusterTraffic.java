@@ -0,0 +1,23 @@
+package com.ishvatov.traffic.cluster;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Total traffic of all the sensors during the evaluated period, which ends at the watermark.
+ *
+ * @author ishvatov
+ */
+@Value
+public class ClusterTraffic {
+    // end of the evaluated period, milliseconds since epoch
+    long timestamp;
+
+    // traffic of all the sensors and of each of them
+    long bytes;
+    Map<String, Long> sensors;
+
+    // true, if the partial counts cover the whole period
+    boolean full;
+}
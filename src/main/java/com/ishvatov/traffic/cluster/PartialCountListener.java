@@ -0,0 +1,72 @@
+package com.ishvatov.traffic.cluster;
+
+import com.ishvatov.traffic.wire.PartialCountRecord;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.listener.MessageListener;
+
+import java.util.Map;
+
+/**
+ * Merges the consumed partial counts into the {@link WindowAggregator}. Windows are kept only
+ * in memory, so after every assignment the partitions are read again from the start of
+ * the period, which may still be evaluated, and the aggregator is rebuilt after the restart.
+ *
+ * @author ishvatov
+ */
+public class PartialCountListener implements MessageListener<String, TrafficRecord>, ConsumerSeekAware {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartialCountListener.class);
+
+    private final WindowAggregator aggregator;
+
+    // how long ago the records, which are read again after the assignment, were published
+    private final long replayMillis;
+
+    /**
+     * @param aggregator   aggregator of the partial counts
+     * @param replayMillis how long ago the records, which are read again after the assignment, were published
+     */
+    public PartialCountListener(WindowAggregator aggregator, long replayMillis) {
+        this.aggregator = aggregator;
+        this.replayMillis = replayMillis;
+    }
+
+    @Override
+    public void onMessage(ConsumerRecord<String, TrafficRecord> record) {
+        if (!(record.value() instanceof PartialCountRecord)) {
+            LOGGER.warn("Record [{}] is not a partial count and is skipped!", record.key());
+            return;
+        }
+
+        try {
+            if (!aggregator.merge((PartialCountRecord) record.value())) {
+                LOGGER.debug("Partial count [{}] is late and is dropped", record.key());
+            }
+        } catch (IllegalArgumentException ex) {
+            LOGGER.warn("Partial count [{}] is skipped: {}", record.key(), ex.getMessage());
+        }
+    }
+
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        // seeks are done only on the assignment
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        long from = System.currentTimeMillis() - replayMillis;
+        for (TopicPartition partition : assignments.keySet()) {
+            callback.seekToTimestamp(partition.topic(), partition.partition(), from);
+        }
+    }
+
+    @Override
+    public void onIdleContainer(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        // nothing to do
+    }
+}
@@ -0,0 +1,168 @@
+package com.ishvatov.traffic.cluster;
+
+import com.ishvatov.traffic.wire.PartialCountRecord;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Publishes the traffic of this sensor to the aggregator as the partial counts of the aligned
+ * windows. Windows are built from the cumulative lock-free counters by the scheduler thread,
+ * the bytes of the collection are attributed to the window of the collection time. Every finished
+ * window is published once with the sensor and the window as the key, the windows, which were not
+ * sent, are kept in the bounded pending queue and are sent again with the next collection. The
+ * aggregator replaces the count of the window, so sending it again is safe. If the queue is full,
+ * the oldest windows are dropped.
+ *
+ * @author ishvatov
+ */
+public class PartialCountPublisher {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartialCountPublisher.class);
+
+    // dependencies
+    private final KafkaTemplate<String, TrafficRecord> kafkaTemplate;
+
+    // publisher configuration
+    private final String topicName;
+    private final String sensorName;
+    private final long windowMillis;
+    private final int pendingCapacity;
+
+    // finished windows, which are not sent yet
+    private final Deque<PartialCountRecord> pending = new ArrayDeque<>();
+
+    // current window, its start is negative before the first collection
+    private long windowStart = -1;
+    private long windowBytes;
+    private long windowPackets;
+
+    // cumulative values of the previous collection
+    private long previousBytes;
+    private long previousPackets;
+
+    // publisher statistics
+    private long sent;
+    private long failed;
+    private long dropped;
+
+    /**
+     * @param kafkaTemplate   template, which sends the records in the binary format
+     * @param topicName       name of the partial counts topic
+     * @param sensorName      name of this sensor
+     * @param windowMillis    duration of the windows, the windows are aligned to it
+     * @param pendingCapacity maximum number of the finished windows, which are not sent
+     */
+    public PartialCountPublisher(
+            KafkaTemplate<String, TrafficRecord> kafkaTemplate,
+            String topicName,
+            String sensorName,
+            long windowMillis,
+            int pendingCapacity
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topicName = topicName;
+        this.sensorName = sensorName;
+        this.windowMillis = windowMillis;
+        this.pendingCapacity = pendingCapacity;
+    }
+
+    /**
+     * Adds the traffic since the previous collection to the window of the provided time, finishes
+     * the previous window, if the time is in the next one, and sends the finished windows.
+     * The first call only remembers the cumulative values.
+     *
+     * @param timestamp current time, milliseconds since epoch
+     * @param bytes     cumulative amount of captured bytes
+     * @param packets   cumulative number of captured packets
+     */
+    public synchronized void collect(long timestamp, long bytes, long packets) {
+        long window = timestamp - Math.floorMod(timestamp, windowMillis);
+        if (windowStart < 0) {
+            windowStart = window;
+        } else {
+            if (window > windowStart) {
+                enqueue(new PartialCountRecord(sensorName, windowStart, windowMillis, windowBytes, windowPackets));
+                windowStart = window;
+                windowBytes = 0;
+                windowPackets = 0;
+            }
+            windowBytes += bytes - previousBytes;
+            windowPackets += packets - previousPackets;
+        }
+        previousBytes = bytes;
+        previousPackets = packets;
+        sendPending();
+    }
+
+    /**
+     * @return number of the finished windows, which are not sent yet.
+     */
+    public synchronized int getPendingSize() {
+        return pending.size();
+    }
+
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private void enqueue(PartialCountRecord record) {
+        if (pending.size() == pendingCapacity) {
+            pending.removeFirst();
+            dropped++;
+        }
+        pending.addLast(record);
+    }
+
+    private void sendPending() {
+        // the windows, which fail right away, are returned into the queue and sent with the next collection
+        List<PartialCountRecord> sending = new ArrayList<>(pending);
+        pending.clear();
+        for (int i = 0; i < sending.size(); i++) {
+            PartialCountRecord record = sending.get(i);
+            ListenableFuture<SendResult<String, TrafficRecord>> future;
+            try {
+                future = kafkaTemplate.send(topicName, record.getKey(), record);
+            } catch (RuntimeException ex) {
+                // the producer is not available, so the rest is not even tried
+                onFailure(record, ex);
+                pending.addAll(sending.subList(i + 1, sending.size()));
+                return;
+            }
+            future.addCallback(result -> onSuccess(), ex -> onFailure(record, ex));
+        }
+    }
+
+    private synchronized void onSuccess() {
+        sent++;
+    }
+
+    private synchronized void onFailure(PartialCountRecord record, Throwable ex) {
+        failed++;
+        if (pending.size() == pendingCapacity) {
+            dropped++;
+            LOGGER.warn("Partial count [{}] was not sent and is dropped: {}", record.getKey(), ex.getMessage());
+            return;
+        }
+        // sent again with the next collection, the order of the windows does not matter
+        pending.addLast(record);
+        LOGGER.warn("Partial count [{}] was not sent, {} windows are pending: {}",
+                record.getKey(), pending.size(), ex.getMessage());
+    }
+}
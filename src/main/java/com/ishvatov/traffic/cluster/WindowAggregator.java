@@ -0,0 +1,127 @@
+package com.ishvatov.traffic.cluster;
+
+import com.ishvatov.traffic.wire.PartialCountRecord;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Merges the partial counts of the sensors by their aligned windows. The counts arrive in any order:
+ * a window is evaluated only after the allowed lateness has passed since its end (the watermark),
+ * so the counts of the slow sensors are not missed, and a count, which is published again,
+ * replaces the previous one instead of being counted twice. Counts of the windows, which are older
+ * than the evaluated period, can not change the result anymore and are dropped as late.
+ * <p>
+ * Counts are merged by the consumer thread and evaluated by the scheduler.
+ *
+ * @author ishvatov
+ */
+public class WindowAggregator {
+    // aligned duration of the windows of the sensors
+    private final long windowMillis;
+
+    // length of the evaluated period and the time to wait for the counts of a finished window
+    private final long lengthMillis;
+    private final long latenessMillis;
+
+    // bytes of every sensor by the start of the window
+    private final NavigableMap<Long, Map<String, Long>> windows = new TreeMap<>();
+
+    // start of the earliest merged window and the start of the evaluated period, before which the counts are late
+    private long firstWindow = Long.MAX_VALUE;
+    private long evictedBefore = Long.MIN_VALUE;
+
+    // aggregator statistics
+    private long merged;
+    private long replaced;
+    private long late;
+
+    /**
+     * @param windowMillis   duration of the windows of the sensors
+     * @param lengthMillis   length of the evaluated period, a multiple of the window
+     * @param latenessMillis time to wait for the counts of a finished window
+     */
+    public WindowAggregator(long windowMillis, long lengthMillis, long latenessMillis) {
+        if (windowMillis <= 0 || lengthMillis < windowMillis || lengthMillis % windowMillis != 0 || latenessMillis < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid window %s ms, period %s ms or lateness %s ms!", windowMillis, lengthMillis, latenessMillis
+            ));
+        }
+        this.windowMillis = windowMillis;
+        this.lengthMillis = lengthMillis;
+        this.latenessMillis = latenessMillis;
+    }
+
+    /**
+     * Merges the partial count of the sensor.
+     *
+     * @param record partial count of one window of one sensor
+     * @return true, if the count was merged, false, if it is late.
+     * @throws IllegalArgumentException if the window of the sensor is not the window of the aggregator
+     */
+    public synchronized boolean merge(PartialCountRecord record) {
+        long start = record.getWindowStart();
+        if (record.getWindowMillis() != windowMillis || Math.floorMod(start, windowMillis) != 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Window [%s, %s ms] of the sensor %s is not aligned to %s ms!",
+                    start, record.getWindowMillis(), record.getSensor(), windowMillis
+            ));
+        }
+        if (start < evictedBefore) {
+            late++;
+            return false;
+        }
+
+        if (windows.computeIfAbsent(start, key -> new TreeMap<>()).put(record.getSensor(), record.getBytes()) == null) {
+            merged++;
+        } else {
+            replaced++;
+        }
+        firstWindow = Math.min(firstWindow, start);
+        return true;
+    }
+
+    /**
+     * Evicts the windows before the evaluated period and sums the counts of the period, which ends
+     * at the watermark: the end of the last window, which has finished at least the allowed lateness ago.
+     *
+     * @param now current time, milliseconds since epoch
+     * @return traffic of all the sensors during the evaluated period.
+     */
+    public synchronized ClusterTraffic evaluate(long now) {
+        long watermark = now - latenessMillis - Math.floorMod(now - latenessMillis, windowMillis);
+        long from = watermark - lengthMillis;
+        windows.headMap(from, false).clear();
+        evictedBefore = Math.max(evictedBefore, from);
+
+        long bytes = 0;
+        Map<String, Long> sensors = new TreeMap<>();
+        for (Map<String, Long> window : windows.headMap(watermark, false).values()) {
+            for (Map.Entry<String, Long> sensor : window.entrySet()) {
+                sensors.merge(sensor.getKey(), sensor.getValue(), Long::sum);
+                bytes += sensor.getValue();
+            }
+        }
+        return new ClusterTraffic(watermark, bytes, sensors, firstWindow <= from);
+    }
+
+    /**
+     * @return number of the windows, which are kept.
+     */
+    public synchronized int getWindowCount() {
+        return windows.size();
+    }
+
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    public synchronized long getReplaced() {
+        return replaced;
+    }
+
+    public synchronized long getLate() {
+        return late;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.alert.AlertTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@PropertySource(value = "classpath:alert.properties")
+public class AlertConfiguration {
+    // hysteresis of the limits, fractions of the limit
+    @Value(value = "${alert.enter-margin}")
+    private double enterMargin;
+
+    @Value(value = "${alert.exit-margin}")
+    private double exitMargin;
+
+    @Value(value = "${alert.min-breach-seconds}")
+    private long minBreachSeconds;
+
+    @Value(value = "${alert.update-interval-seconds}")
+    private long updateIntervalSeconds;
+
+    @Value(value = "${alert.suppression-seconds}")
+    private long suppressionSeconds;
+
+    @Bean
+    public AlertTracker alertTracker() {
+        return new AlertTracker(
+                enterMargin,
+                exitMargin,
+                TimeUnit.SECONDS.toMillis(minBreachSeconds),
+                TimeUnit.SECONDS.toMillis(updateIntervalSeconds),
+                TimeUnit.SECONDS.toMillis(suppressionSeconds)
+        );
+    }
+}
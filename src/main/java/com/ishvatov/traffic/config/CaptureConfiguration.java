@@ -0,0 +1,246 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.capture.CaptureInterfaces;
+import com.ishvatov.traffic.capture.CapturePipeline;
+import com.ishvatov.traffic.capture.CaptureProfile;
+import com.ishvatov.traffic.capture.PacketAccountant;
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.PcapStatsMonitor;
+import com.ishvatov.traffic.capture.PerWorkerTrafficCounter;
+import com.ishvatov.traffic.capture.SingleWriterTrafficCounter;
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.capture.StripedTrafficCounter;
+import com.ishvatov.traffic.capture.TimedPacketHandler;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.FlowTable;
+import com.ishvatov.traffic.metrics.MetricsRegistry;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import com.ishvatov.traffic.startup.FirstPacketProbe;
+import com.ishvatov.traffic.startup.StartupTimer;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Configuration
+@PropertySource(value = "classpath:capture.properties")
+public class CaptureConfiguration {
+    /**
+     * Type of the {@link TrafficCounter}, which is used on the capture hot path.
+     * Single writer counter is used only if there is one pipeline worker,
+     * per-worker counter is always used if there are several capture interfaces.
+     */
+    public enum CounterType {
+        SINGLE_WRITER,
+        STRIPED,
+        PER_WORKER
+    }
+
+    @Value(value = "${capture.interfaces}")
+    private String[] interfaces;
+
+    // pcap handle profile
+    @Value(value = "${capture.profile.snaplen}")
+    private int profileSnaplen;
+
+    @Value(value = "${capture.profile.promiscuous-mode}")
+    private PcapNetworkInterface.PromiscuousMode profilePromiscuousMode;
+
+    @Value(value = "${capture.profile.timeout-millis}")
+    private int profileTimeoutMillis;
+
+    @Value(value = "${capture.profile.buffer-size}")
+    private int profileBufferSize;
+
+    @Value(value = "${capture.profile.immediate-mode}")
+    private boolean profileImmediateMode;
+
+    @Value(value = "${capture.profile.timestamp-precision}")
+    private PcapHandle.TimestampPrecision profileTimestampPrecision;
+
+    @Value(value = "${capture.profile.filter}")
+    private String profileFilter;
+
+    @Value(value = "${capture.counter.type}")
+    private CounterType counterType;
+
+    @Value(value = "${capture.stats.sample-rate}")
+    private int statsSampleRate;
+
+    // number of the workers per capture interface
+    @Value(value = "${capture.pipeline.workers}")
+    private int pipelineWorkers;
+
+    @Value(value = "${capture.pipeline.buffer-capacity}")
+    private int pipelineBufferCapacity;
+
+    @Value(value = "${capture.pipeline.overflow-policy}")
+    private CapturePipeline.OverflowPolicy pipelineOverflowPolicy;
+
+    @Value(value = "${capture.flow.capacity}")
+    private int flowCapacity;
+
+    @Value(value = "${capture.flow.host-capacity}")
+    private int flowHostCapacity;
+
+    @Value(value = "${capture.flow.segments}")
+    private int flowSegments;
+
+    @Value(value = "${capture.flow.idle-timeout-seconds}")
+    private long flowIdleTimeoutSeconds;
+
+    @Value(value = "${capture.flow.top-talkers}")
+    private int flowTopTalkers;
+
+    @Value(value = "${capture.sketch.epsilon}")
+    private double sketchEpsilon;
+
+    @Value(value = "${capture.sketch.delta}")
+    private double sketchDelta;
+
+    @Value(value = "${capture.sketch.counters}")
+    private int sketchCounters;
+
+    @Value(value = "${capture.sketch.top-k}")
+    private int sketchTopK;
+
+    @Value(value = "${capture.window.bucket-seconds}")
+    private long windowBucketSeconds;
+
+    @Value(value = "${capture.window.length-seconds}")
+    private long windowLengthSeconds;
+
+    @Value(value = "${capture.rules.bucket-seconds}")
+    private long rulesBucketSeconds;
+
+    // every N-th packet of the pipeline is timed, 0 disables the timing
+    @Value(value = "${metrics.packet.sample-rate}")
+    private int packetSampleRate;
+
+    @Bean
+    public CaptureProfile captureProfile() {
+        return new CaptureProfile(
+                profileSnaplen,
+                profilePromiscuousMode,
+                profileTimeoutMillis,
+                profileBufferSize,
+                profileImmediateMode,
+                profileTimestampPrecision,
+                profileFilter
+        );
+    }
+
+    @Bean
+    public PcapStatsMonitor pcapStatsMonitor() {
+        return new PcapStatsMonitor();
+    }
+
+    @Bean
+    public TrafficCounter trafficCounter() {
+        int workers = totalWorkers();
+        if (counterType == CounterType.SINGLE_WRITER && workers == 1) {
+            return new SingleWriterTrafficCounter();
+        }
+        if (counterType == CounterType.STRIPED && interfaces.length == 1) {
+            return new StripedTrafficCounter();
+        }
+        return new PerWorkerTrafficCounter(workers);
+    }
+
+    @Bean
+    public CaptureInterfaces captureInterfaces() {
+        return new CaptureInterfaces(
+                Arrays.stream(interfaces).map(String::trim).collect(Collectors.toList()),
+                pipelineWorkers,
+                trafficCounter(),
+                TimeUnit.SECONDS.toNanos(windowBucketSeconds),
+                (int) (windowLengthSeconds / windowBucketSeconds)
+        );
+    }
+
+    @Bean
+    public PacketStatsReporter packetStatsReporter() {
+        return new PacketStatsReporter(totalWorkers(), statsSampleRate);
+    }
+
+    @Bean
+    public FlowAggregator flowAggregator() {
+        long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(flowIdleTimeoutSeconds);
+        return new FlowAggregator(
+                totalWorkers(),
+                new FlowTable(FlowKeys.FLOW_KEY_LENGTH, flowCapacity, flowSegments, idleTimeoutNanos),
+                new FlowTable(FlowKeys.HOST_KEY_LENGTH, flowHostCapacity, flowSegments, idleTimeoutNanos),
+                flowTopTalkers
+        );
+    }
+
+    @Bean
+    public HeavyHitterDetector heavyHitterDetector() {
+        return new HeavyHitterDetector(totalWorkers(), sketchEpsilon, sketchDelta, sketchCounters, sketchTopK);
+    }
+
+    @Bean
+    public SlidingWindow slidingWindow() {
+        return new SlidingWindow(
+                TimeUnit.SECONDS.toNanos(windowBucketSeconds),
+                (int) (windowLengthSeconds / windowBucketSeconds)
+        );
+    }
+
+    @Bean
+    public RuleClassifier ruleClassifier() {
+        return new RuleClassifier(
+                totalWorkers(),
+                TimeUnit.SECONDS.toNanos(rulesBucketSeconds),
+                (int) (windowLengthSeconds / rulesBucketSeconds)
+        );
+    }
+
+    @Bean
+    public PacketAccountant packetAccountant() {
+        return new PacketAccountant(
+                totalWorkers(),
+                trafficCounter(),
+                packetStatsReporter(),
+                flowAggregator(),
+                heavyHitterDetector(),
+                ruleClassifier()
+        );
+    }
+
+    @Bean
+    public CapturePipeline capturePipeline(MetricsRegistry metricsRegistry, StartupTimer startupTimer) {
+        PacketHandler handler = new FirstPacketProbe(packetAccountant(), startupTimer);
+        if (packetSampleRate > 0) {
+            handler = new TimedPacketHandler(
+                    totalWorkers(),
+                    handler,
+                    metricsRegistry.histogram(
+                            "traffic_packet_processing_seconds",
+                            String.format("Processing time of the captured packet, every %d-th packet", packetSampleRate)
+                    ),
+                    packetSampleRate
+            );
+        }
+        return new CapturePipeline(
+                totalWorkers(),
+                pipelineBufferCapacity,
+                pipelineOverflowPolicy,
+                handler
+        );
+    }
+
+    private int totalWorkers() {
+        return interfaces.length * pipelineWorkers;
+    }
+}
@@ -0,0 +1,108 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.cluster.PartialCountListener;
+import com.ishvatov.traffic.cluster.PartialCountPublisher;
+import com.ishvatov.traffic.cluster.WindowAggregator;
+import com.ishvatov.traffic.wire.BinaryRecordDeserializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@PropertySource(value = "classpath:cluster.properties")
+public class ClusterConfiguration {
+    @Value(value = "${kafka.bootstrap-address}")
+    private String bootstrapAddress;
+
+    @Value(value = "${kafka.alert.sensor-name}")
+    private String sensorName;
+
+    @Value(value = "${kafka.partitions-number}")
+    private int partitionsNumber;
+
+    @Value(value = "${kafka.replication-factor}")
+    private short replicationFactor;
+
+    @Value(value = "${cluster.topic-name}")
+    private String topicName;
+
+    @Value(value = "${cluster.consumer.group-id}")
+    private String groupId;
+
+    // aligned windows of the partial counts, the period is the same as the one of the standalone validation
+    @Value(value = "${cluster.window-seconds}")
+    private long windowSeconds;
+
+    @Value(value = "${capture.window.length-seconds}")
+    private long lengthSeconds;
+
+    @Value(value = "${cluster.allowed-lateness-seconds}")
+    private long allowedLatenessSeconds;
+
+    @Value(value = "${cluster.pending-capacity}")
+    private int pendingCapacity;
+
+    @Bean
+    @Lazy(false)
+    public NewTopic partialCountTopic() {
+        return new NewTopic(topicName, partitionsNumber, replicationFactor);
+    }
+
+    @Bean
+    public PartialCountPublisher partialCountPublisher(
+            @Qualifier("partialCountTemplate") KafkaTemplate<String, TrafficRecord> partialCountTemplate
+    ) {
+        return new PartialCountPublisher(
+                partialCountTemplate,
+                topicName,
+                sensorName,
+                TimeUnit.SECONDS.toMillis(windowSeconds),
+                pendingCapacity
+        );
+    }
+
+    @Bean
+    public WindowAggregator windowAggregator() {
+        return new WindowAggregator(
+                TimeUnit.SECONDS.toMillis(windowSeconds),
+                TimeUnit.SECONDS.toMillis(lengthSeconds),
+                TimeUnit.SECONDS.toMillis(allowedLatenessSeconds)
+        );
+    }
+
+    // started by the aggregator only
+    @Bean
+    public KafkaMessageListenerContainer<String, TrafficRecord> partialCountContainer(WindowAggregator aggregator) {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
+        configProps.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ContainerProperties properties = new ContainerProperties(topicName);
+        properties.setMessageListener(new PartialCountListener(
+                aggregator,
+                TimeUnit.SECONDS.toMillis(lengthSeconds + allowedLatenessSeconds + windowSeconds)
+        ));
+        KafkaMessageListenerContainer<String, TrafficRecord> container = new KafkaMessageListenerContainer<>(
+                new DefaultKafkaConsumerFactory<>(configProps, new StringDeserializer(), new BinaryRecordDeserializer()),
+                properties
+        );
+        container.setAutoStartup(false);
+        return container;
+    }
+}
@@ -0,0 +1,41 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.history.TrafficHistoryPartitions;
+import com.ishvatov.traffic.history.TrafficHistoryWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.ZoneId;
+
+@Configuration
+@PropertySource(value = "classpath:history.properties")
+public class HistoryConfiguration {
+    @Value(value = "${kafka.alert.sensor-name}")
+    private String sensorName;
+
+    @Value(value = "${history.queue-capacity}")
+    private int queueCapacity;
+
+    @Value(value = "${history.batch-size}")
+    private int batchSize;
+
+    @Value(value = "${history.retention-days}")
+    private int retentionDays;
+
+    @Value(value = "${history.days-ahead}")
+    private int daysAhead;
+
+    @Bean
+    public TrafficHistoryPartitions trafficHistoryPartitions(JdbcTemplate jdbcTemplate) {
+        // interval_start is stored as the local time of the JVM, so are the partition bounds
+        return new TrafficHistoryPartitions(jdbcTemplate, ZoneId.systemDefault(), retentionDays, daysAhead);
+    }
+
+    @Bean
+    public TrafficHistoryWriter trafficHistoryWriter(JdbcTemplate jdbcTemplate, TrafficHistoryPartitions partitions) {
+        return new TrafficHistoryWriter(jdbcTemplate, partitions, sensorName, queueCapacity, batchSize);
+    }
+}
@@ -1,6 +1,14 @@
 package com.ishvatov.traffic.config;
 
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.persistence.SpillLog;
+import com.ishvatov.traffic.telemetry.TelemetryPublisher;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.RecordFormat;
+import com.ishvatov.traffic.wire.TextRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -12,6 +20,7 @@ import org.springframework.kafka.core.ProducerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 
 @Configuration
 @PropertySource(value = "classpath:kafka.properties")
@@ -19,26 +28,165 @@ public class KafkaProducerConfig {
     @Value(value = "${kafka.bootstrap-address}")
     private String bootstrapAddress;
 
+    @Value(value = "${kafka.topic-name}")
+    private String topicName;
+
+    // format of the records
+    @Value(value = "${kafka.record-format}")
+    private RecordFormat recordFormat;
+
+    @Value(value = "${kafka.alert-message}")
+    private String alertMessage;
+
+    @Value(value = "${kafka.alert-resolved}")
+    private String alertResolvedMessage;
+
+    @Value(value = "${kafka.alert-status}")
+    private String alertStatusMessage;
+
+    @Value(value = "${kafka.alert-rule}")
+    private String alertRuleMessage;
+
+    @Value(value = "${kafka.alert-top-talkers}")
+    private String alertTopTalkersMessage;
+
+    @Value(value = "${kafka.alert-interfaces}")
+    private String alertInterfacesMessage;
+
+    @Value(value = "${kafka.telemetry-message}")
+    private String telemetryMessage;
+
+    // batching and delivery profile of the producer
+    @Value(value = "${kafka.producer.acks}")
+    private String acks;
+
+    @Value(value = "${kafka.producer.enable-idempotence}")
+    private boolean enableIdempotence;
+
+    @Value(value = "${kafka.producer.linger-ms}")
+    private int lingerMs;
+
+    @Value(value = "${kafka.producer.batch-size}")
+    private int batchSize;
+
+    @Value(value = "${kafka.producer.compression-type}")
+    private String compressionType;
+
+    @Value(value = "${kafka.producer.max-block-ms}")
+    private long maxBlockMs;
+
+    @Value(value = "${kafka.producer.delivery-timeout-ms}")
+    private int deliveryTimeoutMs;
+
+    // alert outbox
+    @Value(value = "${kafka.alert.sensor-name}")
+    private String sensorName;
+
+    @Value(value = "${kafka.alert.outbox-capacity}")
+    private int outboxCapacity;
+
+    @Value(value = "${kafka.alert.max-retries}")
+    private int maxRetries;
+
+    @Value(value = "${kafka.alert.retry-backoff-millis}")
+    private long retryBackoffMillis;
+
+    // telemetry
+    @Value(value = "${kafka.telemetry.topic-name}")
+    private String telemetryTopicName;
+
+    @Value(value = "${kafka.telemetry.pending-capacity}")
+    private int telemetryPendingCapacity;
+
+    @Value(value = "${kafka.telemetry.max-batch}")
+    private int telemetryMaxBatch;
+
+    @Bean
+    public ProducerFactory<String, TrafficRecord> producerFactory() {
+        return producerFactory(recordSerializer());
+    }
+
+    // partial counts are merged by the aggregator, so they are always binary
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, TrafficRecord> partialCountProducerFactory() {
+        return producerFactory(new BinaryRecordSerializer());
+    }
+
+    @Bean
+    public Serializer<TrafficRecord> recordSerializer() {
+        if (recordFormat == RecordFormat.TEXT) {
+            return new TextRecordSerializer(
+                    alertMessage,
+                    alertResolvedMessage,
+                    alertStatusMessage,
+                    alertRuleMessage,
+                    alertTopTalkersMessage,
+                    alertInterfacesMessage,
+                    telemetryMessage
+            );
+        }
+        return new BinaryRecordSerializer();
+    }
+
+    @Bean
+    public KafkaTemplate<String, TrafficRecord> kafkaTemplate() {
+        return new KafkaTemplate<>(producerFactory());
+    }
+
+    @Bean
+    public KafkaTemplate<String, TrafficRecord> partialCountTemplate() {
+        return new KafkaTemplate<>(partialCountProducerFactory());
+    }
+
+    @Bean
+    public AlertPublisher alertPublisher(ScheduledExecutorService scheduler, SpillLog spillLog) {
+        return new AlertPublisher(
+                kafkaTemplate(),
+                scheduler,
+                spillLog,
+                topicName,
+                sensorName,
+                outboxCapacity,
+                maxRetries,
+                retryBackoffMillis
+        );
+    }
+
+    @Bean
+    public TelemetryPublisher telemetryPublisher(ScheduledExecutorService scheduler) {
+        return new TelemetryPublisher(
+                kafkaTemplate(),
+                scheduler,
+                telemetryTopicName,
+                sensorName,
+                telemetryPendingCapacity,
+                telemetryMaxBatch
+        );
+    }
+
+    private ProducerFactory<String, TrafficRecord> producerFactory(Serializer<TrafficRecord> serializer) {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(
                 ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
                 bootstrapAddress
         );
-        configProps.put(
-                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
-                StringSerializer.class
-        );
-        configProps.put(
-                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
-                StringSerializer.class
-        );
-        return new DefaultKafkaProducerFactory<>(configProps);
+        configProps.putAll(producerProfile());
+        return new DefaultKafkaProducerFactory<>(configProps, new StringSerializer(), serializer);
     }
 
-    @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+    /**
+     * @return batching, compression and delivery settings of the producer.
+     */
+    private Map<String, Object> producerProfile() {
+        Map<String, Object> profile = new HashMap<>();
+        profile.put(ProducerConfig.ACKS_CONFIG, acks);
+        profile.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        profile.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        profile.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        profile.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        // send is called from the evaluation thread, which must not wait for the metadata
+        profile.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        profile.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, deliveryTimeoutMs);
+        return profile;
     }
 }
@@ -5,6 +5,7 @@ import org.apache.kafka.clients.admin.NewTopic;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.kafka.core.KafkaAdmin;
 
@@ -20,21 +21,38 @@ public class KafkaTopicConfig {
     @Value(value = "${kafka.topic-name}")
     private String topicName;
 
+    @Value(value = "${kafka.telemetry.topic-name}")
+    private String telemetryTopicName;
+
     @Value(value = "${kafka.partitions-number}")
     private int partitionsNumber;
 
     @Value(value = "${kafka.replication-factor}")
     private short replicationFactor;
 
+    // topics are created by the application after the capture is started
+    @Value(value = "${kafka.admin.deferred}")
+    private boolean adminDeferred;
+
     @Bean
     public KafkaAdmin kafkaAdmin() {
         Map<String, Object> configs = new HashMap<>();
         configs.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapAddress);
-        return new KafkaAdmin(configs);
+        KafkaAdmin admin = new KafkaAdmin(configs);
+        admin.setAutoCreate(!adminDeferred);
+        return admin;
     }
 
+    // topics are found by the admin among the created beans, so they are never lazy
     @Bean
+    @Lazy(false)
     public NewTopic alertTopic() {
         return new NewTopic(topicName, partitionsNumber, replicationFactor);
     }
+
+    @Bean
+    @Lazy(false)
+    public NewTopic telemetryTopic() {
+        return new NewTopic(telemetryTopicName, partitionsNumber, replicationFactor);
+    }
 }
@@ -0,0 +1,64 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.limits.LimitsCache;
+import com.ishvatov.traffic.limits.LimitsChangeListener;
+import com.ishvatov.traffic.model.repository.JdbcLimitsReader;
+import com.ishvatov.traffic.rules.LimitRulesCache;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.service.TrafficService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Configuration
+@PropertySource(value = "classpath:limits.properties")
+public class LimitsConfiguration {
+    @Value(value = "${limits.notify.timeout-millis}")
+    private int notifyTimeoutMillis;
+
+    @Value(value = "${limits.notify.reconnect-millis}")
+    private long notifyReconnectMillis;
+
+    /**
+     * Reader of the limits and the limit rules without Hibernate, replaces the JPA repositories
+     * in the {@link com.ishvatov.traffic.service.TrafficService}, which are not created by the fast start.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "limits.loader", havingValue = "JDBC")
+    public JdbcLimitsReader jdbcLimitsReader(JdbcTemplate jdbcTemplate) {
+        return new JdbcLimitsReader(jdbcTemplate);
+    }
+
+    @Bean
+    public LimitsCache limitsCache(TrafficService trafficService, ScheduledExecutorService scheduler) {
+        return new LimitsCache(trafficService, scheduler);
+    }
+
+    @Bean
+    public LimitRulesCache limitRulesCache(TrafficService trafficService, RuleClassifier ruleClassifier) {
+        return new LimitRulesCache(trafficService, ruleClassifier);
+    }
+
+    @Bean
+    public LimitsChangeListener limitsChangeListener(
+            DataSource dataSource,
+            LimitsCache limitsCache,
+            LimitRulesCache limitRulesCache
+    ) {
+        return new LimitsChangeListener(
+                dataSource,
+                limitsCache,
+                limitRulesCache,
+                notifyTimeoutMillis,
+                notifyReconnectMillis
+        );
+    }
+}
@@ -0,0 +1,28 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.metrics.MetricsRegistry;
+import com.ishvatov.traffic.metrics.PrometheusEndpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+@Configuration
+@PropertySource(value = "classpath:metrics.properties")
+public class MetricsConfiguration {
+    @Value(value = "${metrics.prometheus.address}")
+    private String prometheusAddress;
+
+    @Value(value = "${metrics.prometheus.port}")
+    private int prometheusPort;
+
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    @Bean
+    public PrometheusEndpoint prometheusEndpoint() {
+        return new PrometheusEndpoint(metricsRegistry(), prometheusAddress.trim(), prometheusPort);
+    }
+}
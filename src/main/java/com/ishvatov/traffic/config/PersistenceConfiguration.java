@@ -0,0 +1,44 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.persistence.FsyncPolicy;
+import com.ishvatov.traffic.persistence.SpillLog;
+import com.ishvatov.traffic.persistence.WindowCheckpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.nio.file.Paths;
+
+@Configuration
+@PropertySource(value = "classpath:persistence.properties")
+public class PersistenceConfiguration {
+    // names of the files in the state directory
+    private static final String CHECKPOINT_FILE = "window.checkpoint";
+    private static final String SPILL_FILE = "alerts.spill";
+
+    @Value(value = "${persistence.directory}")
+    private String directory;
+
+    @Value(value = "${persistence.fsync}")
+    private FsyncPolicy fsyncPolicy;
+
+    @Value(value = "${persistence.spill.size-bytes}")
+    private int spillSizeBytes;
+
+    // files are opened by the application, if enabled, and closed with the context
+    @Bean
+    public WindowCheckpoint windowCheckpoint(SlidingWindow slidingWindow) {
+        return new WindowCheckpoint(
+                Paths.get(directory, CHECKPOINT_FILE),
+                slidingWindow.getBuckets() + 1,
+                fsyncPolicy
+        );
+    }
+
+    @Bean
+    public SpillLog spillLog() {
+        return new SpillLog(Paths.get(directory, SPILL_FILE), spillSizeBytes, fsyncPolicy);
+    }
+}
@@ -5,8 +5,6 @@ import org.springframework.context.annotation.Configuration;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Configuration
 public class SchedulerConfiguration {
@@ -14,9 +12,4 @@ public class SchedulerConfiguration {
     public ScheduledExecutorService scheduledExecutorService() {
         return Executors.newScheduledThreadPool(3);
     }
-
-    @Bean
-    public ReadWriteLock readWriteLock() {
-        return new ReentrantReadWriteLock();
-    }
 }
@@ -0,0 +1,26 @@
+package com.ishvatov.traffic.config;
+
+import com.ishvatov.traffic.startup.EarlyCapture;
+import com.ishvatov.traffic.startup.StartupTimer;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Startup beans of the context, which was not started by the application main method,
+ * e.g. of the tests. Otherwise the beans are registered by the {@link EarlyCapture} listener
+ * before the context is refreshed, so the registered singletons are checked explicitly.
+ */
+@Configuration
+public class StartupConfiguration {
+    @Bean
+    public static BeanFactoryPostProcessor startupBeans() {
+        return beanFactory -> {
+            if (!beanFactory.containsSingleton(EarlyCapture.TIMER_BEAN_NAME)) {
+                StartupTimer startupTimer = new StartupTimer();
+                beanFactory.registerSingleton(EarlyCapture.TIMER_BEAN_NAME, startupTimer);
+                beanFactory.registerSingleton(EarlyCapture.BEAN_NAME, new EarlyCapture(startupTimer));
+            }
+        };
+    }
+}
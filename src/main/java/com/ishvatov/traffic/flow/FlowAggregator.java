@@ -0,0 +1,85 @@
+package com.ishvatov.traffic.flow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregates the captured traffic per flow (5-tuple) and per host in the bounded
+ * {@link FlowTable}s. Packets are passed as the decoded {@link PacketHeaders} with
+ * per-worker reusable keys, so no allocation happens on the hot path. Top talkers
+ * are collected once per top talkers interval.
+ *
+ * @author ishvatov
+ */
+public class FlowAggregator {
+    private final FlowTable flows;
+    private final FlowTable hosts;
+    private final int topTalkersLimit;
+
+    // reusable per-worker keys
+    private final long[][] flowKeys;
+    private final long[][] hostKeys;
+
+    /**
+     * @param workers         number of the threads, which call {@link #record}.
+     * @param flows           table of the flows.
+     * @param hosts           table of the hosts.
+     * @param topTalkersLimit number of the top hosts and flows to report.
+     */
+    public FlowAggregator(int workers, FlowTable flows, FlowTable hosts, int topTalkersLimit) {
+        this.flows = flows;
+        this.hosts = hosts;
+        this.topTalkersLimit = topTalkersLimit;
+        this.flowKeys = new long[workers][FlowKeys.FLOW_KEY_LENGTH];
+        this.hostKeys = new long[workers][FlowKeys.HOST_KEY_LENGTH];
+    }
+
+    /**
+     * Adds the decoded packet to the flow and host tables.
+     *
+     * @param worker        index of the worker thread.
+     * @param length        length of the packet in bytes.
+     * @param timestamp     capture timestamp in nanoseconds since epoch.
+     * @param packetHeaders decoded headers of the packet.
+     */
+    public void record(int worker, int length, long timestamp, PacketHeaders packetHeaders) {
+        long[] flowKey = flowKeys[worker];
+        packetHeaders.writeFlowKey(flowKey);
+        flows.add(flowKey, length, timestamp);
+
+        long[] hostKey = hostKeys[worker];
+        hostKey[0] = packetHeaders.getSourceHigh();
+        hostKey[1] = packetHeaders.getSourceLow();
+        hosts.add(hostKey, length, timestamp);
+        hostKey[0] = packetHeaders.getDestinationHigh();
+        hostKey[1] = packetHeaders.getDestinationLow();
+        hosts.add(hostKey, length, timestamp);
+    }
+
+    /**
+     * Collects the top talkers of the current interval and starts the new one.
+     * Called on each top talkers interval rollover.
+     *
+     * @return top talkers of the finished interval.
+     */
+    public TopTalkers rollover() {
+        List<TopTalker> topHosts = new ArrayList<>();
+        for (FlowTable.Entry entry : hosts.top(topTalkersLimit, true)) {
+            topHosts.add(new TopTalker(FlowKeys.formatHost(entry.getKey(), 0), entry.getBytes(), entry.getPackets(), 0));
+        }
+
+        List<TopTalker> topFlows = new ArrayList<>();
+        for (FlowTable.Entry entry : flows.top(topTalkersLimit, true)) {
+            topFlows.add(new TopTalker(FlowKeys.formatFlow(entry.getKey(), 0), entry.getBytes(), entry.getPackets(), 0));
+        }
+        return new TopTalkers(topHosts, topFlows, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @return number of the tracked flows.
+     */
+    public int getFlowCount() {
+        return flows.size();
+    }
+}
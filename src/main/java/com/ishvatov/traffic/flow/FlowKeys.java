@@ -0,0 +1,87 @@
+package com.ishvatov.traffic.flow;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the primitive flow and host keys, which are stored in the {@link FlowTable}.
+ * Flow key: source address (2 longs), destination address (2 longs), protocol and ports.
+ * Host key: address (2 longs). Addresses are IPv6 or IPv4-mapped IPv6 addresses.
+ *
+ * @author ishvatov
+ */
+public final class FlowKeys {
+    public static final int FLOW_KEY_LENGTH = 5;
+    public static final int HOST_KEY_LENGTH = 2;
+
+    private static final long IPV4_MAPPED_MASK = 0xFFFFFFFF00000000L;
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    private FlowKeys() {
+    }
+
+    /**
+     * @return protocol and ports, packed into a single long.
+     */
+    public static long packPorts(int protocol, int sourcePort, int destinationPort) {
+        return (long) protocol << 32 | (long) sourcePort << 16 | destinationPort;
+    }
+
+    /**
+     * @param key    flow key.
+     * @param offset offset of the key.
+     * @return human readable representation of the flow key.
+     */
+    public static String formatFlow(long[] key, int offset) {
+        long ports = key[offset + 4];
+        int protocol = (int) (ports >>> 32);
+        int sourcePort = (int) (ports >>> 16) & 0xFFFF;
+        int destinationPort = (int) ports & 0xFFFF;
+
+        StringBuilder builder = new StringBuilder()
+                .append(formatAddress(key[offset], key[offset + 1]));
+        if (sourcePort != 0 || destinationPort != 0) {
+            builder.append(':').append(sourcePort);
+        }
+        builder.append(" -> ").append(formatAddress(key[offset + 2], key[offset + 3]));
+        if (sourcePort != 0 || destinationPort != 0) {
+            builder.append(':').append(destinationPort);
+        }
+        return builder.append(' ').append(formatProtocol(protocol)).toString();
+    }
+
+    /**
+     * @param key    host key.
+     * @param offset offset of the key.
+     * @return human readable representation of the host key.
+     */
+    public static String formatHost(long[] key, int offset) {
+        return formatAddress(key[offset], key[offset + 1]);
+    }
+
+    /**
+     * @return textual representation of the IPv6 or IPv4-mapped address.
+     */
+    public static String formatAddress(long high, long low) {
+        try {
+            if (high == 0 && (low & IPV4_MAPPED_MASK) == IPV4_MAPPED_PREFIX) {
+                return InetAddress.getByAddress(ByteBuffer.allocate(4).putInt((int) low).array()).getHostAddress();
+            }
+            return InetAddress.getByAddress(ByteBuffer.allocate(16).putLong(high).putLong(low).array()).getHostAddress();
+        } catch (UnknownHostException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String formatProtocol(int protocol) {
+        switch (protocol) {
+            case PacketHeaders.TCP:
+                return "TCP";
+            case PacketHeaders.UDP:
+                return "UDP";
+            default:
+                return "IP/" + protocol;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.ishvatov.traffic.flow;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bounded open-addressing hash table, which aggregates bytes and packets per fixed
+ * length key of primitive longs. All the keys and counters are stored in the preallocated
+ * primitive arrays, so updating the table produces no garbage regardless of the number of flows.
+ * <p>
+ * The table is split into the segments, each segment is a linear probing table with its
+ * own monitor, so the worker threads rarely contend. Idle entries (not updated during the idle
+ * timeout) are evicted by {@link #evictIdle()} and when the interval counters are reset; when a
+ * segment is full, the least recently updated entry among the sampled ones in the probe sequence
+ * is evicted.
+ *
+ * @author ishvatov
+ */
+public final class FlowTable {
+    private static final int LOAD_FACTOR_PERCENT = 75;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final int keyLength;
+    private final long idleTimeoutNanos;
+    private final int segmentMask;
+    private final Segment[] segments;
+
+    /**
+     * @param keyLength        number of longs in the key.
+     * @param capacity         total number of the slots, must be a power of two.
+     * @param segmentCount     number of the segments, must be a power of two.
+     * @param idleTimeoutNanos entries, which were not updated during this time, may be evicted.
+     */
+    public FlowTable(int keyLength, int capacity, int segmentCount, long idleTimeoutNanos) {
+        if (Integer.bitCount(capacity) != 1 || Integer.bitCount(segmentCount) != 1 || capacity < segmentCount * 2) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid flow table capacity %s or segment count %s!", capacity, segmentCount)
+            );
+        }
+        this.keyLength = keyLength;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.segmentMask = segmentCount - 1;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity / segmentCount);
+        }
+    }
+
+    /**
+     * Adds the packet to the entry with the provided key, creates the entry if needed.
+     *
+     * @param key       key of the entry, only the first keyLength longs are used.
+     * @param bytes     length of the packet.
+     * @param timestamp timestamp of the packet in nanoseconds.
+     */
+    public void add(long[] key, long bytes, long timestamp) {
+        long hash = hash(key);
+        segments[(int) (hash >>> 32) & segmentMask].add(key, (int) hash, bytes, timestamp);
+    }
+
+    /**
+     * Collects the entries with the biggest amount of bytes in the current interval.
+     *
+     * @param limit maximum number of the returned entries.
+     * @param reset if true, interval counters are reset and idle entries are evicted.
+     * @return entries, sorted by the interval bytes in descending order.
+     */
+    public List<Entry> top(int limit, boolean reset) {
+        PriorityQueue<Entry> heap = new PriorityQueue<>(limit + 1, Comparator.comparingLong(Entry::getBytes));
+        long now = latest();
+        for (Segment segment : segments) {
+            segment.top(heap, limit, reset, now);
+        }
+
+        List<Entry> result = new ArrayList<>(heap);
+        result.sort(Collections.reverseOrder(Comparator.comparingLong(Entry::getBytes)));
+        return result;
+    }
+
+    /**
+     * @return number of the entries in the table.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Evicts all the entries, which were not updated during the idle timeout.
+     *
+     * @return number of the evicted entries.
+     */
+    public int evictIdle() {
+        int evicted = 0;
+        long now = latest();
+        for (Segment segment : segments) {
+            evicted += segment.evictIdle(now);
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the latest timestamp of the packet, added to any segment.
+     */
+    private long latest() {
+        long latest = 0;
+        for (Segment segment : segments) {
+            latest = Math.max(latest, segment.getLatest());
+        }
+        return latest;
+    }
+
+    private long hash(long[] key) {
+        long hash = 0;
+        for (int i = 0; i < keyLength; i++) {
+            hash = Long.rotateLeft((hash ^ key[i]) * 0x9E3779B97F4A7C15L, 31);
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Entry of the table, which was returned by the {@link #top(int, boolean)}.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Entry {
+        private final long[] key;
+        private final long bytes;
+        private final long packets;
+    }
+
+    /**
+     * Linear probing table with backward shift deletion.
+     * Slot is empty, if its total number of packets is zero.
+     */
+    private final class Segment {
+        private final int mask;
+        private final int maxSize;
+        private final long[] keys;
+        private final int[] hashes;
+        private final long[] bytes;
+        private final long[] packets;
+        private final long[] intervalBytes;
+        private final long[] intervalPackets;
+        private final long[] lastSeen;
+
+        // number of the entries and the latest seen packet timestamp
+        private int size = 0;
+        private long latest = 0;
+
+        Segment(int capacity) {
+            this.mask = capacity - 1;
+            this.maxSize = Math.max(1, capacity * LOAD_FACTOR_PERCENT / 100);
+            this.keys = new long[capacity * keyLength];
+            this.hashes = new int[capacity];
+            this.bytes = new long[capacity];
+            this.packets = new long[capacity];
+            this.intervalBytes = new long[capacity];
+            this.intervalPackets = new long[capacity];
+            this.lastSeen = new long[capacity];
+        }
+
+        synchronized void add(long[] key, int hash, long length, long timestamp) {
+            latest = Math.max(latest, timestamp);
+
+            int slot = find(key, hash);
+            if (slot < 0) {
+                if (size >= maxSize) {
+                    // idle entries are evicted by the periodic sweep, a full scan here would be paid
+                    // by every new flow of a flood, so only the sampled entries are considered
+                    evictOldest(hash);
+                    slot = find(key, hash);
+                }
+                slot = ~slot;
+                System.arraycopy(key, 0, keys, slot * keyLength, keyLength);
+                hashes[slot] = hash;
+                size++;
+            }
+
+            bytes[slot] += length;
+            packets[slot]++;
+            intervalBytes[slot] += length;
+            intervalPackets[slot]++;
+            lastSeen[slot] = timestamp;
+        }
+
+        synchronized void top(PriorityQueue<Entry> heap, int limit, boolean reset, long now) {
+            for (int slot = 0; slot <= mask; slot++) {
+                if (packets[slot] == 0 || intervalBytes[slot] == 0) {
+                    continue;
+                }
+                if (heap.size() < limit || intervalBytes[slot] > heap.peek().getBytes()) {
+                    int offset = slot * keyLength;
+                    heap.add(new Entry(
+                            Arrays.copyOfRange(keys, offset, offset + keyLength),
+                            intervalBytes[slot],
+                            intervalPackets[slot]
+                    ));
+                    if (heap.size() > limit) {
+                        heap.poll();
+                    }
+                }
+                if (reset) {
+                    intervalBytes[slot] = 0;
+                    intervalPackets[slot] = 0;
+                }
+            }
+            if (reset) {
+                evictIdle(now);
+            }
+        }
+
+        synchronized int getSize() {
+            return size;
+        }
+
+        synchronized long getLatest() {
+            return latest;
+        }
+
+        synchronized int evictIdle(long now) {
+            int evicted = 0;
+            long threshold = now - idleTimeoutNanos;
+            // the scan starts after an empty slot, which is never crossed by the backward shift,
+            // so no cluster wraps around the start of the scan and no entry is moved behind it
+            int start = 0;
+            while (packets[start] != 0) {
+                start++;
+            }
+            int slot = (start + 1) & mask;
+            for (int scanned = 0; scanned <= mask; ) {
+                if (packets[slot] != 0 && lastSeen[slot] < threshold) {
+                    // backward shift may move another entry into this slot, so check it again
+                    remove(slot);
+                    evicted++;
+                } else {
+                    slot = (slot + 1) & mask;
+                    scanned++;
+                }
+            }
+            return evicted;
+        }
+
+        private void evictOldest(int hash) {
+            int oldest = -1;
+            int slot = hash & mask;
+            int samples = Math.min(EVICTION_SAMPLE, size);
+            for (int sampled = 0; sampled < samples; slot = (slot + 1) & mask) {
+                if (packets[slot] != 0) {
+                    if (oldest < 0 || lastSeen[slot] < lastSeen[oldest]) {
+                        oldest = slot;
+                    }
+                    sampled++;
+                }
+            }
+            remove(oldest);
+        }
+
+        private int find(long[] key, int hash) {
+            int slot = hash & mask;
+            while (packets[slot] != 0) {
+                if (hashes[slot] == hash && keyEquals(slot, key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return ~slot;
+        }
+
+        private boolean keyEquals(int slot, long[] key) {
+            int offset = slot * keyLength;
+            for (int i = 0; i < keyLength; i++) {
+                if (keys[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void remove(int slot) {
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (packets[next] != 0) {
+                int home = hashes[next] & mask;
+                // entry may be moved only if the hole is between its home slot and its current slot
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    move(next, hole);
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            packets[hole] = 0;
+            bytes[hole] = 0;
+            intervalBytes[hole] = 0;
+            intervalPackets[hole] = 0;
+            size--;
+        }
+
+        private void move(int from, int to) {
+            System.arraycopy(keys, from * keyLength, keys, to * keyLength, keyLength);
+            hashes[to] = hashes[from];
+            bytes[to] = bytes[from];
+            packets[to] = packets[from];
+            intervalBytes[to] = intervalBytes[from];
+            intervalPackets[to] = intervalPackets[from];
+            lastSeen[to] = lastSeen[from];
+        }
+    }
+}
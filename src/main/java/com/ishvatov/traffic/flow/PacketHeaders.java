@@ -0,0 +1,183 @@
+package com.ishvatov.traffic.flow;
+
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * Mutable holder of the decoded IPv4/IPv6 and TCP/UDP header fields. Decodes
+ * directly from the raw packet bytes without allocation, so one instance is
+ * reused by each worker thread. IPv4 addresses are stored as IPv4-mapped
+ * IPv6 addresses, so every address is a pair of longs.
+ *
+ * @author ishvatov
+ */
+public final class PacketHeaders {
+    // IP protocol numbers
+    public static final int TCP = 6;
+    public static final int UDP = 17;
+
+    // link layer constants
+    private static final int ETHERNET_TYPE_OFFSET = 12;
+    private static final int ETHERNET_HEADER_LENGTH = 14;
+    private static final int VLAN_TAG_LENGTH = 4;
+    private static final int SLL_TYPE_OFFSET = 14;
+    private static final int SLL_HEADER_LENGTH = 16;
+    private static final int ETHER_TYPE_IPV4 = 0x0800;
+    private static final int ETHER_TYPE_IPV6 = 0x86DD;
+    private static final int ETHER_TYPE_VLAN = 0x8100;
+    private static final int ETHER_TYPE_QINQ = 0x88A8;
+
+    // network layer constants
+    private static final int IPV4_MIN_HEADER_LENGTH = 20;
+    private static final int IPV6_HEADER_LENGTH = 40;
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    private int version;
+    private int protocol;
+    private long sourceHigh;
+    private long sourceLow;
+    private long destinationHigh;
+    private long destinationLow;
+    private int sourcePort;
+    private int destinationPort;
+
+    /**
+     * Decodes the headers of the packet.
+     *
+     * @param linkType link layer type of the capture.
+     * @param data     array, which contains the packet bytes.
+     * @param offset   offset of the first packet byte.
+     * @param length   number of the available packet bytes.
+     * @return true, if the packet is IPv4 or IPv6 packet and addresses were decoded, false otherwise.
+     */
+    public boolean decode(DataLinkType linkType, byte[] data, int offset, int length) {
+        version = 0;
+        protocol = 0;
+        sourcePort = 0;
+        destinationPort = 0;
+
+        int end = offset + length;
+        int network;
+        int etherType;
+        if (DataLinkType.EN10MB.equals(linkType)) {
+            int typeOffset = offset + ETHERNET_TYPE_OFFSET;
+            if (typeOffset + 2 > end) {
+                return false;
+            }
+            etherType = readShort(data, typeOffset);
+            while ((etherType == ETHER_TYPE_VLAN || etherType == ETHER_TYPE_QINQ) && typeOffset + VLAN_TAG_LENGTH + 2 <= end) {
+                typeOffset += VLAN_TAG_LENGTH;
+                etherType = readShort(data, typeOffset);
+            }
+            network = typeOffset + 2;
+        } else if (DataLinkType.LINUX_SLL.equals(linkType)) {
+            if (offset + SLL_HEADER_LENGTH > end) {
+                return false;
+            }
+            etherType = readShort(data, offset + SLL_TYPE_OFFSET);
+            network = offset + SLL_HEADER_LENGTH;
+        } else if (DataLinkType.RAW.equals(linkType)) {
+            if (offset >= end) {
+                return false;
+            }
+            etherType = (data[offset] & 0xF0) == 0x60 ? ETHER_TYPE_IPV6 : ETHER_TYPE_IPV4;
+            network = offset;
+        } else {
+            return false;
+        }
+
+        int transport;
+        if (etherType == ETHER_TYPE_IPV4) {
+            if (network + IPV4_MIN_HEADER_LENGTH > end || (data[network] & 0xF0) != 0x40) {
+                return false;
+            }
+            version = 4;
+            protocol = data[network + 9] & 0xFF;
+            sourceHigh = 0;
+            sourceLow = IPV4_MAPPED_PREFIX | (readInt(data, network + 12) & 0xFFFFFFFFL);
+            destinationHigh = 0;
+            destinationLow = IPV4_MAPPED_PREFIX | (readInt(data, network + 16) & 0xFFFFFFFFL);
+
+            // only the first fragment contains the transport header
+            if ((readShort(data, network + 6) & 0x1FFF) != 0) {
+                return true;
+            }
+            transport = network + (data[network] & 0x0F) * 4;
+        } else if (etherType == ETHER_TYPE_IPV6) {
+            if (network + IPV6_HEADER_LENGTH > end) {
+                return false;
+            }
+            version = 6;
+            protocol = data[network + 6] & 0xFF;
+            sourceHigh = readLong(data, network + 8);
+            sourceLow = readLong(data, network + 16);
+            destinationHigh = readLong(data, network + 24);
+            destinationLow = readLong(data, network + 32);
+            transport = network + IPV6_HEADER_LENGTH;
+        } else {
+            return false;
+        }
+
+        if ((protocol == TCP || protocol == UDP) && transport + 4 <= end) {
+            sourcePort = readShort(data, transport);
+            destinationPort = readShort(data, transport + 2);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the 5-tuple of the decoded packet as the flow key.
+     *
+     * @param key array of at least {@link FlowKeys#FLOW_KEY_LENGTH} longs.
+     */
+    public void writeFlowKey(long[] key) {
+        key[0] = sourceHigh;
+        key[1] = sourceLow;
+        key[2] = destinationHigh;
+        key[3] = destinationLow;
+        key[4] = FlowKeys.packPorts(protocol, sourcePort, destinationPort);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getProtocol() {
+        return protocol;
+    }
+
+    public long getSourceHigh() {
+        return sourceHigh;
+    }
+
+    public long getSourceLow() {
+        return sourceLow;
+    }
+
+    public long getDestinationHigh() {
+        return destinationHigh;
+    }
+
+    public long getDestinationLow() {
+        return destinationLow;
+    }
+
+    public int getSourcePort() {
+        return sourcePort;
+    }
+
+    public int getDestinationPort() {
+        return destinationPort;
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return readShort(data, offset) << 16 | readShort(data, offset + 2);
+    }
+
+    private static long readLong(byte[] data, int offset) {
+        return (readInt(data, offset) & 0xFFFFFFFFL) << 32 | (readInt(data, offset + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,27 @@
+package com.ishvatov.traffic.flow;
+
+import lombok.Value;
+
+/**
+ * Host or flow with the amount of traffic, transferred during the interval.
+ * Exact values have zero error, estimated ones (see {@link com.ishvatov.traffic.sketch})
+ * may overestimate the amount of bytes by at most the error value and the amount of packets
+ * by an unknown value.
+ *
+ * @author ishvatov
+ */
+@Value
+public class TopTalker {
+    String name;
+    long bytes;
+    long packets;
+    long error;
+
+    @Override
+    public String toString() {
+        if (error == 0) {
+            return String.format("%s: %s bytes, %s packets", name, bytes, packets);
+        }
+        return String.format("%s: ~%s bytes (+/- %s), ~%s packets", name, bytes, error, packets);
+    }
+}
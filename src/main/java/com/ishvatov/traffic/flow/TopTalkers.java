@@ -0,0 +1,38 @@
+package com.ishvatov.traffic.flow;
+
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hosts and flows with the biggest amount of traffic during the interval: exact ones
+ * from the {@link FlowAggregator} and estimated heavy hitter sources and destinations.
+ *
+ * @author ishvatov
+ */
+@Value
+public class TopTalkers {
+    public static final TopTalkers EMPTY = new TopTalkers(
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Collections.emptyList()
+    );
+
+    List<TopTalker> hosts;
+    List<TopTalker> flows;
+    List<TopTalker> heavySources;
+    List<TopTalker> heavyDestinations;
+
+    public boolean isEmpty() {
+        return hosts.isEmpty() && flows.isEmpty() && heavySources.isEmpty() && heavyDestinations.isEmpty();
+    }
+
+    /**
+     * @return copy of these top talkers with the provided heavy hitters.
+     */
+    public TopTalkers withHeavyHitters(List<TopTalker> sources, List<TopTalker> destinations) {
+        return new TopTalkers(hosts, flows, sources, destinations);
+    }
+}
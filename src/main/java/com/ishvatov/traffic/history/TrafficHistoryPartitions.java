@@ -0,0 +1,143 @@
+package com.ishvatov.traffic.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the daily range partitions of the traffic_history table. Partitions are created
+ * ahead of time and on demand before the insert, expired partitions are dropped as a whole,
+ * so the retention does not delete rows and does not bloat the table.
+ *
+ * @author ishvatov
+ */
+public class TrafficHistoryPartitions {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficHistoryPartitions.class);
+
+    // name of the partitioned table and the suffix format of the partitions
+    static final String TABLE = "traffic_history";
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // partitions of the table
+    private static final String PARTITIONS_QUERY = "select c.relname\n" +
+            "from pg_inherits i\n" +
+            "join pg_class c on c.oid = i.inhrelid\n" +
+            "join pg_class p on p.oid = i.inhparent\n" +
+            "where p.relname = '" + TABLE + "'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ZoneId zone;
+    private final int retentionDays;
+    private final int daysAhead;
+
+    // days, for which the partitions are known to exist
+    private final Set<LocalDate> existing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param jdbcTemplate  template, which executes the DDL
+     * @param zone          time zone of the interval_start values
+     * @param retentionDays number of days, for which the history is kept
+     * @param daysAhead     number of days, for which the partitions are created ahead
+     */
+    public TrafficHistoryPartitions(JdbcTemplate jdbcTemplate, ZoneId zone, int retentionDays, int daysAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.zone = zone;
+        this.retentionDays = retentionDays;
+        this.daysAhead = daysAhead;
+    }
+
+    /**
+     * Creates the partitions for today and the following days and drops the expired ones.
+     *
+     * @param now current time
+     */
+    public void maintain(Instant now) {
+        LocalDate today = now.atZone(zone).toLocalDate();
+        for (int day = 0; day <= daysAhead; day++) {
+            ensurePartition(today.plusDays(day));
+        }
+        dropExpired(today);
+    }
+
+    /**
+     * Creates the partition of the day of the timestamp, if it does not exist.
+     *
+     * @param timestamp milliseconds since epoch
+     */
+    public void ensurePartition(long timestamp) {
+        ensurePartition(Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate());
+    }
+
+    /**
+     * Creates the partition of the day, if it does not exist.
+     *
+     * @param day day of the partition
+     */
+    public void ensurePartition(LocalDate day) {
+        if (existing.contains(day)) {
+            return;
+        }
+
+        String partition = PARTITION_PREFIX + SUFFIX.format(day);
+        jdbcTemplate.execute(String.format(
+                "create table if not exists %s partition of %s for values from ('%s') to ('%s')",
+                partition, TABLE, day, day.plusDays(1)
+        ));
+        jdbcTemplate.execute(String.format(
+                "create index if not exists %s_idx on %s (sensor, interval_start)",
+                partition, partition
+        ));
+        existing.add(day);
+        LOGGER.debug("Partition {} is ready", partition);
+    }
+
+    /**
+     * Drops the partitions, which are older than the retention period.
+     *
+     * @param today current day
+     * @return number of the dropped partitions.
+     */
+    public int dropExpired(LocalDate today) {
+        LocalDate oldest = today.minusDays(retentionDays);
+        int dropped = 0;
+        for (String partition : findPartitions()) {
+            LocalDate day = dayOf(partition);
+            if (day != null && day.isBefore(oldest)) {
+                jdbcTemplate.execute(String.format("drop table if exists %s", partition));
+                existing.remove(day);
+                dropped++;
+                LOGGER.info("Expired partition {} is dropped", partition);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * @return names of the partitions of the table.
+     */
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(PARTITIONS_QUERY, String.class);
+    }
+
+    private static LocalDate dayOf(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), SUFFIX);
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.ishvatov.traffic.history;
+
+import com.ishvatov.traffic.wire.TrafficInterval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the traffic intervals into the traffic_history table. Intervals are only put into
+ * the bounded queue by the caller, the dedicated writer thread inserts them with the JDBC
+ * batches, so neither the evaluation nor the scheduler threads wait for the database.
+ * If the queue is full, the interval is dropped.
+ *
+ * @author ishvatov
+ */
+public class TrafficHistoryWriter {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficHistoryWriter.class);
+
+    // name of the writer thread
+    private static final String THREAD_NAME = "history-writer";
+
+    // how long the writer waits for the next interval before checking, if it is stopped
+    private static final long POLL_MILLIS = 100;
+
+    static final String INSERT_QUERY = "insert into " + TrafficHistoryPartitions.TABLE +
+            " (sensor, interval_start, duration_millis, bytes, packets, received, dropped, if_dropped)" +
+            " values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // dependencies
+    private final JdbcTemplate jdbcTemplate;
+    private final TrafficHistoryPartitions partitions;
+
+    // writer configuration
+    private final String sensorName;
+    private final int batchSize;
+
+    private final BlockingQueue<TrafficInterval> queue;
+
+    // writer statistics
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // writer state
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param jdbcTemplate  template, which inserts the intervals
+     * @param partitions    partitions of the table
+     * @param sensorName    name of this sensor
+     * @param queueCapacity maximum number of the intervals, waiting for the insert
+     * @param batchSize     maximum number of the intervals in one batch
+     */
+    public TrafficHistoryWriter(
+            JdbcTemplate jdbcTemplate,
+            TrafficHistoryPartitions partitions,
+            String sensorName,
+            int queueCapacity,
+            int batchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitions = partitions;
+        this.sensorName = sensorName;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Puts the interval into the queue. Never blocks.
+     *
+     * @param interval interval to write
+     * @return true, if the interval was accepted, false, if the queue is full.
+     */
+    public boolean offer(TrafficInterval interval) {
+        if (queue.offer(interval)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the writer thread after the queued intervals are written.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.join();
+        thread = null;
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<TrafficInterval> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                TrafficInterval first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<TrafficInterval> batch) {
+        try {
+            for (TrafficInterval interval : batch) {
+                partitions.ensurePartition(interval.getTimestamp());
+            }
+            jdbcTemplate.batchUpdate(INSERT_QUERY, batch, batch.size(), (statement, interval) -> {
+                statement.setString(1, sensorName);
+                statement.setTimestamp(2, new Timestamp(interval.getTimestamp()));
+                statement.setLong(3, interval.getDurationMillis());
+                statement.setLong(4, interval.getBytes());
+                statement.setLong(5, interval.getPackets());
+                statement.setLong(6, interval.getReceived());
+                statement.setLong(7, interval.getDropped());
+                statement.setLong(8, interval.getIfDropped());
+            });
+            written.addAndGet(batch.size());
+        } catch (DataAccessException ex) {
+            failed.addAndGet(batch.size());
+            LOGGER.error(String.format("Traffic history batch was not written: %s", ex.getMessage()), ex);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ishvatov.traffic.limits;
+
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.utils.Pair;
+import lombok.Value;
+
+import java.util.Date;
+
+/**
+ * Immutable snapshot of the traffic limits. New snapshot is published on each change
+ * of the limits, so the readers never see the half updated limits and never lock.
+ *
+ * @author ishvatov
+ */
+@Value
+public class Limits {
+    // version of the snapshot, id of the latest limits_per_hour record of the limits
+    long version;
+
+    // minimum and maximum amount of traffic per hour
+    long min;
+    long max;
+
+    // effective date of the limits, milliseconds since epoch
+    long effectiveDate;
+
+    /**
+     * Creates snapshot of the min and max limits, fetched from the database.
+     *
+     * @param version version of the snapshot
+     * @param limits  pair of min and max limits
+     * @return new limits snapshot.
+     */
+    public static Limits of(long version, Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits) {
+        LimitsPerHourEntity min = limits.getFirst();
+        LimitsPerHourEntity max = limits.getSecond();
+        return new Limits(
+                version,
+                min.getLimitValue(),
+                max.getLimitValue(),
+                Math.max(min.getEffectiveDate().getTime(), max.getEffectiveDate().getTime())
+        );
+    }
+
+    /**
+     * @return snapshot without the minimum limit, which applies to the traffic of a part of the hour.
+     */
+    public Limits withoutMin() {
+        return new Limits(version, 0, max, effectiveDate);
+    }
+
+    /**
+     * @param current amount of transferred data
+     * @return true, if the amount of transferred data is out of limits.
+     */
+    public boolean isExceeded(long current) {
+        return current < min || current > max;
+    }
+
+    /**
+     * @param other other snapshot
+     * @return true, if both snapshots have the same limits regardless of the version.
+     */
+    public boolean hasSameLimits(Limits other) {
+        return other != null
+                && min == other.min
+                && max == other.max
+                && effectiveDate == other.effectiveDate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("v%d [%d, %d] since %s", version, min, max, new Date(effectiveDate));
+    }
+}
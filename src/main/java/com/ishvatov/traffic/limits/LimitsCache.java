@@ -0,0 +1,146 @@
+package com.ishvatov.traffic.limits;
+
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.service.TrafficService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory cache of the traffic limits. The whole {@link LimitsTimeline} is loaded once, after that
+ * only the new records are loaded on the insert notifications, while the polling fallback compares
+ * the checksum of the table, so the updated and deleted records are picked up even if their
+ * notification was missed. The active limits are stored as an immutable {@link Limits} snapshot
+ * behind an atomic reference, which is replaced by the switchover task scheduled exactly at the next
+ * effective date, so the readers never take a lock and the future limits are not applied too early.
+ *
+ * @author ishvatov
+ */
+@RequiredArgsConstructor
+public class LimitsCache {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(LimitsCache.class);
+
+    // service, which loads the limits from the database
+    private final TrafficService trafficService;
+
+    // scheduler of the switchover
+    private final ScheduledExecutorService scheduler;
+
+    // timeline of the limits, empty until the first successful refresh
+    private volatile LimitsTimeline timeline = LimitsTimeline.EMPTY;
+
+    // checksum of the table, which was read before the timeline, null until the first successful refresh
+    private String checksum;
+
+    // active snapshot of the limits, null until the first limits are effective
+    private final AtomicReference<Limits> limits = new AtomicReference<>();
+
+    // switchover to the next limits, null if there are no future limits
+    private ScheduledFuture<?> switchover;
+
+    /**
+     * Loads the records of the limits timeline, which were inserted after the last known one.
+     * If the number of the records differs from the expected one, the records were deleted and
+     * the whole timeline is reloaded. Concurrent refreshes (notification and polling fallback)
+     * are serialized, so an older timeline never replaces a newer one.
+     *
+     * @return active snapshot of the limits.
+     */
+    public synchronized Limits refresh() {
+        String fetched = trafficService.fetchTrafficLimitsChecksum();
+        LimitsTimeline current = timeline;
+        List<LimitsPerHourEntity> delta = trafficService.fetchTrafficLimitsSince(current.getLastId());
+        if (trafficService.countTrafficLimits() != current.getRecords() + delta.size()) {
+            return load(fetched);
+        }
+        checksum = fetched;
+        return publish(current.withRecords(delta));
+    }
+
+    /**
+     * Reloads the whole limits timeline, if the checksum of the table differs from the one of
+     * the current timeline, so any inserted, updated or deleted record is picked up. Used by the
+     * polling fallback, which does not know, what was changed.
+     *
+     * @return active snapshot of the limits.
+     */
+    public synchronized Limits poll() {
+        String fetched = trafficService.fetchTrafficLimitsChecksum();
+        if (fetched.equals(checksum)) {
+            return limits.get();
+        }
+        return load(fetched);
+    }
+
+    /**
+     * Loads the whole limits timeline, which is required after the records were changed or deleted.
+     *
+     * @return active snapshot of the limits.
+     */
+    public synchronized Limits reload() {
+        return load(trafficService.fetchTrafficLimitsChecksum());
+    }
+
+    /**
+     * @return active snapshot of the limits or null, if the limits are not fetched or not effective yet.
+     */
+    public Limits get() {
+        return limits.get();
+    }
+
+    /**
+     * @param timestampMillis time in milliseconds since epoch
+     * @return limits, which were or will be active at the provided time, or null, if there are no limits.
+     */
+    public Limits get(long timestampMillis) {
+        return timeline.resolve(timestampMillis);
+    }
+
+    /**
+     * @return current timeline of the limits.
+     */
+    public LimitsTimeline getTimeline() {
+        return timeline;
+    }
+
+    // the checksum is read before the records, so a change in between only causes one more reload
+    private Limits load(String fetched) {
+        Limits active = publish(LimitsTimeline.of(trafficService.fetchTrafficLimitsSince(0)));
+        checksum = fetched;
+        return active;
+    }
+
+    private Limits publish(LimitsTimeline fetched) {
+        if (fetched != timeline && !fetched.hasSameLimits(timeline)) {
+            LOGGER.info("Fetched limits timeline from database: {}!", fetched);
+        }
+        timeline = fetched;
+        return switchover();
+    }
+
+    private synchronized Limits switchover() {
+        long now = System.currentTimeMillis();
+        Limits active = timeline.resolve(now);
+        Limits previous = limits.getAndSet(active);
+        if (active != null && !active.equals(previous)) {
+            LOGGER.info("Limits switched to: {}!", active);
+        }
+
+        // the task may run a bit earlier than the wall clock, then it is rescheduled right away
+        if (switchover != null) {
+            switchover.cancel(false);
+        }
+        long next = timeline.nextChange(now);
+        switchover = next == LimitsTimeline.NO_CHANGE
+                ? null
+                : scheduler.schedule(this::switchover, next - now, TimeUnit.MILLISECONDS);
+        return active;
+    }
+}
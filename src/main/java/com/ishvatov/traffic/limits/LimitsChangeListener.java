@@ -0,0 +1,174 @@
+package com.ishvatov.traffic.limits;
+
+import com.ishvatov.traffic.rules.LimitRulesCache;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Listens to the PostgreSQL notifications, which are sent by the limits_per_hour_changed
+ * and limit_rules_changed triggers, and refreshes the {@link LimitsCache} and the
+ * {@link LimitRulesCache} as soon as the limits are changed.
+ * Inserted limits are loaded incrementally, other changes reload the whole limits timeline.
+ * Listener holds one dedicated database connection and reconnects after failures,
+ * the scheduled refresh is kept as a fallback for the missed notifications.
+ *
+ * @author ishvatov
+ */
+public class LimitsChangeListener {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(LimitsChangeListener.class);
+
+    // name of the listener thread
+    private static final String THREAD_NAME = "limits-listener";
+
+    /**
+     * Notification channel, which is hard-coded in the notify_limits_changed function of create_table.sql.
+     */
+    public static final String CHANNEL = "limits_changed";
+
+    // payloads of the notifications, sent by the triggers
+    private static final String LIMITS_TABLE = "limits_per_hour:";
+    private static final String LIMITS_INSERTED = LIMITS_TABLE + "insert";
+    private static final String RULES_TABLE = "limit_rules:";
+
+    // dependencies
+    private final DataSource dataSource;
+    private final LimitsCache limitsCache;
+    private final LimitRulesCache limitRulesCache;
+
+    // listener configuration
+    private final int timeoutMillis;
+    private final long reconnectMillis;
+
+    // listener state
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param dataSource      data source, from which the dedicated connection is taken
+     * @param limitsCache     cache, which is refreshed on each notification
+     * @param limitRulesCache cache of the rules, which is refreshed on each notification
+     * @param timeoutMillis   how long to wait for the notifications in one call
+     * @param reconnectMillis delay before the reconnection after a failure
+     */
+    public LimitsChangeListener(
+            DataSource dataSource,
+            LimitsCache limitsCache,
+            LimitRulesCache limitRulesCache,
+            int timeoutMillis,
+            long reconnectMillis
+    ) {
+        this.dataSource = dataSource;
+        this.limitsCache = limitsCache;
+        this.limitRulesCache = limitRulesCache;
+        this.timeoutMillis = timeoutMillis;
+        this.reconnectMillis = reconnectMillis;
+    }
+
+    /**
+     * Starts the listener daemon thread.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::listen, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the listener thread and waits for it to close the connection.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        thread.join(timeoutMillis + reconnectMillis);
+        thread = null;
+    }
+
+    /**
+     * @return true, if the listener thread is running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute(String.format("LISTEN %s", CHANNEL));
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                LOGGER.info("Listening to the limits changes on channel: {}", CHANNEL);
+
+                // notifications, sent while the listener was disconnected, are lost
+                refreshCache(false, true, true);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(timeoutMillis);
+                    if (notifications != null && notifications.length != 0) {
+                        boolean inserted = false;
+                        boolean changed = false;
+                        boolean rules = false;
+                        for (PGNotification notification : notifications) {
+                            String payload = notification.getParameter();
+                            if (LIMITS_INSERTED.equals(payload)) {
+                                inserted = true;
+                            } else if (payload.startsWith(RULES_TABLE)) {
+                                rules = true;
+                            } else {
+                                // updated or deleted limits, unknown payload refreshes everything
+                                changed = true;
+                                rules |= !payload.startsWith(LIMITS_TABLE);
+                            }
+                        }
+                        refreshCache(inserted, changed, rules);
+                    }
+                }
+            } catch (Exception ex) {
+                if (!running) {
+                    break;
+                }
+                LOGGER.error(String.format("Limits listener has failed, reconnecting: %s", ex.getMessage()), ex);
+                try {
+                    Thread.sleep(reconnectMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void refreshCache(boolean inserted, boolean changed, boolean rules) {
+        try {
+            if (changed) {
+                limitsCache.reload();
+            } else if (inserted) {
+                limitsCache.refresh();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error(String.format("Limits were not refreshed: %s", ex.getMessage()), ex);
+        }
+        if (!rules) {
+            return;
+        }
+        try {
+            limitRulesCache.refresh();
+        } catch (RuntimeException ex) {
+            LOGGER.error(String.format("Limit rules were not refreshed: %s", ex.getMessage()), ex);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.ishvatov.traffic.limits;
+
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable timeline of the traffic limits, built from all the records of the limits_per_hour
+ * table. Each record changes its limit from its effective_date on, so the limits at any time are
+ * the latest min and the latest max, which are effective at that time. The change points are
+ * precomputed into the sorted arrays, so the limits of any timestamp, live or replayed, are
+ * resolved by the binary search without the database.
+ * <p>
+ * Change points, at which only one of the limits is known or min is bigger than max, are
+ * skipped, so the previous limits stay active.
+ *
+ * @author ishvatov
+ */
+public final class LimitsTimeline {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(LimitsTimeline.class);
+
+    // names of the limits in the limits_per_hour table
+    private static final String MIN_LIMIT_NAME = "min";
+    private static final String MAX_LIMIT_NAME = "max";
+
+    /**
+     * Value of {@link #nextChange(long)}, if the limits do not change after the provided time.
+     */
+    public static final long NO_CHANGE = Long.MAX_VALUE;
+
+    /**
+     * Timeline without any limits.
+     */
+    public static final LimitsTimeline EMPTY = new LimitsTimeline(Collections.emptyList(), new long[0], new Limits[0]);
+
+    // records of the timeline ordered by id
+    private final List<LimitsPerHourEntity> records;
+
+    // effective dates of the change points in ascending order and the limits, which are active since them
+    private final long[] effectiveDates;
+    private final Limits[] limits;
+
+    private LimitsTimeline(List<LimitsPerHourEntity> records, long[] effectiveDates, Limits[] limits) {
+        this.records = records;
+        this.effectiveDates = effectiveDates;
+        this.limits = limits;
+    }
+
+    /**
+     * Builds the timeline of the records.
+     *
+     * @param records records of the limits_per_hour table
+     * @return new timeline.
+     */
+    public static LimitsTimeline of(List<LimitsPerHourEntity> records) {
+        if (records.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<LimitsPerHourEntity> byId = new ArrayList<>(records);
+        byId.sort(Comparator.comparingInt(LimitsPerHourEntity::getId));
+        List<LimitsPerHourEntity> byDate = new ArrayList<>(records);
+        byDate.sort(
+                Comparator.comparingLong((LimitsPerHourEntity record) -> record.getEffectiveDate().getTime())
+                        .thenComparingInt(LimitsPerHourEntity::getId)
+        );
+
+        long[] effectiveDates = new long[byDate.size()];
+        Limits[] limits = new Limits[byDate.size()];
+        int size = 0;
+        LimitsPerHourEntity min = null;
+        LimitsPerHourEntity max = null;
+        for (int i = 0; i < byDate.size(); i++) {
+            LimitsPerHourEntity record = byDate.get(i);
+            if (MIN_LIMIT_NAME.equals(record.getLimitName())) {
+                min = record;
+            } else if (MAX_LIMIT_NAME.equals(record.getLimitName())) {
+                max = record;
+            }
+
+            // all the records of the same effective date are applied at once
+            long effectiveDate = record.getEffectiveDate().getTime();
+            if (i + 1 < byDate.size() && byDate.get(i + 1).getEffectiveDate().getTime() == effectiveDate
+                    || min == null || max == null) {
+                continue;
+            }
+            if (min.getLimitValue() > max.getLimitValue()) {
+                LOGGER.warn("Limits since {} are skipped, min {} is bigger than max {}!",
+                        record.getEffectiveDate(), min.getLimitValue(), max.getLimitValue());
+                continue;
+            }
+            if (size != 0 && limits[size - 1].getMin() == min.getLimitValue()
+                    && limits[size - 1].getMax() == max.getLimitValue()) {
+                continue;
+            }
+            effectiveDates[size] = effectiveDate;
+            // the version is the id of the latest record of the limits, so it does not change on reload
+            limits[size] = new Limits(
+                    Math.max(min.getId(), max.getId()), min.getLimitValue(), max.getLimitValue(), effectiveDate
+            );
+            size++;
+        }
+        return new LimitsTimeline(
+                Collections.unmodifiableList(byId),
+                Arrays.copyOf(effectiveDates, size),
+                Arrays.copyOf(limits, size)
+        );
+    }
+
+    /**
+     * Builds the new timeline with the provided records, the records with the same
+     * id replace the existing ones.
+     *
+     * @param delta new or changed records
+     * @return new timeline or this one, if there are no records.
+     */
+    public LimitsTimeline withRecords(List<LimitsPerHourEntity> delta) {
+        if (delta.isEmpty()) {
+            return this;
+        }
+        Map<Integer, LimitsPerHourEntity> merged = new LinkedHashMap<>();
+        records.forEach(record -> merged.put(record.getId(), record));
+        delta.forEach(record -> merged.put(record.getId(), record));
+        return of(new ArrayList<>(merged.values()));
+    }
+
+    /**
+     * @param timestampMillis time in milliseconds since epoch
+     * @return limits, which are active at the provided time, or null, if there are no limits yet.
+     */
+    public Limits resolve(long timestampMillis) {
+        int index = Arrays.binarySearch(effectiveDates, timestampMillis);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? null : limits[index];
+    }
+
+    /**
+     * @param timestampMillis time in milliseconds since epoch
+     * @return the first effective date after the provided time or {@link #NO_CHANGE}.
+     */
+    public long nextChange(long timestampMillis) {
+        int index = Arrays.binarySearch(effectiveDates, timestampMillis);
+        index = index < 0 ? -index - 1 : index + 1;
+        return index < effectiveDates.length ? effectiveDates[index] : NO_CHANGE;
+    }
+
+    /**
+     * @return id of the last record or 0, if the timeline is empty.
+     */
+    public int getLastId() {
+        return records.isEmpty() ? 0 : records.get(records.size() - 1).getId();
+    }
+
+    /**
+     * @return number of the records, from which the timeline was built.
+     */
+    public int getRecords() {
+        return records.size();
+    }
+
+    /**
+     * @return number of the change points.
+     */
+    public int size() {
+        return limits.length;
+    }
+
+    /**
+     * @param other other timeline
+     * @return true, if both timelines have the same change points.
+     */
+    public boolean hasSameLimits(LimitsTimeline other) {
+        return Arrays.equals(limits, other.limits);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(limits);
+    }
+}
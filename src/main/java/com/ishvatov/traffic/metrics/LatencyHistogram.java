@@ -0,0 +1,180 @@
+package com.ishvatov.traffic.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Allocation-free latency recorder with the fixed relative precision, like HdrHistogram.
+ * Values below {@link #SUB_BUCKETS} nanoseconds have their own buckets, every next power
+ * of two range is split into {@link #SUB_BUCKETS} linear buckets, so the recorded value is
+ * known with the error below 1 / {@link #SUB_BUCKETS} (about 3%) from 1 ns up to hundreds of years.
+ * <p>
+ * Can be recorded from any number of threads. Readers see the values without any lock, so the
+ * count, the sum and the buckets of one read may be a few records apart.
+ *
+ * @author ishvatov
+ */
+public final class LatencyHistogram implements LatencyHistogramMXBean {
+    // number of the linear buckets in each power of two range and its logarithm
+    private static final int SUB_BUCKET_BITS = 5;
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // bucket of the values up to Long.MAX_VALUE
+    private static final int BUCKETS = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the latency, negative values are recorded as zero.
+     *
+     * @param nanos latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records the time, which has passed since the provided start.
+     *
+     * @param startNanos start time, taken with {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all the recorded values in nanoseconds.
+     */
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    @Override
+    public long getMeanNanos() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sum.sum() / recorded;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @param percentile percentile in range [0, 100].
+     * @return the highest value, which is equivalent to the value at the percentile, or 0, if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @param nanos value in nanoseconds.
+     * @return number of the recorded values at or below the provided value, the values of its own bucket,
+     * which are equivalent to it within the precision, are counted too.
+     */
+    public long getCountAtOrBelow(long nanos) {
+        return getCountsAtOrBelow(new long[]{nanos})[0];
+    }
+
+    /**
+     * Counts the values at or below every bound from one read of the buckets, so the counts never
+     * decrease with the bound and never exceed the total, even while the values are being recorded.
+     *
+     * @param bounds values in nanoseconds in ascending order.
+     * @return number of the recorded values at or below every bound, see {@link #getCountAtOrBelow(long)},
+     * followed by the total number of the read values.
+     */
+    public long[] getCountsAtOrBelow(long[] bounds) {
+        long[] counts = new long[bounds.length + 1];
+        long counted = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            while (bound < bounds.length && bounds[bound] < lowestValueOf(i)) {
+                counts[bound++] = counted;
+            }
+            counted += buckets.get(i);
+        }
+        while (bound < bounds.length) {
+            counts[bound++] = counted;
+        }
+        counts[bounds.length] = counted;
+        return counts;
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long lowestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        // the last bucket ends at 2^63, so its highest value overflows exactly into Long.MAX_VALUE
+        return ((long) (bucket % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,31 @@
+package com.ishvatov.traffic.metrics;
+
+/**
+ * JMX view of the {@link LatencyHistogram}, all the values are cumulative since the start.
+ *
+ * @author ishvatov
+ */
+public interface LatencyHistogramMXBean {
+    /**
+     * @return number of the recorded values.
+     */
+    long getCount();
+
+    /**
+     * @return mean of the recorded values in nanoseconds.
+     */
+    long getMeanNanos();
+
+    /**
+     * @return maximum of the recorded values in nanoseconds.
+     */
+    long getMaxNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+}
@@ -0,0 +1,25 @@
+package com.ishvatov.traffic.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the counter or gauge of the {@link MetricsRegistry}.
+ *
+ * @author ishvatov
+ */
+public interface MetricMXBean {
+    /**
+     * @return description of the metric.
+     */
+    String getHelp();
+
+    /**
+     * @return value of the metric or the sum of the values of all the labels.
+     */
+    long getValue();
+
+    /**
+     * @return values of the metric by label, empty for the metric without the label.
+     */
+    Map<String, Long> getValues();
+}
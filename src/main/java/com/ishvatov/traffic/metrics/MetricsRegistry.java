@@ -0,0 +1,301 @@
+package com.ishvatov.traffic.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the runtime metrics: latency histograms and counters or gauges, whose values
+ * are read from the existing components only when the metrics are exported, so the hot path
+ * keeps its own counters and pays nothing for the export. Metrics are exported as JMX MBeans
+ * of the {@value #JMX_DOMAIN} domain and in the Prometheus text format.
+ *
+ * @author ishvatov
+ */
+public class MetricsRegistry {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    // domain of the registered MBeans
+    public static final String JMX_DOMAIN = "com.ishvatov.traffic";
+
+    // upper bounds of the exported histogram buckets in nanoseconds, from 1 us up to 10 s
+    private static final long[] BUCKET_BOUNDS = {
+            1_000L, 5_000L,
+            10_000L, 50_000L,
+            100_000L, 500_000L,
+            1_000_000L, 5_000_000L,
+            10_000_000L, 50_000_000L,
+            100_000_000L, 500_000_000L,
+            1_000_000_000L, 5_000_000_000L,
+            10_000_000_000L
+    };
+
+    /**
+     * Type of the metric in the Prometheus exposition format.
+     */
+    public enum Type {
+        // monotonic value, e.g. number of the packets
+        COUNTER,
+        // value, which goes up and down, e.g. queue depth
+        GAUGE
+    }
+
+    // metrics by name in the registration order
+    private final Map<String, Metric> metrics = new LinkedHashMap<>();
+
+    // names of the registered MBeans
+    private final List<ObjectName> mbeans = new ArrayList<>();
+
+    /**
+     * Creates and registers the new latency histogram.
+     *
+     * @param name name of the metric, should end with _seconds.
+     * @param help description of the metric.
+     * @return new histogram.
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        register(name, help, histogram);
+        return histogram;
+    }
+
+    /**
+     * Registers the existing latency histogram.
+     *
+     * @param name      name of the metric, should end with _seconds.
+     * @param help      description of the metric.
+     * @param histogram histogram.
+     */
+    public void register(String name, String help, LatencyHistogram histogram) {
+        add(new HistogramMetric(name, help, histogram));
+    }
+
+    /**
+     * Registers the counter, whose value is read on the export.
+     *
+     * @param name  name of the metric, should end with _total.
+     * @param help  description of the metric.
+     * @param value supplier of the cumulative value.
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        add(new ValueMetric(name, help, Type.COUNTER, null, () -> Collections.singletonMap(null, value.getAsLong())));
+    }
+
+    /**
+     * Registers the gauge, whose value is read on the export.
+     *
+     * @param name  name of the metric.
+     * @param help  description of the metric.
+     * @param value supplier of the current value.
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        add(new ValueMetric(name, help, Type.GAUGE, null, () -> Collections.singletonMap(null, value.getAsLong())));
+    }
+
+    /**
+     * Registers the metric with one value per label, e.g. per capture interface.
+     *
+     * @param name   name of the metric.
+     * @param help   description of the metric.
+     * @param type   type of the metric.
+     * @param label  name of the label.
+     * @param values supplier of the values by label value.
+     */
+    public void labeled(String name, String help, Type type, String label, Supplier<Map<String, Long>> values) {
+        add(new ValueMetric(name, help, type, label, values));
+    }
+
+    /**
+     * @return all the metrics in the Prometheus text exposition format, version 0.0.4.
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder(4096);
+        for (Metric metric : snapshot()) {
+            builder.append("# HELP ").append(metric.name).append(' ').append(escapeHelp(metric.help)).append('\n');
+            metric.write(builder);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Registers every metric as the MBean of the {@value #JMX_DOMAIN} domain, histograms are
+     * registered with type=Latency, other metrics with type=Metric.
+     *
+     * @param server MBean server, usually the platform one.
+     */
+    public synchronized void registerMBeans(MBeanServer server) {
+        for (Metric metric : metrics.values()) {
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=" + metric.jmxType() + ",name=" + metric.name);
+                ObjectName registered = server.registerMBean(metric.mbean(), name).getObjectName();
+                mbeans.add(registered);
+            } catch (JMException ex) {
+                LOGGER.warn("Metric {} was not registered in JMX: {}", metric.name, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Unregisters all the MBeans, which were registered by this registry.
+     *
+     * @param server MBean server, which was used during the registration.
+     */
+    public synchronized void unregisterMBeans(MBeanServer server) {
+        for (ObjectName name : mbeans) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException ex) {
+                LOGGER.warn("MBean {} was not unregistered: {}", name, ex.getMessage());
+            }
+        }
+        mbeans.clear();
+    }
+
+    private synchronized void add(Metric metric) {
+        if (metrics.putIfAbsent(metric.name, metric) != null) {
+            throw new IllegalArgumentException(String.format("Metric %s is already registered", metric.name));
+        }
+    }
+
+    private synchronized List<Metric> snapshot() {
+        return new ArrayList<>(metrics.values());
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabel(String value) {
+        return escapeHelp(value).replace("\"", "\\\"");
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString((double) nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Registered metric.
+     */
+    private abstract static class Metric {
+        final String name;
+        final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        abstract void write(StringBuilder builder);
+
+        abstract String jmxType();
+
+        abstract StandardMBean mbean();
+    }
+
+    /**
+     * Latency histogram, exported as the Prometheus histogram in seconds.
+     */
+    private static final class HistogramMetric extends Metric {
+        private final LatencyHistogram histogram;
+
+        HistogramMetric(String name, String help, LatencyHistogram histogram) {
+            super(name, help);
+            this.histogram = histogram;
+        }
+
+        @Override
+        void write(StringBuilder builder) {
+            builder.append("# TYPE ").append(name).append(" histogram\n");
+            long[] counts = histogram.getCountsAtOrBelow(BUCKET_BOUNDS);
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                builder.append(name).append("_bucket{le=\"").append(seconds(BUCKET_BOUNDS[i])).append("\"} ")
+                        .append(counts[i]).append('\n');
+            }
+            // the +Inf bucket and the count are the sum of the same buckets, so they are never below the other ones
+            long count = counts[BUCKET_BOUNDS.length];
+            builder.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+            builder.append(name).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+            builder.append(name).append("_count ").append(count).append('\n');
+        }
+
+        @Override
+        String jmxType() {
+            return "Latency";
+        }
+
+        @Override
+        StandardMBean mbean() {
+            return new StandardMBean(histogram, LatencyHistogramMXBean.class, true);
+        }
+    }
+
+    /**
+     * Counter or gauge with the optional label.
+     */
+    private static final class ValueMetric extends Metric implements MetricMXBean {
+        private final Type type;
+        private final String label;
+        private final Supplier<Map<String, Long>> values;
+
+        ValueMetric(String name, String help, Type type, String label, Supplier<Map<String, Long>> values) {
+            super(name, help);
+            this.type = type;
+            this.label = label;
+            this.values = values;
+        }
+
+        @Override
+        void write(StringBuilder builder) {
+            builder.append("# TYPE ").append(name).append(' ').append(type.name().toLowerCase()).append('\n');
+            for (Map.Entry<String, Long> value : values.get().entrySet()) {
+                builder.append(name);
+                if (label != null) {
+                    builder.append('{').append(label).append("=\"").append(escapeLabel(value.getKey())).append("\"}");
+                }
+                builder.append(' ').append(value.getValue()).append('\n');
+            }
+        }
+
+        @Override
+        String jmxType() {
+            return "Metric";
+        }
+
+        @Override
+        StandardMBean mbean() {
+            return new StandardMBean(this, MetricMXBean.class, true);
+        }
+
+        @Override
+        public String getHelp() {
+            return help;
+        }
+
+        @Override
+        public long getValue() {
+            long sum = 0;
+            for (long value : values.get().values()) {
+                sum += value;
+            }
+            return sum;
+        }
+
+        @Override
+        public Map<String, Long> getValues() {
+            return label == null ? Collections.emptyMap() : values.get();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.ishvatov.traffic.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal HTTP endpoint, which serves the metrics of the {@link MetricsRegistry} in the
+ * Prometheus text format at {@value #PATH}. Built on the HTTP server of the JDK, so the
+ * application does not need the web stack: requests are served one by one by the single
+ * server thread, which is enough for the periodic scrapes.
+ *
+ * @author ishvatov
+ */
+public class PrometheusEndpoint {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusEndpoint.class);
+
+    // path of the metrics and their content type
+    public static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final String address;
+    private final int port;
+
+    // running server, null if the endpoint is stopped
+    private HttpServer server;
+
+    /**
+     * @param registry registry of the exported metrics
+     * @param address  address to bind, empty for the wildcard address
+     * @param port     port to bind, 0 for any free port
+     */
+    public PrometheusEndpoint(MetricsRegistry registry, String address, int port) {
+        this.registry = registry;
+        this.address = address;
+        this.port = port;
+    }
+
+    /**
+     * Starts serving the metrics.
+     *
+     * @throws IOException if the address can not be bound.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        InetSocketAddress socketAddress = address.isEmpty()
+                ? new InetSocketAddress(port)
+                : new InetSocketAddress(address, port);
+        server = HttpServer.create(socketAddress, 0);
+        server.createContext(PATH, this::handle);
+        server.start();
+        LOGGER.info("Prometheus metrics are served at {}{}", server.getAddress(), PATH);
+    }
+
+    /**
+     * Stops the server, the current scrape is given a second to complete.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            server = null;
+        }
+    }
+
+    /**
+     * @return port of the running server or -1, if the endpoint is stopped.
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error(String.format("Metrics were not scraped: %s", ex.getMessage()), ex);
+            // the status can not be changed, once the headers are sent
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.ishvatov.traffic.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Basic hibernate entity, which represents the records, that are
+ * stored in the limit_rules table.
+ *
+ * @author ishvatov
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "limit_rules")
+public class LimitRuleEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private int id;
+
+    @Column(name = "rule_name")
+    private String ruleName;
+
+    @Column(name = "network")
+    private String network;
+
+    @Column(name = "port_from")
+    private int portFrom;
+
+    @Column(name = "port_to")
+    private int portTo;
+
+    @Column(name = "min_value")
+    private long minValue;
+
+    @Column(name = "max_value")
+    private long maxValue;
+
+    @Column(name = "enabled")
+    private boolean enabled;
+
+    @Column(name = "effective_date")
+    private Date effectiveDate;
+}
@@ -17,7 +17,10 @@ import java.util.Date;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "limits_per_hour")
+@Table(
+        name = "limits_per_hour",
+        indexes = @Index(name = "limits_per_hour_effective_date_idx", columnList = "effective_date")
+)
 public class LimitsPerHourEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,73 @@
+package com.ishvatov.traffic.model.repository;
+
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+
+/**
+ * Reads the limits and the limit rules with the plain JDBC queries. Used by the fast start,
+ * where Hibernate and the JPA repositories are not initialized at all, because the application
+ * only reads a few small tables, which are created by the create_table.sql script.
+ *
+ * @author ishvatov
+ */
+@RequiredArgsConstructor
+public class JdbcLimitsReader implements LimitsPerHourReader, LimitRuleReader {
+    // queries of the records
+    private static final String LIMITS_SINCE_QUERY = "select id, limit_name, limit_value, effective_date\n" +
+            "from limits_per_hour\n" +
+            "where id > ?\n" +
+            "order by id";
+    private static final String LIMITS_COUNT_QUERY = "select count(*) from limits_per_hour";
+    private static final String ENABLED_RULES_QUERY = "select id, rule_name, network, port_from, port_to, " +
+            "min_value, max_value, enabled, effective_date\n" +
+            "from limit_rules\n" +
+            "where enabled\n" +
+            "order by id";
+
+    // mappers of the rows
+    private static final RowMapper<LimitsPerHourEntity> LIMITS_MAPPER = (rs, rowNum) -> new LimitsPerHourEntity(
+            rs.getInt("id"),
+            rs.getString("limit_name"),
+            rs.getInt("limit_value"),
+            rs.getTimestamp("effective_date")
+    );
+    private static final RowMapper<LimitRuleEntity> RULE_MAPPER = (rs, rowNum) -> new LimitRuleEntity(
+            rs.getInt("id"),
+            rs.getString("rule_name"),
+            rs.getString("network"),
+            rs.getInt("port_from"),
+            rs.getInt("port_to"),
+            rs.getLong("min_value"),
+            rs.getLong("max_value"),
+            rs.getBoolean("enabled"),
+            rs.getTimestamp("effective_date")
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public String findChecksum() {
+        return jdbcTemplate.queryForObject(CHECKSUM_QUERY, String.class);
+    }
+
+    @Override
+    public List<LimitsPerHourEntity> findByIdGreaterThanOrderById(int id) {
+        return jdbcTemplate.query(LIMITS_SINCE_QUERY, LIMITS_MAPPER, id);
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbcTemplate.queryForObject(LIMITS_COUNT_QUERY, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public List<LimitRuleEntity> findByEnabledTrueOrderById() {
+        return jdbcTemplate.query(ENABLED_RULES_QUERY, RULE_MAPPER);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ishvatov.traffic.model.repository;
+
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
+
+import java.util.List;
+
+/**
+ * Read-only access to the limit_rules table, which is needed by the application.
+ * Implemented by the JPA {@link LimitRuleRepository} and by the thin {@link JdbcLimitsReader}.
+ *
+ * @author ishvatov
+ */
+public interface LimitRuleReader {
+    /**
+     * Fetches all the enabled rules.
+     *
+     * @return list of {@link LimitRuleEntity} entities ordered by id.
+     */
+    List<LimitRuleEntity> findByEnabledTrueOrderById();
+}
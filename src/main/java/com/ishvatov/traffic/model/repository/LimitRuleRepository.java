@@ -0,0 +1,23 @@
+package com.ishvatov.traffic.model.repository;
+
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JPA repository, which is used to manipulate data from limit_rules table.
+ *
+ * @author ishvatov
+ */
+@Repository
+public interface LimitRuleRepository extends JpaRepository<LimitRuleEntity, Integer>, LimitRuleReader {
+    /**
+     * Fetches all the enabled rules.
+     *
+     * @return list of {@link LimitRuleEntity} entities ordered by id.
+     */
+    @Override
+    List<LimitRuleEntity> findByEnabledTrueOrderById();
+}
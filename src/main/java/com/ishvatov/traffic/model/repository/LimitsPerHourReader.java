@@ -0,0 +1,39 @@
+package com.ishvatov.traffic.model.repository;
+
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+
+import java.util.List;
+
+/**
+ * Read-only access to the limits_per_hour table, which is needed by the application.
+ * Implemented by the JPA {@link LimitsPerHourRepository} and by the thin {@link JdbcLimitsReader},
+ * which does not need Hibernate.
+ *
+ * @author ishvatov
+ */
+public interface LimitsPerHourReader {
+    /**
+     * Query, which fetches the checksum of all the records of the table. Any inserted, updated
+     * or deleted record changes it, while the table is only read and not transferred.
+     */
+    String CHECKSUM_QUERY = "select md5(coalesce(string_agg(limits_per_hour::text, ',' order by id), ''))\n" +
+            "from limits_per_hour";
+
+    /**
+     * @return checksum of all the records of the table.
+     */
+    String findChecksum();
+
+    /**
+     * Fetches the records of the limits timeline, which were inserted after the provided id.
+     *
+     * @param id id of the last known record, 0 to fetch the whole timeline
+     * @return list of {@link LimitsPerHourEntity} entities ordered by id.
+     */
+    List<LimitsPerHourEntity> findByIdGreaterThanOrderById(int id);
+
+    /**
+     * @return number of the records in the table.
+     */
+    long count();
+}
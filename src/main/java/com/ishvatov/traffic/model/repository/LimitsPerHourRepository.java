@@ -5,7 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.List;
 
 /**
  * JPA repository, which is used to manipulate data from limits_per_hour table.
@@ -13,34 +13,20 @@ import java.util.Optional;
  * @author ishvatov
  */
 @Repository
-public interface LimitsPerHourRepository extends JpaRepository<LimitsPerHourEntity, String> {
+public interface LimitsPerHourRepository extends JpaRepository<LimitsPerHourEntity, String>, LimitsPerHourReader {
     /**
-     * Fetches all the records from the table limits_per_hour where effective_date
-     * column has the maximum value and limit_name is max, limited by 1.
-     *
-     * @return {@link LimitsPerHourEntity} entity.
+     * @return checksum of all the records of the table.
      */
-    @Query(
-            nativeQuery = true,
-            value = "select *\n" +
-                    "from limits_per_hour\n" +
-                    "where effective_date = (select max(effective_date) from limits_per_hour)" +
-                    "and limit_name = 'max' limit 1"
-    )
-    Optional<LimitsPerHourEntity> findMaximumLimit();
+    @Override
+    @Query(nativeQuery = true, value = CHECKSUM_QUERY)
+    String findChecksum();
 
     /**
-     * Fetches all the records from the table limits_per_hour where effective_date
-     * column has the maximum value and limit_name is min, limited by 1.
+     * Fetches the records of the limits timeline, which were inserted after the provided id.
      *
-     * @return {@link LimitsPerHourEntity} entity.
+     * @param id id of the last known record, 0 to fetch the whole timeline
+     * @return list of {@link LimitsPerHourEntity} entities ordered by id.
      */
-    @Query(
-            nativeQuery = true,
-            value = "select *\n" +
-                    "from limits_per_hour\n" +
-                    "where effective_date = (select max(effective_date) from limits_per_hour)" +
-                    "and limit_name = 'min' limit 1"
-    )
-    Optional<LimitsPerHourEntity> findMinimumLimit();
+    @Override
+    List<LimitsPerHourEntity> findByIdGreaterThanOrderById(int id);
 }
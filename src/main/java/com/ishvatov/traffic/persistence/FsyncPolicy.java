@@ -0,0 +1,19 @@
+package com.ishvatov.traffic.persistence;
+
+/**
+ * When the writes into the memory-mapped files are forced to the disk. Every write is in the
+ * page cache right away, so it survives the crash of the process with any policy, the policy
+ * defines, what survives the crash of the operating system or the power loss.
+ *
+ * @author ishvatov
+ */
+public enum FsyncPolicy {
+    // every write is forced, costs a disk flush per write
+    ALWAYS,
+
+    // writes are forced with the checkpoint interval
+    PERIODIC,
+
+    // writes are flushed by the operating system
+    NEVER
+}
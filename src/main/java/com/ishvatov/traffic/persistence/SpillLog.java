@@ -0,0 +1,288 @@
+package com.ishvatov.traffic.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the entries in a memory-mapped file of the fixed size, which is read in the
+ * order of the appends. The file is a ring: the header keeps the read and the write positions, every
+ * entry is its length, checksum and content, and the entry, which does not fit before the end of the
+ * file, is written at the start of the data after the zero length marker. The entry is written before
+ * the header, so after a crash the log contains every entry, which was appended completely; the entry,
+ * which does not match its checksum, clears the log, because the following positions can not be trusted.
+ * <p>
+ * The log is bounded: the entry, which does not fit into the free space, is rejected.
+ *
+ * @author ishvatov
+ */
+public class SpillLog implements Closeable {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillLog.class);
+
+    // format of the file
+    private static final int MAGIC = 0x54534c47;
+    private static final int VERSION = 1;
+
+    // offsets of the header fields
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int READ_OFFSET = 16;
+    private static final int WRITE_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int DATA_OFFSET = 64;
+
+    // length and checksum of the entry
+    private static final int ENTRY_HEADER_BYTES = 8;
+
+    private final Path path;
+    private final int capacity;
+    private final FsyncPolicy fsyncPolicy;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // positions of the next entry to read and to write, number of the entries
+    private int readPosition;
+    private int writePosition;
+    private int count;
+
+    // true, if there are writes, which are not forced yet
+    private boolean dirty;
+
+    /**
+     * @param path        path of the log file
+     * @param capacity    size of the log file in bytes
+     * @param fsyncPolicy when the appended entries are forced to the disk
+     */
+    public SpillLog(Path path, int capacity, FsyncPolicy fsyncPolicy) {
+        if (capacity <= DATA_OFFSET + ENTRY_HEADER_BYTES) {
+            throw new IllegalArgumentException(String.format("Invalid spill log capacity %s bytes!", capacity));
+        }
+        this.path = path;
+        this.capacity = capacity;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    /**
+     * Maps the log file and recovers its entries, creates the file, if it does not exist.
+     * The entries of the file of another size are discarded.
+     *
+     * @throws IOException if the file can not be created or mapped.
+     */
+    public synchronized void open() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() > capacity) {
+            channel.truncate(capacity);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        readPosition = buffer.getInt(READ_OFFSET);
+        writePosition = buffer.getInt(WRITE_OFFSET);
+        count = buffer.getInt(COUNT_OFFSET);
+        boolean valid = buffer.getInt(MAGIC_OFFSET) == MAGIC
+                && buffer.getInt(VERSION_OFFSET) == VERSION
+                && buffer.getInt(CAPACITY_OFFSET) == capacity
+                && isPosition(readPosition)
+                && isPosition(writePosition)
+                && count >= 0;
+        if (!valid) {
+            if (buffer.getInt(MAGIC_OFFSET) == MAGIC) {
+                LOGGER.warn("Spill log {} does not match the configuration, its entries are discarded!", path);
+            }
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            clear();
+        }
+        LOGGER.info("Spill log {} is opened with {} entries", path, count);
+    }
+
+    public synchronized boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+     * Appends the entry to the end of the log.
+     *
+     * @param entry content of the entry, not empty
+     * @return true, if the entry was appended, false, if the log is full or not open.
+     */
+    public synchronized boolean append(byte[] entry) {
+        if (entry.length == 0) {
+            throw new IllegalArgumentException("Empty entry can not be appended to the spill log!");
+        }
+        if (buffer == null) {
+            return false;
+        }
+
+        int size = ENTRY_HEADER_BYTES + entry.length;
+        int position;
+        if (writePosition >= readPosition && capacity - writePosition >= size) {
+            position = writePosition;
+        } else if (writePosition >= readPosition && DATA_OFFSET + size < readPosition) {
+            // the read position is never reached by the write one, so that the full log differs from the empty one
+            if (capacity - writePosition >= Integer.BYTES) {
+                buffer.putInt(writePosition, 0);
+            }
+            position = DATA_OFFSET;
+        } else if (writePosition < readPosition && writePosition + size < readPosition) {
+            position = writePosition;
+        } else {
+            return false;
+        }
+
+        buffer.putInt(position + Integer.BYTES, (int) checksum(entry));
+        ByteBuffer content = buffer.duplicate();
+        content.position(position + ENTRY_HEADER_BYTES);
+        content.put(entry);
+        buffer.putInt(position, entry.length);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force();
+        }
+
+        writePosition = position + size;
+        count++;
+        writeHeader();
+        return true;
+    }
+
+    /**
+     * @return content of the oldest entry, or null, if the log is empty or not open.
+     */
+    public synchronized byte[] peek() {
+        if (buffer == null || count == 0) {
+            return null;
+        }
+
+        int position = entryPosition();
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > capacity - position - ENTRY_HEADER_BYTES) {
+            return corrupted(position);
+        }
+        byte[] entry = new byte[length];
+        ByteBuffer content = buffer.duplicate();
+        content.position(position + ENTRY_HEADER_BYTES);
+        content.get(entry);
+        if ((int) checksum(entry) != buffer.getInt(position + Integer.BYTES)) {
+            return corrupted(position);
+        }
+        return entry;
+    }
+
+    /**
+     * Removes the oldest entry, which was returned by the {@link #peek()}.
+     */
+    public synchronized void remove() {
+        if (buffer == null || count == 0) {
+            return;
+        }
+
+        int position = entryPosition();
+        readPosition = position + ENTRY_HEADER_BYTES + buffer.getInt(position);
+        count--;
+        if (count == 0) {
+            // start from the beginning, so that the next entries are not wrapped
+            readPosition = DATA_OFFSET;
+            writePosition = DATA_OFFSET;
+        }
+        writeHeader();
+    }
+
+    /**
+     * @return number of the entries in the log.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Forces the log to the disk, if it is forced periodically.
+     */
+    public synchronized void sync() {
+        if (fsyncPolicy == FsyncPolicy.PERIODIC && buffer != null && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Forces the log, unless the policy is {@link FsyncPolicy#NEVER}, and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            buffer.force();
+        }
+        buffer = null;
+        channel.close();
+        channel = null;
+    }
+
+    /**
+     * @return position of the oldest entry, after the wrap marker, if there is one.
+     */
+    private int entryPosition() {
+        if (capacity - readPosition < ENTRY_HEADER_BYTES || buffer.getInt(readPosition) == 0) {
+            return DATA_OFFSET;
+        }
+        return readPosition;
+    }
+
+    private byte[] corrupted(int position) {
+        LOGGER.error("Spill log {} is corrupted at {}, {} entries are discarded!", path, position, count);
+        clear();
+        return null;
+    }
+
+    private void clear() {
+        readPosition = DATA_OFFSET;
+        writePosition = DATA_OFFSET;
+        count = 0;
+        writeHeader();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(READ_OFFSET, readPosition);
+        buffer.putInt(WRITE_OFFSET, writePosition);
+        buffer.putInt(COUNT_OFFSET, count);
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    private boolean isPosition(int position) {
+        return position >= DATA_OFFSET && position <= capacity;
+    }
+
+    private static long checksum(byte[] entry) {
+        CRC32 crc = new CRC32();
+        crc.update(entry, 0, entry.length);
+        return crc.getValue();
+    }
+}
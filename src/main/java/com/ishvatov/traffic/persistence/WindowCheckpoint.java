@@ -0,0 +1,223 @@
+package com.ishvatov.traffic.persistence;
+
+import com.ishvatov.traffic.capture.WindowState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint of the {@link WindowState} in a memory-mapped file. The file has two slots of the fixed
+ * layout, which are written in turn with the absolute puts, so a checkpoint costs a copy of the window
+ * into the page cache and nothing else. Each slot ends with the checksum of its content, so if the
+ * process or the system crashes during the write, the torn slot is ignored and the previous
+ * checkpoint is restored.
+ *
+ * @author ishvatov
+ */
+public class WindowCheckpoint implements Closeable {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(WindowCheckpoint.class);
+
+    // format of the slot
+    private static final int MAGIC = 0x54574350;
+    private static final int VERSION = 1;
+
+    // offsets of the fields in the slot
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int SAVED_AT_OFFSET = 16;
+    private static final int BUCKET_NANOS_OFFSET = 24;
+    private static final int FIRST_SLOT_OFFSET = 32;
+    private static final int CURRENT_SLOT_OFFSET = 40;
+    private static final int COUNT_OFFSET = 48;
+    private static final int VALUES_OFFSET = 56;
+
+    private static final int SLOTS = 2;
+
+    private final Path path;
+    private final int valueCount;
+    private final FsyncPolicy fsyncPolicy;
+
+    // size of one slot: header, values and checksum
+    private final int slotBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    // sequence of the latest valid checkpoint
+    private long sequence;
+
+    // true, if there are writes, which are not forced yet
+    private boolean dirty;
+
+    /**
+     * @param path        path of the checkpoint file
+     * @param valueCount  number of the values of the window state
+     * @param fsyncPolicy when the checkpoints are forced to the disk
+     */
+    public WindowCheckpoint(Path path, int valueCount, FsyncPolicy fsyncPolicy) {
+        if (valueCount <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid checkpoint value count %s!", valueCount));
+        }
+        this.path = path;
+        this.valueCount = valueCount;
+        this.fsyncPolicy = fsyncPolicy;
+        this.slotBytes = VALUES_OFFSET + valueCount * Long.BYTES + Long.BYTES;
+    }
+
+    /**
+     * Maps the checkpoint file, creates it, if it does not exist.
+     *
+     * @throws IOException if the file can not be created or mapped.
+     */
+    public synchronized void open() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slotBytes * SLOTS);
+        int latest = latestSlot();
+        sequence = latest < 0 ? 0 : buffer.getLong(latest + SEQUENCE_OFFSET);
+        LOGGER.info("Window checkpoint {} is opened", path);
+    }
+
+    public synchronized boolean isOpen() {
+        return buffer != null;
+    }
+
+    /**
+     * Writes the state into the older slot. Does nothing, if the checkpoint is not open.
+     *
+     * @param state           state of the window
+     * @param timestampMillis time of the checkpoint, milliseconds since epoch
+     */
+    public synchronized void write(WindowState state, long timestampMillis) {
+        if (buffer == null) {
+            return;
+        }
+        long[] values = state.getValues();
+        if (values.length != valueCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Window state of %s values does not fit the checkpoint of %s values!", values.length, valueCount
+            ));
+        }
+
+        long next = sequence + 1;
+        int base = (int) (next % SLOTS) * slotBytes;
+        buffer.putInt(base + MAGIC_OFFSET, MAGIC);
+        buffer.putInt(base + VERSION_OFFSET, VERSION);
+        buffer.putLong(base + SEQUENCE_OFFSET, next);
+        buffer.putLong(base + SAVED_AT_OFFSET, timestampMillis);
+        buffer.putLong(base + BUCKET_NANOS_OFFSET, state.getBucketNanos());
+        buffer.putLong(base + FIRST_SLOT_OFFSET, state.getFirstSlot());
+        buffer.putLong(base + CURRENT_SLOT_OFFSET, state.getCurrentSlot());
+        buffer.putInt(base + COUNT_OFFSET, valueCount);
+        for (int i = 0; i < valueCount; i++) {
+            buffer.putLong(base + VALUES_OFFSET + i * Long.BYTES, values[i]);
+        }
+        buffer.putLong(base + slotBytes - Long.BYTES, checksum(base));
+        sequence = next;
+
+        dirty = true;
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            force();
+        }
+    }
+
+    /**
+     * @return state of the latest valid checkpoint, or null, if there is none or the checkpoint is not open.
+     */
+    public synchronized WindowState read() {
+        if (buffer == null) {
+            return null;
+        }
+        int base = latestSlot();
+        if (base < 0) {
+            return null;
+        }
+
+        long[] values = new long[valueCount];
+        for (int i = 0; i < valueCount; i++) {
+            values[i] = buffer.getLong(base + VALUES_OFFSET + i * Long.BYTES);
+        }
+        LOGGER.info("Window checkpoint, saved at {}, is read", new Date(buffer.getLong(base + SAVED_AT_OFFSET)));
+        return new WindowState(
+                buffer.getLong(base + BUCKET_NANOS_OFFSET),
+                buffer.getLong(base + FIRST_SLOT_OFFSET),
+                buffer.getLong(base + CURRENT_SLOT_OFFSET),
+                values
+        );
+    }
+
+    /**
+     * Forces the checkpoints to the disk, if they are forced periodically.
+     */
+    public synchronized void sync() {
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            force();
+        }
+    }
+
+    /**
+     * Forces the checkpoints, unless the policy is {@link FsyncPolicy#NEVER}, and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            force();
+        }
+        buffer = null;
+        channel.close();
+        channel = null;
+    }
+
+    private void force() {
+        if (buffer != null && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * @return offset of the valid slot with the highest sequence, or -1, if no slot is valid.
+     */
+    private int latestSlot() {
+        int latest = -1;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            int base = slot * slotBytes;
+            boolean valid = buffer.getInt(base + MAGIC_OFFSET) == MAGIC
+                    && buffer.getInt(base + VERSION_OFFSET) == VERSION
+                    && buffer.getInt(base + COUNT_OFFSET) == valueCount
+                    && buffer.getLong(base + slotBytes - Long.BYTES) == checksum(base);
+            if (valid && (latest < 0 || buffer.getLong(base + SEQUENCE_OFFSET) > buffer.getLong(latest + SEQUENCE_OFFSET))) {
+                latest = base;
+            }
+        }
+        return latest;
+    }
+
+    private long checksum(int base) {
+        ByteBuffer content = buffer.duplicate();
+        content.position(base).limit(base + slotBytes - Long.BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
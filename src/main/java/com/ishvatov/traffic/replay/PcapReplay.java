@@ -0,0 +1,117 @@
+package com.ishvatov.traffic.replay;
+
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketRingBuffer;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PacketListener;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapPacket;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Replays the offline capture files through the {@link PacketHandler} as fast as possible.
+ * Packets are handled synchronously in the reading thread as worker 0, so the capture
+ * pipeline must not run during the replay. Time is taken from the packet timestamps: the
+ * evaluator is called before the first packet, each time the packets cross the evaluation
+ * period boundary and after the last packet, so the result of the replay is deterministic.
+ *
+ * @author ishvatov
+ */
+public class PcapReplay implements PacketListener {
+    // replay constants
+    private static final int WORKER = 0;
+    private static final int INFINITE_PACKET_NUMBER = -1;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // dependencies
+    private final PacketHandler handler;
+    private final LongConsumer evaluator;
+    private final long evaluateNanos;
+
+    // timestamp of the next evaluation, zero before the first packet
+    private long nextEvaluation;
+    private long lastEvaluation;
+
+    // statistics of the replay
+    private long packets;
+    private long bytes;
+    private long evaluations;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long elapsedNanos;
+
+    /**
+     * @param handler       handler of the packets
+     * @param evaluator     called with the timestamp in nanoseconds since epoch at each evaluation
+     * @param evaluateNanos evaluation period in the packet time
+     */
+    public PcapReplay(PacketHandler handler, LongConsumer evaluator, long evaluateNanos) {
+        this.handler = handler;
+        this.evaluator = evaluator;
+        this.evaluateNanos = evaluateNanos;
+    }
+
+    /**
+     * Replays all the packets of the opened offline handle. Files must be replayed
+     * in the chronological order.
+     *
+     * @param handle offline pcap handle
+     * @throws PcapNativeException  if the file can not be read
+     * @throws NotOpenException     if the handle is closed
+     * @throws InterruptedException if the replay is interrupted
+     */
+    public void replay(PcapHandle handle) throws PcapNativeException, NotOpenException, InterruptedException {
+        long start = System.nanoTime();
+        try {
+            handler.onStart(handle.getDlt());
+            handle.loop(INFINITE_PACKET_NUMBER, this);
+        } finally {
+            elapsedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Evaluates the packets after the last evaluation boundary.
+     *
+     * @return result of the replay.
+     */
+    public ReplayResult finish() {
+        if (packets != 0 && lastEvaluation != lastTimestamp) {
+            evaluate(lastTimestamp);
+        }
+        return new ReplayResult(packets, bytes, evaluations, firstTimestamp, lastTimestamp, elapsedNanos);
+    }
+
+    @Override
+    public void gotPacket(PcapPacket packet) {
+        Instant instant = packet.getTimestamp();
+        long timestamp = instant.getEpochSecond() * NANOS_PER_SECOND + instant.getNano();
+        if (packets == 0) {
+            // the first evaluation sets the baseline of the validation before the first packet
+            firstTimestamp = timestamp;
+            nextEvaluation = timestamp - timestamp % evaluateNanos + evaluateNanos;
+            evaluate(timestamp);
+        }
+        while (timestamp >= nextEvaluation) {
+            evaluate(nextEvaluation);
+            nextEvaluation += evaluateNanos;
+        }
+
+        byte[] data = packet.getRawData();
+        int length = packet.getOriginalLength();
+        handler.onPacket(WORKER, length, timestamp, data, 0, Math.min(data.length, PacketRingBuffer.HEADER_LENGTH));
+        packets++;
+        bytes += length;
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    private void evaluate(long timestamp) {
+        evaluator.accept(timestamp);
+        lastEvaluation = timestamp;
+        evaluations++;
+    }
+}
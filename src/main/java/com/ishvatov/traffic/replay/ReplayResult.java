@@ -0,0 +1,52 @@
+package com.ishvatov.traffic.replay;
+
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of the offline capture replay.
+ *
+ * @author ishvatov
+ */
+@Value
+public class ReplayResult {
+    long packets;
+    long bytes;
+    long evaluations;
+
+    // packet time of the first and of the last packet, nanoseconds since epoch
+    long firstTimestamp;
+    long lastTimestamp;
+
+    // wall clock time of the replay
+    long elapsedNanos;
+
+    /**
+     * @return replayed packets per second of the wall clock time.
+     */
+    public long getPacketsPerSecond() {
+        return elapsedNanos == 0 ? 0 : packets * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return how many times the replay was faster than the capture.
+     */
+    public double getSpeedup() {
+        return elapsedNanos == 0 ? 0 : (double) (lastTimestamp - firstTimestamp) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d packets, %d bytes, %d evaluations, %d s of traffic in %d ms: %d pps, x%.0f",
+                packets,
+                bytes,
+                evaluations,
+                TimeUnit.NANOSECONDS.toSeconds(lastTimestamp - firstTimestamp),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                getPacketsPerSecond(),
+                getSpeedup()
+        );
+    }
+}
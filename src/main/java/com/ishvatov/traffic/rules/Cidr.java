@@ -0,0 +1,149 @@
+package com.ishvatov.traffic.rules;
+
+import lombok.Value;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * IPv4 or IPv6 network. IPv4 networks are stored as the IPv4-mapped IPv6 networks
+ * (::ffff:0:0/96), the same way as the addresses of the decoded packets, so every
+ * network is a 128-bit prefix of the pair of longs.
+ *
+ * @author ishvatov
+ */
+@Value
+public class Cidr {
+    // length of the IPv4-mapped IPv6 prefix
+    public static final int IPV4_MAPPED_PREFIX_LENGTH = 96;
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    long high;
+    long low;
+    int prefixLength;
+
+    /**
+     * Parses the network in the CIDR notation, for example 10.0.0.0/8, 2001:db8::/32
+     * or ::ffff:10.0.0.0/104. Address without the prefix length is a single host.
+     * Bits of the address after the prefix are ignored.
+     *
+     * @param value network in the CIDR notation.
+     * @return parsed network.
+     * @throws IllegalArgumentException if the value is not a valid network
+     */
+    public static Cidr parse(String value) {
+        String trimmed = value.trim();
+        int slash = trimmed.indexOf('/');
+        String address = slash < 0 ? trimmed : trimmed.substring(0, slash);
+        boolean ipv6 = address.indexOf(':') >= 0;
+        // only the literals are accepted, so the host names are never resolved
+        boolean literal = ipv6 ? address.matches("[0-9a-fA-F:.]+") : address.matches("(\\d{1,3}\\.){3}\\d{1,3}");
+        if (!literal) {
+            throw new IllegalArgumentException(String.format("Invalid network address: %s", value));
+        }
+
+        int maxLength = ipv6 ? 128 : 32;
+        int prefixLength;
+        try {
+            prefixLength = slash < 0 ? maxLength : Integer.parseInt(trimmed.substring(slash + 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Invalid network prefix length: %s", value), ex);
+        }
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            throw new IllegalArgumentException(String.format("Invalid network prefix length: %s", value));
+        }
+
+        // IPv4 literal out of range would be resolved as a host name, so it is parsed here
+        byte[] bytes;
+        if (ipv6) {
+            try {
+                bytes = InetAddress.getByName(address).getAddress();
+            } catch (UnknownHostException ex) {
+                throw new IllegalArgumentException(String.format("Invalid network address: %s", value), ex);
+            }
+        } else {
+            String[] octets = address.split("\\.");
+            bytes = new byte[octets.length];
+            for (int i = 0; i < octets.length; i++) {
+                int octet = Integer.parseInt(octets[i]);
+                if (octet > 255) {
+                    throw new IllegalArgumentException(String.format("Invalid network address: %s", value));
+                }
+                bytes[i] = (byte) octet;
+            }
+        }
+
+        long high;
+        long low;
+        if (bytes.length == 4) {
+            high = 0;
+            low = IPV4_MAPPED_PREFIX | (readInt(bytes, 0) & 0xFFFFFFFFL);
+        } else {
+            high = (long) readInt(bytes, 0) << 32 | (readInt(bytes, 4) & 0xFFFFFFFFL);
+            low = (long) readInt(bytes, 8) << 32 | (readInt(bytes, 12) & 0xFFFFFFFFL);
+        }
+        return of(high, low, ipv6 ? prefixLength : IPV4_MAPPED_PREFIX_LENGTH + prefixLength);
+    }
+
+    /**
+     * @param high         first 64 bits of the network address.
+     * @param low          last 64 bits of the network address.
+     * @param prefixLength length of the prefix in the IPv6 address space.
+     * @return network with the bits after the prefix cleared.
+     */
+    public static Cidr of(long high, long low, int prefixLength) {
+        return new Cidr(high & mask(prefixLength), low & mask(prefixLength - 64), prefixLength);
+    }
+
+    /**
+     * @param addressHigh first 64 bits of the address.
+     * @param addressLow  last 64 bits of the address.
+     * @return true, if the address belongs to the network.
+     */
+    public boolean contains(long addressHigh, long addressLow) {
+        return (addressHigh & mask(prefixLength)) == high && (addressLow & mask(prefixLength - 64)) == low;
+    }
+
+    /**
+     * @return true, if the network is a part of the IPv4-mapped address space.
+     */
+    public boolean isIpv4() {
+        return prefixLength >= IPV4_MAPPED_PREFIX_LENGTH && high == 0 && (low & ~0xFFFFFFFFL) == IPV4_MAPPED_PREFIX;
+    }
+
+    @Override
+    public String toString() {
+        if (isIpv4()) {
+            return String.format(
+                    "%d.%d.%d.%d/%d",
+                    low >>> 24 & 0xFF, low >>> 16 & 0xFF, low >>> 8 & 0xFF, low & 0xFF,
+                    prefixLength - IPV4_MAPPED_PREFIX_LENGTH
+            );
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            long half = i < 4 ? high : low;
+            builder.append(i == 0 ? "" : ":").append(Long.toHexString(half >>> (48 - 16 * (i % 4)) & 0xFFFF));
+        }
+        return builder.append('/').append(prefixLength).toString();
+    }
+
+    /**
+     * @param bits number of the leading bits of the long, which are set.
+     * @return mask of the leading bits, bits below 0 and above 64 are clamped.
+     */
+    private static long mask(int bits) {
+        if (bits <= 0) {
+            return 0;
+        }
+        return bits >= 64 ? -1L : -1L << (64 - bits);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24
+                | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8
+                | (bytes[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ishvatov.traffic.rules;
+
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
+import lombok.Value;
+
+/**
+ * Named traffic limits of a part of the traffic. Packet matches the rule, if its source or
+ * destination address belongs to the network and the port of the same endpoint is in the
+ * port range. Packets without ports (not TCP or UDP) have port 0, so they match only
+ * the rules with the range, which starts from 0.
+ *
+ * @author ishvatov
+ */
+@Value
+public class LimitRule {
+    int id;
+    String name;
+    Cidr network;
+    int portFrom;
+    int portTo;
+
+    // minimum and maximum amount of traffic per hour
+    long min;
+    long max;
+
+    // effective date of the rule, milliseconds since epoch
+    long effectiveDate;
+
+    /**
+     * @param entity rule, fetched from the database
+     * @return new rule.
+     * @throws IllegalArgumentException if the network or the ports of the rule are not valid
+     */
+    public static LimitRule of(LimitRuleEntity entity) {
+        if (entity.getPortFrom() < 0 || entity.getPortFrom() > entity.getPortTo() || entity.getPortTo() > 65535) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid port range of the rule %s: %d-%d",
+                    entity.getRuleName(), entity.getPortFrom(), entity.getPortTo()
+            ));
+        }
+        return new LimitRule(
+                entity.getId(),
+                entity.getRuleName(),
+                Cidr.parse(entity.getNetwork()),
+                entity.getPortFrom(),
+                entity.getPortTo(),
+                entity.getMinValue(),
+                entity.getMaxValue(),
+                entity.getEffectiveDate().getTime()
+        );
+    }
+
+    /**
+     * @param port port of the endpoint, 0 if the packet has no ports
+     * @return true, if the port is in the range of the rule.
+     */
+    public boolean matchesPort(int port) {
+        return portFrom <= port && port <= portTo;
+    }
+
+    /**
+     * @param other other rule
+     * @return true, if both rules match the same packets.
+     */
+    public boolean hasSameMatch(LimitRule other) {
+        return id == other.id
+                && network.equals(other.network)
+                && portFrom == other.portFrom
+                && portTo == other.portTo;
+    }
+
+    /**
+     * @param version version of the rules snapshot
+     * @return limits of the rule.
+     */
+    public Limits toLimits(long version) {
+        return new Limits(version, min, max, effectiveDate);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s, ports %d-%d) [%d, %d]", name, network, portFrom, portTo, min, max);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ishvatov.traffic.rules;
+
+import com.ishvatov.traffic.service.TrafficService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Loads the limit rules from the database and publishes them to the {@link RuleClassifier},
+ * which compiles them only if they have changed.
+ *
+ * @author ishvatov
+ */
+@RequiredArgsConstructor
+public class LimitRulesCache {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(LimitRulesCache.class);
+
+    // service, which loads the rules from the database
+    private final TrafficService trafficService;
+
+    // classifier, which uses the rules
+    private final RuleClassifier ruleClassifier;
+
+    /**
+     * Loads the enabled rules from the database. Concurrent refreshes (notification
+     * and polling fallback) are serialized.
+     *
+     * @return current rules.
+     */
+    public synchronized List<LimitRule> refresh() {
+        List<LimitRule> rules = trafficService.fetchLimitRules();
+        if (ruleClassifier.update(rules)) {
+            LOGGER.info("Fetched {} limit rules from database!", rules.size());
+        }
+        return rules;
+    }
+
+    /**
+     * @return current rules.
+     */
+    public List<LimitRule> get() {
+        return ruleClassifier.getRules();
+    }
+}
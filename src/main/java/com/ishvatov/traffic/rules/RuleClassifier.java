@@ -0,0 +1,264 @@
+package com.ishvatov.traffic.rules;
+
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.flow.PacketHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * Classifies the captured packets by the {@link LimitRule}s and counts the traffic of each rule.
+ * Rules are compiled into the {@link RuleMatcher} on each change and published as an immutable
+ * snapshot behind a volatile reference, so the workers never lock. Every worker has its own
+ * counters, which are merged by the validation thread into the sliding window of each rule.
+ * <p>
+ * When only the limits of the rules are changed, the compiled matcher, the counters and the
+ * windows are kept, otherwise the windows of the new rules start from zero.
+ *
+ * @author ishvatov
+ */
+public class RuleClassifier {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(RuleClassifier.class);
+
+    private final int workers;
+    private final long bucketNanos;
+    private final int buckets;
+
+    // current snapshot of the rules, null if there are no rules
+    private volatile Compiled compiled;
+
+    // version of the rules snapshot, incremented on each change
+    private long version = 0;
+
+    /**
+     * @param workers     number of the workers, which classify the packets.
+     * @param bucketNanos duration of one bucket of the rule windows.
+     * @param buckets     number of the buckets in the rule windows.
+     */
+    public RuleClassifier(int workers, long bucketNanos, int buckets) {
+        this.workers = workers;
+        this.bucketNanos = bucketNanos;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Publishes the new rules, if they have changed.
+     *
+     * @param rules rules, ordered by id.
+     * @return true, if the rules have changed.
+     */
+    public synchronized boolean update(List<LimitRule> rules) {
+        Compiled current = compiled;
+        List<LimitRule> currentRules = current == null ? Collections.emptyList() : current.rules;
+        if (currentRules.equals(rules)) {
+            return false;
+        }
+
+        version++;
+        if (rules.isEmpty()) {
+            compiled = null;
+        } else if (current != null && hasSameMatch(currentRules, rules)) {
+            compiled = new Compiled(version, rules, current);
+        } else {
+            long start = System.nanoTime();
+            RuleMatcher matcher = RuleMatcher.compile(
+                    rules.stream().map(LimitRule::getNetwork).collect(Collectors.toList())
+            );
+            compiled = new Compiled(version, rules, matcher, workers, bucketNanos, buckets);
+            LOGGER.info(
+                    "Compiled {} limit rules in {} us: {}",
+                    rules.size(),
+                    (System.nanoTime() - start) / 1000,
+                    matcher
+            );
+        }
+        return true;
+    }
+
+    /**
+     * @return current rules.
+     */
+    public List<LimitRule> getRules() {
+        Compiled current = compiled;
+        return current == null ? Collections.emptyList() : current.rules;
+    }
+
+    /**
+     * Adds the packet to the counters of all the rules, which it matches. Called on the
+     * capture hot path, every worker must use only its own index.
+     *
+     * @param worker  index of the worker thread.
+     * @param length  length of the packet in bytes.
+     * @param headers decoded headers of the packet.
+     */
+    public void record(int worker, int length, PacketHeaders headers) {
+        Compiled current = compiled;
+        if (current == null) {
+            return;
+        }
+
+        RuleMatcher matcher = current.matcher;
+        int sourceSet = matcher.lookup(headers.getSourceHigh(), headers.getSourceLow());
+        int destinationSet = matcher.lookup(headers.getDestinationHigh(), headers.getDestinationLow());
+        int sourcePort = headers.getSourcePort();
+        int destinationPort = headers.getDestinationPort();
+        AtomicLongArray counters = current.counters[worker];
+
+        int[] sourceRules = null;
+        if (sourceSet != RuleMatcher.NO_RULES) {
+            sourceRules = matcher.rulesOf(sourceSet);
+            for (int rule : sourceRules) {
+                if (current.matchesPort(rule, sourcePort)) {
+                    counters.lazySet(rule, counters.get(rule) + length);
+                }
+            }
+        }
+        if (destinationSet != RuleMatcher.NO_RULES) {
+            for (int rule : matcher.rulesOf(destinationSet)) {
+                // packet is counted once, even if both endpoints match the rule
+                if (current.matchesPort(rule, destinationPort)
+                        && !(sourceRules != null
+                        && current.matchesPort(rule, sourcePort)
+                        && Arrays.binarySearch(sourceRules, rule) >= 0)) {
+                    counters.lazySet(rule, counters.get(rule) + length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the windows of all the rules to the provided time. Must be called only by the validation thread.
+     *
+     * @param timestampNanos current time in nanoseconds.
+     * @return usage of the rules, which are not suppressed and may be out of limits: either the window
+     * of the rule covers its full length, or the maximum limit is exceeded.
+     */
+    public List<RuleUsage> evaluate(long timestampNanos) {
+        Compiled current = compiled;
+        if (current == null) {
+            return Collections.emptyList();
+        }
+
+        List<RuleUsage> usages = new ArrayList<>();
+        for (int rule = 0; rule < current.rules.size(); rule++) {
+            long total = 0;
+            for (AtomicLongArray counters : current.counters) {
+                total += counters.get(rule);
+            }
+
+            SlidingWindow window = current.windows[rule];
+            long usage = window.advance(timestampNanos, total);
+            LimitRule limitRule = current.rules.get(rule);
+            if (timestampNanos - current.suppressedUntil[rule] < 0
+                    || !window.isFull() && usage <= limitRule.getMax()) {
+                continue;
+            }
+            usages.add(new RuleUsage(limitRule, limitRule.toLimits(current.version), usage));
+        }
+        return usages;
+    }
+
+    /**
+     * Suspends the validation of the rule. Must be called only by the validation thread.
+     *
+     * @param rule       rule, which is suppressed.
+     * @param untilNanos time in nanoseconds, until which the rule is not validated.
+     */
+    public void suppress(LimitRule rule, long untilNanos) {
+        Compiled current = compiled;
+        if (current == null) {
+            return;
+        }
+        for (int i = 0; i < current.rules.size(); i++) {
+            if (current.rules.get(i).getId() == rule.getId()) {
+                current.suppressedUntil[i] = untilNanos;
+                return;
+            }
+        }
+    }
+
+    private static boolean hasSameMatch(List<LimitRule> first, List<LimitRule> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (!first.get(i).hasSameMatch(second.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Immutable snapshot of the compiled rules with their counters and windows.
+     */
+    private static final class Compiled {
+        private final long version;
+        private final List<LimitRule> rules;
+        private final RuleMatcher matcher;
+
+        // port ranges of the rules, copied for the hot path
+        private final int[] portFrom;
+        private final int[] portTo;
+
+        // traffic of each rule, per worker
+        private final AtomicLongArray[] counters;
+
+        // state of the validation thread
+        private final SlidingWindow[] windows;
+        private final long[] suppressedUntil;
+
+        private Compiled(
+                long version,
+                List<LimitRule> rules,
+                RuleMatcher matcher,
+                int workers,
+                long bucketNanos,
+                int buckets
+        ) {
+            this.version = version;
+            this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+            this.matcher = matcher;
+            this.portFrom = new int[rules.size()];
+            this.portTo = new int[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                portFrom[i] = rules.get(i).getPortFrom();
+                portTo[i] = rules.get(i).getPortTo();
+            }
+            this.counters = new AtomicLongArray[workers];
+            for (int i = 0; i < workers; i++) {
+                counters[i] = new AtomicLongArray(rules.size());
+            }
+            this.windows = new SlidingWindow[rules.size()];
+            for (int i = 0; i < rules.size(); i++) {
+                windows[i] = new SlidingWindow(bucketNanos, buckets);
+            }
+            this.suppressedUntil = new long[rules.size()];
+        }
+
+        /**
+         * Snapshot with the new limits, which shares the matcher and the state of the previous one.
+         */
+        private Compiled(long version, List<LimitRule> rules, Compiled previous) {
+            this.version = version;
+            this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+            this.matcher = previous.matcher;
+            this.portFrom = previous.portFrom;
+            this.portTo = previous.portTo;
+            this.counters = previous.counters;
+            this.windows = previous.windows;
+            this.suppressedUntil = previous.suppressedUntil;
+        }
+
+        private boolean matchesPort(int rule, int port) {
+            return portFrom[rule] <= port && port <= portTo[rule];
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.ishvatov.traffic.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled matcher of the rule networks: multibit prefix trie over the 128-bit addresses
+ * with 8-bit stride. Prefixes, which do not end at the byte boundary, are expanded into
+ * all the slots they cover, and every slot stores the set of all the rules, which cover it
+ * (including the shorter prefixes of the parent slots), so the lookup is at most 16 array
+ * reads and the deepest non-empty slot on the path is the answer. IPv4-mapped addresses
+ * start from the precomputed ::ffff:0:0/96 node, so they take at most 4 reads.
+ * <p>
+ * Matcher is immutable and is compiled once per rules change. Lookup does not allocate.
+ *
+ * @author ishvatov
+ */
+public final class RuleMatcher {
+    // no rules match the address
+    public static final int NO_RULES = 0;
+
+    // trie constants
+    private static final int STRIDE = 8;
+    private static final int FANOUT = 1 << STRIDE;
+    private static final int LEVELS = 128 / STRIDE;
+    private static final int IPV4_LEVEL = Cidr.IPV4_MAPPED_PREFIX_LENGTH / STRIDE;
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+
+    // child node of the slot (node * FANOUT + slot), 0 if there is none, root is never a child
+    private final int[] children;
+
+    // index of the rule set of the slot + 1, 0 if no rules cover it
+    private final int[] sets;
+
+    // sorted indexes of the rules of each set
+    private final int[][] ruleSets;
+
+    // node of the ::ffff:0:0/96 prefix, -1 if there are no longer IPv4 prefixes, and the set, which covers it
+    private final int ipv4Node;
+    private final int ipv4Set;
+
+    private RuleMatcher(int[] children, int[] sets, int[][] ruleSets) {
+        this.children = children;
+        this.sets = sets;
+        this.ruleSets = ruleSets;
+
+        // walk the IPv4-mapped prefix once
+        int node = 0;
+        int set = NO_RULES;
+        for (int level = 0; level < IPV4_LEVEL && node >= 0; level++) {
+            int index = node * FANOUT + byteOf(0, IPV4_MAPPED_PREFIX, level);
+            if (sets[index] != NO_RULES) {
+                set = sets[index];
+            }
+            node = children[index] == 0 ? -1 : children[index];
+        }
+        this.ipv4Node = node;
+        this.ipv4Set = set;
+    }
+
+    /**
+     * Compiles the matcher of the networks.
+     *
+     * @param networks networks of the rules, index in the list is the index of the rule.
+     * @return compiled matcher.
+     */
+    public static RuleMatcher compile(List<Cidr> networks) {
+        List<int[]> children = new ArrayList<>();
+        List<List<List<Integer>>> attached = new ArrayList<>();
+        children.add(new int[FANOUT]);
+        attached.add(new ArrayList<>(FANOUT));
+        for (int slot = 0; slot < FANOUT; slot++) {
+            attached.get(0).add(null);
+        }
+
+        for (int rule = 0; rule < networks.size(); rule++) {
+            Cidr network = networks.get(rule);
+            int prefixLength = network.getPrefixLength();
+            int level = prefixLength == 0 ? 0 : (prefixLength - 1) / STRIDE;
+
+            int node = 0;
+            for (int i = 0; i < level; i++) {
+                int slot = byteOf(network.getHigh(), network.getLow(), i);
+                if (children.get(node)[slot] == 0) {
+                    children.get(node)[slot] = children.size();
+                    children.add(new int[FANOUT]);
+                    List<List<Integer>> slots = new ArrayList<>(FANOUT);
+                    for (int j = 0; j < FANOUT; j++) {
+                        slots.add(null);
+                    }
+                    attached.add(slots);
+                }
+                node = children.get(node)[slot];
+            }
+
+            // prefix covers 2 ^ (STRIDE - bits) slots of its level
+            int bits = prefixLength - level * STRIDE;
+            int first = byteOf(network.getHigh(), network.getLow(), level) & (0xFF << (STRIDE - bits)) & 0xFF;
+            for (int slot = first; slot < first + (1 << (STRIDE - bits)); slot++) {
+                List<List<Integer>> slots = attached.get(node);
+                if (slots.get(slot) == null) {
+                    slots.set(slot, new ArrayList<>());
+                }
+                slots.get(slot).add(rule);
+            }
+        }
+
+        int[] flatChildren = new int[children.size() * FANOUT];
+        for (int node = 0; node < children.size(); node++) {
+            System.arraycopy(children.get(node), 0, flatChildren, node * FANOUT, FANOUT);
+        }
+        int[] sets = new int[children.size() * FANOUT];
+        Map<List<Integer>, Integer> interned = new HashMap<>();
+        finish(0, new ArrayList<>(), NO_RULES, flatChildren, attached, sets, interned);
+
+        int[][] ruleSets = new int[interned.size()][];
+        for (Map.Entry<List<Integer>, Integer> entry : interned.entrySet()) {
+            ruleSets[entry.getValue() - 1] = entry.getKey().stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new RuleMatcher(flatChildren, sets, ruleSets);
+    }
+
+    /**
+     * @param high first 64 bits of the address.
+     * @param low  last 64 bits of the address.
+     * @return set of the rules, which networks contain the address, or {@link #NO_RULES}.
+     */
+    public int lookup(long high, long low) {
+        int node = 0;
+        int level = 0;
+        int set = NO_RULES;
+        if (high == 0 && (low & ~0xFFFFFFFFL) == IPV4_MAPPED_PREFIX) {
+            if (ipv4Node < 0) {
+                return ipv4Set;
+            }
+            node = ipv4Node;
+            level = IPV4_LEVEL;
+            set = ipv4Set;
+        }
+
+        for (; level < LEVELS; level++) {
+            int index = node * FANOUT + byteOf(high, low, level);
+            if (sets[index] != NO_RULES) {
+                set = sets[index];
+            }
+            node = children[index];
+            if (node == 0) {
+                break;
+            }
+        }
+        return set;
+    }
+
+    /**
+     * @param set set of the rules, returned by the {@link #lookup(long, long)}.
+     * @return sorted indexes of the rules of the set, must not be modified.
+     */
+    public int[] rulesOf(int set) {
+        return ruleSets[set - 1];
+    }
+
+    /**
+     * @return number of the trie nodes.
+     */
+    public int getNodes() {
+        return children.length / FANOUT;
+    }
+
+    /**
+     * Computes the rule sets of the node's slots: rules of the parent slot and the rules,
+     * attached to the slot.
+     */
+    private static void finish(
+            int node,
+            List<Integer> inherited,
+            int inheritedSet,
+            int[] children,
+            List<List<List<Integer>>> attached,
+            int[] sets,
+            Map<List<Integer>, Integer> interned
+    ) {
+        for (int slot = 0; slot < FANOUT; slot++) {
+            List<Integer> own = attached.get(node).get(slot);
+            List<Integer> rules = inherited;
+            int set = inheritedSet;
+            if (own != null) {
+                rules = new ArrayList<>(inherited);
+                rules.addAll(own);
+                rules.sort(null);
+                set = interned.computeIfAbsent(rules, key -> interned.size() + 1);
+            }
+
+            int index = node * FANOUT + slot;
+            sets[index] = set;
+            if (children[index] != 0) {
+                finish(children[index], rules, set, children, attached, sets, interned);
+            }
+        }
+    }
+
+    private static int byteOf(long high, long low, int level) {
+        return level < LEVELS / 2
+                ? (int) (high >>> (56 - STRIDE * level)) & 0xFF
+                : (int) (low >>> (56 - STRIDE * (level - LEVELS / 2))) & 0xFF;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d nodes, %d rule sets", getNodes(), ruleSets.length);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ishvatov.traffic.rules;
+
+import com.ishvatov.traffic.limits.Limits;
+import lombok.Value;
+
+/**
+ * Amount of traffic of the rule in the sliding window, which has to be validated.
+ *
+ * @author ishvatov
+ */
+@Value
+public class RuleUsage {
+    LimitRule rule;
+
+    // limits of the rule with the version of the rules snapshot
+    Limits limits;
+
+    // amount of traffic in the window
+    long current;
+}
@@ -1,18 +1,57 @@
 package com.ishvatov.traffic.service;
 
-import com.ishvatov.traffic.exception.InvalidLimitsNumberException;
-import com.ishvatov.traffic.exception.InvalidLimitsValueException;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
 import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
-import com.ishvatov.traffic.utils.Pair;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleUsage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public interface TrafficService {
 
     /**
-     * @return the pair of records from the limits_per_hour table with maximum effective_date value.
-     * @throws InvalidLimitsNumberException if there is zero or only one record
-     * @throws InvalidLimitsValueException  if min >= max
+     * @param id id of the last known record, 0 to fetch the whole timeline
+     * @return min and max records from the limits_per_hour table with the bigger id ordered by id,
+     * regardless of their effective_date.
+     */
+    List<LimitsPerHourEntity> fetchTrafficLimitsSince(int id);
+
+    /**
+     * @return number of the records in the limits_per_hour table.
+     */
+    long countTrafficLimits();
+
+    /**
+     * @return checksum of all the records in the limits_per_hour table, which changes on any change of them.
+     */
+    String fetchTrafficLimitsChecksum();
+
+    /**
+     * @return enabled records from the limit_rules table ordered by id, invalid rules are skipped.
+     */
+    List<LimitRule> fetchLimitRules();
+
+    /**
+     * Checks the amount of traffic of every rule and sends the alert message about each rule,
+     * whose breach is opened, goes on or is resolved, to specified kafka alert topic.
+     * Repeated breaches of one rule are coalesced, see {@link com.ishvatov.traffic.alert.AlertTracker}.
+     *
+     * @param timestamp  time of the validation in milliseconds since epoch
+     * @param usages     amount of traffic of the rules
+     * @param topTalkers supplier of the hosts and flows with the biggest amount of traffic,
+     *                   called at most once and only if a notification is sent
+     * @return rules, which are out of their limits and for which the messages about the open or ongoing
+     * breach were sent.
      */
-    Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetchTrafficLimits();
+    List<LimitRule> validateRulesAndSendNotifications(
+            long timestamp,
+            List<RuleUsage> usages,
+            Supplier<TopTalkers> topTalkers
+    );
 
     /**
      * Checks the current amount of transferred data nad if current < limit,
@@ -22,5 +61,73 @@ public interface TrafficService {
      * @param limits  current limits of transferred data
      * @return true, if transferred traffic is out of range and message was sent, false otherwise.
      */
-    boolean validateTrafficAndSendNotification(int current, Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits);
+    default boolean validateTrafficAndSendNotification(long current, Limits limits) {
+        return validateTrafficAndSendNotification(current, limits, () -> TopTalkers.EMPTY);
+    }
+
+    /**
+     * Checks the current amount of transferred data and if it is out of limits,
+     * then sends specified alert message with the top talkers of the interval
+     * to specified kafka alert topic.
+     *
+     * @param current    current amount of transferred data
+     * @param limits     current limits of transferred data
+     * @param topTalkers supplier of the hosts and flows with the biggest amount of traffic,
+     *                   called only if the notification is sent
+     * @return true, if transferred traffic is out of range and message was sent, false otherwise.
+     */
+    default boolean validateTrafficAndSendNotification(
+            long current,
+            Limits limits,
+            Supplier<TopTalkers> topTalkers
+    ) {
+        return validateTrafficAndSendNotification(System.currentTimeMillis(), current, limits, topTalkers);
+    }
+
+    /**
+     * Checks the amount of data, transferred by the provided time, and if it is out of limits,
+     * then sends specified alert message with the top talkers of the interval
+     * to specified kafka alert topic. Used by the offline replay, where the time
+     * is taken from the captured packets.
+     *
+     * @param timestamp  time of the validation in milliseconds since epoch
+     * @param current    current amount of transferred data
+     * @param limits     current limits of transferred data
+     * @param topTalkers supplier of the hosts and flows with the biggest amount of traffic,
+     *                   called only if the notification is sent
+     * @return true, if transferred traffic is out of range and message was sent, false otherwise.
+     */
+    default boolean validateTrafficAndSendNotification(
+            long timestamp,
+            long current,
+            Limits limits,
+            Supplier<TopTalkers> topTalkers
+    ) {
+        return validateTrafficAndSendNotification(
+                timestamp, current, Collections.emptyMap(), limits, topTalkers
+        );
+    }
+
+    /**
+     * Checks the amount of data, transferred by the provided time, and if its breach of the limits
+     * is opened, goes on or is resolved, then sends specified alert message with the traffic of
+     * every capture interface and the top talkers of the interval to specified kafka alert topic.
+     * Repeated breaches are coalesced, see {@link com.ishvatov.traffic.alert.AlertTracker}.
+     *
+     * @param timestamp  time of the validation in milliseconds since epoch
+     * @param current    current amount of transferred data
+     * @param interfaces current amount of data, transferred by every capture interface
+     * @param limits     current limits of transferred data
+     * @param topTalkers supplier of the hosts and flows with the biggest amount of traffic,
+     *                   called only if the notification is sent
+     * @return true, if transferred traffic is out of range and the message about the open or ongoing
+     * breach was sent, false otherwise.
+     */
+    boolean validateTrafficAndSendNotification(
+            long timestamp,
+            long current,
+            Map<String, Long> interfaces,
+            Limits limits,
+            Supplier<TopTalkers> topTalkers
+    );
 }
@@ -1,52 +1,162 @@
 package com.ishvatov.traffic.service;
 
-import com.ishvatov.traffic.exception.InvalidLimitsNumberException;
-import com.ishvatov.traffic.exception.InvalidLimitsValueException;
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.alert.AlertUpdate;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
 import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
-import com.ishvatov.traffic.model.repository.LimitsPerHourRepository;
-import com.ishvatov.traffic.utils.Pair;
+import com.ishvatov.traffic.model.repository.LimitRuleReader;
+import com.ishvatov.traffic.model.repository.LimitsPerHourReader;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleUsage;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.AlertStatus;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.PropertySource;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
 @Service
 @RequiredArgsConstructor
-@PropertySource(value = "classpath:kafka.properties")
 public class TrafficServiceImpl implements TrafficService {
-    // autowired variables
-    private final LimitsPerHourRepository repository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficServiceImpl.class);
+
+    // autowired variables, JPA repositories or the JDBC reader of the fast start
+    private final LimitsPerHourReader repository;
+    private final LimitRuleReader ruleRepository;
+    private final AlertPublisher alertPublisher;
+    private final AlertTracker alertTracker;
+
+    @Override
+    public List<LimitsPerHourEntity> fetchTrafficLimitsSince(int id) {
+        return repository.findByIdGreaterThanOrderById(id);
+    }
+
+    @Override
+    public long countTrafficLimits() {
+        return repository.count();
+    }
+
+    @Override
+    public String fetchTrafficLimitsChecksum() {
+        return repository.findChecksum();
+    }
 
-    @Value(value = "${kafka.topic-name}")
-    private String topicName;
+    @Override
+    public boolean validateTrafficAndSendNotification(
+            long timestamp,
+            long current,
+            Map<String, Long> interfaces,
+            Limits limits,
+            Supplier<TopTalkers> topTalkersSupplier
+    ) {
+        AlertUpdate update = alertTracker.track(AlertRecord.GLOBAL_SOURCE, timestamp, current, limits);
+        if (update == null) {
+            return false;
+        }
 
-    @Value(value = "${kafka.alert-message}")
-    private String alertMessage;
+        // top talkers are not attached to the resolved alert
+        boolean resolved = update.getStatus() == AlertStatus.RESOLVED;
+        boolean published = alertPublisher.publish(
+                AlertRecord.GLOBAL_SOURCE,
+                alert(
+                        timestamp,
+                        AlertRecord.GLOBAL_SOURCE,
+                        current,
+                        limits,
+                        update,
+                        resolved ? TopTalkers.EMPTY : topTalkersSupplier.get(),
+                        interfaces
+                )
+        );
+        if (!published) {
+            // the alert is sent again by the next validation
+            alertTracker.revert(AlertRecord.GLOBAL_SOURCE);
+            return false;
+        }
+        return !resolved;
+    }
 
     @Override
-    public Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetchTrafficLimits() {
-        LimitsPerHourEntity min = repository.findMinimumLimit()
-                .orElseThrow(InvalidLimitsNumberException::new);
-        LimitsPerHourEntity max = repository.findMaximumLimit()
-                .orElseThrow(InvalidLimitsNumberException::new);
-
-        if (min.getLimitValue() > max.getLimitValue()) {
-            throw new InvalidLimitsValueException();
+    public List<LimitRule> fetchLimitRules() {
+        List<LimitRule> rules = new ArrayList<>();
+        for (LimitRuleEntity entity : ruleRepository.findByEnabledTrueOrderById()) {
+            try {
+                rules.add(LimitRule.of(entity));
+            } catch (IllegalArgumentException ex) {
+                LOGGER.warn("Limit rule {} is skipped: {}", entity.getRuleName(), ex.getMessage());
+            }
         }
-        return new Pair<>(min, max);
+        return rules;
     }
 
     @Override
-    public boolean validateTrafficAndSendNotification(int current, Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits) {
-        if (current < limits.getFirst().getLimitValue() || current > limits.getSecond().getLimitValue()) {
-            kafkaTemplate.send(
-                    topicName,
-                    String.format(alertMessage, current, limits.getFirst(), limits.getSecond())
+    public List<LimitRule> validateRulesAndSendNotifications(
+            long timestamp,
+            List<RuleUsage> usages,
+            Supplier<TopTalkers> topTalkersSupplier
+    ) {
+        List<LimitRule> exceeded = new ArrayList<>();
+        TopTalkers topTalkers = null;
+        for (RuleUsage usage : usages) {
+            String source = usage.getRule().getName();
+            AlertUpdate update = alertTracker.track(source, timestamp, usage.getCurrent(), usage.getLimits());
+            if (update == null) {
+                continue;
+            }
+
+            // top talkers are not attached to the resolved alerts
+            boolean resolved = update.getStatus() == AlertStatus.RESOLVED;
+            TopTalkers attached = TopTalkers.EMPTY;
+            if (!resolved) {
+                if (topTalkers == null) {
+                    topTalkers = topTalkersSupplier.get();
+                }
+                attached = topTalkers;
+            }
+            boolean published = alertPublisher.publish(
+                    source,
+                    alert(timestamp, source, usage.getCurrent(), usage.getLimits(), update, attached, Collections.emptyMap())
             );
-            return true;
+            if (!published) {
+                // the alert is sent again by the next validation
+                alertTracker.revert(source);
+            } else if (!resolved) {
+                exceeded.add(usage.getRule());
+            }
         }
-        return false;
+        return exceeded;
+    }
+
+    private static AlertRecord alert(
+            long timestamp,
+            String source,
+            long current,
+            Limits limits,
+            AlertUpdate update,
+            TopTalkers topTalkers,
+            Map<String, Long> interfaces
+    ) {
+        return new AlertRecord(
+                timestamp,
+                source,
+                current,
+                limits,
+                topTalkers,
+                interfaces,
+                update.getStatus(),
+                update.getSince(),
+                update.getPeak(),
+                update.getBreaches()
+        );
     }
 }
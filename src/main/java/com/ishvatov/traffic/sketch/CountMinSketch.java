@@ -0,0 +1,112 @@
+package com.ishvatov.traffic.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min Sketch of the byte counts per 128-bit key (IPv6 or IPv4-mapped address).
+ * With width = e / epsilon and depth = ln(1 / delta) the estimate exceeds the true
+ * value by more than epsilon * total with probability of at most delta. The estimate
+ * is never less than the true value. Memory and per-update cost do not depend
+ * on the number of keys. Not thread safe.
+ *
+ * @author ishvatov
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long total = 0;
+
+    /**
+     * @param epsilon relative error bound.
+     * @param delta   probability of exceeding the error bound.
+     */
+    public CountMinSketch(double epsilon, double delta) {
+        this((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    /**
+     * @param width number of the counters in a row.
+     * @param depth number of the rows (hash functions).
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid Count-Min Sketch width %s or depth %s!", width, depth)
+            );
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * Adds the weight to the key.
+     */
+    public void add(long high, long low, long weight) {
+        long hash = Hashing.hash(high, low);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + index(first + row * second)] += weight;
+        }
+        total += weight;
+    }
+
+    /**
+     * @return estimated weight of the key, never less than the true one.
+     */
+    public long estimate(long high, long low) {
+        long hash = Hashing.hash(high, low);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + index(first + row * second)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds all the counters of the other sketch of the same dimensions to this one.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Only sketches of the same dimensions can be merged!");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+    }
+
+    /**
+     * @return total weight of all the keys.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return error bound of the estimate (epsilon * total), which holds with probability 1 - delta.
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E / width * total);
+    }
+
+    /**
+     * @return size of the counters in bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+
+    private int index(int hash) {
+        return (hash & Integer.MAX_VALUE) % width;
+    }
+}
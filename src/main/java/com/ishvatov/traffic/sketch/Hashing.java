@@ -0,0 +1,23 @@
+package com.ishvatov.traffic.sketch;
+
+/**
+ * Hash function of the 128-bit keys, which is used by the sketches.
+ *
+ * @author ishvatov
+ */
+final class Hashing {
+    private Hashing() {
+    }
+
+    /**
+     * @return 64-bit hash of the key, which consists of two longs.
+     */
+    static long hash(long high, long low) {
+        long hash = Long.rotateLeft(high * 0x9E3779B97F4A7C15L, 31) ^ low;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
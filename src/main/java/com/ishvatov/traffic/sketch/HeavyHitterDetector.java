@@ -0,0 +1,168 @@
+package com.ishvatov.traffic.sketch;
+
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.utils.Pair;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming heavy hitter detection with fixed memory and constant per-packet cost.
+ * Every worker thread has its own Count-Min Sketches and Space-Saving summaries of the
+ * bytes per source and per destination address. On each top talkers interval rollover the window is
+ * rolled over: sketches of all the workers are merged, keys monitored by any Space-Saving
+ * summary become candidates and the top-K of them by the merged sketch estimate are reported.
+ * Their packet counts are the sums of the Space-Saving counters, which may overestimate them
+ * like the bytes, but their error is not reported.
+ *
+ * @author ishvatov
+ */
+public class HeavyHitterDetector {
+    private final WorkerSketches[] workers;
+    private final int topK;
+
+    // merged sketches, used only during the rollover
+    private final CountMinSketch mergedSources;
+    private final CountMinSketch mergedDestinations;
+
+    /**
+     * @param workers  number of the threads, which call {@link #record}.
+     * @param epsilon  relative error bound of the Count-Min Sketch.
+     * @param delta    probability of exceeding the error bound.
+     * @param counters number of the Space-Saving counters per worker.
+     * @param topK     number of the reported heavy hitters.
+     */
+    public HeavyHitterDetector(int workers, double epsilon, double delta, int counters, int topK) {
+        this.workers = new WorkerSketches[workers];
+        this.topK = topK;
+        this.mergedSources = new CountMinSketch(epsilon, delta);
+        this.mergedDestinations = new CountMinSketch(epsilon, delta);
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new WorkerSketches(epsilon, delta, counters);
+        }
+    }
+
+    /**
+     * Adds the decoded packet to the sketches of the worker.
+     *
+     * @param worker        index of the worker thread.
+     * @param length        length of the packet in bytes.
+     * @param packetHeaders decoded headers of the packet.
+     */
+    public void record(int worker, int length, PacketHeaders packetHeaders) {
+        workers[worker].add(packetHeaders, length);
+    }
+
+    /**
+     * Collects the heavy hitters of the current window and starts the new one.
+     * Called on each top talkers interval rollover.
+     *
+     * @return heavy hitter sources (first) and destinations (second) of the finished window.
+     */
+    public synchronized Pair<List<TopTalker>, List<TopTalker>> rollover() {
+        mergedSources.clear();
+        mergedDestinations.clear();
+        Map<Key, long[]> sources = new HashMap<>();
+        Map<Key, long[]> destinations = new HashMap<>();
+        for (WorkerSketches worker : workers) {
+            worker.drainTo(mergedSources, sources, mergedDestinations, destinations);
+        }
+
+        return new Pair<>(top(mergedSources, sources), top(mergedDestinations, destinations));
+    }
+
+    /**
+     * @return size of all the sketches and summaries in bytes.
+     */
+    public long getMemoryBytes() {
+        long memory = mergedSources.getMemoryBytes() + mergedDestinations.getMemoryBytes();
+        for (WorkerSketches worker : workers) {
+            memory += worker.getMemoryBytes();
+        }
+        return memory;
+    }
+
+    private List<TopTalker> top(CountMinSketch sketch, Map<Key, long[]> candidates) {
+        long error = sketch.getErrorBound();
+        List<TopTalker> result = new ArrayList<>(candidates.size());
+        for (Map.Entry<Key, long[]> candidate : candidates.entrySet()) {
+            Key key = candidate.getKey();
+            result.add(new TopTalker(
+                    FlowKeys.formatAddress(key.getHigh(), key.getLow()),
+                    sketch.estimate(key.getHigh(), key.getLow()),
+                    candidate.getValue()[0],
+                    error
+            ));
+        }
+        result.sort(Comparator.comparingLong(TopTalker::getBytes).reversed());
+        return result.size() > topK ? new ArrayList<>(result.subList(0, topK)) : result;
+    }
+
+    /**
+     * Sketches and summaries of one worker thread, guarded by its monitor,
+     * which is contended only during the rollover.
+     */
+    private static final class WorkerSketches {
+        private final CountMinSketch sources;
+        private final CountMinSketch destinations;
+        private final SpaceSaving topSources;
+        private final SpaceSaving topDestinations;
+
+        WorkerSketches(double epsilon, double delta, int counters) {
+            this.sources = new CountMinSketch(epsilon, delta);
+            this.destinations = new CountMinSketch(epsilon, delta);
+            this.topSources = new SpaceSaving(counters);
+            this.topDestinations = new SpaceSaving(counters);
+        }
+
+        synchronized void add(PacketHeaders headers, int length) {
+            sources.add(headers.getSourceHigh(), headers.getSourceLow(), length);
+            topSources.add(headers.getSourceHigh(), headers.getSourceLow(), length);
+            destinations.add(headers.getDestinationHigh(), headers.getDestinationLow(), length);
+            topDestinations.add(headers.getDestinationHigh(), headers.getDestinationLow(), length);
+        }
+
+        synchronized void drainTo(
+                CountMinSketch mergedSources,
+                Map<Key, long[]> sourceCandidates,
+                CountMinSketch mergedDestinations,
+                Map<Key, long[]> destinationCandidates
+        ) {
+            mergedSources.merge(sources);
+            mergedDestinations.merge(destinations);
+            collect(topSources, sourceCandidates);
+            collect(topDestinations, destinationCandidates);
+            sources.clear();
+            destinations.clear();
+            topSources.clear();
+            topDestinations.clear();
+        }
+
+        long getMemoryBytes() {
+            return sources.getMemoryBytes() + destinations.getMemoryBytes()
+                    + topSources.getMemoryBytes() + topDestinations.getMemoryBytes();
+        }
+
+        private static void collect(SpaceSaving summary, Map<Key, long[]> candidates) {
+            for (int slot = 0; slot < summary.size(); slot++) {
+                Key key = new Key(summary.getHigh(slot), summary.getLow(slot));
+                candidates.computeIfAbsent(key, k -> new long[1])[0] += summary.getPackets(slot);
+            }
+        }
+    }
+
+    /**
+     * Address of the candidate heavy hitter.
+     */
+    @Value
+    private static class Key {
+        long high;
+        long low;
+    }
+}
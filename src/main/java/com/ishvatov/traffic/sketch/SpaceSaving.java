@@ -0,0 +1,206 @@
+package com.ishvatov.traffic.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Weighted Space-Saving summary, which keeps a fixed number of counters of the
+ * heaviest 128-bit keys. Any key, whose weight exceeds total / capacity, is guaranteed
+ * to be monitored; the counter of a monitored key overestimates its weight by at most
+ * its error. The new key inherits the packets of the replaced one as well, so its packet
+ * count is overestimated too, by at most the packets of all the keys it has replaced.
+ * The counters are kept in an indexed min-heap and located via an open addressing
+ * index, so each update costs O(log capacity) without allocation. Not thread safe.
+ *
+ * @author ishvatov
+ */
+public final class SpaceSaving {
+    private final int capacity;
+    private final long[] highs;
+    private final long[] lows;
+    private final long[] counts;
+    private final long[] errors;
+    private final long[] packets;
+
+    // min-heap of the counter slots by count and position of each slot in the heap
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    // open addressing index from key to slot + 1, zero is an empty index cell
+    private final int[] index;
+    private final int indexMask;
+
+    private int size = 0;
+
+    /**
+     * @param capacity number of the monitored keys.
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Space-Saving capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.highs = new long[capacity];
+        this.lows = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.packets = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+
+        int indexCapacity = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.index = new int[indexCapacity];
+        this.indexMask = indexCapacity - 1;
+    }
+
+    /**
+     * Adds the weight of one packet to the key.
+     */
+    public void add(long high, long low, long weight) {
+        int cell = find(high, low);
+        if (cell >= 0) {
+            int slot = index[cell] - 1;
+            counts[slot] += weight;
+            packets[slot]++;
+            siftDown(heapPositions[slot]);
+            return;
+        }
+
+        if (size < capacity) {
+            int slot = size++;
+            highs[slot] = high;
+            lows[slot] = low;
+            counts[slot] = weight;
+            errors[slot] = 0;
+            packets[slot] = 1;
+            index[~cell] = slot + 1;
+            heap[slot] = slot;
+            heapPositions[slot] = slot;
+            siftUp(slot);
+            return;
+        }
+
+        // replace the key with the minimal count, new key inherits its count as the error
+        int slot = heap[0];
+        removeFromIndex(find(highs[slot], lows[slot]));
+        long minimum = counts[slot];
+        highs[slot] = high;
+        lows[slot] = low;
+        counts[slot] = minimum + weight;
+        errors[slot] = minimum;
+        packets[slot]++;
+        index[~find(high, low)] = slot + 1;
+        siftDown(0);
+    }
+
+    public void clear() {
+        Arrays.fill(index, 0);
+        size = 0;
+    }
+
+    /**
+     * @return number of the monitored keys, slots [0, size) are valid.
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getHigh(int slot) {
+        return highs[slot];
+    }
+
+    public long getLow(int slot) {
+        return lows[slot];
+    }
+
+    public long getCount(int slot) {
+        return counts[slot];
+    }
+
+    public long getError(int slot) {
+        return errors[slot];
+    }
+
+    /**
+     * @param slot slot of the monitored key
+     * @return number of the packets of the key, overestimated like its weight.
+     */
+    public long getPackets(int slot) {
+        return packets[slot];
+    }
+
+    /**
+     * @return size of the counters, the heap and the index in bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) capacity * Long.BYTES * 5
+                + (long) capacity * Integer.BYTES * 2
+                + (long) index.length * Integer.BYTES;
+    }
+
+    /**
+     * @return index cell of the key or inverted index of the empty cell, where the key should be placed.
+     */
+    private int find(long high, long low) {
+        int cell = (int) Hashing.hash(high, low) & indexMask;
+        while (index[cell] != 0) {
+            int slot = index[cell] - 1;
+            if (highs[slot] == high && lows[slot] == low) {
+                return cell;
+            }
+            cell = (cell + 1) & indexMask;
+        }
+        return ~cell;
+    }
+
+    private void removeFromIndex(int cell) {
+        int hole = cell;
+        int next = (hole + 1) & indexMask;
+        while (index[next] != 0) {
+            int slot = index[next] - 1;
+            int home = (int) Hashing.hash(highs[slot], lows[slot]) & indexMask;
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = 0;
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[slot]) {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(slot, position);
+    }
+
+    private void place(int slot, int position) {
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+}
@@ -0,0 +1,141 @@
+package com.ishvatov.traffic.startup;
+
+import com.ishvatov.traffic.capture.CaptureBackend;
+import com.ishvatov.traffic.capture.CaptureProfile;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationFailedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.SpringApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.io.support.ResourcePropertySource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opens the pcap handles of the capture interfaces as soon as the environment is prepared, before
+ * any bean is created, if the {@value #ENABLED_PROPERTY} property is set. The kernel starts to buffer
+ * the packets right away, so the packets, which arrive while the context is started, are counted
+ * once the capture pipeline is started, instead of being lost. The handles are taken by the
+ * application, the ones, which were not taken, are closed with the context. Only the
+ * {@link CaptureBackend#PCAP} backend is opened early.
+ * <p>
+ * Registered in the context as a singleton together with its {@link StartupTimer}.
+ *
+ * @author ishvatov
+ */
+public class EarlyCapture implements ApplicationListener<SpringApplicationEvent> {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(EarlyCapture.class);
+
+    /**
+     * Property, which enables opening of the handles before the context is started.
+     */
+    public static final String ENABLED_PROPERTY = "capture.early-open";
+
+    /**
+     * Names of the singletons, which are registered in the context.
+     */
+    public static final String BEAN_NAME = "earlyCapture";
+    public static final String TIMER_BEAN_NAME = "startupTimer";
+
+    // backend of the live capture
+    private static final String BACKEND_PROPERTY = "capture.backend";
+
+    // file of the capture properties, which is not a part of the environment yet
+    private static final String CAPTURE_PROPERTIES = "classpath:capture.properties";
+
+    private final StartupTimer startupTimer;
+
+    // opened handles by interface name, which were not taken yet
+    private final Map<String, PcapHandle> handles = new LinkedHashMap<>();
+
+    public EarlyCapture(StartupTimer startupTimer) {
+        this.startupTimer = startupTimer;
+    }
+
+    @Override
+    public void onApplicationEvent(SpringApplicationEvent event) {
+        if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            open(((ApplicationEnvironmentPreparedEvent) event).getEnvironment(), event.getArgs());
+        } else if (event instanceof ApplicationPreparedEvent) {
+            ConfigurableApplicationContext context = ((ApplicationPreparedEvent) event).getApplicationContext();
+            context.getBeanFactory().registerSingleton(TIMER_BEAN_NAME, startupTimer);
+            context.getBeanFactory().registerSingleton(BEAN_NAME, this);
+        } else if (event instanceof ApplicationReadyEvent) {
+            startupTimer.mark(StartupTimer.CONTEXT_READY);
+        } else if (event instanceof ApplicationFailedEvent) {
+            close();
+        }
+    }
+
+    /**
+     * Takes the handle, which was opened before the context was started.
+     *
+     * @param name name of the capture interface.
+     * @return opened handle or null, if it was not opened early.
+     */
+    public synchronized PcapHandle take(String name) {
+        return handles.remove(name);
+    }
+
+    /**
+     * Closes the handles, which were not taken.
+     */
+    public synchronized void close() {
+        handles.values().forEach(PcapHandle::close);
+        handles.clear();
+    }
+
+    private synchronized void open(ConfigurableEnvironment environment, String[] args) {
+        PropertyResolver properties;
+        try {
+            MutablePropertySources sources = new MutablePropertySources(environment.getPropertySources());
+            sources.addLast(new ResourcePropertySource(CAPTURE_PROPERTIES));
+            properties = new PropertySourcesPropertyResolver(sources);
+        } catch (IOException ex) {
+            LOGGER.warn("Capture properties are not available, handles are opened later: {}", ex.getMessage());
+            return;
+        }
+        if (!properties.getProperty(ENABLED_PROPERTY, Boolean.class, false)
+                || properties.getProperty(BACKEND_PROPERTY, CaptureBackend.class, CaptureBackend.PCAP) != CaptureBackend.PCAP) {
+            return;
+        }
+
+        CaptureProfile profile = new CaptureProfile(
+                properties.getRequiredProperty("capture.profile.snaplen", Integer.class),
+                properties.getRequiredProperty(
+                        "capture.profile.promiscuous-mode", PcapNetworkInterface.PromiscuousMode.class
+                ),
+                properties.getRequiredProperty("capture.profile.timeout-millis", Integer.class),
+                properties.getRequiredProperty("capture.profile.buffer-size", Integer.class),
+                properties.getRequiredProperty("capture.profile.immediate-mode", Boolean.class),
+                properties.getRequiredProperty("capture.profile.timestamp-precision", PcapHandle.TimestampPrecision.class),
+                properties.getProperty("capture.profile.filter", "")
+        );
+        String filter = CaptureProfile.commandLineFilter(args);
+        String[] names = properties.getRequiredProperty("capture.interfaces", String[].class);
+        try {
+            for (String name : Arrays.stream(names).map(String::trim).toArray(String[]::new)) {
+                handles.put(name, profile.open(name, filter));
+            }
+            startupTimer.mark(StartupTimer.HANDLES_OPENED);
+        } catch (Exception ex) {
+            // the application opens the handles itself and reports the error
+            LOGGER.warn("Capture handles were not opened early: {}", ex.getMessage());
+            close();
+        }
+    }
+}
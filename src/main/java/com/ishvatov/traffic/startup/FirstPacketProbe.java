@@ -0,0 +1,43 @@
+package com.ishvatov.traffic.startup;
+
+import com.ishvatov.traffic.capture.PacketHandler;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+/**
+ * {@link PacketHandler}, which marks the {@link StartupTimer#FIRST_PACKET} phase, when the
+ * wrapped handler has counted the first packet. After that the only cost on the hot path
+ * is the read of the flag, which is never written again.
+ *
+ * @author ishvatov
+ */
+public class FirstPacketProbe implements PacketHandler {
+    private final PacketHandler handler;
+    private final StartupTimer startupTimer;
+
+    // set once by the worker, which has counted the first packet
+    private volatile boolean counted;
+
+    public FirstPacketProbe(PacketHandler handler, StartupTimer startupTimer) {
+        this.handler = handler;
+        this.startupTimer = startupTimer;
+    }
+
+    @Override
+    public void onStart(DataLinkType dataLinkType) {
+        handler.onStart(dataLinkType);
+    }
+
+    @Override
+    public void onStart(int worker, DataLinkType dataLinkType) {
+        handler.onStart(worker, dataLinkType);
+    }
+
+    @Override
+    public void onPacket(int worker, int length, long timestamp, byte[] headers, int offset, int headerLength) {
+        handler.onPacket(worker, length, timestamp, headers, offset, headerLength);
+        if (!counted) {
+            counted = true;
+            startupTimer.mark(StartupTimer.FIRST_PACKET);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.ishvatov.traffic.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the startup phases of the application from the start of the JVM, so the time
+ * from the start to the first counted packet can be compared between the startup modes.
+ * Every phase is logged once as {@code Startup: <phase> in <millis> ms after the JVM start}.
+ *
+ * @author ishvatov
+ */
+public class StartupTimer {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTimer.class);
+
+    // phases of the startup
+    public static final String HANDLES_OPENED = "capture handles opened";
+    public static final String CONTEXT_READY = "application context ready";
+    public static final String CAPTURE_STARTED = "capture started";
+    public static final String FIRST_PACKET = "first packet counted";
+
+    // wall clock time of the JVM start in milliseconds since epoch
+    private final long jvmStartMillis;
+
+    // milliseconds since the JVM start by phase in the order of the phases
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    public StartupTimer() {
+        this(ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    /**
+     * @param jvmStartMillis time of the JVM start in milliseconds since epoch.
+     */
+    public StartupTimer(long jvmStartMillis) {
+        this.jvmStartMillis = jvmStartMillis;
+    }
+
+    /**
+     * Records the phase, only the first time of every phase is kept.
+     *
+     * @param phase name of the phase.
+     * @return milliseconds from the JVM start to the first time of the phase.
+     */
+    public synchronized long mark(String phase) {
+        Long elapsed = phases.get(phase);
+        if (elapsed == null) {
+            elapsed = System.currentTimeMillis() - jvmStartMillis;
+            phases.put(phase, elapsed);
+            LOGGER.info("Startup: {} in {} ms after the JVM start", phase, elapsed);
+        }
+        return elapsed;
+    }
+
+    /**
+     * @return milliseconds from the JVM start by phase in the order of the phases.
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phases));
+    }
+}
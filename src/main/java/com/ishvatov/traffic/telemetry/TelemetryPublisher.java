@@ -0,0 +1,220 @@
+package com.ishvatov.traffic.telemetry;
+
+import com.ishvatov.traffic.wire.TelemetryRecord;
+import com.ishvatov.traffic.wire.TrafficInterval;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Publishes the per-interval traffic aggregates to the kafka telemetry topic. Intervals are
+ * built from the cumulative lock-free counters by the scheduler thread, so the capture thread
+ * is never involved. Only one record is in flight at a time: while the broker is slow, the
+ * intervals are collected in the bounded pending queue and then sent as one batched record.
+ * If the queue is full, the oldest intervals are dropped.
+ *
+ * @author ishvatov
+ */
+public class TelemetryPublisher {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(TelemetryPublisher.class);
+
+    // dependencies
+    private final KafkaTemplate<String, TrafficRecord> kafkaTemplate;
+    private final Executor executor;
+
+    // publisher configuration
+    private final String topicName;
+    private final String sensorName;
+    private final int pendingCapacity;
+    private final int maxBatch;
+
+    // intervals, which are not acknowledged yet, the first inFlight of them are being sent
+    private final Deque<TrafficInterval> pending = new ArrayDeque<>();
+    private int inFlight;
+
+    // cumulative values of the previous collection, timestamp is zero before the first one
+    private long previousTimestamp;
+    private long previousBytes;
+    private long previousPackets;
+    private long previousReceived;
+    private long previousDropped;
+    private long previousIfDropped;
+
+    // publisher statistics
+    private long sentRecords;
+    private long sentIntervals;
+    private long droppedIntervals;
+
+    /**
+     * @param kafkaTemplate   template, which sends the records
+     * @param executor        executor, which sends the remaining intervals after the acknowledgement
+     * @param topicName       name of the telemetry topic
+     * @param sensorName      name of this sensor, key of the records
+     * @param pendingCapacity maximum number of not acknowledged intervals
+     * @param maxBatch        maximum number of intervals in one record
+     */
+    public TelemetryPublisher(
+            KafkaTemplate<String, TrafficRecord> kafkaTemplate,
+            Executor executor,
+            String topicName,
+            String sensorName,
+            int pendingCapacity,
+            int maxBatch
+    ) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.executor = executor;
+        this.topicName = topicName;
+        this.sensorName = sensorName;
+        this.pendingCapacity = pendingCapacity;
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * Finishes the current interval and sends the pending intervals, if nothing is in flight.
+     * The first call only remembers the cumulative values.
+     *
+     * @param timestamp current time, milliseconds since epoch
+     * @param bytes     cumulative amount of captured bytes
+     * @param packets   cumulative number of captured packets
+     * @param received  cumulative number of packets, received by pcap
+     * @param dropped   cumulative number of packets, dropped by pcap
+     * @param ifDropped cumulative number of packets, dropped by the network interface
+     * @return finished interval or null, if this is the first call.
+     */
+    public synchronized TrafficInterval collect(
+            long timestamp,
+            long bytes,
+            long packets,
+            long received,
+            long dropped,
+            long ifDropped
+    ) {
+        if (previousTimestamp == 0) {
+            remember(timestamp, bytes, packets, received, dropped, ifDropped);
+            return null;
+        }
+
+        TrafficInterval interval = new TrafficInterval(
+                previousTimestamp,
+                timestamp - previousTimestamp,
+                bytes - previousBytes,
+                packets - previousPackets,
+                received - previousReceived,
+                dropped - previousDropped,
+                ifDropped - previousIfDropped
+        );
+        remember(timestamp, bytes, packets, received, dropped, ifDropped);
+
+        if (pending.size() == pendingCapacity) {
+            droppedIntervals++;
+            if (inFlight == pendingCapacity) {
+                // all the pending intervals are being sent, so the new one is dropped
+                return interval;
+            }
+            dropOldestPending();
+        }
+        pending.addLast(interval);
+        sendPending();
+        return interval;
+    }
+
+    /**
+     * @return number of the not acknowledged intervals.
+     */
+    public synchronized int getPendingSize() {
+        return pending.size();
+    }
+
+    public synchronized long getSentRecords() {
+        return sentRecords;
+    }
+
+    public synchronized long getSentIntervals() {
+        return sentIntervals;
+    }
+
+    public synchronized long getDroppedIntervals() {
+        return droppedIntervals;
+    }
+
+    /**
+     * Drops the oldest interval, which is not in flight.
+     */
+    private void dropOldestPending() {
+        Deque<TrafficInterval> sending = new ArrayDeque<>(inFlight);
+        for (int i = 0; i < inFlight; i++) {
+            sending.addFirst(pending.removeFirst());
+        }
+        pending.removeFirst();
+        for (TrafficInterval interval : sending) {
+            pending.addFirst(interval);
+        }
+    }
+
+    private void remember(long timestamp, long bytes, long packets, long received, long dropped, long ifDropped) {
+        previousTimestamp = timestamp;
+        previousBytes = bytes;
+        previousPackets = packets;
+        previousReceived = received;
+        previousDropped = dropped;
+        previousIfDropped = ifDropped;
+    }
+
+    private synchronized void sendPending() {
+        if (inFlight != 0 || pending.isEmpty()) {
+            return;
+        }
+
+        List<TrafficInterval> batch = new ArrayList<>(Math.min(maxBatch, pending.size()));
+        for (TrafficInterval interval : pending) {
+            if (batch.size() == maxBatch) {
+                break;
+            }
+            batch.add(interval);
+        }
+        inFlight = batch.size();
+
+        ListenableFuture<SendResult<String, TrafficRecord>> future;
+        try {
+            future = kafkaTemplate.send(topicName, sensorName, new TelemetryRecord(batch));
+        } catch (RuntimeException ex) {
+            onFailure(ex);
+            return;
+        }
+        future.addCallback(result -> onSuccess(), this::onFailure);
+    }
+
+    private synchronized void onSuccess() {
+        for (int i = 0; i < inFlight; i++) {
+            pending.removeFirst();
+        }
+        sentRecords++;
+        sentIntervals += inFlight;
+        inFlight = 0;
+
+        // send the rest of the intervals, which were collected while the broker was slow
+        if (!pending.isEmpty()) {
+            try {
+                executor.execute(this::sendPending);
+            } catch (RejectedExecutionException ex) {
+                LOGGER.debug("Pending telemetry is left for the next interval");
+            }
+        }
+    }
+
+    private synchronized void onFailure(Throwable ex) {
+        inFlight = 0;
+        LOGGER.warn("Telemetry was not sent, {} intervals are pending: {}", pending.size(), ex.getMessage());
+    }
+}
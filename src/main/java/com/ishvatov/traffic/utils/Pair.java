@@ -10,9 +10,4 @@ import lombok.NoArgsConstructor;
 public class Pair<K, V> {
     private K first;
     private V second;
-
-    public void update(Pair<K, V> other) {
-        this.setFirst(other.getFirst());
-        this.setSecond(other.getSecond());
-    }
 }
@@ -0,0 +1,66 @@
+package com.ishvatov.traffic.wire;
+
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Alert about the amount of traffic, which is out of limits. One breach of the limits is reported
+ * by one {@link AlertStatus#OPEN} alert, the periodic {@link AlertStatus#ONGOING} alerts and one
+ * {@link AlertStatus#RESOLVED} alert.
+ *
+ * @author ishvatov
+ */
+@Value
+@AllArgsConstructor
+public class AlertRecord implements TrafficRecord {
+    // source of the alerts about the whole traffic
+    public static final String GLOBAL_SOURCE = "all";
+
+    // time of the evaluation, milliseconds since epoch
+    long timestamp;
+
+    // part of the traffic: GLOBAL_SOURCE or name of the limit rule
+    String source;
+
+    // amount of traffic, which is out of limits
+    long current;
+
+    // limits, which were used during the evaluation
+    Limits limits;
+
+    // hosts and flows with the biggest amount of traffic
+    TopTalkers topTalkers;
+
+    // amount of traffic of every capture interface, in the order of the interfaces
+    Map<String, Long> interfaces;
+
+    // status of the breach
+    AlertStatus status;
+
+    // start of the breach, milliseconds since epoch
+    long since;
+
+    // amount of traffic, which was the farthest out of limits during the breach
+    long peak;
+
+    // number of the out of limits evaluations during the breach
+    long breaches;
+
+    /**
+     * Creates the alert, which opens the breach at the time of the evaluation.
+     */
+    public AlertRecord(
+            long timestamp,
+            String source,
+            long current,
+            Limits limits,
+            TopTalkers topTalkers,
+            Map<String, Long> interfaces
+    ) {
+        this(timestamp, source, current, limits, topTalkers, interfaces, AlertStatus.OPEN, timestamp, current, 1);
+    }
+}
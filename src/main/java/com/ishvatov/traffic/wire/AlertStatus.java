@@ -0,0 +1,23 @@
+package com.ishvatov.traffic.wire;
+
+/**
+ * Status of the breach of the limits, which the alert is about.
+ *
+ * @author ishvatov
+ */
+public enum AlertStatus {
+    /**
+     * Traffic has been out of limits for the minimum breach duration.
+     */
+    OPEN,
+
+    /**
+     * Breach goes on, the alert coalesces the breaches since the previous alert.
+     */
+    ONGOING,
+
+    /**
+     * Traffic is back in the limits.
+     */
+    RESOLVED
+}
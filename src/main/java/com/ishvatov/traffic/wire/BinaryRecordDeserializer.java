@@ -0,0 +1,141 @@
+package com.ishvatov.traffic.wire;
+
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deserializes the records, written by the {@link BinaryRecordSerializer}.
+ *
+ * @author ishvatov
+ */
+public class BinaryRecordDeserializer implements Deserializer<TrafficRecord> {
+    @Override
+    public TrafficRecord deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            return read(new WireReader(data));
+        } catch (IllegalArgumentException ex) {
+            throw new SerializationException(String.format("Invalid record in topic %s", topic), ex);
+        }
+    }
+
+    /**
+     * Reads the record with the header.
+     *
+     * @param reader reader of the record
+     * @return read record.
+     */
+    public static TrafficRecord read(WireReader reader) {
+        int magic = reader.readByte();
+        int version = reader.readByte();
+        if (magic != BinaryRecordSerializer.MAGIC || version != BinaryRecordSerializer.VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported header: %d, version %d", magic, version));
+        }
+
+        int type = reader.readByte();
+        switch (type) {
+            case BinaryRecordSerializer.ALERT:
+                return readAlert(reader);
+            case BinaryRecordSerializer.TELEMETRY:
+                return readTelemetry(reader);
+            case BinaryRecordSerializer.PARTIAL_COUNT:
+                return readPartialCount(reader);
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported record type: %d", type));
+        }
+    }
+
+    private static AlertRecord readAlert(WireReader reader) {
+        long timestamp = reader.readVarLong();
+        String source = reader.readString();
+        long current = reader.readVarLong();
+        Limits limits = new Limits(
+                reader.readVarLong(),
+                reader.readVarLong(),
+                reader.readVarLong(),
+                reader.readVarLong()
+        );
+        TopTalkers topTalkers = new TopTalkers(
+                readTalkers(reader),
+                readTalkers(reader),
+                readTalkers(reader),
+                readTalkers(reader)
+        );
+        int count = reader.readLength();
+        Map<String, Long> interfaces = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            interfaces.put(reader.readString(), reader.readVarLong());
+        }
+
+        int status = reader.readByte();
+        if (status >= AlertStatus.values().length) {
+            throw new IllegalArgumentException(String.format("Unsupported alert status: %d", status));
+        }
+        return new AlertRecord(
+                timestamp,
+                source,
+                current,
+                limits,
+                topTalkers,
+                interfaces,
+                AlertStatus.values()[status],
+                reader.readVarLong(),
+                reader.readVarLong(),
+                reader.readVarLong()
+        );
+    }
+
+    private static List<TopTalker> readTalkers(WireReader reader) {
+        int count = reader.readLength();
+        List<TopTalker> talkers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            talkers.add(new TopTalker(
+                    reader.readString(),
+                    reader.readVarLong(),
+                    reader.readVarLong(),
+                    reader.readVarLong()
+            ));
+        }
+        return talkers;
+    }
+
+    private static TelemetryRecord readTelemetry(WireReader reader) {
+        int count = reader.readLength();
+        List<TrafficInterval> intervals = new ArrayList<>(count);
+        long timestamp = 0;
+        for (int i = 0; i < count; i++) {
+            timestamp += reader.readZigZagLong();
+            intervals.add(new TrafficInterval(
+                    timestamp,
+                    reader.readVarLong(),
+                    reader.readVarLong(),
+                    reader.readVarLong(),
+                    reader.readVarLong(),
+                    reader.readVarLong(),
+                    reader.readVarLong()
+            ));
+        }
+        return new TelemetryRecord(intervals);
+    }
+
+    private static PartialCountRecord readPartialCount(WireReader reader) {
+        return new PartialCountRecord(
+                reader.readString(),
+                reader.readVarLong(),
+                reader.readVarLong(),
+                reader.readVarLong(),
+                reader.readVarLong()
+        );
+    }
+}
@@ -0,0 +1,139 @@
+package com.ishvatov.traffic.wire;
+
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the records into the compact binary format. All the numbers are varint encoded.
+ * <pre>
+ * record    := magic(0x54) version(4) type body
+ * alert     := timestamp source current limitsVersion min max effectiveDate
+ *              talkers(hosts) talkers(flows) talkers(heavySources) talkers(heavyDestinations)
+ *              interfaces status(ordinal) since peak breaches
+ * talkers   := count (name bytes packets error)*, name is length and UTF-8 bytes
+ * interfaces:= count (name bytes)*
+ * telemetry := count interval*
+ * interval  := zigzag(timestamp - previous timestamp) duration bytes packets received dropped ifDropped
+ * partial   := sensor windowStart windowMillis bytes packets, sensor is length and UTF-8 bytes
+ * </pre>
+ * Writers are reused by each thread, so the only allocation is the resulting array.
+ *
+ * @author ishvatov
+ */
+public class BinaryRecordSerializer implements Serializer<TrafficRecord> {
+    // header of the record
+    static final int MAGIC = 0x54;
+    static final int VERSION = 4;
+
+    // types of the records
+    static final int ALERT = 1;
+    static final int TELEMETRY = 2;
+    static final int PARTIAL_COUNT = 3;
+
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final ThreadLocal<WireWriter> writers = ThreadLocal.withInitial(() -> new WireWriter(INITIAL_CAPACITY));
+
+    @Override
+    public byte[] serialize(String topic, TrafficRecord record) {
+        if (record == null) {
+            return null;
+        }
+
+        WireWriter writer = writers.get();
+        writer.reset();
+        write(writer, record);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Writes the record with the header.
+     *
+     * @param writer writer, which is used to write the record
+     * @param record record to write
+     */
+    public static void write(WireWriter writer, TrafficRecord record) {
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        if (record instanceof AlertRecord) {
+            writer.writeByte(ALERT);
+            writeAlert(writer, (AlertRecord) record);
+        } else if (record instanceof TelemetryRecord) {
+            writer.writeByte(TELEMETRY);
+            writeTelemetry(writer, (TelemetryRecord) record);
+        } else if (record instanceof PartialCountRecord) {
+            writer.writeByte(PARTIAL_COUNT);
+            writePartialCount(writer, (PartialCountRecord) record);
+        } else {
+            throw new IllegalArgumentException(String.format("Unsupported record: %s", record.getClass()));
+        }
+    }
+
+    private static void writeAlert(WireWriter writer, AlertRecord alert) {
+        Limits limits = alert.getLimits();
+        writer.writeVarLong(alert.getTimestamp());
+        writer.writeString(alert.getSource());
+        writer.writeVarLong(alert.getCurrent());
+        writer.writeVarLong(limits.getVersion());
+        writer.writeVarLong(limits.getMin());
+        writer.writeVarLong(limits.getMax());
+        writer.writeVarLong(limits.getEffectiveDate());
+
+        TopTalkers topTalkers = alert.getTopTalkers();
+        writeTalkers(writer, topTalkers.getHosts());
+        writeTalkers(writer, topTalkers.getFlows());
+        writeTalkers(writer, topTalkers.getHeavySources());
+        writeTalkers(writer, topTalkers.getHeavyDestinations());
+
+        Map<String, Long> interfaces = alert.getInterfaces();
+        writer.writeVarLong(interfaces.size());
+        for (Map.Entry<String, Long> entry : interfaces.entrySet()) {
+            writer.writeString(entry.getKey());
+            writer.writeVarLong(entry.getValue());
+        }
+
+        writer.writeByte(alert.getStatus().ordinal());
+        writer.writeVarLong(alert.getSince());
+        writer.writeVarLong(alert.getPeak());
+        writer.writeVarLong(alert.getBreaches());
+    }
+
+    private static void writeTalkers(WireWriter writer, List<TopTalker> talkers) {
+        writer.writeVarLong(talkers.size());
+        for (TopTalker talker : talkers) {
+            writer.writeString(talker.getName());
+            writer.writeVarLong(talker.getBytes());
+            writer.writeVarLong(talker.getPackets());
+            writer.writeVarLong(talker.getError());
+        }
+    }
+
+    private static void writeTelemetry(WireWriter writer, TelemetryRecord telemetry) {
+        List<TrafficInterval> intervals = telemetry.getIntervals();
+        writer.writeVarLong(intervals.size());
+        long previous = 0;
+        for (TrafficInterval interval : intervals) {
+            writer.writeZigZagLong(interval.getTimestamp() - previous);
+            writer.writeVarLong(interval.getDurationMillis());
+            writer.writeVarLong(interval.getBytes());
+            writer.writeVarLong(interval.getPackets());
+            writer.writeVarLong(interval.getReceived());
+            writer.writeVarLong(interval.getDropped());
+            writer.writeVarLong(interval.getIfDropped());
+            previous = interval.getTimestamp();
+        }
+    }
+
+    private static void writePartialCount(WireWriter writer, PartialCountRecord partialCount) {
+        writer.writeString(partialCount.getSensor());
+        writer.writeVarLong(partialCount.getWindowStart());
+        writer.writeVarLong(partialCount.getWindowMillis());
+        writer.writeVarLong(partialCount.getBytes());
+        writer.writeVarLong(partialCount.getPackets());
+    }
+}
@@ -0,0 +1,30 @@
+package com.ishvatov.traffic.wire;
+
+import lombok.Value;
+
+/**
+ * Amount of traffic, captured by one sensor during one aligned window. Published by the sensors
+ * and merged by the aggregator, which validates the traffic of all the sensors against the limits.
+ *
+ * @author ishvatov
+ */
+@Value
+public class PartialCountRecord implements TrafficRecord {
+    // name of the sensor, which has captured the traffic
+    String sensor;
+
+    // start of the window, aligned to its duration, milliseconds since epoch
+    long windowStart;
+    long windowMillis;
+
+    // traffic, captured during the window
+    long bytes;
+    long packets;
+
+    /**
+     * @return key of the record, the window of the sensor is published again with the same key.
+     */
+    public String getKey() {
+        return sensor + "/" + windowStart;
+    }
+}
@@ -0,0 +1,18 @@
+package com.ishvatov.traffic.wire;
+
+/**
+ * Format of the records, which are published to kafka.
+ *
+ * @author ishvatov
+ */
+public enum RecordFormat {
+    /**
+     * Compact varint encoded format of the {@link BinaryRecordSerializer}.
+     */
+    BINARY,
+
+    /**
+     * Human readable messages of the {@link TextRecordSerializer}.
+     */
+    TEXT
+}
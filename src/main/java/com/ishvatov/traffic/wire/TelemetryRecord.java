@@ -0,0 +1,15 @@
+package com.ishvatov.traffic.wire;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Batch of the consecutive telemetry intervals.
+ *
+ * @author ishvatov
+ */
+@Value
+public class TelemetryRecord implements TrafficRecord {
+    List<TrafficInterval> intervals;
+}
@@ -0,0 +1,131 @@
+package com.ishvatov.traffic.wire;
+
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Serializes the records into the human readable messages, built with the text templates.
+ *
+ * @author ishvatov
+ */
+@RequiredArgsConstructor
+public class TextRecordSerializer implements Serializer<TrafficRecord> {
+    // template of the alert, arguments: current, min, max, effective date
+    private final String alertMessage;
+
+    // template of the resolved alert, arguments: current, min, max, effective date
+    private final String alertResolvedMessage;
+
+    // template of the breach, which goes on or is resolved, arguments: status, start, peak, breaches
+    private final String alertStatusMessage;
+
+    // template of the limit rule, arguments: name of the rule
+    private final String alertRuleMessage;
+
+    // template of the top talkers, arguments: hosts, flows, heavy sources, heavy destinations
+    private final String alertTopTalkersMessage;
+
+    // template of the traffic per interface, arguments: interfaces
+    private final String alertInterfacesMessage;
+
+    // template of one telemetry interval, arguments: start, duration, bytes, packets, pps,
+    // received, dropped, dropped by interface
+    private final String telemetryMessage;
+
+    @Override
+    public byte[] serialize(String topic, TrafficRecord record) {
+        if (record == null) {
+            return null;
+        }
+        return format(record).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param record record to format
+     * @return text message of the record.
+     */
+    public String format(TrafficRecord record) {
+        if (record instanceof AlertRecord) {
+            return formatAlert((AlertRecord) record);
+        } else if (record instanceof TelemetryRecord) {
+            return formatTelemetry((TelemetryRecord) record);
+        }
+        throw new IllegalArgumentException(String.format("Unsupported record: %s", record.getClass()));
+    }
+
+    private String formatAlert(AlertRecord alert) {
+        Limits limits = alert.getLimits();
+        String message = String.format(
+                alert.getStatus() == AlertStatus.RESOLVED ? alertResolvedMessage : alertMessage,
+                alert.getCurrent(),
+                limits.getMin(),
+                limits.getMax(),
+                new Date(limits.getEffectiveDate())
+        );
+
+        if (alert.getStatus() != AlertStatus.OPEN) {
+            message += String.format(
+                    alertStatusMessage,
+                    alert.getStatus(),
+                    new Date(alert.getSince()),
+                    alert.getPeak(),
+                    alert.getBreaches()
+            );
+        }
+
+        if (!AlertRecord.GLOBAL_SOURCE.equals(alert.getSource())) {
+            message += String.format(alertRuleMessage, alert.getSource());
+        }
+
+        if (alert.getInterfaces().size() > 1) {
+            message += String.format(
+                    alertInterfacesMessage,
+                    alert.getInterfaces().entrySet().stream()
+                            .map(entry -> entry.getKey() + ": " + entry.getValue())
+                            .collect(Collectors.joining("\n"))
+            );
+        }
+
+        TopTalkers topTalkers = alert.getTopTalkers();
+        if (!topTalkers.isEmpty()) {
+            message += String.format(
+                    alertTopTalkersMessage,
+                    formatTalkers(topTalkers.getHosts()),
+                    formatTalkers(topTalkers.getFlows()),
+                    formatTalkers(topTalkers.getHeavySources()),
+                    formatTalkers(topTalkers.getHeavyDestinations())
+            );
+        }
+        return message;
+    }
+
+    private String formatTelemetry(TelemetryRecord telemetry) {
+        return telemetry.getIntervals().stream()
+                .map(interval -> String.format(
+                        telemetryMessage,
+                        new Date(interval.getTimestamp()),
+                        interval.getDurationMillis(),
+                        interval.getBytes(),
+                        interval.getPackets(),
+                        interval.getPacketsPerSecond(),
+                        interval.getReceived(),
+                        interval.getDropped(),
+                        interval.getIfDropped()
+                ))
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String formatTalkers(List<TopTalker> topTalkers) {
+        return topTalkers.stream()
+                .map(TopTalker::toString)
+                .collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.ishvatov.traffic.wire;
+
+import lombok.Value;
+
+/**
+ * Amount of traffic, captured during one telemetry interval.
+ *
+ * @author ishvatov
+ */
+@Value
+public class TrafficInterval {
+    // start of the interval, milliseconds since epoch
+    long timestamp;
+    long durationMillis;
+
+    // captured traffic
+    long bytes;
+    long packets;
+
+    // pcap statistics of the interval
+    long received;
+    long dropped;
+    long ifDropped;
+
+    /**
+     * @return packets per second rate of the interval.
+     */
+    public long getPacketsPerSecond() {
+        return durationMillis == 0 ? 0 : packets * 1000 / durationMillis;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ishvatov.traffic.wire;
+
+/**
+ * Record, which is published to kafka. Records are serialized either with the compact
+ * {@link BinaryRecordSerializer} or with the text templates of {@link TextRecordSerializer}.
+ *
+ * @author ishvatov
+ */
+public interface TrafficRecord {
+}
@@ -0,0 +1,60 @@
+package com.ishvatov.traffic.wire;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values, written by the {@link WireWriter}.
+ *
+ * @author ishvatov
+ */
+public class WireReader {
+    private final byte[] buffer;
+    private int position;
+
+    public WireReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() {
+        checkAvailable(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public long readZigZagLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public int readLength() {
+        long length = readVarLong();
+        if (length > buffer.length - position) {
+            throw new IllegalArgumentException(String.format("Invalid length: %d", length));
+        }
+        return (int) length;
+    }
+
+    public String readString() {
+        int length = readLength();
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void checkAvailable(int length) {
+        if (position + length > buffer.length) {
+            throw new IllegalArgumentException("Unexpected end of the record");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ishvatov.traffic.wire;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the varint encoding of the numbers. One writer is reused
+ * for all the records, serialized by a thread, so only the resulting array is allocated.
+ *
+ * @author ishvatov
+ */
+public class WireWriter {
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * @param capacity initial capacity of the buffer in bytes
+     */
+    public WireWriter(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Clears the buffer, keeping the allocated memory.
+     */
+    public void reset() {
+        position = 0;
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes non negative value with 7 bits per byte, the highest bit marks the next byte.
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Writes signed value, small negative values take as few bytes as small positive ones.
+     */
+    public void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes the length of the UTF-8 representation and the representation itself.
+     */
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    /**
+     * @return copy of the written bytes.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.AfPacketCaptureChannel;
+import com.ishvatov.traffic.capture.CaptureBackend;
+import com.ishvatov.traffic.capture.CaptureChannel;
+import com.ishvatov.traffic.capture.CaptureProfile;
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketRingBuffer;
+import com.ishvatov.traffic.capture.TpacketV3Ring;
+import org.junit.Test;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNetworkInterface;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link TpacketV3Ring} and {@link AfPacketCaptureChannel} test class. The ring is tested on the
+ * synthetic blocks in the layout of the kernel, the channel - on the loopback interface, if the
+ * process is allowed to open the packet sockets.
+ *
+ * @author ishvatov
+ */
+public class AfPacketCaptureTest {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int FIRST_PACKET_OFFSET = 48;
+    private static final int MAC_OFFSET = 80;
+    private static final int CAPTURED_LENGTH = 64;
+    private static final int LOOPBACK_INDEX = 1;
+
+    @Test
+    public void Test_TpacketV3Ring_read_PassesPacketsInPlaceAndReleasesBlock() {
+        ByteBuffer ring = ByteBuffer.allocateDirect(2 * BLOCK_SIZE).order(ByteOrder.nativeOrder());
+        fillBlock(ring, 0, new int[]{60, 1514, 128}, 1_600_000_000L, 0);
+        TpacketV3Ring reader = new TpacketV3Ring(ring, BLOCK_SIZE, 2, 96, LOOPBACK_INDEX);
+
+        List<long[]> packets = new ArrayList<>();
+        assertTrue(reader.isReady());
+        assertEquals(3, reader.read(new CaptureChannel.Receiver() {
+            @Override
+            public void onPacket(int length, long timestamp, byte[] data) {
+                throw new AssertionError("Packets must be passed in place");
+            }
+
+            @Override
+            public void onPacket(int length, long timestamp, ByteBuffer buffer, int offset, int capturedLength) {
+                assertTrue(buffer == ring);
+                packets.add(new long[]{length, timestamp, buffer.get(offset), capturedLength});
+            }
+        }));
+
+        assertEquals(3, packets.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(new int[]{60, 1514, 128}[i], packets.get(i)[0]);
+            assertEquals(1_600_000_000L * 1_000_000_000L + i * 1000, packets.get(i)[1]);
+            // the first byte of the frame is its index in the block
+            assertEquals(i, packets.get(i)[2]);
+            assertEquals(Math.min(CAPTURED_LENGTH, new int[]{60, 1514, 128}[i]), packets.get(i)[3]);
+        }
+
+        // the block is handed back to the kernel and the next one is not filled yet
+        assertEquals(TpacketV3Ring.TP_STATUS_KERNEL, ring.getInt(8));
+        assertEquals(-1, reader.read(new CountingReceiver()));
+
+        // blocks are read in order and the ring wraps around
+        fillBlock(ring, 1, new int[]{60}, 1_600_000_000L, 0);
+        fillBlock(ring, 0, new int[]{60, 60}, 1_600_000_000L, 0);
+        CountingReceiver receiver = new CountingReceiver();
+        assertEquals(1, reader.read(receiver));
+        assertEquals(2, reader.read(receiver));
+        assertEquals(3, receiver.packets);
+    }
+
+    @Test
+    public void Test_TpacketV3Ring_read_SkipsOutgoingLoopbackCopies() {
+        ByteBuffer ring = ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.nativeOrder());
+        fillBlock(ring, 0, new int[]{60, 60, 60, 60}, 1_600_000_000L, 2);
+
+        CountingReceiver receiver = new CountingReceiver();
+        assertEquals(4, new TpacketV3Ring(ring, BLOCK_SIZE, 1, 96, LOOPBACK_INDEX).read(receiver));
+        assertEquals(2, receiver.packets);
+
+        fillBlock(ring, 0, new int[]{60, 60, 60, 60}, 1_600_000_000L, 2);
+        receiver = new CountingReceiver();
+        new TpacketV3Ring(ring, BLOCK_SIZE, 1, 96, 0).read(receiver);
+        assertEquals(4, receiver.packets);
+    }
+
+    @Test
+    public void Test_TpacketV3Ring_read_AllocatesNothingPerPacket() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        int[] lengths = new int[20];
+        long blockBytes = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] = 60 + i;
+            blockBytes += lengths[i];
+        }
+        ByteBuffer ring = ByteBuffer.allocateDirect(4 * BLOCK_SIZE).order(ByteOrder.nativeOrder());
+        for (int block = 0; block < 4; block++) {
+            fillBlock(ring, block, lengths, 1_600_000_000L, 0);
+        }
+        TpacketV3Ring reader = new TpacketV3Ring(ring, BLOCK_SIZE, 4, 96, LOOPBACK_INDEX);
+
+        // the packets are copied into the pipeline buffer and drained, like by the capture and the worker threads
+        PacketRingBuffer buffer = new PacketRingBuffer(64);
+        long[] bytes = new long[1];
+        PacketHandler handler = (worker, length, timestamp, headers, offset, headerLength) -> bytes[0] += length;
+        CaptureChannel.Receiver receiver = new CaptureChannel.Receiver() {
+            @Override
+            public void onPacket(int length, long timestamp, byte[] data) {
+            }
+
+            @Override
+            public void onPacket(int length, long timestamp, ByteBuffer data, int offset, int capturedLength) {
+                buffer.offer(length, timestamp, data, offset, capturedLength);
+            }
+        };
+
+        int blocks = 100_000;
+        long before = 0;
+        for (int i = 0; i < 2 * blocks; i++) {
+            if (i == blocks) {
+                // the first half warms up the compiler
+                before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            int block = i % 4;
+            ring.putInt(block * BLOCK_SIZE + 8, TpacketV3Ring.TP_STATUS_USER);
+            reader.read(receiver);
+            buffer.drain(0, handler, lengths.length);
+        }
+        long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(2L * blocks * blockBytes, bytes[0]);
+        // a few kilobytes of the measurement itself against 2M packets
+        assertTrue("Allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+
+    @Test
+    public void Test_AfPacketCaptureChannel_loop_CountsLoopbackPacketsOnce() throws Exception {
+        assumeTrue("AF_PACKET is available only on Linux", System.getProperty("os.name").startsWith("Linux"));
+        CaptureProfile profile = new CaptureProfile(
+                128,
+                PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS,
+                10,
+                4 << 20,
+                false,
+                PcapHandle.TimestampPrecision.NANO,
+                ""
+        );
+        CaptureChannel channel;
+        try {
+            channel = CaptureBackend.AF_PACKET.open(profile, "lo", null);
+        } catch (IOException | UnsatisfiedLinkError ex) {
+            // packet sockets require CAP_NET_RAW
+            assumeNoException(ex);
+            return;
+        }
+
+        int packets = 1000;
+        AtomicInteger matched = new AtomicInteger();
+        try (DatagramSocket socket = new DatagramSocket(0, InetAddress.getLoopbackAddress())) {
+            int port = socket.getLocalPort();
+            Thread capture = new Thread(() -> {
+                try {
+                    channel.loop(new CaptureChannel.Receiver() {
+                        @Override
+                        public void onPacket(int length, long timestamp, byte[] data) {
+                        }
+
+                        @Override
+                        public void onPacket(int length, long timestamp, ByteBuffer buffer, int offset, int capturedLength) {
+                            // ethernet, IPv4 without options and UDP destination port in the network order
+                            if (capturedLength >= 38 && buffer.get(offset + 23) == 17
+                                    && ((buffer.get(offset + 36) & 0xFF) << 8 | buffer.get(offset + 37) & 0xFF) == port) {
+                                matched.incrementAndGet();
+                            }
+                        }
+                    });
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            capture.start();
+
+            byte[] payload = new byte[100];
+            for (int i = 0; i < packets; i++) {
+                socket.send(new DatagramPacket(payload, payload.length, InetAddress.getLoopbackAddress(), port));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (matched.get() < packets && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // late duplicates would arrive within the block timeout
+            Thread.sleep(100);
+            channel.breakLoop();
+            capture.join(TimeUnit.SECONDS.toMillis(1));
+
+            assertEquals(packets, matched.get());
+            assertTrue(channel.getStats().getReceived() >= packets);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the block in the layout of the kernel and hands it to the user space.
+     * The first byte of every frame is the index of the packet in the block, every
+     * packet with the index divisible by the loopback period is an outgoing loopback one.
+     */
+    private static void fillBlock(ByteBuffer ring, int block, int[] lengths, long seconds, int loopbackPeriod) {
+        int blockOffset = block * BLOCK_SIZE;
+        for (int i = blockOffset; i < blockOffset + BLOCK_SIZE; i++) {
+            ring.put(i, (byte) 0);
+        }
+        ring.putInt(blockOffset + 12, lengths.length);
+        ring.putInt(blockOffset + 16, FIRST_PACKET_OFFSET);
+
+        int packetOffset = blockOffset + FIRST_PACKET_OFFSET;
+        for (int i = 0; i < lengths.length; i++) {
+            int captured = Math.min(lengths[i], CAPTURED_LENGTH);
+            int next = i == lengths.length - 1 ? 0 : (MAC_OFFSET + captured + 15) & ~15;
+            ring.putInt(packetOffset, next);
+            ring.putInt(packetOffset + 4, (int) seconds);
+            ring.putInt(packetOffset + 8, i * 1000);
+            ring.putInt(packetOffset + 12, captured);
+            ring.putInt(packetOffset + 16, lengths[i]);
+            ring.putShort(packetOffset + 24, (short) MAC_OFFSET);
+            ring.putInt(packetOffset + 52, LOOPBACK_INDEX);
+            ring.put(packetOffset + 58, (byte) (loopbackPeriod != 0 && i % loopbackPeriod == 0 ? 4 : 0));
+            ring.put(packetOffset + MAC_OFFSET, (byte) i);
+            packetOffset += next;
+        }
+        ring.putInt(blockOffset + 8, TpacketV3Ring.TP_STATUS_USER);
+    }
+
+    /**
+     * Receiver, which counts the packets.
+     */
+    private static final class CountingReceiver implements CaptureChannel.Receiver {
+        private int packets = 0;
+
+        @Override
+        public void onPacket(int length, long timestamp, byte[] data) {
+            packets++;
+        }
+
+        @Override
+        public void onPacket(int length, long timestamp, ByteBuffer buffer, int offset, int capturedLength) {
+            packets++;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.BinaryRecordDeserializer;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.EmbeddedKafkaRule;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link AlertPublisher} test class, which uses the embedded kafka broker.
+ *
+ * @author ishvatov
+ */
+public class AlertPublisherTest {
+    private static final String TOPIC = "alert";
+    private static final int PARTITIONS = 3;
+    private static final int SOURCES = 8;
+    private static final int ALERTS = 400;
+    private static final long AWAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @ClassRule
+    public static final EmbeddedKafkaRule EMBEDDED_KAFKA = new EmbeddedKafkaRule(1, true, PARTITIONS, TOPIC);
+
+    private static ScheduledExecutorService scheduler;
+
+    @BeforeClass
+    public static void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void Test_AlertPublisher_publish_DeliveredAndKeyedBySource() throws InterruptedException {
+        Map<String, Object> producerProps = KafkaTestUtils.producerProps(EMBEDDED_KAFKA.getEmbeddedKafka());
+        producerProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        producerProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+        producerProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+        DefaultKafkaProducerFactory<String, TrafficRecord> producerFactory = new DefaultKafkaProducerFactory<>(
+                producerProps, new StringSerializer(), new BinaryRecordSerializer()
+        );
+        AlertPublisher publisher = new AlertPublisher(
+                new KafkaTemplate<>(producerFactory), scheduler, null, TOPIC, "sensor", ALERTS, 3, 100
+        );
+
+        for (int i = 0; i < ALERTS; i++) {
+            assertTrue(publisher.publish("eth" + (i % SOURCES), alert(i)));
+        }
+        publisher.flush();
+        awaitOutboxEmpty(publisher);
+        assertEquals(ALERTS, publisher.getMetrics().getAcknowledged());
+        assertEquals(0, publisher.getMetrics().getFailed());
+        assertTrue(publisher.getMetrics().getMaxLatencyNanos() > 0);
+
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(
+                "alert-publisher-test", "false", EMBEDDED_KAFKA.getEmbeddedKafka()
+        );
+        Consumer<String, TrafficRecord> consumer = new DefaultKafkaConsumerFactory<>(
+                consumerProps, new StringDeserializer(), new BinaryRecordDeserializer()
+        ).createConsumer();
+        EMBEDDED_KAFKA.getEmbeddedKafka().consumeFromAnEmbeddedTopic(consumer, TOPIC);
+
+        // alerts of one source are in one partition, different sources use different partitions
+        Map<String, Integer> partitionsByKey = new HashMap<>();
+        Set<Integer> partitions = new HashSet<>();
+        Set<Long> received = new HashSet<>();
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (received.size() < ALERTS && System.currentTimeMillis() < deadline) {
+            for (ConsumerRecord<String, TrafficRecord> record : KafkaTestUtils.getRecords(consumer)) {
+                Integer previous = partitionsByKey.putIfAbsent(record.key(), record.partition());
+                assertTrue(previous == null || previous == record.partition());
+                partitions.add(record.partition());
+                received.add(((AlertRecord) record.value()).getTimestamp());
+            }
+        }
+        consumer.close();
+        producerFactory.destroy();
+
+        assertEquals(ALERTS, received.size());
+        assertEquals(SOURCES, partitionsByKey.size());
+        assertTrue(partitionsByKey.containsKey("sensor/eth0"));
+        assertTrue(partitions.size() > 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_AlertPublisher_publish_FullOutboxDropsAlerts() {
+        KafkaTemplate<String, TrafficRecord> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(new SettableListenableFuture<>());
+        AlertPublisher publisher = new AlertPublisher(kafkaTemplate, scheduler, null, TOPIC, "sensor", 2, 3, 100);
+
+        // broker never answers, so the alerts are not removed from the outbox
+        assertTrue(publisher.publish("eth0", alert(1)));
+        assertTrue(publisher.publish("eth0", alert(2)));
+        assertFalse(publisher.publish("eth0", alert(3)));
+
+        assertEquals(2, publisher.getOutboxSize());
+        assertEquals(2, publisher.getMetrics().getPublished());
+        assertEquals(1, publisher.getMetrics().getDropped());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_AlertPublisher_publish_FailedSendIsRetried() throws InterruptedException {
+        SettableListenableFuture<SendResult<String, TrafficRecord>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker is not available"));
+        SettableListenableFuture<SendResult<String, TrafficRecord>> succeeded = new SettableListenableFuture<>();
+        succeeded.set(null);
+
+        KafkaTemplate<String, TrafficRecord> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(failed, failed, succeeded);
+        AlertPublisher publisher = new AlertPublisher(kafkaTemplate, scheduler, null, TOPIC, "sensor", 2, 3, 10);
+
+        assertTrue(publisher.publish("eth0", alert(1)));
+        awaitOutboxEmpty(publisher);
+
+        assertEquals(1, publisher.getMetrics().getAcknowledged());
+        assertEquals(2, publisher.getMetrics().getRetried());
+        assertEquals(0, publisher.getMetrics().getFailed());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_AlertPublisher_publish_FailedAfterAllRetries() throws InterruptedException {
+        SettableListenableFuture<SendResult<String, TrafficRecord>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker is not available"));
+
+        KafkaTemplate<String, TrafficRecord> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(failed);
+        AlertPublisher publisher = new AlertPublisher(kafkaTemplate, scheduler, null, TOPIC, "sensor", 2, 2, 10);
+
+        assertTrue(publisher.publish("eth0", alert(1)));
+        awaitOutboxEmpty(publisher);
+
+        assertEquals(0, publisher.getMetrics().getAcknowledged());
+        assertEquals(2, publisher.getMetrics().getRetried());
+        assertEquals(1, publisher.getMetrics().getFailed());
+    }
+
+    private static AlertRecord alert(long timestamp) {
+        return new AlertRecord(timestamp, AlertRecord.GLOBAL_SOURCE, 4096, new Limits(1, 1024, 2048, 0), TopTalkers.EMPTY, Collections.emptyMap());
+    }
+
+    private static void awaitOutboxEmpty(AlertPublisher publisher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (publisher.getOutboxSize() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, publisher.getOutboxSize());
+    }
+}
@@ -0,0 +1,185 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.alert.AlertUpdate;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.service.TrafficServiceImpl;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.AlertStatus;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link AlertTracker} test class.
+ *
+ * @author ishvatov
+ */
+public class AlertTrackerTest {
+    private static final String SOURCE = AlertRecord.GLOBAL_SOURCE;
+    private static final Limits LIMITS = new Limits(1, 1_000, 10_000, 0);
+    private static final long SECOND = 1_000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    @Test
+    public void Test_AlertTracker_track_BreachLifecycle() {
+        AlertTracker tracker = new AlertTracker(0, 0.1, 10 * SECOND, MINUTE, 5 * MINUTE);
+
+        // the breach is opened only after the minimum duration
+        assertNull(tracker.track(SOURCE, 0, 12_000, LIMITS));
+        assertNull(tracker.track(SOURCE, 5 * SECOND, 15_000, LIMITS));
+        assertEquals(
+                new AlertUpdate(AlertStatus.OPEN, 0, 15_000, 3),
+                tracker.track(SOURCE, 10 * SECOND, 11_000, LIMITS)
+        );
+        assertEquals(1, tracker.getActiveCount());
+
+        // the breaches are coalesced into one update per interval, traffic inside the exit margin keeps the breach
+        assertNull(tracker.track(SOURCE, 20 * SECOND, 20_000, LIMITS));
+        assertNull(tracker.track(SOURCE, 40 * SECOND, 9_500, LIMITS));
+        assertEquals(
+                new AlertUpdate(AlertStatus.ONGOING, 0, 20_000, 5),
+                tracker.track(SOURCE, 70 * SECOND, 12_000, LIMITS)
+        );
+
+        assertEquals(
+                new AlertUpdate(AlertStatus.RESOLVED, 0, 20_000, 5),
+                tracker.track(SOURCE, 80 * SECOND, 9_000, LIMITS)
+        );
+        assertEquals(0, tracker.getActiveCount());
+
+        // the next breach is not opened during the suppression window
+        assertNull(tracker.track(SOURCE, 90 * SECOND, 50_000, LIMITS));
+        assertNull(tracker.track(SOURCE, 80 * SECOND + 5 * MINUTE, 50_000, LIMITS));
+        assertEquals(AlertStatus.OPEN, tracker.track(SOURCE, 90 * SECOND + 5 * MINUTE, 50_000, LIMITS).getStatus());
+    }
+
+    @Test
+    public void Test_AlertTracker_track_ShortBreachesAreNotOpened() {
+        AlertTracker tracker = new AlertTracker(0.05, 0.05, 10 * SECOND, MINUTE, MINUTE);
+        for (long time = 0; time < DAY; time += SECOND) {
+            // 9 seconds below the minimum and 1 second inside the limits, or above the maximum within the enter margin
+            long current = time % (10 * SECOND) == 0 ? 5_000 : time % (20 * SECOND) < 10 * SECOND ? 500 : 10_400;
+            assertNull(tracker.track(SOURCE, time, current, LIMITS));
+        }
+    }
+
+    @Test
+    public void Test_AlertTracker_track_PeakIsTheFarthestValue() {
+        AlertTracker tracker = new AlertTracker(0, 0, 0, MINUTE, 0);
+        assertEquals(new AlertUpdate(AlertStatus.OPEN, 0, 900, 1), tracker.track(SOURCE, 0, 900, LIMITS));
+        assertNull(tracker.track(SOURCE, SECOND, 100, LIMITS));
+        assertNull(tracker.track(SOURCE, 2 * SECOND, 20_000, LIMITS));
+        assertEquals(
+                new AlertUpdate(AlertStatus.ONGOING, 0, 20_000, 4),
+                tracker.track(SOURCE, MINUTE, 10_001, LIMITS)
+        );
+    }
+
+    @Test
+    public void Test_AlertTracker_track_BreachIsResolvedWithoutMinimumLimit() {
+        AlertTracker tracker = new AlertTracker(0, 0, 0, MINUTE, 0);
+        Limits partial = LIMITS.withoutMin();
+
+        // the traffic of a part of the hour is below the minimum, but only the maximum is checked
+        assertEquals(AlertStatus.OPEN, tracker.track(SOURCE, 0, 20_000, partial).getStatus());
+        assertTrue(tracker.isBreached(SOURCE));
+        assertEquals(AlertStatus.RESOLVED, tracker.track(SOURCE, SECOND, 500, partial).getStatus());
+        assertFalse(tracker.isBreached(SOURCE));
+    }
+
+    @Test
+    public void Test_AlertTracker_revert_AlertIsReturnedAgain() {
+        AlertTracker tracker = new AlertTracker(0, 0, 0, MINUTE, 0);
+        assertEquals(new AlertUpdate(AlertStatus.OPEN, 0, 20_000, 1), tracker.track(SOURCE, 0, 20_000, LIMITS));
+        tracker.revert(SOURCE);
+        assertFalse(tracker.isBreached(SOURCE));
+        assertEquals(new AlertUpdate(AlertStatus.OPEN, SECOND, 20_000, 1), tracker.track(SOURCE, SECOND, 20_000, LIMITS));
+
+        assertEquals(AlertStatus.RESOLVED, tracker.track(SOURCE, 2 * SECOND, 5_000, LIMITS).getStatus());
+        tracker.revert(SOURCE);
+        assertTrue(tracker.isBreached(SOURCE));
+        assertEquals(AlertStatus.RESOLVED, tracker.track(SOURCE, 3 * SECOND, 5_000, LIMITS).getStatus());
+    }
+
+    @Test
+    public void Test_AlertTracker_retain_ForgetsDeletedLimits() {
+        AlertTracker tracker = new AlertTracker(0, 0, 0, MINUTE, 0);
+        tracker.track(SOURCE, 0, 20_000, LIMITS);
+        tracker.track("deleted", 0, 20_000, LIMITS);
+        assertEquals(2, tracker.getActiveCount());
+
+        tracker.retain(Collections.singleton(SOURCE));
+        assertEquals(1, tracker.getActiveCount());
+        assertTrue(tracker.isBreached(SOURCE));
+        assertFalse(tracker.isBreached("deleted"));
+    }
+
+    @Test
+    public void Test_TrafficService_validateTrafficAndSendNotification_FlappingTrafficIsBounded() {
+        AlertPublisher alertPublisher = mock(AlertPublisher.class);
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(true);
+        long updateInterval = 20 * MINUTE;
+        long suppression = 5 * MINUTE;
+        TrafficService trafficService = new TrafficServiceImpl(
+                null, null, alertPublisher, new AlertTracker(0, 0.05, 10 * SECOND, updateInterval, suppression)
+        );
+
+        // one day of the evaluations every second: the traffic noisily flaps around the maximum
+        // for a few hours and then jumps in and out of the limits every 30 seconds
+        Random random = new Random(42);
+        long naive = 0;
+        for (long time = 0; time < DAY; time += SECOND) {
+            long current = time < DAY / 4
+                    ? 10_000 + random.nextInt(600) - 300
+                    : time / (30 * SECOND) % 2 == 0 ? 5_000 : 15_000;
+            if (LIMITS.isExceeded(current)) {
+                naive++;
+            }
+            trafficService.validateTrafficAndSendNotification(time, current, Collections.emptyMap(), LIMITS, () -> TopTalkers.EMPTY);
+        }
+
+        ArgumentCaptor<TrafficRecord> captor = ArgumentCaptor.forClass(TrafficRecord.class);
+        verify(alertPublisher, atLeast(1)).publish(anyString(), captor.capture());
+        Map<AlertStatus, Integer> statuses = new EnumMap<>(AlertStatus.class);
+        long sentBytes = 0;
+        BinaryRecordSerializer serializer = new BinaryRecordSerializer();
+        for (TrafficRecord record : captor.getAllValues()) {
+            statuses.merge(((AlertRecord) record).getStatus(), 1, Integer::sum);
+            sentBytes += serializer.serialize("alert", record).length;
+        }
+
+        // at most one breach per suppression window and one update per interval of every breach
+        long breaches = DAY / suppression + 1;
+        int alerts = captor.getAllValues().size();
+        assertTrue(String.format("%s", statuses), statuses.get(AlertStatus.OPEN) <= breaches);
+        assertTrue(String.format("%s", statuses), statuses.get(AlertStatus.RESOLVED) <= statuses.get(AlertStatus.OPEN));
+        assertTrue(String.format("%s", statuses), alerts <= 2 * breaches + DAY / updateInterval);
+        assertTrue(String.format("alerts: %d, naive: %d", alerts, naive), alerts * 50 < naive);
+
+        // every out of range evaluation would be sent as an alert of about the same size otherwise
+        long naiveBytes = naive * serializer.serialize("alert", captor.getAllValues().get(0)).length;
+        assertTrue(String.format("bytes: %d, naive: %d", sentBytes, naiveBytes), sentBytes * 50 < naiveBytes);
+    }
+}
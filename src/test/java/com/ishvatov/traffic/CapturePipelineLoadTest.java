@@ -0,0 +1,196 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.CaptureInterfaces;
+import com.ishvatov.traffic.capture.CapturePipeline;
+import com.ishvatov.traffic.capture.PacketAccountant;
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.PerWorkerTrafficCounter;
+import com.ishvatov.traffic.capture.StripedTrafficCounter;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.FlowTable;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.Pcaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test of the {@link CapturePipeline}, which replays an offline capture file
+ * and reports the sustained packets per second rate and the drop rate.
+ *
+ * @author ishvatov
+ */
+public class CapturePipelineLoadTest {
+    // logger
+    private static final Logger LOGGER = LoggerFactory.getLogger(CapturePipelineLoadTest.class);
+
+    private static final int PACKETS = 500_000;
+    private static final int WORKERS = 2;
+
+    private static File captureFile;
+    private static long expectedBytes;
+
+    @BeforeClass
+    public static void createCaptureFile() throws Exception {
+        assumeTrue("libpcap is not available", PcapTestUtils.isLibpcapAvailable());
+
+        byte[][] frames = new byte[PACKETS][];
+        Instant[] timestamps = new Instant[PACKETS];
+        Instant start = Instant.now();
+        for (int i = 0; i < PACKETS; i++) {
+            int length = PcapTestUtils.minUdpFrameLength() + (i * 31) % 1472;
+            frames[i] = PcapTestUtils.udpFrame(0x0A000001 + i % 64, 0x0A000101, 1024 + i % 1000, 53, length);
+            timestamps[i] = start.plusNanos(i * 1000L);
+            expectedBytes += length;
+        }
+        captureFile = PcapTestUtils.writeCaptureFile(frames, timestamps);
+    }
+
+    @Test
+    public void Test_CapturePipeline_replay_BlockPolicyLosesNothing() throws Exception {
+        TrafficCounter counter = new StripedTrafficCounter();
+        CapturePipeline pipeline = new CapturePipeline(
+                WORKERS, 1024, CapturePipeline.OverflowPolicy.BLOCK,
+                accountant(counter)
+        );
+
+        replay(pipeline, "block");
+
+        assertEquals(0, pipeline.getDropped());
+        assertEquals(PACKETS, pipeline.getPublished());
+        assertEquals(expectedBytes, counter.sum());
+    }
+
+    @Test
+    public void Test_CapturePipeline_replay_DropPolicyCountsDrops() throws Exception {
+        TrafficCounter counter = new StripedTrafficCounter();
+        PacketHandler accountant = accountant(counter);
+        PacketHandler slowHandler = (worker, length, timestamp, headers, offset, headerLength) -> {
+            long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(2);
+            while (System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+            accountant.onPacket(worker, length, timestamp, headers, offset, headerLength);
+        };
+        CapturePipeline pipeline = new CapturePipeline(WORKERS, 256, CapturePipeline.OverflowPolicy.DROP, slowHandler);
+
+        replay(pipeline, "drop");
+
+        assertEquals(PACKETS, pipeline.getPublished() + pipeline.getDropped());
+    }
+
+    @Test
+    public void Test_CapturePipeline_replay_InterfacesScale() throws Exception {
+        long singleRate = 0;
+        for (int interfaces = 1; interfaces <= 4; interfaces *= 2) {
+            PerWorkerTrafficCounter counter = new PerWorkerTrafficCounter(interfaces);
+            CaptureInterfaces captureInterfaces = new CaptureInterfaces(
+                    names(interfaces), 1, counter, TimeUnit.SECONDS.toNanos(1), 3600
+            );
+            CapturePipeline pipeline = new CapturePipeline(
+                    interfaces, 1024, CapturePipeline.OverflowPolicy.BLOCK,
+                    accountant(counter, interfaces)
+            );
+
+            List<PcapHandle> handles = new ArrayList<>();
+            for (int i = 0; i < interfaces; i++) {
+                handles.add(Pcaps.openOffline(captureFile.getAbsolutePath()));
+            }
+            try {
+                long start = System.nanoTime();
+                pipeline.start(handles);
+                pipeline.awaitCompletion();
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                pipeline.stop();
+
+                long rate = (long) PACKETS * interfaces * TimeUnit.SECONDS.toNanos(1) / elapsed;
+                if (interfaces == 1) {
+                    singleRate = rate;
+                }
+                LOGGER.info(String.format(
+                        "[%d interfaces] replayed %d packets in %d ms: %d pps, x%.2f of one interface",
+                        interfaces,
+                        PACKETS * interfaces,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed),
+                        rate,
+                        (double) rate / singleRate
+                ));
+            } finally {
+                handles.forEach(PcapHandle::close);
+            }
+
+            assertEquals(0, pipeline.getDropped());
+            assertEquals(expectedBytes * interfaces, counter.sum());
+            for (int i = 0; i < interfaces; i++) {
+                assertEquals(expectedBytes, captureInterfaces.sum(i));
+            }
+        }
+    }
+
+    private static PacketHandler accountant(TrafficCounter counter) {
+        return accountant(counter, WORKERS);
+    }
+
+    private static PacketHandler accountant(TrafficCounter counter, int workers) {
+        long idleTimeout = TimeUnit.MINUTES.toNanos(5);
+        return new PacketAccountant(
+                workers,
+                counter,
+                new PacketStatsReporter(workers, 0),
+                new FlowAggregator(
+                        workers,
+                        new FlowTable(FlowKeys.FLOW_KEY_LENGTH, 1 << 16, 16, idleTimeout),
+                        new FlowTable(FlowKeys.HOST_KEY_LENGTH, 1 << 10, 16, idleTimeout),
+                        10
+                ),
+                new HeavyHitterDetector(workers, 0.001, 0.01, 256, 10),
+                new RuleClassifier(workers, TimeUnit.MINUTES.toNanos(1), 60)
+        );
+    }
+
+    private static List<String> names(int interfaces) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < interfaces; i++) {
+            names.add("eth" + i);
+        }
+        return names;
+    }
+
+    private static void replay(CapturePipeline pipeline, String name) throws Exception {
+        PcapHandle handle = Pcaps.openOffline(captureFile.getAbsolutePath());
+        try {
+            long start = System.nanoTime();
+            pipeline.start(handle);
+            pipeline.awaitCompletion();
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            pipeline.stop();
+
+            LOGGER.info(String.format(
+                    "[%s] replayed %d packets in %d ms: %d pps, dropped %d (%.2f%%)",
+                    name,
+                    PACKETS,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    PACKETS * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                    pipeline.getDropped(),
+                    100.0 * pipeline.getDropped() / PACKETS
+            ));
+        } finally {
+            handle.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.CaptureProfile;
+import com.ishvatov.traffic.capture.SingleWriterTrafficCounter;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import com.ishvatov.traffic.replay.PcapReplay;
+import com.ishvatov.traffic.replay.ReplayResult;
+import org.junit.Test;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapNetworkInterface;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link CaptureProfile} test class.
+ *
+ * @author ishvatov
+ */
+public class CaptureProfileTest {
+    private static final int PACKETS = 100;
+    private static final int LENGTH = 200;
+
+    @Test
+    public void Test_CaptureProfile_combine_BothFilters() {
+        assertEquals("(udp) and (net 10.0.0.0/8)", CaptureProfile.combine(" udp ", "net 10.0.0.0/8"));
+    }
+
+    @Test
+    public void Test_CaptureProfile_combine_OneFilter() {
+        assertEquals("udp", CaptureProfile.combine("udp", null));
+        assertEquals("net 10.0.0.0/8", CaptureProfile.combine("", "net 10.0.0.0/8"));
+    }
+
+    @Test
+    public void Test_CaptureProfile_combine_NoFilters() {
+        assertNull(CaptureProfile.combine(" ", null));
+    }
+
+    @Test
+    public void Test_CaptureProfile_openOffline_AppliesCombinedFilter() throws Exception {
+        assumeTrue("libpcap is not available", PcapTestUtils.isLibpcapAvailable());
+
+        // every second packet is sent to port 53, every fourth is sent from 10.0.0.2
+        byte[][] frames = new byte[PACKETS][];
+        Instant[] timestamps = new Instant[PACKETS];
+        Instant start = Instant.now();
+        for (int i = 0; i < PACKETS; i++) {
+            frames[i] = PcapTestUtils.udpFrame(
+                    i % 4 == 0 ? 0x0A000002 : 0x0A000001, 0x0A000101, 1024, i % 2 == 0 ? 53 : 123, LENGTH
+            );
+            timestamps[i] = start.plusMillis(i);
+        }
+        File file = PcapTestUtils.writeCaptureFile(frames, timestamps);
+
+        CaptureProfile profile = profile("udp dst port 53");
+        TrafficCounter counter = new SingleWriterTrafficCounter();
+        PcapReplay replay = new PcapReplay(
+                (worker, length, timestamp, headers, offset, headerLength) -> counter.add(worker, length),
+                timestamp -> {
+                },
+                TimeUnit.SECONDS.toNanos(1)
+        );
+
+        PcapHandle handle = profile.openOffline(file.getAbsolutePath(), "src host 10.0.0.2");
+        try {
+            replay.replay(handle);
+        } finally {
+            handle.close();
+        }
+        ReplayResult result = replay.finish();
+
+        assertEquals(PACKETS / 4, result.getPackets());
+        assertEquals(PACKETS / 4 * LENGTH, counter.sum());
+    }
+
+    @Test(expected = PcapNativeException.class)
+    public void Test_CaptureProfile_openOffline_InvalidFilter() throws Exception {
+        assumeTrue("libpcap is not available", PcapTestUtils.isLibpcapAvailable());
+
+        File file = PcapTestUtils.writeCaptureFile(
+                new byte[][]{PcapTestUtils.udpFrame(0x0A000001, 0x0A000101, 1024, 53, LENGTH)},
+                new Instant[]{Instant.now()}
+        );
+        profile("udp dst port").openOffline(file.getAbsolutePath(), null);
+    }
+
+    private static CaptureProfile profile(String filter) {
+        return new CaptureProfile(
+                128,
+                PcapNetworkInterface.PromiscuousMode.PROMISCUOUS,
+                10,
+                0,
+                false,
+                PcapHandle.TimestampPrecision.MICRO,
+                filter
+        );
+    }
+}
@@ -0,0 +1,211 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.cluster.ClusterTraffic;
+import com.ishvatov.traffic.cluster.PartialCountListener;
+import com.ishvatov.traffic.cluster.PartialCountPublisher;
+import com.ishvatov.traffic.cluster.WindowAggregator;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.service.TrafficServiceImpl;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.BinaryRecordDeserializer;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.PartialCountRecord;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.rule.EmbeddedKafkaRule;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link PartialCountPublisher}, {@link WindowAggregator} and {@link PartialCountListener} test class,
+ * which uses the embedded kafka broker.
+ *
+ * @author ishvatov
+ */
+public class ClusterAggregationTest {
+    private static final String TOPIC = "partial-counts";
+    private static final int PARTITIONS = 2;
+    private static final long WINDOW = 10_000;
+    private static final long PERIOD = 60_000;
+    private static final long LATENESS = 5_000;
+    private static final long AWAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @ClassRule
+    public static final EmbeddedKafkaRule EMBEDDED_KAFKA = new EmbeddedKafkaRule(1, true, PARTITIONS, TOPIC);
+
+    @Test
+    public void Test_WindowAggregator_evaluate_OutOfOrderAndRepublishedCounts() {
+        WindowAggregator aggregator = new WindowAggregator(WINDOW, PERIOD, LATENESS);
+        assertTrue(aggregator.merge(new PartialCountRecord("b", 2 * WINDOW, WINDOW, 300, 3)));
+        assertTrue(aggregator.merge(new PartialCountRecord("a", WINDOW, WINDOW, 100, 1)));
+        assertTrue(aggregator.merge(new PartialCountRecord("a", 2 * WINDOW, WINDOW, 200, 2)));
+        assertTrue(aggregator.merge(new PartialCountRecord("b", 2 * WINDOW, WINDOW, 300, 3)));
+
+        // the last window is not closed until the lateness has passed
+        ClusterTraffic traffic = aggregator.evaluate(3 * WINDOW + LATENESS - 1);
+        assertEquals(2 * WINDOW, traffic.getTimestamp());
+        assertEquals(100, traffic.getBytes());
+
+        traffic = aggregator.evaluate(3 * WINDOW + LATENESS);
+        assertEquals(3 * WINDOW, traffic.getTimestamp());
+        assertEquals(600, traffic.getBytes());
+        assertEquals(300L, (long) traffic.getSensors().get("a"));
+        assertEquals(300L, (long) traffic.getSensors().get("b"));
+        assertFalse(traffic.isFull());
+        assertEquals(3, aggregator.getMerged());
+        assertEquals(1, aggregator.getReplaced());
+    }
+
+    @Test
+    public void Test_WindowAggregator_merge_CountsBeforePeriodAreLate() {
+        WindowAggregator aggregator = new WindowAggregator(WINDOW, PERIOD, LATENESS);
+        aggregator.merge(new PartialCountRecord("a", 0, WINDOW, 100, 1));
+        aggregator.merge(new PartialCountRecord("a", PERIOD, WINDOW, 200, 2));
+
+        // period [WINDOW, PERIOD + WINDOW) covers only the second window
+        ClusterTraffic traffic = aggregator.evaluate(PERIOD + WINDOW + LATENESS);
+        assertEquals(200, traffic.getBytes());
+        assertTrue(traffic.isFull());
+        assertEquals(1, aggregator.getWindowCount());
+
+        assertFalse(aggregator.merge(new PartialCountRecord("b", 0, WINDOW, 100, 1)));
+        assertTrue(aggregator.merge(new PartialCountRecord("b", WINDOW, WINDOW, 100, 1)));
+        assertEquals(1, aggregator.getLate());
+        assertEquals(300, aggregator.evaluate(PERIOD + WINDOW + LATENESS).getBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Test_WindowAggregator_merge_MisalignedWindow() {
+        new WindowAggregator(WINDOW, PERIOD, LATENESS).merge(new PartialCountRecord("a", 1_000, WINDOW, 100, 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_PartialCountPublisher_collect_FinishedWindowsAreSentAgainAfterFailure() {
+        SettableListenableFuture<SendResult<String, TrafficRecord>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker is not available"));
+        SettableListenableFuture<SendResult<String, TrafficRecord>> succeeded = new SettableListenableFuture<>();
+        succeeded.set(null);
+
+        KafkaTemplate<String, TrafficRecord> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(failed, succeeded);
+        PartialCountPublisher publisher = new PartialCountPublisher(kafkaTemplate, TOPIC, "a", WINDOW, 10);
+
+        publisher.collect(WINDOW + 1_000, 5_000, 50);
+        publisher.collect(WINDOW + 9_000, 6_000, 60);
+        publisher.collect(2 * WINDOW + 1_000, 6_500, 65);
+        assertEquals(1, publisher.getPendingSize());
+        assertEquals(1, publisher.getFailed());
+
+        publisher.collect(2 * WINDOW + 2_000, 7_000, 70);
+        assertEquals(0, publisher.getPendingSize());
+        assertEquals(1, publisher.getSent());
+
+        // the traffic of the collection is attributed to the window of the collection time
+        ArgumentCaptor<TrafficRecord> captor = ArgumentCaptor.forClass(TrafficRecord.class);
+        verify(kafkaTemplate, times(2)).send(eq(TOPIC), eq("a/" + WINDOW), captor.capture());
+        assertEquals(new PartialCountRecord("a", WINDOW, WINDOW, 1_000, 10), captor.getValue());
+    }
+
+    @Test
+    public void Test_PartialCountListener_onMessage_SensorsAreAggregatedThroughKafka() throws Exception {
+        WindowAggregator aggregator = new WindowAggregator(WINDOW, PERIOD, LATENESS);
+        Map<String, Object> consumerProps = KafkaTestUtils.consumerProps(
+                "cluster-aggregation-test", "false", EMBEDDED_KAFKA.getEmbeddedKafka()
+        );
+        ContainerProperties properties = new ContainerProperties(TOPIC);
+        properties.setMessageListener(new PartialCountListener(aggregator, PERIOD + LATENESS + WINDOW));
+        KafkaMessageListenerContainer<String, TrafficRecord> container = new KafkaMessageListenerContainer<>(
+                new DefaultKafkaConsumerFactory<>(consumerProps, new StringDeserializer(), new BinaryRecordDeserializer()),
+                properties
+        );
+        container.start();
+
+        DefaultKafkaProducerFactory<String, TrafficRecord> producerFactory = new DefaultKafkaProducerFactory<>(
+                KafkaTestUtils.producerProps(EMBEDDED_KAFKA.getEmbeddedKafka()),
+                new StringSerializer(),
+                new BinaryRecordSerializer()
+        );
+        try {
+            ContainerTestUtils.waitForAssignment(container, PARTITIONS);
+            KafkaTemplate<String, TrafficRecord> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+            PartialCountPublisher first = new PartialCountPublisher(kafkaTemplate, TOPIC, "a", WINDOW, 10);
+            PartialCountPublisher second = new PartialCountPublisher(kafkaTemplate, TOPIC, "b", WINDOW, 10);
+
+            long base = System.currentTimeMillis() / WINDOW * WINDOW - 5 * WINDOW;
+            first.collect(base, 0, 0);
+            second.collect(base, 0, 0);
+            first.collect(base + 1_000, 1_000, 1);
+            second.collect(base + WINDOW, 500, 5);
+            first.collect(base + WINDOW, 3_000, 3);
+            second.collect(base + 2 * WINDOW, 700, 7);
+            first.collect(base + 2 * WINDOW, 3_000, 3);
+
+            // window of the second sensor is published again, e.g. after its restart
+            kafkaTemplate.send(TOPIC, "b/" + (base + WINDOW), new PartialCountRecord("b", base + WINDOW, WINDOW, 500, 5));
+            kafkaTemplate.flush();
+
+            long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+            while (aggregator.getMerged() + aggregator.getReplaced() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, aggregator.getMerged());
+            assertEquals(1, aggregator.getReplaced());
+
+            ClusterTraffic traffic = aggregator.evaluate(base + 2 * WINDOW + LATENESS);
+            assertEquals(3_500, traffic.getBytes());
+            assertEquals(3_000L, (long) traffic.getSensors().get("a"));
+            assertEquals(500L, (long) traffic.getSensors().get("b"));
+
+            // limits are validated once against the traffic of all the sensors
+            AlertPublisher alertPublisher = mock(AlertPublisher.class);
+            when(alertPublisher.publish(anyString(), any(AlertRecord.class))).thenReturn(true);
+            TrafficService trafficService = new TrafficServiceImpl(
+                    null, null, alertPublisher, new AlertTracker(0, 0, 0, 0, 0)
+            );
+            assertTrue(trafficService.validateTrafficAndSendNotification(
+                    traffic.getTimestamp(),
+                    traffic.getBytes(),
+                    traffic.getSensors(),
+                    new Limits(1, 1024, 2048, 0),
+                    () -> TopTalkers.EMPTY
+            ));
+            ArgumentCaptor<AlertRecord> alert = ArgumentCaptor.forClass(AlertRecord.class);
+            verify(alertPublisher).publish(eq(AlertRecord.GLOBAL_SOURCE), alert.capture());
+            assertEquals(3_500, alert.getValue().getCurrent());
+            assertEquals(traffic.getSensors(), alert.getValue().getInterfaces());
+        } finally {
+            container.stop();
+            producerFactory.destroy();
+        }
+    }
+}
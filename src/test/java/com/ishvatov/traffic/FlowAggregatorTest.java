@@ -0,0 +1,97 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.FlowTable;
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.flow.TopTalkers;
+import org.junit.Test;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link FlowAggregator} and {@link FlowTable} test class.
+ *
+ * @author ishvatov
+ */
+public class FlowAggregatorTest {
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toNanos(60);
+    private static final int HEAVY_SOURCE = 0x0A000001;
+    private static final int LIGHT_SOURCE = 0x0A000002;
+    private static final int DESTINATION = 0xC0A80001;
+
+    @Test
+    public void Test_FlowAggregator_rollover_ReportsTopTalkers() {
+        FlowAggregator aggregator = aggregator(1 << 10);
+        PacketHeaders heavy = decode(PcapTestUtils.udpFrame(HEAVY_SOURCE, DESTINATION, 1024, 53, 1000));
+        PacketHeaders light = decode(PcapTestUtils.udpFrame(LIGHT_SOURCE, DESTINATION, 2048, 53, 100));
+        for (int i = 0; i < 10; i++) {
+            aggregator.record(0, 1000, i, heavy);
+            aggregator.record(0, 100, i, light);
+        }
+
+        TopTalkers topTalkers = aggregator.rollover();
+        assertEquals("192.168.0.1", topTalkers.getHosts().get(0).getName());
+        assertEquals(11_000, topTalkers.getHosts().get(0).getBytes());
+        assertEquals("10.0.0.1:1024 -> 192.168.0.1:53 UDP", topTalkers.getFlows().get(0).getName());
+        assertEquals(10_000, topTalkers.getFlows().get(0).getBytes());
+        assertEquals(10, topTalkers.getFlows().get(0).getPackets());
+        assertEquals(1_000, topTalkers.getFlows().get(1).getBytes());
+
+        // interval counters are reset on rollover
+        assertTrue(aggregator.rollover().isEmpty());
+    }
+
+    @Test
+    public void Test_FlowTable_add_StaysBoundedAndEvictsIdle() {
+        FlowTable table = new FlowTable(FlowKeys.HOST_KEY_LENGTH, 1 << 10, 4, IDLE_TIMEOUT);
+        long[] key = new long[FlowKeys.HOST_KEY_LENGTH];
+        for (int i = 0; i < 100_000; i++) {
+            key[1] = i;
+            table.add(key, 1, i);
+        }
+        assertTrue(table.size() <= 768);
+
+        key[1] = -1;
+        table.add(key, 1, 2 * IDLE_TIMEOUT);
+        assertEquals(1, table.size() - table.evictIdle());
+    }
+
+    @Test
+    public void Test_FlowTable_evictIdle_EvictsWrappedClusters() {
+        // small single segment, so the clusters often wrap around the end of the table
+        long[] key = new long[FlowKeys.HOST_KEY_LENGTH];
+        for (int run = 0; run < 1000; run++) {
+            FlowTable table = new FlowTable(FlowKeys.HOST_KEY_LENGTH, 8, 1, IDLE_TIMEOUT);
+            for (int i = 0; i < 5; i++) {
+                key[1] = run * 8L + i;
+                table.add(key, 1, 0);
+            }
+            key[1] = -run - 1;
+            table.add(key, 1, 2 * IDLE_TIMEOUT);
+
+            assertEquals(5, table.evictIdle());
+            assertEquals(1, table.size());
+            assertEquals(-run - 1, table.top(1, false).get(0).getKey()[1]);
+        }
+    }
+
+    private static PacketHeaders decode(byte[] frame) {
+        PacketHeaders headers = new PacketHeaders();
+        assertTrue(headers.decode(DataLinkType.EN10MB, frame, 0, frame.length));
+        return headers;
+    }
+
+    private static FlowAggregator aggregator(int capacity) {
+        return new FlowAggregator(
+                1,
+                new FlowTable(FlowKeys.FLOW_KEY_LENGTH, capacity, 4, IDLE_TIMEOUT),
+                new FlowTable(FlowKeys.HOST_KEY_LENGTH, capacity, 4, IDLE_TIMEOUT),
+                5
+        );
+    }
+}
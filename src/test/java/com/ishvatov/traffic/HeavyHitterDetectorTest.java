@@ -0,0 +1,100 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import com.ishvatov.traffic.utils.Pair;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Accuracy and throughput test of the {@link HeavyHitterDetector}
+ * against the synthetic Zipfian traffic.
+ *
+ * @author ishvatov
+ */
+public class HeavyHitterDetectorTest {
+    private static final int SOURCES = 100_000;
+    private static final int DESTINATIONS = 16;
+    private static final int PACKETS = 2_000_000;
+    private static final int WORKERS = 2;
+    private static final int TOP_K = 10;
+    private static final int BASE_ADDRESS = 0x0A000000;
+
+    private static PacketHeaders[] headers;
+    private static int[] ranks;
+    private static int[] lengths;
+    private static long[] exactBytes;
+
+    @BeforeClass
+    public static void generateTraffic() {
+        headers = new PacketHeaders[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            byte[] frame = PcapTestUtils.udpFrame(BASE_ADDRESS + i, 0xC0A80000 + i % DESTINATIONS, 1024, 53, 64);
+            headers[i] = new PacketHeaders();
+            headers[i].decode(DataLinkType.EN10MB, frame, 0, frame.length);
+        }
+
+        ZipfGenerator zipf = new ZipfGenerator(SOURCES, 1.2, 42);
+        Random random = new Random(42);
+        ranks = new int[PACKETS];
+        lengths = new int[PACKETS];
+        exactBytes = new long[SOURCES];
+        for (int i = 0; i < PACKETS; i++) {
+            ranks[i] = zipf.next();
+            lengths[i] = 64 + random.nextInt(1437);
+            exactBytes[ranks[i]] += lengths[i];
+        }
+    }
+
+    @Test
+    public void Test_HeavyHitterDetector_rollover_FindsExactTopSources() throws Exception {
+        HeavyHitterDetector detector = new HeavyHitterDetector(WORKERS, 0.0001, 0.01, 1024, TOP_K);
+        for (int i = 0; i < PACKETS; i++) {
+            detector.record(i % WORKERS, lengths[i], headers[ranks[i]]);
+        }
+
+        List<TopTalker> sources = detector.rollover().getFirst();
+        List<Integer> expected = IntStream.range(0, SOURCES).boxed()
+                .sorted((first, second) -> Long.compare(exactBytes[second], exactBytes[first]))
+                .limit(TOP_K)
+                .collect(Collectors.toList());
+
+        assertEquals(TOP_K, sources.size());
+        for (int i = 0; i < TOP_K; i++) {
+            TopTalker source = sources.get(i);
+            int rank = rankOf(source.getName());
+            assertEquals(expected.get(i).intValue(), rank);
+            assertTrue(source.getBytes() >= exactBytes[rank]);
+            assertTrue(source.getBytes() - exactBytes[rank] <= source.getError());
+        }
+    }
+
+    @Test
+    public void Test_HeavyHitterDetector_rollover_StartsNewWindow() {
+        HeavyHitterDetector detector = new HeavyHitterDetector(1, 0.001, 0.01, 64, TOP_K);
+        for (int i = 0; i < 1000; i++) {
+            detector.record(0, lengths[i], headers[ranks[i]]);
+        }
+
+        Pair<List<TopTalker>, List<TopTalker>> first = detector.rollover();
+        assertEquals(TOP_K, first.getFirst().size());
+        assertTrue(!first.getSecond().isEmpty() && first.getSecond().size() <= TOP_K);
+        assertTrue(detector.rollover().getFirst().isEmpty());
+    }
+
+    private static int rankOf(String address) throws Exception {
+        return ByteBuffer.wrap(InetAddress.getByName(address).getAddress()).getInt() - BASE_ADDRESS;
+    }
+}
@@ -0,0 +1,218 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.limits.LimitsCache;
+import com.ishvatov.traffic.limits.LimitsChangeListener;
+import com.ishvatov.traffic.limits.LimitsTimeline;
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.model.repository.JdbcLimitsReader;
+import com.ishvatov.traffic.rules.LimitRulesCache;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.service.TrafficServiceImpl;
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link LimitsCache} and {@link LimitsChangeListener} test class, which uses
+ * the embedded PostgreSQL with the schema from create_table.sql.
+ *
+ * @author ishvatov
+ */
+public class LimitsCacheTest {
+    private static final long AWAIT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+    private static ScheduledExecutorService scheduler;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+        jdbcTemplate.execute(
+                new String(Files.readAllBytes(Paths.get("create_table.sql")), StandardCharsets.UTF_8)
+        );
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        scheduler.shutdownNow();
+        postgres.close();
+    }
+
+    @Before
+    public void clear() {
+        jdbcTemplate.update("delete from limits_per_hour");
+    }
+
+    @Test
+    public void Test_JdbcLimitsReader_findByIdGreaterThanOrderById_ReadsRecordsWithoutHibernate() {
+        insert(3, "max", 8192, 2000);
+        insert(1, "min", 1024, 1000);
+        insert(2, "max", 2048, 1000);
+        jdbcTemplate.update(
+                "insert into limit_rules (rule_name, network, port_from, port_to, min_value, max_value, enabled) " +
+                        "values ('https', '10.0.0.0/8', 443, 443, 0, 4096, true), " +
+                        "('disabled', '::/0', 0, 65535, 0, 4096, false)"
+        );
+        try {
+            JdbcLimitsReader reader = new JdbcLimitsReader(jdbcTemplate);
+            List<LimitsPerHourEntity> records = reader.findByIdGreaterThanOrderById(1);
+            assertEquals(2, records.size());
+            assertEquals(2, records.get(0).getId());
+            assertEquals("max", records.get(0).getLimitName());
+            assertEquals(2048, records.get(0).getLimitValue());
+            assertEquals(1000, records.get(0).getEffectiveDate().getTime());
+            assertEquals(3, records.get(1).getId());
+            assertEquals(3, reader.count());
+
+            List<LimitRuleEntity> rules = reader.findByEnabledTrueOrderById();
+            assertEquals(1, rules.size());
+            assertEquals("https", rules.get(0).getRuleName());
+            assertEquals("10.0.0.0/8", rules.get(0).getNetwork());
+            assertEquals(443, rules.get(0).getPortFrom());
+            assertEquals(4096, rules.get(0).getMaxValue());
+        } finally {
+            jdbcTemplate.update("delete from limit_rules");
+        }
+    }
+
+    @Test
+    public void Test_LimitsChangeListener_listen_RefreshOnNotification() throws InterruptedException {
+        TrafficService trafficService = trafficService();
+        LimitsCache limitsCache = new LimitsCache(trafficService, scheduler);
+        LimitRulesCache limitRulesCache = new LimitRulesCache(
+                trafficService, new RuleClassifier(1, TimeUnit.MINUTES.toNanos(1), 60)
+        );
+        LimitsChangeListener listener = new LimitsChangeListener(
+                postgres.getPostgresDatabase(), limitsCache, limitRulesCache, 100, 100
+        );
+
+        insert(1, "min", 1024, 1000);
+        insert(2, "max", 2048, 1000);
+        listener.start();
+        try {
+            // limits are loaded once the listener is connected
+            awaitMaximum(limitsCache, 2048);
+
+            // new limits are picked up without any scheduled refresh
+            insert(3, "min", 4096, 2000);
+            insert(4, "max", 8192, 2000);
+            awaitMaximum(limitsCache, 8192);
+            assertEquals(4096, limitsCache.get().getMin());
+            assertEquals(4, limitsCache.get().getVersion());
+        } finally {
+            listener.stop();
+        }
+    }
+
+    @Test
+    public void Test_LimitsCache_refresh_FutureLimitsSwitchOnEffectiveDate() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        long switchover = now + 500;
+        insert(1, "min", 1024, now - 1000);
+        insert(2, "max", 2048, now - 1000);
+        insert(3, "max", 8192, switchover);
+        LimitsCache limitsCache = new LimitsCache(trafficService(), scheduler);
+
+        // future limits are known, but not active yet
+        assertEquals(2048, limitsCache.refresh().getMax());
+        assertEquals(8192, limitsCache.get(switchover).getMax());
+        assertEquals(1024, limitsCache.get(switchover).getMin());
+        assertNull(limitsCache.get(now - 2000));
+
+        awaitMaximum(limitsCache, 8192);
+        assertTrue(System.currentTimeMillis() >= switchover);
+    }
+
+    @Test
+    public void Test_LimitsCache_refresh_IncrementalAndDeletedRecords() {
+        insert(1, "min", 1024, 1000);
+        insert(2, "max", 2048, 1000);
+        LimitsCache limitsCache = new LimitsCache(trafficService(), scheduler);
+        limitsCache.refresh();
+
+        // only the new records are loaded
+        insert(3, "max", 4096, 2000);
+        assertEquals(4096, limitsCache.refresh().getMax());
+        assertEquals(3, limitsCache.getTimeline().getRecords());
+        assertEquals(2048, limitsCache.get(1500).getMax());
+
+        // deleted records are detected by the number of the records
+        jdbcTemplate.update("delete from limits_per_hour where id = 3");
+        assertEquals(2048, limitsCache.refresh().getMax());
+        assertEquals(2, limitsCache.getTimeline().getRecords());
+    }
+
+    @Test
+    public void Test_LimitsCache_poll_UpdatedAndReplacedRecords() {
+        insert(1, "min", 1024, 1000);
+        insert(2, "max", 2048, 1000);
+        LimitsCache limitsCache = new LimitsCache(trafficService(), scheduler);
+        assertEquals(2048, limitsCache.poll().getMax());
+        assertEquals(2, limitsCache.get().getVersion());
+
+        // updated record does not change the number of the records or the last id
+        jdbcTemplate.update("update limits_per_hour set limit_value = 4096 where id = 2");
+        assertEquals(4096, limitsCache.poll().getMax());
+
+        // deleted and inserted record keeps the number of the records
+        jdbcTemplate.update("delete from limits_per_hour where id = 1");
+        insert(3, "min", 512, 1000);
+        assertEquals(512, limitsCache.poll().getMin());
+        assertEquals(3, limitsCache.get().getVersion());
+
+        // unchanged table is not reloaded
+        LimitsTimeline timeline = limitsCache.getTimeline();
+        limitsCache.poll();
+        assertSame(timeline, limitsCache.getTimeline());
+    }
+
+    private static TrafficService trafficService() {
+        JdbcLimitsReader reader = new JdbcLimitsReader(jdbcTemplate);
+        return new TrafficServiceImpl(reader, reader, null, null);
+    }
+
+    private static void insert(int id, String name, int value, long effectiveDate) {
+        jdbcTemplate.update(
+                "insert into limits_per_hour (id, limit_name, limit_value, effective_date) values (?, ?, ?, ?)",
+                id, name, value, new Timestamp(effectiveDate)
+        );
+    }
+
+    private static void awaitMaximum(LimitsCache limitsCache, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            Limits limits = limitsCache.get();
+            if (limits != null && limits.getMax() == expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        assertNotNull("Limits were not fetched", limitsCache.get());
+        assertEquals(expected, limitsCache.get().getMax());
+    }
+}
@@ -0,0 +1,107 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.limits.LimitsTimeline;
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * {@link LimitsTimeline} test class.
+ *
+ * @author ishvatov
+ */
+public class LimitsTimelineTest {
+    private static final List<LimitsPerHourEntity> RECORDS = Arrays.asList(
+            record(4, "max", 8192, 3000),
+            record(1, "min", 1024, 1000),
+            record(2, "max", 2048, 1000),
+            record(3, "min", 2048, 2000),
+            // min is bigger than max, the previous limits stay active
+            record(5, "min", 16384, 4000),
+            // limits are restored at the same effective date
+            record(6, "max", 32768, 5000),
+            record(7, "min", 2048, 5000)
+    );
+
+    @Test
+    public void Test_LimitsTimeline_resolve_LimitsAtTimestamp() {
+        LimitsTimeline timeline = LimitsTimeline.of(RECORDS);
+
+        assertEquals(4, timeline.size());
+        assertEquals(7, timeline.getLastId());
+        assertNull(timeline.resolve(999));
+        assertLimits(1024, 2048, 1000, timeline.resolve(1000));
+        assertLimits(1024, 2048, 1000, timeline.resolve(1999));
+        assertLimits(2048, 2048, 2000, timeline.resolve(2000));
+        assertLimits(2048, 8192, 3000, timeline.resolve(3500));
+        assertLimits(2048, 8192, 3000, timeline.resolve(4500));
+        assertLimits(2048, 32768, 5000, timeline.resolve(Long.MAX_VALUE));
+        assertEquals(7, timeline.resolve(5000).getVersion());
+
+        // the version does not depend on the earlier change points
+        assertEquals(7, LimitsTimeline.of(RECORDS.subList(3, RECORDS.size())).resolve(5000).getVersion());
+    }
+
+    @Test
+    public void Test_LimitsTimeline_nextChange_EffectiveDates() {
+        LimitsTimeline timeline = LimitsTimeline.of(RECORDS);
+
+        assertEquals(1000, timeline.nextChange(0));
+        assertEquals(2000, timeline.nextChange(1000));
+        assertEquals(3000, timeline.nextChange(2999));
+        assertEquals(5000, timeline.nextChange(3000));
+        assertEquals(LimitsTimeline.NO_CHANGE, timeline.nextChange(5000));
+        assertEquals(LimitsTimeline.NO_CHANGE, LimitsTimeline.EMPTY.nextChange(0));
+    }
+
+    @Test
+    public void Test_LimitsTimeline_withRecords_NewAndChangedRecords() {
+        LimitsTimeline timeline = LimitsTimeline.of(RECORDS.subList(0, 3));
+        assertSame(timeline, timeline.withRecords(Collections.emptyList()));
+
+        // record with the same id replaces the existing one
+        LimitsTimeline changed = timeline.withRecords(Arrays.asList(
+                record(2, "max", 4096, 1000),
+                record(8, "min", 512, 6000)
+        ));
+        assertEquals(4, changed.getRecords());
+        assertEquals(8, changed.getLastId());
+        assertLimits(1024, 4096, 1000, changed.resolve(1000));
+        assertLimits(512, 8192, 6000, changed.resolve(6000));
+    }
+
+    @Test
+    public void Test_LimitsTimeline_resolve_LargeTimeline() {
+        List<LimitsPerHourEntity> records = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            records.add(record(2 * i + 1, "min", 1024 + i, i * 1000L));
+            records.add(record(2 * i + 2, "max", 1_048_576 + i, i * 1000L));
+        }
+        LimitsTimeline timeline = LimitsTimeline.of(records);
+
+        assertEquals(10_000, timeline.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertLimits(1024 + i, 1_048_576 + i, i * 1000L, timeline.resolve(i * 1000L + 999));
+        }
+    }
+
+    private static void assertLimits(long min, long max, long effectiveDate, Limits limits) {
+        assertEquals(min, limits.getMin());
+        assertEquals(max, limits.getMax());
+        assertEquals(effectiveDate, limits.getEffectiveDate());
+    }
+
+    private static LimitsPerHourEntity record(int id, String name, int value, long effectiveDate) {
+        return new LimitsPerHourEntity(id, name, value, new Date(effectiveDate));
+    }
+}
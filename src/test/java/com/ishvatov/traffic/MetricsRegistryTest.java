@@ -0,0 +1,173 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.TimedPacketHandler;
+import com.ishvatov.traffic.metrics.LatencyHistogram;
+import com.ishvatov.traffic.metrics.MetricsRegistry;
+import com.ishvatov.traffic.metrics.PrometheusEndpoint;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MetricsRegistry}, {@link LatencyHistogram} and {@link PrometheusEndpoint} test class.
+ *
+ * @author ishvatov
+ */
+public class MetricsRegistryTest {
+    @Test
+    public void Test_LatencyHistogram_getValueAtPercentile_KeepsRelativePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform from 1 ns up to about 1 s
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(
+                    String.format("p%s: expected %d, actual %d", percentile, expected, actual),
+                    Math.abs(actual - expected) <= expected / LatencyHistogram.SUB_BUCKETS + 1
+            );
+        }
+    }
+
+    @Test
+    public void Test_LatencyHistogram_record_HandlesExtremeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.getP50Nanos());
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+        assertEquals(2, histogram.getCountAtOrBelow(1_000));
+        assertEquals(3, histogram.getCountAtOrBelow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void Test_LatencyHistogram_getCountAtOrBelow_CountsBucketOfBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1000 and 1001 share the bucket [992, 1007], 1008 starts the next one
+        histogram.record(1_000);
+        histogram.record(1_001);
+        histogram.record(1_008);
+
+        assertEquals(0, histogram.getCountAtOrBelow(991));
+        assertEquals(2, histogram.getCountAtOrBelow(1_000));
+        assertEquals(3, histogram.getCountAtOrBelow(1_008));
+        assertArrayEquals(new long[]{0, 2, 3, 3}, histogram.getCountsAtOrBelow(new long[]{-1, 1_000, 2_000}));
+    }
+
+    @Test
+    public void Test_MetricsRegistry_scrape_WritesPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram latency = registry.histogram("test_latency_seconds", "Test latency");
+        latency.record(2_000);
+        latency.record(2_000_000);
+        registry.counter("test_packets_total", "Test packets", () -> 42);
+        registry.labeled(
+                "test_dropped_total", "Test \"dropped\" packets", MetricsRegistry.Type.COUNTER, "interface",
+                () -> {
+                    Map<String, Long> values = new LinkedHashMap<>();
+                    values.put("eth0", 1L);
+                    values.put("wlan\"0", 2L);
+                    return values;
+                }
+        );
+
+        String text = registry.scrape();
+        assertTrue(text, text.contains("# TYPE test_latency_seconds histogram\n"));
+        assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"1.0E-6\"} 0\n"));
+        assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"5.0E-6\"} 1\n"));
+        assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"0.005\"} 2\n"));
+        assertTrue(text, text.contains("test_latency_seconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains("test_latency_seconds_count 2\n"));
+        assertTrue(text, text.contains("# TYPE test_packets_total counter\ntest_packets_total 42\n"));
+        assertTrue(text, text.contains("test_dropped_total{interface=\"eth0\"} 1\n"));
+        assertTrue(text, text.contains("test_dropped_total{interface=\"wlan\\\"0\"} 2\n"));
+    }
+
+    @Test
+    public void Test_MetricsRegistry_registerMBeans_ExportsAttributes() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("test_latency_seconds", "Test latency").record(1_000);
+        AtomicLong depth = new AtomicLong(7);
+        registry.gauge("test_queue_depth", "Test queue depth", depth::get);
+
+        registry.registerMBeans(server);
+        ObjectName latency = new ObjectName(MetricsRegistry.JMX_DOMAIN + ":type=Latency,name=test_latency_seconds");
+        ObjectName queue = new ObjectName(MetricsRegistry.JMX_DOMAIN + ":type=Metric,name=test_queue_depth");
+        assertEquals(1L, server.getAttribute(latency, "Count"));
+        assertEquals(7L, server.getAttribute(queue, "Value"));
+        depth.set(3);
+        assertEquals(3L, server.getAttribute(queue, "Value"));
+
+        registry.unregisterMBeans(server);
+        assertTrue(!server.isRegistered(latency) && !server.isRegistered(queue));
+    }
+
+    @Test
+    public void Test_PrometheusEndpoint_start_ServesMetrics() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("test_queue_depth", "Test queue depth", () -> 5);
+        PrometheusEndpoint endpoint = new PrometheusEndpoint(registry, "127.0.0.1", 0);
+        endpoint.start();
+        try {
+            URL url = new URL("http://127.0.0.1:" + endpoint.getPort() + PrometheusEndpoint.PATH);
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream input = connection.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                for (int read; (read = input.read(buffer)) > 0; ) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            assertEquals(registry.scrape(), new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            endpoint.stop();
+        }
+    }
+
+    @Test
+    public void Test_TimedPacketHandler_onPacket_TimesEveryNthPacket() {
+        AtomicLong handled = new AtomicLong();
+        PacketHandler handler = (worker, length, timestamp, headers, offset, headerLength) -> handled.incrementAndGet();
+        LatencyHistogram latency = new LatencyHistogram();
+        TimedPacketHandler timed = new TimedPacketHandler(2, handler, latency, 10);
+
+        for (int i = 0; i < 100; i++) {
+            timed.onPacket(i % 2, 64, i, new byte[0], 0, 0);
+        }
+        assertEquals(100, handled.get());
+        assertEquals(10, latency.getCount());
+    }
+}
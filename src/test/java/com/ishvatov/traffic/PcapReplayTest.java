@@ -0,0 +1,145 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.PacketAccountant;
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.SingleWriterTrafficCounter;
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.FlowTable;
+import com.ishvatov.traffic.replay.PcapReplay;
+import com.ishvatov.traffic.replay.ReplayResult;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import org.junit.Before;
+import org.junit.Test;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.Pcaps;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * {@link PcapReplay} test class. Checks, that the evaluations are driven by the packet
+ * timestamps, and reports the end-to-end packets per second rate of the replay.
+ *
+ * @author ishvatov
+ */
+public class PcapReplayTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final Instant START = Instant.ofEpochSecond(1_600_000_000L);
+
+    @Before
+    public void checkLibpcap() {
+        assumeTrue("libpcap is not available", PcapTestUtils.isLibpcapAvailable());
+    }
+
+    @Test
+    public void Test_PcapReplay_replay_EvaluatesAtPacketTimeBoundaries() throws Exception {
+        // 4 packets of 100 bytes per second during 10 seconds, split into two files
+        int length = 100;
+        File first = captureFile(0, 20, 250, length);
+        File second = captureFile(20, 20, 250, length);
+
+        TrafficCounter counter = new SingleWriterTrafficCounter();
+        PacketHandler handler = (worker, packetLength, timestamp, headers, offset, headerLength) ->
+                counter.add(worker, packetLength);
+        List<Long> timestamps = new ArrayList<>();
+        List<Long> totals = new ArrayList<>();
+        PcapReplay replay = new PcapReplay(handler, timestamp -> {
+            timestamps.add(timestamp);
+            totals.add(counter.sum());
+        }, SECOND);
+
+        replay(replay, first, second);
+        ReplayResult result = replay.finish();
+
+        long start = START.getEpochSecond() * SECOND;
+        assertEquals(40, result.getPackets());
+        assertEquals(40 * length, result.getBytes());
+        assertEquals(11, result.getEvaluations());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(start + i * SECOND, (long) timestamps.get(i));
+            assertEquals(4L * i * length, (long) totals.get(i));
+        }
+        // the last evaluation is done at the last packet
+        assertEquals(start + 9 * SECOND + 750_000_000L, (long) timestamps.get(10));
+        assertEquals(40L * length, (long) totals.get(10));
+    }
+
+    @Test
+    public void Test_PcapReplay_replay_ReportsThroughput() throws Exception {
+        // one hour of traffic, 100 packets per second
+        int packets = 360_000;
+        byte[][] frames = new byte[packets][];
+        Instant[] instants = new Instant[packets];
+        long expectedBytes = 0;
+        for (int i = 0; i < packets; i++) {
+            int length = PcapTestUtils.minUdpFrameLength() + (i * 31) % 1472;
+            frames[i] = PcapTestUtils.udpFrame(0x0A000001 + i % 64, 0x0A000101, 1024 + i % 1000, 53, length);
+            instants[i] = START.plusMillis(i * 10L);
+            expectedBytes += length;
+        }
+        File file = PcapTestUtils.writeCaptureFile(frames, instants);
+
+        TrafficCounter counter = new SingleWriterTrafficCounter();
+        SlidingWindow window = new SlidingWindow(SECOND, 3600);
+        long idleTimeout = TimeUnit.MINUTES.toNanos(5);
+        PacketAccountant accountant = new PacketAccountant(
+                1,
+                counter,
+                new PacketStatsReporter(1, 0),
+                new FlowAggregator(
+                        1,
+                        new FlowTable(FlowKeys.FLOW_KEY_LENGTH, 1 << 16, 16, idleTimeout),
+                        new FlowTable(FlowKeys.HOST_KEY_LENGTH, 1 << 10, 16, idleTimeout),
+                        10
+                ),
+                new HeavyHitterDetector(1, 0.001, 0.01, 256, 10),
+                new RuleClassifier(1, TimeUnit.MINUTES.toNanos(1), 60)
+        );
+        PcapReplay replay = new PcapReplay(
+                accountant,
+                timestamp -> window.advance(timestamp, counter.sum()),
+                SECOND
+        );
+
+        replay(replay, file);
+        ReplayResult result = replay.finish();
+
+        assertEquals(packets, result.getPackets());
+        assertEquals(expectedBytes, counter.sum());
+        assertEquals(expectedBytes, window.sum());
+        assertEquals(3601, result.getEvaluations());
+    }
+
+    private static File captureFile(int from, int count, long periodMillis, int length) throws Exception {
+        byte[][] frames = new byte[count][];
+        Instant[] instants = new Instant[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = PcapTestUtils.udpFrame(0x0A000001, 0x0A000101, 1024, 53, length);
+            instants[i] = START.plusMillis((from + i) * periodMillis);
+        }
+        return PcapTestUtils.writeCaptureFile(frames, instants);
+    }
+
+    private static void replay(PcapReplay replay, File... files) throws Exception {
+        for (File file : Arrays.asList(files)) {
+            PcapHandle handle = Pcaps.openOffline(file.getAbsolutePath(), PcapHandle.TimestampPrecision.NANO);
+            try {
+                replay.replay(handle);
+            } finally {
+                handle.close();
+            }
+        }
+    }
+}
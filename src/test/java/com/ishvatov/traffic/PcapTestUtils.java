@@ -0,0 +1,110 @@
+package com.ishvatov.traffic;
+
+import org.pcap4j.core.PcapDumper;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.Pcaps;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.io.File;
+import java.time.Instant;
+
+/**
+ * Helpers, which are used to build raw packets and offline capture files in tests.
+ *
+ * @author ishvatov
+ */
+public final class PcapTestUtils {
+    private static final int SNAP_LEN = 65536;
+    private static final int ETHERNET_HEADER_LENGTH = 14;
+    private static final int IPV4_HEADER_LENGTH = 20;
+    private static final int UDP_HEADER_LENGTH = 8;
+
+    private PcapTestUtils() {
+    }
+
+    /**
+     * @return true, if the native libpcap library can be loaded.
+     */
+    public static boolean isLibpcapAvailable() {
+        try {
+            Pcaps.libVersion();
+            return true;
+        } catch (Throwable throwable) {
+            return false;
+        }
+    }
+
+    /**
+     * Builds Ethernet frame with IPv4 UDP packet.
+     *
+     * @param sourceIp        source address.
+     * @param destinationIp   destination address.
+     * @param sourcePort      source port.
+     * @param destinationPort destination port.
+     * @param length          total length of the frame, at least 42 bytes.
+     * @return raw frame.
+     */
+    public static byte[] udpFrame(int sourceIp, int destinationIp, int sourcePort, int destinationPort, int length) {
+        byte[] frame = new byte[length];
+        // ethernet: destination and source MAC are zero, ethertype IPv4
+        frame[12] = 0x08;
+        frame[13] = 0x00;
+
+        int ip = ETHERNET_HEADER_LENGTH;
+        int ipLength = length - ETHERNET_HEADER_LENGTH;
+        frame[ip] = 0x45;
+        putShort(frame, ip + 2, ipLength);
+        frame[ip + 8] = 64;
+        frame[ip + 9] = 17;
+        putInt(frame, ip + 12, sourceIp);
+        putInt(frame, ip + 16, destinationIp);
+
+        int udp = ip + IPV4_HEADER_LENGTH;
+        putShort(frame, udp, sourcePort);
+        putShort(frame, udp + 2, destinationPort);
+        putShort(frame, udp + 4, ipLength - IPV4_HEADER_LENGTH);
+        return frame;
+    }
+
+    /**
+     * @return minimal length of the frame, built by {@link #udpFrame(int, int, int, int, int)}.
+     */
+    public static int minUdpFrameLength() {
+        return ETHERNET_HEADER_LENGTH + IPV4_HEADER_LENGTH + UDP_HEADER_LENGTH;
+    }
+
+    /**
+     * Writes the frames into the new temporary Ethernet capture file.
+     *
+     * @param frames     frames to write.
+     * @param timestamps timestamps of the frames.
+     * @return capture file, which is deleted on exit.
+     */
+    public static File writeCaptureFile(byte[][] frames, Instant[] timestamps) throws Exception {
+        File file = File.createTempFile("traffic-counter", ".pcap");
+        file.deleteOnExit();
+
+        PcapHandle handle = Pcaps.openDead(DataLinkType.EN10MB, SNAP_LEN);
+        PcapDumper dumper = handle.dumpOpen(file.getAbsolutePath());
+        try {
+            for (int i = 0; i < frames.length; i++) {
+                dumper.dumpRaw(frames[i], timestamps[i]);
+            }
+            dumper.flush();
+        } finally {
+            dumper.close();
+            handle.close();
+        }
+        return file;
+    }
+
+    private static void putShort(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >>> 8);
+        array[offset + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] array, int offset, int value) {
+        putShort(array, offset, value >>> 16);
+        putShort(array, offset + 2, value);
+    }
+}
@@ -0,0 +1,273 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.capture.SlidingWindow;
+import com.ishvatov.traffic.capture.WindowState;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.persistence.FsyncPolicy;
+import com.ishvatov.traffic.persistence.SpillLog;
+import com.ishvatov.traffic.persistence.WindowCheckpoint;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link WindowCheckpoint} and {@link SpillLog} test class.
+ *
+ * @author ishvatov
+ */
+public class PersistenceTest {
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int BUCKETS = 60;
+    private static final long START_NANOS = TimeUnit.DAYS.toNanos(18_000);
+    private static final long AWAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static ScheduledExecutorService scheduler;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void Test_WindowCheckpoint_read_RestoresWindowAfterRestart() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("window.checkpoint");
+        SlidingWindow window = new SlidingWindow(SECOND_NANOS, BUCKETS);
+        for (int second = 0; second <= 30; second++) {
+            window.advance(START_NANOS + second * SECOND_NANOS, second * 1_000L);
+        }
+        WindowCheckpoint checkpoint = new WindowCheckpoint(path, BUCKETS + 1, FsyncPolicy.ALWAYS);
+        checkpoint.open();
+        checkpoint.write(window.snapshot(), 0);
+        checkpoint.close();
+
+        // the new process counts from zero, 5 seconds later
+        WindowCheckpoint reopened = new WindowCheckpoint(path, BUCKETS + 1, FsyncPolicy.ALWAYS);
+        reopened.open();
+        SlidingWindow restored = new SlidingWindow(SECOND_NANOS, BUCKETS);
+        assertTrue(restored.restore(reopened.read(), START_NANOS + 35 * SECOND_NANOS, 0));
+        assertEquals(30_000, restored.sum());
+        assertEquals(30_500, restored.advance(START_NANOS + 36 * SECOND_NANOS, 500));
+        assertFalse(restored.isFull());
+        reopened.close();
+    }
+
+    @Test
+    public void Test_WindowCheckpoint_read_TornWriteKeepsPreviousCheckpoint() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("window.checkpoint");
+        WindowCheckpoint checkpoint = new WindowCheckpoint(path, 3, FsyncPolicy.NEVER);
+        checkpoint.open();
+        checkpoint.write(new WindowState(SECOND_NANOS, 1, 2, new long[]{10, 20, 30}), 0);
+        checkpoint.write(new WindowState(SECOND_NANOS, 1, 3, new long[]{40, 20, 30}), 0);
+        checkpoint.close();
+
+        // damage a value of the second checkpoint, which is in the first slot
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(56);
+            file.writeLong(-1);
+        }
+        WindowCheckpoint reopened = new WindowCheckpoint(path, 3, FsyncPolicy.NEVER);
+        reopened.open();
+        WindowState state = reopened.read();
+        assertEquals(2, state.getCurrentSlot());
+        assertArrayEquals(new long[]{10, 20, 30}, state.getValues());
+
+        // the next checkpoint replaces the damaged one
+        reopened.write(new WindowState(SECOND_NANOS, 1, 4, new long[]{40, 50, 30}), 0);
+        assertEquals(4, reopened.read().getCurrentSlot());
+        reopened.close();
+    }
+
+    @Test
+    public void Test_SlidingWindow_restore_OutdatedOrDifferentWindow() {
+        SlidingWindow window = new SlidingWindow(SECOND_NANOS, BUCKETS);
+        window.advance(START_NANOS, 100);
+        WindowState state = window.snapshot();
+
+        assertFalse(new SlidingWindow(SECOND_NANOS, BUCKETS).restore(state, START_NANOS + BUCKETS * SECOND_NANOS, 0));
+        assertFalse(new SlidingWindow(SECOND_NANOS, BUCKETS).restore(state, START_NANOS - SECOND_NANOS, 0));
+        assertFalse(new SlidingWindow(2 * SECOND_NANOS, BUCKETS).restore(state, START_NANOS, 0));
+        assertFalse(new SlidingWindow(SECOND_NANOS, BUCKETS + 1).restore(state, START_NANOS, 0));
+        assertFalse(window.restore(state, START_NANOS, 0));
+        assertNull(new SlidingWindow(SECOND_NANOS, BUCKETS).snapshot());
+    }
+
+    @Test
+    public void Test_SpillLog_append_EntriesSurviveReopenInOrder() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("alerts.spill");
+        SpillLog spillLog = new SpillLog(path, 4096, FsyncPolicy.PERIODIC);
+        spillLog.open();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spillLog.append(entry(i, 10)));
+        }
+        spillLog.remove();
+        spillLog.sync();
+
+        // the process is killed without closing the log
+        SpillLog reopened = new SpillLog(path, 4096, FsyncPolicy.PERIODIC);
+        reopened.open();
+        assertEquals(9, reopened.size());
+        for (int i = 1; i < 10; i++) {
+            assertArrayEquals(entry(i, 10), reopened.peek());
+            reopened.remove();
+        }
+        assertTrue(reopened.isEmpty());
+        assertNull(reopened.peek());
+        reopened.close();
+        spillLog.close();
+    }
+
+    @Test
+    public void Test_SpillLog_append_BoundedRingKeepsOrder() throws Exception {
+        SpillLog spillLog = new SpillLog(folder.getRoot().toPath().resolve("alerts.spill"), 1024, FsyncPolicy.NEVER);
+        spillLog.open();
+
+        // fill the log, then keep a few entries in it, while the writes wrap around many times
+        List<byte[]> entries = new ArrayList<>();
+        while (spillLog.append(entry(entries.size(), 100))) {
+            entries.add(entry(entries.size(), 100));
+        }
+        assertEquals(8, entries.size());
+        int removed = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 4 - Math.min(round, 1); i++) {
+                assertArrayEquals(entries.get(removed++), spillLog.peek());
+                spillLog.remove();
+            }
+            for (int i = 0; i < 3; i++) {
+                byte[] entry = entry(entries.size(), 100 + round % 7);
+                assertTrue(spillLog.append(entry));
+                entries.add(entry);
+            }
+            assertEquals(entries.size() - removed, spillLog.size());
+        }
+        assertFalse(spillLog.append(new byte[1024]));
+        spillLog.close();
+    }
+
+    @Test
+    public void Test_SpillLog_peek_CorruptedEntryClearsLog() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("alerts.spill");
+        SpillLog spillLog = new SpillLog(path, 4096, FsyncPolicy.ALWAYS);
+        spillLog.open();
+        spillLog.append(entry(1, 10));
+        spillLog.append(entry(2, 10));
+        spillLog.close();
+
+        // damage the content of the first entry after its length and checksum
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(64 + 8);
+            file.writeByte('x');
+        }
+        SpillLog reopened = new SpillLog(path, 4096, FsyncPolicy.ALWAYS);
+        reopened.open();
+        assertEquals(2, reopened.size());
+        assertNull(reopened.peek());
+        assertTrue(reopened.isEmpty());
+        assertTrue(reopened.append(entry(3, 10)));
+        assertArrayEquals(entry(3, 10), reopened.peek());
+        reopened.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_AlertPublisher_replaySpilled_SendsInOrderAfterOutage() throws Exception {
+        SettableListenableFuture<SendResult<String, TrafficRecord>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("broker is not available"));
+        SettableListenableFuture<SendResult<String, TrafficRecord>> succeeded = new SettableListenableFuture<>();
+        succeeded.set(null);
+
+        KafkaTemplate<String, TrafficRecord> kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(failed);
+        SpillLog spillLog = new SpillLog(folder.getRoot().toPath().resolve("alerts.spill"), 65536, FsyncPolicy.NEVER);
+        spillLog.open();
+        AlertPublisher publisher = new AlertPublisher(kafkaTemplate, scheduler, spillLog, "alert", "sensor", 2, 0, 10);
+
+        // the first alert is spilled after the failed send, the next ones keep its order
+        for (int i = 0; i < 5; i++) {
+            assertTrue(publisher.publish("eth0", alert(i)));
+        }
+        assertEquals(5, publisher.getSpilledSize());
+        assertEquals(0, publisher.getMetrics().getFailed());
+        publisher.replaySpilled();
+        assertEquals(5, publisher.getSpilledSize());
+
+        // broker is back
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenReturn(succeeded);
+        publisher.replaySpilled();
+        long deadline = System.currentTimeMillis() + AWAIT_MILLIS;
+        while (publisher.getSpilledSize() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, publisher.getSpilledSize());
+        assertEquals(5, publisher.getMetrics().getReplayed());
+
+        ArgumentCaptor<TrafficRecord> captor = ArgumentCaptor.forClass(TrafficRecord.class);
+        verify(kafkaTemplate, times(7)).send(eq("alert"), eq("sensor/eth0"), captor.capture());
+        List<Long> replayed = new ArrayList<>();
+        for (TrafficRecord record : captor.getAllValues().subList(2, 7)) {
+            replayed.add(((AlertRecord) record).getTimestamp());
+        }
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), replayed);
+
+        // new alerts are sent directly again
+        assertTrue(publisher.publish("eth0", alert(5)));
+        assertEquals(0, publisher.getSpilledSize());
+        spillLog.close();
+    }
+
+    private static byte[] entry(int number, int length) {
+        byte[] entry = new byte[length];
+        byte[] prefix = String.valueOf(number).getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(prefix, 0, entry, 0, prefix.length);
+        return entry;
+    }
+
+    private static AlertRecord alert(long timestamp) {
+        return new AlertRecord(
+                timestamp, AlertRecord.GLOBAL_SOURCE, 4096, new Limits(1, 1024, 2048, 0),
+                TopTalkers.EMPTY, Collections.emptyMap()
+        );
+    }
+}
@@ -0,0 +1,158 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.AlertStatus;
+import com.ishvatov.traffic.wire.BinaryRecordDeserializer;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.PartialCountRecord;
+import com.ishvatov.traffic.wire.TelemetryRecord;
+import com.ishvatov.traffic.wire.TextRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficInterval;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link BinaryRecordSerializer} and {@link TextRecordSerializer} test class.
+ *
+ * @author ishvatov
+ */
+public class RecordSerializerTest {
+    private static final AlertRecord ALERT = new AlertRecord(
+            1_580_000_000_000L,
+            "customer-a",
+            5_000_000_000L,
+            new Limits(3, 1024, 1_073_741_824, 1_579_000_000_000L),
+            new TopTalkers(
+                    Collections.singletonList(new TopTalker("10.0.0.1", 4_000_000_000L, 3_000_000, 0)),
+                    Collections.singletonList(new TopTalker("10.0.0.1:443 -> 10.0.0.2:50000 TCP", 1_000_000, 800, 0)),
+                    Arrays.asList(
+                            new TopTalker("10.0.0.1", 4_000_000_000L, 3_000_000, 1500),
+                            new TopTalker("fe80::1", 1_000, 10, 1500)
+                    ),
+                    Collections.emptyList()
+            ),
+            interfaces()
+    );
+    private static final TelemetryRecord TELEMETRY = new TelemetryRecord(Arrays.asList(
+            new TrafficInterval(1_580_000_060_000L, 60_000, 120_000_000, 100_000, 100_050, 50, 0),
+            new TrafficInterval(1_580_000_000_000L, 60_000, 0, 0, 0, 0, 0)
+    ));
+
+    private final BinaryRecordSerializer binarySerializer = new BinaryRecordSerializer();
+    private final BinaryRecordDeserializer binaryDeserializer = new BinaryRecordDeserializer();
+    private final TextRecordSerializer textSerializer = new TextRecordSerializer(
+            "Current value [%s] is not in range of the following limits:\n(min: %s)\n(max: %s), effective since %s.",
+            "Current value [%s] is back in range of the following limits:\n(min: %s)\n(max: %s), effective since %s.",
+            "\nBreach is %s since %s: peak value [%s], out of range %s times.",
+            "\nRule: %s",
+            "\nTop hosts:\n%s\nTop flows:\n%s\nHeavy sources:\n%s\nHeavy destinations:\n%s",
+            "\nInterfaces:\n%s",
+            "Interval [%s, %s ms]: %s bytes, %s packets, %s pps, received: %s, dropped: %s, dropped by interface: %s"
+    );
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_AlertRoundTrip() {
+        byte[] data = binarySerializer.serialize("alert", ALERT);
+        assertEquals(ALERT, binaryDeserializer.deserialize("alert", data));
+    }
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_ResolvedAlertRoundTrip() {
+        AlertRecord resolved = resolved();
+        byte[] data = binarySerializer.serialize("alert", resolved);
+        assertEquals(resolved, binaryDeserializer.deserialize("alert", data));
+    }
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_TelemetryRoundTrip() {
+        byte[] data = binarySerializer.serialize("telemetry", TELEMETRY);
+        assertEquals(TELEMETRY, binaryDeserializer.deserialize("telemetry", data));
+    }
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_PartialCountRoundTrip() {
+        PartialCountRecord partialCount = new PartialCountRecord("sensor-1", 1_580_000_010_000L, 10_000, 12_000_000, 9_000);
+        byte[] data = binarySerializer.serialize("partial-counts", partialCount);
+        assertEquals(partialCount, binaryDeserializer.deserialize("partial-counts", data));
+    }
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_SmallerThanText() {
+        int binary = binarySerializer.serialize("alert", ALERT).length;
+        int text = textSerializer.serialize("alert", ALERT).length;
+        assertTrue(String.format("binary: %d, text: %d", binary, text), binary * 2 < text);
+    }
+
+    @Test
+    public void Test_BinaryRecordSerializer_serialize_BufferIsReused() {
+        byte[] first = binarySerializer.serialize("alert", ALERT);
+        binarySerializer.serialize("telemetry", TELEMETRY);
+        byte[] second = binarySerializer.serialize("alert", ALERT);
+        assertTrue(Arrays.equals(first, second));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void Test_BinaryRecordDeserializer_deserialize_TruncatedRecord() {
+        byte[] data = binarySerializer.serialize("alert", ALERT);
+        binaryDeserializer.deserialize("alert", Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test
+    public void Test_TextRecordSerializer_serialize_Alert() {
+        String message = new String(textSerializer.serialize("alert", ALERT), StandardCharsets.UTF_8);
+        assertTrue(message.startsWith("Current value [5000000000] is not in range of the following limits:"));
+        assertTrue(message.contains("(max: 1073741824)"));
+        assertTrue(message.contains("Rule: customer-a"));
+        assertTrue(message.contains("fe80::1: ~1000 bytes (+/- 1500), ~10 packets"));
+        assertTrue(message.contains("Interfaces:\neth0: 4000000000\neth1: 1000000000"));
+    }
+
+    @Test
+    public void Test_TextRecordSerializer_serialize_ResolvedAlert() {
+        String message = new String(textSerializer.serialize("alert", resolved()), StandardCharsets.UTF_8);
+        assertTrue(message.startsWith("Current value [1000000] is back in range of the following limits:"));
+        assertTrue(message.contains("Breach is RESOLVED since "));
+        assertTrue(message.contains("peak value [5000000000], out of range 42 times."));
+    }
+
+    @Test
+    public void Test_TextRecordSerializer_serialize_Telemetry() {
+        String message = new String(textSerializer.serialize("telemetry", TELEMETRY), StandardCharsets.UTF_8);
+        assertEquals(2, message.split("\n").length);
+        assertTrue(message.contains("120000000 bytes, 100000 packets, 1666 pps, received: 100050, dropped: 50"));
+    }
+
+    private static AlertRecord resolved() {
+        return new AlertRecord(
+                ALERT.getTimestamp() + 3_600_000,
+                AlertRecord.GLOBAL_SOURCE,
+                1_000_000,
+                ALERT.getLimits(),
+                TopTalkers.EMPTY,
+                Collections.emptyMap(),
+                AlertStatus.RESOLVED,
+                ALERT.getTimestamp(),
+                ALERT.getCurrent(),
+                42
+        );
+    }
+
+    private static Map<String, Long> interfaces() {
+        Map<String, Long> interfaces = new LinkedHashMap<>();
+        interfaces.put("eth0", 4_000_000_000L);
+        interfaces.put("eth1", 1_000_000_000L);
+        return interfaces;
+    }
+}
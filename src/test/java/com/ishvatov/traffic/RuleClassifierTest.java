@@ -0,0 +1,212 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.rules.Cidr;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.rules.RuleMatcher;
+import com.ishvatov.traffic.rules.RuleUsage;
+import org.junit.Test;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link Cidr}, {@link RuleMatcher} and {@link RuleClassifier} test class.
+ *
+ * @author ishvatov
+ */
+public class RuleClassifierTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long START = TimeUnit.DAYS.toNanos(20000);
+    private static final int LENGTH = 100;
+
+    @Test
+    public void Test_Cidr_parse_Networks() {
+        assertEquals("10.1.0.0/16", Cidr.parse("10.1.2.3/16").toString());
+        assertEquals(Cidr.IPV4_MAPPED_PREFIX_LENGTH + 32, Cidr.parse("192.168.0.1").getPrefixLength());
+        assertEquals("2001:db8:0:0:0:0:0:0/32", Cidr.parse("2001:db8::1/32").toString());
+        assertEquals("0:0:0:0:0:0:0:0/0", Cidr.parse("::/0").toString());
+        assertEquals(Cidr.parse("10.0.0.0/8"), Cidr.parse("::ffff:10.0.0.0/104"));
+        assertTrue(Cidr.parse("10.0.0.0/8").isIpv4());
+        assertFalse(Cidr.parse("::/0").isIpv4());
+    }
+
+    @Test
+    public void Test_Cidr_parse_InvalidNetworks() {
+        for (String value : Arrays.asList(
+                "10.0.0.0/33", "2001:db8::/129", "localhost", "10.0.0/8", "10.0.0.0/x", "", "999.1.1.1", "10.0.256.0/24"
+        )) {
+            try {
+                Cidr.parse(value);
+                throw new AssertionError("Network must be rejected: " + value);
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void Test_RuleMatcher_lookup_OverlappingPrefixes() {
+        List<Cidr> networks = Arrays.asList(
+                Cidr.parse("10.0.0.0/8"),
+                Cidr.parse("10.1.0.0/16"),
+                Cidr.parse("10.1.2.0/23"),
+                Cidr.parse("10.1.2.3/32"),
+                Cidr.parse("::/0")
+        );
+        RuleMatcher matcher = RuleMatcher.compile(networks);
+
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, rulesOf(matcher, "10.1.2.3"));
+        assertArrayEquals(new int[]{0, 1, 2, 4}, rulesOf(matcher, "10.1.3.255"));
+        assertArrayEquals(new int[]{0, 1, 4}, rulesOf(matcher, "10.1.4.0"));
+        assertArrayEquals(new int[]{0, 4}, rulesOf(matcher, "10.200.0.1"));
+        assertArrayEquals(new int[]{4}, rulesOf(matcher, "192.168.0.1"));
+        assertArrayEquals(new int[]{4}, rulesOf(matcher, "2001:db8::1"));
+    }
+
+    @Test
+    public void Test_RuleMatcher_lookup_SameAsLinearScan() {
+        Random random = new Random(42);
+        List<Cidr> networks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            networks.add(Cidr.of(0, 0xFFFF00000000L | (random.nextInt() & 0xFFFFFFFFL), Cidr.IPV4_MAPPED_PREFIX_LENGTH + random.nextInt(33)));
+        }
+        for (int i = 0; i < 100; i++) {
+            networks.add(Cidr.of(random.nextLong(), random.nextLong(), random.nextInt(129)));
+        }
+        RuleMatcher matcher = RuleMatcher.compile(networks);
+
+        for (int i = 0; i < 100_000; i++) {
+            long high;
+            long low;
+            if (i % 2 == 0) {
+                // addresses near the rule networks, so that the deep levels are covered
+                Cidr network = networks.get(random.nextInt(networks.size()));
+                high = network.getHigh() ^ random.nextInt(16);
+                low = network.getLow() ^ random.nextInt(1 << 12);
+            } else {
+                high = 0;
+                low = 0xFFFF00000000L | (random.nextInt() & 0xFFFFFFFFL);
+            }
+            int[] expected = new int[networks.size()];
+            int count = 0;
+            for (int rule = 0; rule < networks.size(); rule++) {
+                if (networks.get(rule).contains(high, low)) {
+                    expected[count++] = rule;
+                }
+            }
+            int set = matcher.lookup(high, low);
+            int[] actual = set == RuleMatcher.NO_RULES ? new int[0] : matcher.rulesOf(set);
+            assertArrayEquals(Arrays.copyOf(expected, count), actual);
+        }
+    }
+
+    @Test
+    public void Test_RuleClassifier_record_PortsAndCountOnce() {
+        RuleClassifier classifier = new RuleClassifier(2, MINUTE, 60);
+        classifier.update(Arrays.asList(
+                rule(1, "office", "10.0.0.0/8", 0, 65535, 0),
+                rule(2, "dns", "10.0.0.0/8", 53, 53, 0),
+                rule(3, "external", "192.168.0.0/16", 0, 65535, 0)
+        ));
+        classifier.evaluate(START);
+
+        // maximum is zero, so every rule with traffic is reported before the window is full
+        // both endpoints match "office", the packet is counted once
+        record(classifier, 0, "10.0.0.1", "10.0.0.2", 1024, 53);
+        // destination port matches "dns"
+        record(classifier, 1, "192.168.0.1", "10.0.0.2", 1024, 53);
+        // source port matches "dns", destination is out of the rules
+        record(classifier, 1, "10.0.0.3", "172.16.0.1", 53, 1024);
+        // no rules
+        record(classifier, 0, "172.16.0.1", "172.16.0.2", 53, 53);
+
+        Map<String, Long> usage = usage(classifier.evaluate(START + MINUTE / 2));
+        assertEquals(3 * LENGTH, usage.get("office").longValue());
+        assertEquals(3 * LENGTH, usage.get("dns").longValue());
+        assertEquals(LENGTH, usage.get("external").longValue());
+    }
+
+    @Test
+    public void Test_RuleClassifier_update_WindowsKeptWhenOnlyLimitsChange() {
+        RuleClassifier classifier = new RuleClassifier(1, MINUTE, 60);
+        assertTrue(classifier.update(Collections.singletonList(rule(1, "office", "10.0.0.0/8", 0, 65535, 1_000_000))));
+        assertFalse(classifier.update(Collections.singletonList(rule(1, "office", "10.0.0.0/8", 0, 65535, 1_000_000))));
+        classifier.evaluate(START);
+        record(classifier, 0, "10.0.0.1", "172.16.0.1", 1024, 80);
+
+        // new maximum, same network - the window is kept and the new limit is exceeded
+        assertTrue(classifier.update(Collections.singletonList(rule(1, "office", "10.0.0.0/8", 0, 65535, 10))));
+        List<RuleUsage> usages = classifier.evaluate(START + MINUTE);
+        assertEquals(1, usages.size());
+        assertEquals(LENGTH, usages.get(0).getCurrent());
+        assertEquals(10, usages.get(0).getLimits().getMax());
+
+        // new network - the window starts from zero
+        assertTrue(classifier.update(Collections.singletonList(rule(1, "office", "10.0.0.0/16", 0, 65535, 10))));
+        assertTrue(classifier.evaluate(START + 2 * MINUTE).isEmpty());
+    }
+
+    @Test
+    public void Test_RuleClassifier_evaluate_SuppressedRules() {
+        RuleClassifier classifier = new RuleClassifier(1, MINUTE, 60);
+        classifier.update(Arrays.asList(
+                rule(1, "office", "10.0.0.0/8", 0, 65535, 10),
+                rule(2, "lab", "10.1.0.0/16", 0, 65535, 1_000_000)
+        ));
+        classifier.evaluate(START);
+        record(classifier, 0, "10.1.0.1", "172.16.0.1", 1024, 80);
+
+        // window is not full yet, only the exceeded maximum is reported
+        List<RuleUsage> usages = classifier.evaluate(START + MINUTE);
+        assertEquals(1, usages.size());
+        LimitRule office = usages.get(0).getRule();
+        assertEquals("office", office.getName());
+
+        classifier.suppress(office, START + 10 * MINUTE);
+        assertTrue(classifier.evaluate(START + 5 * MINUTE).isEmpty());
+        assertEquals(1, classifier.evaluate(START + 10 * MINUTE).size());
+
+        // window is full, both rules are reported
+        assertEquals(2, classifier.evaluate(START + 60 * MINUTE).size());
+    }
+
+    private static LimitRule rule(int id, String name, String network, int portFrom, int portTo, long max) {
+        return new LimitRule(id, name, Cidr.parse(network), portFrom, portTo, 0, max, 0);
+    }
+
+    private static void record(RuleClassifier classifier, int worker, String source, String destination,
+                               int sourcePort, int destinationPort) {
+        byte[] frame = PcapTestUtils.udpFrame(ipv4(source), ipv4(destination), sourcePort, destinationPort, LENGTH);
+        PacketHeaders headers = new PacketHeaders();
+        assertTrue(headers.decode(DataLinkType.EN10MB, frame, 0, frame.length));
+        classifier.record(worker, LENGTH, headers);
+    }
+
+    private static int ipv4(String address) {
+        return (int) Cidr.parse(address).getLow();
+    }
+
+    private static int[] rulesOf(RuleMatcher matcher, String address) {
+        Cidr host = Cidr.parse(address);
+        int set = matcher.lookup(host.getHigh(), host.getLow());
+        return set == RuleMatcher.NO_RULES ? new int[0] : matcher.rulesOf(set);
+    }
+
+    private static Map<String, Long> usage(List<RuleUsage> usages) {
+        return usages.stream().collect(Collectors.toMap(usage -> usage.getRule().getName(), RuleUsage::getCurrent));
+    }
+}
@@ -0,0 +1,88 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.capture.SlidingWindow;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link SlidingWindow} test class, which also compares the burst detection
+ * latency of the rolling hour with the former 20 minutes tumbling deltas.
+ *
+ * @author ishvatov
+ */
+public class SlidingWindowTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int HOUR = 3600;
+    private static final int TUMBLING_PERIOD = 1200;
+    private static final long MAX_LIMIT = 10_000_000;
+    private static final long BASELINE_RATE = 2_000;
+    private static final long BURST_RATE = 20_000;
+    private static final int BURST_START = HOUR + 1817;
+    private static final int DURATION = 3 * HOUR;
+
+    @Test
+    public void Test_SlidingWindow_advance_SumsLastBuckets() {
+        SlidingWindow window = new SlidingWindow(SECOND, 10);
+        long total = 0;
+        for (int second = 0; second < 10; second++) {
+            total += 100;
+            window.advance(second * SECOND, total);
+        }
+        assertEquals(900, window.sum());
+        assertFalse(window.isFull());
+
+        total += 100;
+        assertEquals(1000, window.advance(10 * SECOND, total));
+        assertTrue(window.isFull());
+
+        // skipped buckets are empty, bytes since the previous call belong to the latest one
+        total += 500;
+        assertEquals(1000, window.advance(15 * SECOND, total));
+        total += 1;
+        assertEquals(1, window.advance(100 * SECOND, total));
+    }
+
+    @Test
+    public void Test_SlidingWindow_advance_DetectsBurstWithoutDelay() {
+        long[] perSecond = new long[DURATION];
+        for (int second = 0; second < DURATION; second++) {
+            perSecond[second] = second >= BURST_START ? BURST_RATE : BASELINE_RATE;
+        }
+
+        // the first second, when the true traffic of the last hour exceeds the limit
+        long rolling = 0;
+        int earliest = -1;
+        for (int second = 0; second < DURATION && earliest < 0; second++) {
+            rolling += perSecond[second] - (second >= HOUR ? perSecond[second - HOUR] : 0);
+            if (second >= HOUR && rolling > MAX_LIMIT) {
+                earliest = second;
+            }
+        }
+
+        SlidingWindow window = new SlidingWindow(SECOND, HOUR);
+        long total = 0;
+        int sliding = -1;
+        int tumbling = -1;
+        long previousTotal = 0;
+        for (int second = 0; second < DURATION; second++) {
+            total += perSecond[second];
+            if (sliding < 0 && window.advance(second * SECOND, total) > MAX_LIMIT && window.isFull()) {
+                sliding = second;
+            }
+            if ((second + 1) % TUMBLING_PERIOD == 0) {
+                if (tumbling < 0 && total - previousTotal > MAX_LIMIT) {
+                    tumbling = second;
+                }
+                previousTotal = total;
+            }
+        }
+
+        assertEquals(earliest, sliding);
+        assertTrue(tumbling > sliding);
+    }
+}
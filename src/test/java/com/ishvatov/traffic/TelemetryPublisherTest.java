@@ -0,0 +1,125 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.telemetry.TelemetryPublisher;
+import com.ishvatov.traffic.wire.TelemetryRecord;
+import com.ishvatov.traffic.wire.TrafficInterval;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link TelemetryPublisher} test class.
+ *
+ * @author ishvatov
+ */
+public class TelemetryPublisherTest {
+    private static final String TOPIC = "telemetry";
+    private static final long MINUTE = 60_000;
+
+    private final List<SettableListenableFuture<SendResult<String, TrafficRecord>>> futures = new ArrayList<>();
+    private KafkaTemplate<String, TrafficRecord> kafkaTemplate;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any(TrafficRecord.class))).thenAnswer(invocation -> {
+            SettableListenableFuture<SendResult<String, TrafficRecord>> future = new SettableListenableFuture<>();
+            futures.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    public void Test_TelemetryPublisher_collect_IntervalDeltas() {
+        TelemetryPublisher publisher = new TelemetryPublisher(kafkaTemplate, Runnable::run, TOPIC, "sensor", 10, 5);
+
+        publisher.collect(MINUTE, 1_000, 10, 20, 1, 0);
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(TrafficRecord.class));
+
+        publisher.collect(2 * MINUTE, 61_000, 6_010, 6_030, 3, 1);
+        List<TrafficInterval> intervals = sent(1).get(0).getIntervals();
+        assertEquals(1, intervals.size());
+        assertEquals(new TrafficInterval(MINUTE, MINUTE, 60_000, 6_000, 6_010, 2, 1), intervals.get(0));
+        assertEquals(100, intervals.get(0).getPacketsPerSecond());
+    }
+
+    @Test
+    public void Test_TelemetryPublisher_collect_BatchedWhileBrokerIsSlow() {
+        TelemetryPublisher publisher = new TelemetryPublisher(kafkaTemplate, Runnable::run, TOPIC, "sensor", 100, 50);
+        publisher.collect(0, 0, 0, 0, 0, 0);
+        for (int i = 1; i <= 10; i++) {
+            publisher.collect(i * MINUTE, i * 1_000L, i * 10L, i * 10L, 0, 0);
+        }
+
+        // only the first interval is in flight, the rest are waiting for it
+        assertEquals(1, sent(1).get(0).getIntervals().size());
+        assertEquals(10, publisher.getPendingSize());
+
+        futures.get(0).set(null);
+        List<TelemetryRecord> records = sent(2);
+        assertEquals(9, records.get(1).getIntervals().size());
+        assertEquals(2 * MINUTE, records.get(1).getIntervals().get(1).getTimestamp());
+
+        futures.get(1).set(null);
+        assertEquals(0, publisher.getPendingSize());
+        assertEquals(2, publisher.getSentRecords());
+        assertEquals(10, publisher.getSentIntervals());
+    }
+
+    @Test
+    public void Test_TelemetryPublisher_collect_FailedBatchIsResent() {
+        TelemetryPublisher publisher = new TelemetryPublisher(kafkaTemplate, Runnable::run, TOPIC, "sensor", 100, 50);
+        publisher.collect(0, 0, 0, 0, 0, 0);
+        publisher.collect(MINUTE, 1_000, 10, 10, 0, 0);
+        futures.get(0).setException(new IllegalStateException("broker is not available"));
+
+        publisher.collect(2 * MINUTE, 2_000, 20, 20, 0, 0);
+        assertEquals(2, sent(2).get(1).getIntervals().size());
+    }
+
+    @Test
+    public void Test_TelemetryPublisher_collect_OldestPendingIntervalsAreDropped() {
+        TelemetryPublisher publisher = new TelemetryPublisher(kafkaTemplate, Runnable::run, TOPIC, "sensor", 3, 50);
+        publisher.collect(0, 0, 0, 0, 0, 0);
+        for (int i = 1; i <= 6; i++) {
+            publisher.collect(i * MINUTE, i, i, i, 0, 0);
+        }
+        assertEquals(3, publisher.getPendingSize());
+        assertEquals(3, publisher.getDroppedIntervals());
+
+        // interval in flight is kept, the following ones are the latest
+        futures.get(0).set(null);
+        List<TrafficInterval> intervals = sent(2).get(1).getIntervals();
+        assertEquals(2, intervals.size());
+        assertEquals(4 * MINUTE, intervals.get(0).getTimestamp());
+        assertEquals(5 * MINUTE, intervals.get(1).getTimestamp());
+    }
+
+    private List<TelemetryRecord> sent(int count) {
+        ArgumentCaptor<TrafficRecord> captor = ArgumentCaptor.forClass(TrafficRecord.class);
+        verify(kafkaTemplate, times(count)).send(eq(TOPIC), eq("sensor"), captor.capture());
+        List<TelemetryRecord> records = new ArrayList<>();
+        for (TrafficRecord record : captor.getAllValues()) {
+            records.add((TelemetryRecord) record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,113 @@
+package com.ishvatov.traffic;
+
+import com.ishvatov.traffic.history.TrafficHistoryPartitions;
+import com.ishvatov.traffic.history.TrafficHistoryWriter;
+import com.ishvatov.traffic.wire.TrafficInterval;
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link TrafficHistoryWriter} and {@link TrafficHistoryPartitions} test class, which uses
+ * the embedded PostgreSQL with the schema from create_table.sql.
+ *
+ * @author ishvatov
+ */
+public class TrafficHistoryWriterTest {
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int INTERVALS = 100_000;
+    private static final long STEP_MILLIS = TimeUnit.SECONDS.toMillis(3);
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        jdbcTemplate = new JdbcTemplate(postgres.getDatabase(
+                "postgres", "postgres", Collections.singletonMap("reWriteBatchedInserts", "true")
+        ));
+    }
+
+    @AfterClass
+    public static void tearDown() throws IOException {
+        postgres.close();
+    }
+
+    @Before
+    public void createTables() throws IOException {
+        jdbcTemplate.execute(
+                new String(Files.readAllBytes(Paths.get("create_table.sql")), StandardCharsets.UTF_8)
+        );
+    }
+
+    @Test
+    public void Test_TrafficHistoryWriter_offer_SustainedInsertThroughput() throws InterruptedException {
+        TrafficHistoryPartitions partitions = new TrafficHistoryPartitions(jdbcTemplate, ZONE, 30, 0);
+        TrafficHistoryWriter writer = new TrafficHistoryWriter(jdbcTemplate, partitions, "sensor", INTERVALS, 1000);
+
+        long start = FIRST_DAY.atStartOfDay(ZONE).toInstant().toEpochMilli();
+        for (int i = 0; i < INTERVALS; i++) {
+            assertTrue(writer.offer(new TrafficInterval(start + i * STEP_MILLIS, STEP_MILLIS, i, i, i, 0, 0)));
+        }
+
+        writer.start();
+        writer.stop();
+
+        assertEquals(INTERVALS, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+        assertEquals(
+                Integer.valueOf(INTERVALS),
+                jdbcTemplate.queryForObject("select count(*)::int from traffic_history", Integer.class)
+        );
+
+        // 100000 intervals of 3 seconds cover 4 days
+        assertEquals(4, partitions.findPartitions().size());
+        assertEquals(
+                Integer.valueOf(28_800),
+                jdbcTemplate.queryForObject("select count(*)::int from traffic_history_p20200101", Integer.class)
+        );
+    }
+
+    @Test
+    public void Test_TrafficHistoryWriter_offer_FullQueueDropsIntervals() {
+        TrafficHistoryPartitions partitions = new TrafficHistoryPartitions(jdbcTemplate, ZONE, 30, 0);
+        TrafficHistoryWriter writer = new TrafficHistoryWriter(jdbcTemplate, partitions, "sensor", 1, 1000);
+
+        assertTrue(writer.offer(new TrafficInterval(0, STEP_MILLIS, 1, 1, 1, 0, 0)));
+        assertTrue(!writer.offer(new TrafficInterval(STEP_MILLIS, STEP_MILLIS, 1, 1, 1, 0, 0)));
+        assertEquals(1, writer.getDropped());
+    }
+
+    @Test
+    public void Test_TrafficHistoryPartitions_dropExpired_RetentionByPartition() {
+        TrafficHistoryPartitions partitions = new TrafficHistoryPartitions(jdbcTemplate, ZONE, 30, 2);
+        LocalDate today = FIRST_DAY.plusDays(40);
+        for (int day = 0; day < 40; day++) {
+            partitions.ensurePartition(FIRST_DAY.plusDays(day));
+        }
+
+        // today and two days ahead are created, days older than 30 days are dropped
+        partitions.maintain(today.atStartOfDay(ZONE).toInstant());
+        assertEquals(33, partitions.findPartitions().size());
+        assertTrue(partitions.findPartitions().contains("traffic_history_p20200210"));
+        assertTrue(!partitions.findPartitions().contains("traffic_history_p20200110"));
+        assertTrue(partitions.findPartitions().contains("traffic_history_p20200111"));
+    }
+}
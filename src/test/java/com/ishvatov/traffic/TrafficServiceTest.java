@@ -1,13 +1,25 @@
 package com.ishvatov.traffic;
 
-import com.ishvatov.traffic.exception.InvalidLimitsNumberException;
-import com.ishvatov.traffic.exception.InvalidLimitsValueException;
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.model.entity.LimitRuleEntity;
 import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.model.repository.LimitRuleRepository;
 import com.ishvatov.traffic.model.repository.LimitsPerHourRepository;
+import com.ishvatov.traffic.rules.Cidr;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleUsage;
 import com.ishvatov.traffic.service.TrafficService;
 import com.ishvatov.traffic.utils.Pair;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.AlertStatus;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -15,13 +27,21 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Optional;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -40,69 +60,122 @@ public class TrafficServiceTest {
     private static final int DIFF_NOT_IN_RANGE = 100;
     private static final int DIFF_IN_RANGE = 3192;
 
+    @MockBean(name = "kafkaTemplate")
+    private KafkaTemplate<String, TrafficRecord> kafkaTemplate;
+
     @MockBean
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private AlertPublisher alertPublisher;
 
     @MockBean
     private LimitsPerHourRepository repository;
 
+    @MockBean
+    private LimitRuleRepository ruleRepository;
+
     @Autowired
     private TrafficService trafficService;
 
-    @Test
-    public void Test_TrafficService_fetchTrafficLimits_CorrectLimits() {
-        when(repository.findMinimumLimit()).thenReturn(Optional.ofNullable(CORRECT_MIN));
-        when(repository.findMaximumLimit()).thenReturn(Optional.ofNullable(CORRECT_MAX));
-
-        Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits = trafficService.fetchTrafficLimits();
-        assertEquals(new Pair<>(CORRECT_MIN, CORRECT_MAX), limits);
-    }
-
-    @Test(expected = InvalidLimitsValueException.class)
-    public void Test_TrafficService_fetchTrafficLimits_MinBiggerThenMax() {
-        when(repository.findMinimumLimit()).thenReturn(Optional.ofNullable(CORRECT_MAX));
-        when(repository.findMaximumLimit()).thenReturn(Optional.ofNullable(CORRECT_MIN));
+    @Autowired
+    private AlertTracker alertTracker;
 
-        Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits = trafficService.fetchTrafficLimits();
+    @Before
+    public void setUp() {
+        // the tests share the context, so every test starts without the breaches of the previous ones
+        alertTracker.retain(Collections.emptySet());
     }
 
-    @Test(expected = InvalidLimitsNumberException.class)
-    public void Test_TrafficService_fetchTrafficLimits_MinIsNull() {
-        when(repository.findMinimumLimit()).thenReturn(Optional.empty());
-        when(repository.findMaximumLimit()).thenReturn(Optional.ofNullable(CORRECT_MAX));
-
-        Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits = trafficService.fetchTrafficLimits();
+    @Test
+    public void Test_TrafficService_fetchLimitRules_InvalidRuleIsSkipped() {
+        when(ruleRepository.findByEnabledTrueOrderById()).thenReturn(Arrays.asList(
+                new LimitRuleEntity(1, "customer-a", "10.1.0.0/16", 0, 65535, 0, 4096, true, new Date()),
+                new LimitRuleEntity(2, "invalid", "example.com/16", 0, 65535, 0, 4096, true, new Date()),
+                new LimitRuleEntity(3, "https", "::/0", 443, 443, 0, 4096, true, new Date())
+        ));
+
+        List<LimitRule> rules = trafficService.fetchLimitRules();
+
+        assertEquals(2, rules.size());
+        assertEquals("customer-a", rules.get(0).getName());
+        assertEquals(Cidr.parse("10.1.0.0/16"), rules.get(0).getNetwork());
+        assertEquals("https", rules.get(1).getName());
     }
 
-    @Test(expected = InvalidLimitsNumberException.class)
-    public void Test_TrafficService_fetchTrafficLimits_MaxIsNull() {
-        when(repository.findMinimumLimit()).thenReturn(Optional.ofNullable(CORRECT_MIN));
-        when(repository.findMaximumLimit()).thenReturn(Optional.empty());
+    @Test
+    public void Test_TrafficService_validateRulesAndSendNotifications_OnlyExceededRules() {
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(true);
+        LimitRule inRange = new LimitRule(1, "in-range", Cidr.parse("10.1.0.0/16"), 0, 65535, 1024, 4096, 0);
+        LimitRule exceeded = new LimitRule(2, "exceeded", Cidr.parse("10.2.0.0/16"), 0, 65535, 1024, 4096, 0);
+
+        List<LimitRule> result = trafficService.validateRulesAndSendNotifications(
+                0,
+                Arrays.asList(
+                        new RuleUsage(inRange, inRange.toLimits(1), 2048),
+                        new RuleUsage(exceeded, exceeded.toLimits(1), 8192)
+                ),
+                () -> TopTalkers.EMPTY
+        );
 
-        Pair<LimitsPerHourEntity, LimitsPerHourEntity> limits = trafficService.fetchTrafficLimits();
+        assertEquals(Collections.singletonList(exceeded), result);
+        verify(alertPublisher).publish(eq("exceeded"), any(TrafficRecord.class));
     }
 
     @Test
     public void Test_TrafficService_validateTransferredTraffic_TrafficNotInRange() {
-        when(kafkaTemplate.send(anyString(), anyString())).thenReturn(null);
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(true);
 
         boolean result = trafficService.validateTrafficAndSendNotification(
                 DIFF_NOT_IN_RANGE,
-                new Pair<>(CORRECT_MIN, CORRECT_MAX)
+                Limits.of(1, new Pair<>(CORRECT_MIN, CORRECT_MAX))
         );
 
+        assertTrue(result);
+        assertEquals(Collections.singletonList(AlertStatus.OPEN), publishedStatuses(1));
+    }
+
+    @Test
+    public void Test_TrafficService_validateTransferredTraffic_TrafficBackInRange() {
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(true);
+        Limits limits = Limits.of(1, new Pair<>(CORRECT_MIN, CORRECT_MAX));
+
+        assertTrue(trafficService.validateTrafficAndSendNotification(DIFF_NOT_IN_RANGE, limits));
+        boolean result = trafficService.validateTrafficAndSendNotification(DIFF_IN_RANGE, limits);
+
         assertFalse(result);
+        assertEquals(Arrays.asList(AlertStatus.OPEN, AlertStatus.RESOLVED), publishedStatuses(2));
     }
 
     @Test
     public void Test_TrafficService_validateTransferredTraffic_TrafficInRange() {
-        when(kafkaTemplate.send(anyString(), anyString())).thenReturn(null);
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(true);
 
         boolean result = trafficService.validateTrafficAndSendNotification(
                 DIFF_IN_RANGE,
-                new Pair<>(CORRECT_MIN, CORRECT_MAX)
+                Limits.of(1, new Pair<>(CORRECT_MIN, CORRECT_MAX))
         );
 
+        assertFalse(result);
+        verify(alertPublisher, never()).publish(anyString(), any(TrafficRecord.class));
+    }
+
+    @Test
+    public void Test_TrafficService_validateTransferredTraffic_FailedAlertIsSentAgain() {
+        when(alertPublisher.publish(anyString(), any(TrafficRecord.class))).thenReturn(false, true);
+        Limits limits = Limits.of(1, new Pair<>(CORRECT_MIN, CORRECT_MAX));
+
+        assertFalse(trafficService.validateTrafficAndSendNotification(DIFF_NOT_IN_RANGE, limits));
+        boolean result = trafficService.validateTrafficAndSendNotification(DIFF_NOT_IN_RANGE, limits);
+
         assertTrue(result);
+        assertEquals(Arrays.asList(AlertStatus.OPEN, AlertStatus.OPEN), publishedStatuses(2));
+    }
+
+    private List<AlertStatus> publishedStatuses(int alerts) {
+        ArgumentCaptor<TrafficRecord> captor = ArgumentCaptor.forClass(TrafficRecord.class);
+        verify(alertPublisher, times(alerts)).publish(eq(AlertRecord.GLOBAL_SOURCE), captor.capture());
+        List<AlertStatus> statuses = new ArrayList<>();
+        for (TrafficRecord record : captor.getAllValues()) {
+            statuses.add(((AlertRecord) record).getStatus());
+        }
+        return statuses;
     }
 }
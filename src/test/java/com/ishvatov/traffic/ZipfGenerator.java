@@ -0,0 +1,42 @@
+package com.ishvatov.traffic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of the ranks with Zipfian distribution, which is used to build
+ * synthetic traffic of the tests and of the benchmarks: rank 0 is the most frequent one.
+ *
+ * @author ishvatov
+ */
+public final class ZipfGenerator {
+    private final double[] cumulative;
+    private final Random random;
+
+    /**
+     * @param size     number of the ranks.
+     * @param exponent exponent of the distribution.
+     * @param seed     seed of the random generator.
+     */
+    public ZipfGenerator(int size, double exponent, long seed) {
+        this.cumulative = new double[size];
+        this.random = new Random(seed);
+
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    /**
+     * @return next random rank.
+     */
+    public int next() {
+        int position = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(position >= 0 ? position : -position - 1, cumulative.length - 1);
+    }
+}
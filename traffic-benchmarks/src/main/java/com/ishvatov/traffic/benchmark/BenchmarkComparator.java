@@ -0,0 +1,101 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JSON results of the JMH benchmarks (for example, of the previous and of the
+ * current release) and prints the change of every score. Exits with status 1, if any benchmark
+ * has regressed: its score is worse than the baseline by more than the threshold and by more
+ * than the errors of both scores, so the noise is not reported.
+ * <p>
+ * Usage: {@code BenchmarkComparator <baseline.json> <current.json> [threshold percent, 10 by default]}
+ *
+ * @author ishvatov
+ */
+public final class BenchmarkComparator {
+    // JMH mode, in which the bigger score is better, the smaller is better in the other modes
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private BenchmarkComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkComparator <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        double threshold = (args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT) / 100;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode metric = entry.getValue().get("primaryMetric");
+            if (before == null) {
+                System.out.printf("%-100s %14.3f %s (new)%n",
+                        entry.getKey(), metric.get("score").asDouble(), metric.get("scoreUnit").asText());
+                continue;
+            }
+
+            JsonNode beforeMetric = before.get("primaryMetric");
+            double oldScore = beforeMetric.get("score").asDouble();
+            double newScore = metric.get("score").asDouble();
+            double error = error(beforeMetric) + error(metric);
+            boolean higherIsBetter = THROUGHPUT_MODE.equals(entry.getValue().get("mode").asText());
+            double worse = higherIsBetter ? oldScore - newScore : newScore - oldScore;
+            boolean regressed = worse > oldScore * threshold && worse > error;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-100s %14.3f -> %14.3f %s (%+.1f%%)%s%n",
+                    entry.getKey(),
+                    oldScore,
+                    newScore,
+                    metric.get("scoreUnit").asText(),
+                    oldScore == 0 ? 0 : (newScore - oldScore) * 100 / oldScore,
+                    regressed ? " REGRESSION" : "");
+        }
+
+        if (regressions != 0) {
+            System.out.printf("%d benchmarks have regressed by more than %.1f%%!%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param file JSON result of the JMH run
+     * @return results by the benchmark name, mode and parameters.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText())
+                    .append(" [").append(result.get("mode").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(", ").append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.append(']').toString(), result);
+        }
+        return results;
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
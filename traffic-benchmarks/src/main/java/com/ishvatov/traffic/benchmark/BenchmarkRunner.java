@@ -0,0 +1,68 @@
+package com.ishvatov.traffic.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Entry point of the benchmarks jar. Accepts the standard JMH command line options and, unless
+ * another result file or format is provided, writes the results as JSON into {@link #RESULTS_DIRECTORY},
+ * so the results of the releases can be compared by the {@link BenchmarkComparator}.
+ *
+ * @author ishvatov
+ */
+public final class BenchmarkRunner {
+    /**
+     * Directory of the JSON results.
+     */
+    public static final String RESULTS_DIRECTORY = "target/jmh";
+
+    // result file of the run of all the selected benchmarks
+    private static final String RESULTS_FILE = "jmh-result.json";
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Creates the options, which run only the provided benchmark class and write
+     * its results into {@code RESULTS_DIRECTORY/<class name>.json}.
+     *
+     * @param benchmark benchmark class
+     * @return options builder.
+     */
+    public static ChainedOptionsBuilder options(Class<?> benchmark) {
+        return new OptionsBuilder()
+                .include(benchmark.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile(benchmark.getSimpleName() + ".json"));
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        String[] arguments = args;
+        if (!options.getResult().hasValue() && !options.getResultFormat().hasValue()) {
+            arguments = Arrays.copyOf(args, args.length + 4);
+            arguments[args.length] = "-rf";
+            arguments[args.length + 1] = ResultFormatType.JSON.name();
+            arguments[args.length + 2] = "-rff";
+            arguments[args.length + 3] = resultFile(RESULTS_FILE);
+        }
+        Main.main(arguments);
+    }
+
+    static String resultFile(String name) {
+        File file = new File(RESULTS_DIRECTORY, name);
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+            throw new IllegalStateException(String.format("Directory %s can not be created!", file.getParent()));
+        }
+        return file.getPath();
+    }
+}
@@ -0,0 +1,169 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ishvatov.traffic.capture.CaptureBackend;
+import com.ishvatov.traffic.capture.CaptureChannel;
+import com.ishvatov.traffic.capture.CapturePipeline;
+import com.ishvatov.traffic.capture.CaptureProfile;
+import com.ishvatov.traffic.capture.CaptureStats;
+import com.ishvatov.traffic.capture.PacketHandler;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNetworkInterface;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the live capture backends on the same traffic: every backend captures the interface
+ * for the provided time through the capture pipeline with one counting worker, the rate of the
+ * published packets, the kernel drops, the garbage collections and the bytes, allocated by the
+ * capture thread per packet, are measured. The traffic should be replayed into the interface
+ * for the whole run, for example with tcpreplay of a {@link SyntheticTraffic} file into a veth pair.
+ * <p>
+ * Writes the result in the JMH JSON format into {@code target/jmh/CaptureBackendBenchmark.json}.
+ * Must be run as root or with the CAP_NET_RAW capability.
+ * <p>
+ * Usage: {@code CaptureBackendBenchmark <interface> <seconds> <backend...>}
+ *
+ * @author ishvatov
+ */
+public final class CaptureBackendBenchmark {
+    // capture profile: snaplen, read timeout and kernel buffer
+    private static final int SNAPLEN = 128;
+    private static final int TIMEOUT_MILLIS = 10;
+    private static final int BUFFER_SIZE = 64 << 20;
+
+    // pipeline of one worker
+    private static final int BUFFER_CAPACITY = 1 << 16;
+
+    // name of the capture thread of the first pipeline source
+    private static final String CAPTURE_THREAD = "pcap-capture-0";
+
+    private CaptureBackendBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: CaptureBackendBenchmark <interface> <seconds> <backend...>");
+            System.exit(2);
+        }
+        String device = args[0];
+        int seconds = Integer.parseInt(args[1]);
+        CaptureProfile profile = new CaptureProfile(
+                SNAPLEN,
+                PcapNetworkInterface.PromiscuousMode.PROMISCUOUS,
+                TIMEOUT_MILLIS,
+                BUFFER_SIZE,
+                false,
+                PcapHandle.TimestampPrecision.NANO,
+                ""
+        );
+
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode results = mapper.createArrayNode();
+        for (int i = 2; i < args.length; i++) {
+            CaptureBackend backend = CaptureBackend.valueOf(args[i]);
+            results.add(run(mapper, profile, device, seconds, backend));
+        }
+
+        File file = new File(BenchmarkRunner.resultFile(CaptureBackendBenchmark.class.getSimpleName() + ".json"));
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, results);
+        System.out.printf("Result is written to %s%n", file.getPath());
+    }
+
+    private static ObjectNode run(ObjectMapper mapper, CaptureProfile profile, String device, int seconds,
+                                  CaptureBackend backend) throws IOException, InterruptedException {
+        AtomicLong bytes = new AtomicLong();
+        PacketHandler handler = (worker, length, timestamp, headers, offset, headerLength) ->
+                bytes.lazySet(bytes.get() + length);
+        CapturePipeline pipeline = new CapturePipeline(1, BUFFER_CAPACITY, CapturePipeline.OverflowPolicy.DROP, handler);
+
+        CaptureChannel channel = backend.open(profile, device, null);
+        try {
+            CaptureStats statsBefore = channel.getStats();
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            pipeline.startChannels(Collections.singletonList(channel));
+            long captureThread = captureThreadId();
+            long allocatedBefore = allocatedBytes(captureThread);
+            long start = System.nanoTime();
+
+            TimeUnit.SECONDS.sleep(seconds);
+
+            long allocated = allocatedBytes(captureThread) - allocatedBefore;
+            long published = pipeline.getPublished();
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+            long gcCount = gcCount() - gcCountBefore;
+            long gcMillis = gcMillis() - gcMillisBefore;
+            CaptureStats stats = channel.getStats().minus(statsBefore);
+            pipeline.stop();
+
+            double rate = published / elapsedSeconds;
+            double allocatedPerPacket = published == 0 ? 0 : (double) allocated / published;
+            System.out.printf(
+                    "%s on %s: %.0f packets/s, %d packets, %d bytes, kernel drops %d, pipeline drops %d, "
+                            + "%d GCs in %d ms, %.1f bytes allocated per packet by the capture thread%n",
+                    backend, device, rate, published, bytes.get(), stats.getDropped(), pipeline.getDropped(),
+                    gcCount, gcMillis, allocatedPerPacket
+            );
+
+            ObjectNode result = mapper.createObjectNode();
+            result.put("benchmark", CaptureBackendBenchmark.class.getName() + ".capture");
+            result.put("mode", "thrpt");
+            result.put("threads", 1);
+            result.put("forks", 1);
+            ObjectNode params = result.putObject("params");
+            params.put("backend", backend.name());
+            params.put("interface", device);
+            metric(result.putObject("primaryMetric"), rate, "ops/s");
+            ObjectNode secondary = result.putObject("secondaryMetrics");
+            metric(secondary.putObject("gc.alloc.rate.norm"), allocatedPerPacket, "B/op");
+            metric(secondary.putObject("gc.count"), gcCount, "counts");
+            metric(secondary.putObject("gc.time"), gcMillis, "ms");
+            metric(secondary.putObject("kernel.drops"), stats.getDropped(), "counts");
+            return result;
+        } finally {
+            pipeline.stop();
+            channel.close();
+        }
+    }
+
+    private static void metric(ObjectNode metric, double score, String unit) {
+        metric.put("score", score);
+        // single measurement, the error is unknown
+        metric.put("scoreError", 0.0);
+        metric.put("scoreUnit", unit);
+        metric.putArray("rawData").addArray().add(score);
+    }
+
+    private static long captureThreadId() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> CAPTURE_THREAD.equals(thread.getName()))
+                .mapToLong(Thread::getId)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Capture thread is not running!"));
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ishvatov.traffic.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.SingleWriterTrafficCounter;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the capture loop body with the per-packet
+ * String.format INFO logging (before) and with the {@link PacketStatsReporter} (after).
+ * The log output is written to a temporary file with the same pattern,
+ * which is used by the RollingFile appender from logback-spring.xml.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureLoopBenchmark {
+    private static final int[] PACKET_SIZES = {60, 1514, 576, 1514, 40, 1514, 1280, 9000};
+
+    private Logger logger;
+    private File logFile;
+    private FileAppender<ILoggingEvent> appender;
+    private TrafficCounter counter;
+    private PacketStatsReporter reporter;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        logFile = File.createTempFile("capture-loop-benchmark", ".log");
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %p %C{1.} [%t] %m%n");
+        encoder.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(logFile.getAbsolutePath());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+        appender = fileAppender;
+
+        logger = context.getLogger(CaptureLoopBenchmark.class);
+        logger.detachAndStopAllAppenders();
+        logger.setAdditive(false);
+        logger.setLevel(ch.qos.logback.classic.Level.INFO);
+        logger.addAppender(fileAppender);
+
+        counter = new SingleWriterTrafficCounter();
+        reporter = new PacketStatsReporter(1, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logger.detachAndStopAllAppenders();
+        appender.stop();
+        logFile.delete();
+    }
+
+    @Benchmark
+    public void perPacketLogging() {
+        int length = nextLength();
+        counter.add(0, length);
+        logger.info(
+                String.format(
+                        "Received packet!\n\tCurrent data amount: %s",
+                        counter.sum()
+                )
+        );
+    }
+
+    @Benchmark
+    public void statsReporter() {
+        int length = nextLength();
+        counter.add(0, length);
+        reporter.record(0, length);
+    }
+
+    private int nextLength() {
+        return PACKET_SIZES[index++ & (PACKET_SIZES.length - 1)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(CaptureLoopBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.capture.CapturePipeline;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.Pcaps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packets per second of the whole capture path without a NIC: the capture file, written by the
+ * {@link SyntheticTraffic}, is replayed through the pcap loop, the {@link CapturePipeline}
+ * buffers and workers and the packet accounting. Requires libpcap.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(CapturePipelineBenchmark.PACKETS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CapturePipelineBenchmark {
+    static final int PACKETS = 500_000;
+
+    @Param({"1", "2", "4"})
+    public int workers;
+
+    private File captureFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        captureFile = File.createTempFile("synthetic-traffic", ".pcap");
+        new SyntheticTraffic(10_000, 1.1, SyntheticTraffic.SizeDistribution.IMIX, 1514, 0, 42)
+                .writeCaptureFile(captureFile, PACKETS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (!captureFile.delete()) {
+            throw new IOException(String.format("Capture file %s was not deleted!", captureFile));
+        }
+    }
+
+    @Benchmark
+    public long replay() throws Exception {
+        CapturePipeline pipeline = new CapturePipeline(
+                workers, 1024, CapturePipeline.OverflowPolicy.BLOCK,
+                PacketAccountantBenchmark.accountant(workers, 100)
+        );
+        PcapHandle handle = Pcaps.openOffline(captureFile.getAbsolutePath());
+        try {
+            pipeline.start(handle);
+            pipeline.awaitCompletion();
+            pipeline.stop();
+        } finally {
+            handle.close();
+        }
+        return pipeline.getPublished();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(CapturePipelineBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
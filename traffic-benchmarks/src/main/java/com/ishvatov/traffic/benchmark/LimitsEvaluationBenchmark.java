@@ -0,0 +1,203 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.limits.LimitsCache;
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleUsage;
+import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.utils.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Compares the latency of the traffic evaluation, while the limits refresh thread is running,
+ * with the legacy read/write lock around the mutable pair of limits, with the immutable
+ * {@link Limits} snapshot behind the atomic reference and with the {@link LimitsCache},
+ * which rebuilds its limits timeline on each refresh.
+ * <p>
+ * Evaluation sends the notification (simulated by the CPU work) every few calls. With the lock
+ * it is sent under the read lock, so the refresh waits for it and the evaluations, which come
+ * after the waiting refresh, wait for the refresh.
+ *
+ * @author ishvatov
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LimitsEvaluationBenchmark {
+    // amount of the traffic, which is evaluated, every fourth value is out of limits
+    private static final long[] TRAFFIC = {3072, 3072, 3072, 8192};
+
+    // CPU work, which simulates the kafka send and the database query
+    private static final long SEND_TOKENS = 2000;
+    private static final long FETCH_TOKENS = 500;
+
+    // effective date of the fetched limits, the same on each refresh
+    private static final Date EFFECTIVE_DATE = new Date(0);
+
+    @State(Scope.Group)
+    public static class LimitsState {
+        @Param({"READ_WRITE_LOCK", "ATOMIC_SNAPSHOT", "LIMITS_CACHE"})
+        public String type;
+
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final Pair<LimitsPerHourEntity, LimitsPerHourEntity> pair = new Pair<>();
+        final AtomicReference<Limits> snapshot = new AtomicReference<>();
+        long version;
+        ScheduledExecutorService scheduler;
+        LimitsCache cache;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetched = fetch();
+            pair.setFirst(fetched.getFirst());
+            pair.setSecond(fetched.getSecond());
+            snapshot.set(Limits.of(++version, fetched));
+            scheduler = Executors.newSingleThreadScheduledExecutor();
+            cache = new LimitsCache(new FetchingTrafficService(), scheduler);
+            cache.reload();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EvaluationState {
+        int index;
+    }
+
+    @Benchmark
+    @Group("evaluate")
+    @GroupThreads(1)
+    public boolean evaluate(LimitsState limits, EvaluationState evaluation) {
+        long current = TRAFFIC[evaluation.index++ & (TRAFFIC.length - 1)];
+        if ("READ_WRITE_LOCK".equals(limits.type)) {
+            limits.lock.readLock().lock();
+            try {
+                return validate(
+                        current < limits.pair.getFirst().getLimitValue()
+                                || current > limits.pair.getSecond().getLimitValue()
+                );
+            } finally {
+                limits.lock.readLock().unlock();
+            }
+        }
+        if ("LIMITS_CACHE".equals(limits.type)) {
+            return validate(limits.cache.get().isExceeded(current));
+        }
+        return validate(limits.snapshot.get().isExceeded(current));
+    }
+
+    @Benchmark
+    @Group("evaluate")
+    @GroupThreads(1)
+    public void refresh(LimitsState limits) {
+        Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetched = fetch();
+        if ("READ_WRITE_LOCK".equals(limits.type)) {
+            limits.lock.writeLock().lock();
+            try {
+                limits.pair.setFirst(fetched.getFirst());
+                limits.pair.setSecond(fetched.getSecond());
+            } finally {
+                limits.lock.writeLock().unlock();
+            }
+        } else if ("LIMITS_CACHE".equals(limits.type)) {
+            limits.cache.reload();
+        } else {
+            limits.snapshot.set(Limits.of(++limits.version, fetched));
+        }
+    }
+
+    private static boolean validate(boolean exceeded) {
+        if (exceeded) {
+            Blackhole.consumeCPU(SEND_TOKENS);
+        }
+        return exceeded;
+    }
+
+    private static Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetch() {
+        Blackhole.consumeCPU(FETCH_TOKENS);
+        return new Pair<>(
+                new LimitsPerHourEntity(1, "min", 2048, EFFECTIVE_DATE),
+                new LimitsPerHourEntity(2, "max", 4096, EFFECTIVE_DATE)
+        );
+    }
+
+    /**
+     * Service, which returns the same limits after the simulated database query.
+     */
+    private static final class FetchingTrafficService implements TrafficService {
+        @Override
+        public List<LimitsPerHourEntity> fetchTrafficLimitsSince(int id) {
+            if (id != 0) {
+                return Collections.emptyList();
+            }
+            Pair<LimitsPerHourEntity, LimitsPerHourEntity> fetched = fetch();
+            return Arrays.asList(fetched.getFirst(), fetched.getSecond());
+        }
+
+        @Override
+        public long countTrafficLimits() {
+            return 2;
+        }
+
+        @Override
+        public String fetchTrafficLimitsChecksum() {
+            return "";
+        }
+
+        @Override
+        public List<LimitRule> fetchLimitRules() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<LimitRule> validateRulesAndSendNotifications(
+                long timestamp,
+                List<RuleUsage> usages,
+                Supplier<TopTalkers> topTalkers
+        ) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean validateTrafficAndSendNotification(
+                long timestamp,
+                long current,
+                Map<String, Long> interfaces,
+                Limits limits,
+                Supplier<TopTalkers> topTalkers
+        ) {
+            return validate(limits.isExceeded(current));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(LimitsEvaluationBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.capture.PacketAccountant;
+import com.ishvatov.traffic.capture.PacketRingBuffer;
+import com.ishvatov.traffic.capture.PacketStatsReporter;
+import com.ishvatov.traffic.capture.PerWorkerTrafficCounter;
+import com.ishvatov.traffic.flow.FlowAggregator;
+import com.ishvatov.traffic.flow.FlowKeys;
+import com.ishvatov.traffic.flow.FlowTable;
+import com.ishvatov.traffic.rules.Cidr;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import com.ishvatov.traffic.sketch.HeavyHitterDetector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the per-packet accounting path of the capture workers: the {@link PacketAccountant}
+ * with the traffic counter, the statistics, the flow aggregates, the heavy hitter sketches and the
+ * limit rules, fed by the {@link SyntheticTraffic} with the Zipfian flows.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketAccountantBenchmark {
+    private static final int PACKETS = 1 << 16;
+    private static final int HEADER_LENGTH = PacketRingBuffer.HEADER_LENGTH;
+
+    @Param({"100", "100000"})
+    public int flows;
+
+    @Param({"0", "1000"})
+    public int rules;
+
+    private PacketAccountant accountant;
+    private byte[] headers;
+    private int[] headerLengths;
+    private int[] lengths;
+    private long[] timestamps;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accountant = accountant(1, rules);
+        accountant.onStart(0, DataLinkType.EN10MB);
+
+        SyntheticTraffic traffic = new SyntheticTraffic(flows, 1.1, SyntheticTraffic.SizeDistribution.IMIX, 1514, 0, 42);
+        headers = new byte[PACKETS * HEADER_LENGTH];
+        headerLengths = new int[PACKETS];
+        lengths = new int[PACKETS];
+        timestamps = new long[PACKETS];
+        byte[] frame = new byte[HEADER_LENGTH];
+        for (int i = 0; i < PACKETS; i++) {
+            lengths[i] = traffic.next();
+            timestamps[i] = traffic.getTimestamp();
+            headerLengths[i] = traffic.writeHeaders(frame);
+            System.arraycopy(frame, 0, headers, i * HEADER_LENGTH, headerLengths[i]);
+        }
+    }
+
+    @Benchmark
+    public void onPacket() {
+        int packet = index++ & (PACKETS - 1);
+        accountant.onPacket(0, lengths[packet], timestamps[packet], headers, packet * HEADER_LENGTH, headerLengths[packet]);
+    }
+
+    /**
+     * Creates the accountant with the default capture configuration.
+     *
+     * @param workers number of the workers
+     * @param rules   number of the limit rules, random /16 - /24 subnets of 10.0.0.0/8
+     * @return new accountant.
+     */
+    static PacketAccountant accountant(int workers, int rules) {
+        long idleTimeout = TimeUnit.MINUTES.toNanos(5);
+        RuleClassifier ruleClassifier = new RuleClassifier(workers, TimeUnit.MINUTES.toNanos(1), 60);
+        List<LimitRule> limitRules = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            int prefixLength = 16 + i % 9;
+            String network = String.format("10.%d.%d.0/%d", i * 7 % 256, i * 13 % 256, prefixLength);
+            limitRules.add(new LimitRule(i, "rule-" + i, Cidr.parse(network), 0, 65535, 0, Long.MAX_VALUE, 0));
+        }
+        ruleClassifier.update(limitRules);
+
+        return new PacketAccountant(
+                workers,
+                new PerWorkerTrafficCounter(workers),
+                new PacketStatsReporter(workers, 0),
+                new FlowAggregator(
+                        workers,
+                        new FlowTable(FlowKeys.FLOW_KEY_LENGTH, 1 << 18, 16, idleTimeout),
+                        new FlowTable(FlowKeys.HOST_KEY_LENGTH, 1 << 18, 16, idleTimeout),
+                        10
+                ),
+                new HeavyHitterDetector(workers, 0.001, 0.01, 256, 10),
+                ruleClassifier
+        );
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(PacketAccountantBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
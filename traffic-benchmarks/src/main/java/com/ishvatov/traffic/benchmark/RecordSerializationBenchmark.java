@@ -0,0 +1,119 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.model.entity.LimitsPerHourEntity;
+import com.ishvatov.traffic.wire.AlertRecord;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.TextRecordSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serialization of the alert with the legacy String.format of the
+ * {@link LimitsPerHourEntity} toString output (before), with the text templates of
+ * {@link TextRecordSerializer} and with the {@link BinaryRecordSerializer} (after).
+ * Size of the message of each approach is printed during the setup.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordSerializationBenchmark {
+    // templates from kafka.properties
+    private static final String LEGACY_ALERT_MESSAGE =
+            "Current value [%s] is not in range of the following limits:\n(%s)\n(%s).";
+    private static final String ALERT_MESSAGE =
+            "Current value [%s] is not in range of the following limits:\n(min: %s)\n(max: %s), effective since %s.";
+    private static final String ALERT_RESOLVED =
+            "Current value [%s] is back in range of the following limits:\n(min: %s)\n(max: %s), effective since %s.";
+    private static final String ALERT_STATUS =
+            "\nBreach is %s since %s: peak value [%s], out of range %s times.";
+    private static final String ALERT_TOP_TALKERS =
+            "\nTop hosts:\n%s\nTop flows:\n%s\nHeavy sources:\n%s\nHeavy destinations:\n%s";
+    private static final String ALERT_RULE =
+            "\nRule: %s";
+    private static final String ALERT_INTERFACES =
+            "\nInterfaces:\n%s";
+    private static final String TELEMETRY_MESSAGE =
+            "Interval [%s, %s ms]: %s bytes, %s packets, %s pps, received: %s, dropped: %s, dropped by interface: %s";
+
+    @Param({"0", "10"})
+    public int topTalkers;
+
+    private final StringSerializer stringSerializer = new StringSerializer();
+    private final TextRecordSerializer textSerializer = new TextRecordSerializer(
+            ALERT_MESSAGE, ALERT_RESOLVED, ALERT_STATUS, ALERT_RULE, ALERT_TOP_TALKERS, ALERT_INTERFACES, TELEMETRY_MESSAGE
+    );
+    private final BinaryRecordSerializer binarySerializer = new BinaryRecordSerializer();
+
+    private LimitsPerHourEntity min;
+    private LimitsPerHourEntity max;
+    private AlertRecord alert;
+    private long current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Date effectiveDate = new Date();
+        min = new LimitsPerHourEntity(1, "min", 1024, effectiveDate);
+        max = new LimitsPerHourEntity(2, "max", 1073741824, effectiveDate);
+        current = 1_500_000_000L;
+        alert = new AlertRecord(
+                System.currentTimeMillis(),
+                AlertRecord.GLOBAL_SOURCE,
+                current,
+                new Limits(1, min.getLimitValue(), max.getLimitValue(), effectiveDate.getTime()),
+                new TopTalkers(talkers("10.0.0.%d"), talkers("10.0.0.%d:443 -> 10.0.1.1:50000 TCP"),
+                        talkers("10.0.2.%d"), talkers("10.0.3.%d")),
+                Collections.singletonMap("any", current)
+        );
+
+        System.out.printf(
+                "%n[%d top talkers] legacy: %d bytes, text: %d bytes, binary: %d bytes%n",
+                topTalkers, legacy().length, text().length, binary().length
+        );
+    }
+
+    @Benchmark
+    public byte[] legacy() {
+        return stringSerializer.serialize("alert", String.format(LEGACY_ALERT_MESSAGE, current, min, max));
+    }
+
+    @Benchmark
+    public byte[] text() {
+        return textSerializer.serialize("alert", alert);
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return binarySerializer.serialize("alert", alert);
+    }
+
+    private List<TopTalker> talkers(String format) {
+        List<TopTalker> talkers = new ArrayList<>(topTalkers);
+        for (int i = 0; i < topTalkers; i++) {
+            talkers.add(new TopTalker(String.format(format, i), 100_000_000L >> i, 80_000 >> i, 0));
+        }
+        return talkers;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(RecordSerializationBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.flow.PacketHeaders;
+import com.ishvatov.traffic.rules.Cidr;
+import com.ishvatov.traffic.rules.LimitRule;
+import com.ishvatov.traffic.rules.RuleClassifier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-packet cost of the {@link RuleClassifier} with the linear scan
+ * over all the rules, which is the naive approach. Rules are random IPv4 subnets,
+ * every tenth rule also has a port range.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleClassifierBenchmark {
+    private static final int PACKETS = 4096;
+    private static final int LENGTH = 512;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int rules;
+
+    private RuleClassifier classifier;
+    private List<LimitRule> limitRules;
+    private long[] linearCounters;
+    private PacketHeaders[] headers;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        limitRules = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            int prefixLength = 16 + random.nextInt(17);
+            int address = 0x0A000000 | random.nextInt(1 << 24);
+            String network = String.format(
+                    "%d.%d.%d.%d/%d",
+                    address >>> 24, address >>> 16 & 0xFF, address >>> 8 & 0xFF, address & 0xFF, prefixLength
+            );
+            int portFrom = i % 10 == 0 ? random.nextInt(1024) : 0;
+            int portTo = i % 10 == 0 ? portFrom + random.nextInt(1024) : 65535;
+            limitRules.add(new LimitRule(i, "rule-" + i, Cidr.parse(network), portFrom, portTo, 0, Long.MAX_VALUE, 0));
+        }
+        classifier = new RuleClassifier(1, TimeUnit.MINUTES.toNanos(1), 60);
+        classifier.update(limitRules);
+        linearCounters = new long[rules];
+
+        // sources are spread over the whole 10.0.0.0/8
+        SyntheticTraffic traffic = new SyntheticTraffic(1 << 24, 0, SyntheticTraffic.SizeDistribution.FIXED, LENGTH, 0, 42);
+        byte[] frame = new byte[LENGTH];
+        headers = new PacketHeaders[PACKETS];
+        for (int i = 0; i < PACKETS; i++) {
+            traffic.next();
+            int headerLength = traffic.writeHeaders(frame);
+            headers[i] = new PacketHeaders();
+            headers[i].decode(DataLinkType.EN10MB, frame, 0, headerLength);
+        }
+    }
+
+    @Benchmark
+    public void trie() {
+        classifier.record(0, LENGTH, nextHeaders());
+    }
+
+    @Benchmark
+    public void linearScan() {
+        PacketHeaders packet = nextHeaders();
+        for (int rule = 0; rule < limitRules.size(); rule++) {
+            LimitRule limitRule = limitRules.get(rule);
+            Cidr network = limitRule.getNetwork();
+            boolean source = network.contains(packet.getSourceHigh(), packet.getSourceLow())
+                    && limitRule.matchesPort(packet.getSourcePort());
+            boolean destination = network.contains(packet.getDestinationHigh(), packet.getDestinationLow())
+                    && limitRule.matchesPort(packet.getDestinationPort());
+            if (source || destination) {
+                linearCounters[rule] += LENGTH;
+            }
+        }
+    }
+
+    private PacketHeaders nextHeaders() {
+        return headers[index++ & (PACKETS - 1)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(RuleClassifierBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the time to the first counted packet: starts the application command the provided number
+ * of times, waits for the "first packet counted" startup log line and stops the application. The
+ * command should capture or replay some traffic, for example a file of the {@link SyntheticTraffic}.
+ * <p>
+ * Prints the minimum, the median and the maximum and writes the result in the JMH JSON format into
+ * {@code target/jmh/StartupBenchmark.json}, so the releases can be compared by the {@link BenchmarkComparator}.
+ * <p>
+ * Usage: {@code StartupBenchmark <runs> <name> <command...>}
+ *
+ * @author ishvatov
+ */
+public final class StartupBenchmark {
+    // startup log line of the application
+    private static final Pattern FIRST_PACKET = Pattern.compile("first packet counted in (\\d+) ms");
+
+    // time to wait for the first packet of one run
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 3) {
+            System.err.println("Usage: StartupBenchmark <runs> <name> <command...>");
+            System.exit(2);
+        }
+        int runs = Integer.parseInt(args[0]);
+        String name = args[1];
+        List<String> command = Arrays.asList(args).subList(2, args.length);
+
+        long[] millis = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = run(command);
+            System.out.printf("Run %d: first packet counted in %d ms%n", i + 1, millis[i]);
+        }
+        Arrays.sort(millis);
+        System.out.printf("%s: min %d ms, median %d ms, max %d ms%n",
+                name, millis[0], millis[runs / 2], millis[runs - 1]);
+        write(name, command, millis);
+    }
+
+    /**
+     * @return time to the first counted packet after the JVM start, as reported by the application.
+     */
+    private static long run(List<String> command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Thread watchdog = new Thread(() -> {
+            try {
+                if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "startup-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line; (line = output.readLine()) != null; ) {
+                Matcher matcher = FIRST_PACKET.matcher(line);
+                if (matcher.find()) {
+                    return Long.parseLong(matcher.group(1));
+                }
+            }
+            throw new IllegalStateException(String.format(
+                    "Application has exited with status %d before the first packet was counted!",
+                    process.waitFor()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            watchdog.interrupt();
+        }
+    }
+
+    private static void write(String name, List<String> command, long[] millis) throws IOException {
+        double mean = Arrays.stream(millis).average().orElse(0);
+        double variance = Arrays.stream(millis).mapToDouble(value -> (value - mean) * (value - mean)).sum()
+                / Math.max(1, millis.length - 1);
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode result = mapper.createObjectNode();
+        result.put("benchmark", StartupBenchmark.class.getName() + ".firstPacket");
+        result.put("mode", "ss");
+        result.put("threads", 1);
+        result.put("forks", millis.length);
+        result.put("jvm", command.get(0));
+        result.putObject("params").put("name", name);
+        ObjectNode metric = result.putObject("primaryMetric");
+        metric.put("score", mean);
+        // 95% confidence interval with the normal approximation
+        metric.put("scoreError", 1.96 * Math.sqrt(variance / millis.length));
+        metric.put("scoreUnit", "ms/op");
+        ArrayNode raw = metric.putArray("rawData").addArray();
+        Arrays.stream(millis).forEach(raw::add);
+
+        ArrayNode results = mapper.createArrayNode().add(result);
+        File file = new File(BenchmarkRunner.resultFile(StartupBenchmark.class.getSimpleName() + ".json"));
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, results);
+        System.out.printf("Result is written to %s%n", file.getPath());
+    }
+}
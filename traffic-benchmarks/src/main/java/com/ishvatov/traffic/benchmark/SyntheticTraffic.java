@@ -0,0 +1,277 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.ZipfGenerator;
+import com.ishvatov.traffic.capture.PacketHandler;
+import com.ishvatov.traffic.capture.PacketRingBuffer;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapDumper;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.Pcaps;
+import org.pcap4j.packet.namednumber.DataLinkType;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generator of the synthetic Ethernet/IPv4 traffic, which feeds the real capture path without a NIC:
+ * either directly into a {@link PacketHandler} (paced to the configured rate) or through the pcap
+ * capture file, which is replayed by the application or by the {@link com.ishvatov.traffic.capture.CapturePipeline}.
+ * <p>
+ * Every flow has its own addresses and ports, even flows are UDP and odd flows are TCP. Flows are
+ * chosen by the Zipf distribution with the provided skew (0 - uniform), so a few flows carry most of
+ * the traffic like on a real link. The generator is deterministic for the same seed.
+ *
+ * @author ishvatov
+ */
+public final class SyntheticTraffic {
+    /**
+     * Distribution of the packet sizes.
+     */
+    public enum SizeDistribution {
+        // every packet has the maximum size
+        FIXED,
+        // sizes are uniformly distributed between the minimum and the maximum size
+        UNIFORM,
+        // simple IMIX: 7 of 12 packets are 64 bytes, 4 are 576 bytes and 1 is 1500 bytes
+        IMIX
+    }
+
+    // header lengths
+    private static final int ETHERNET_HEADER_LENGTH = 14;
+    private static final int IPV4_HEADER_LENGTH = 20;
+    private static final int UDP_HEADER_LENGTH = 8;
+    private static final int TCP_HEADER_LENGTH = 20;
+
+    /**
+     * Minimal length of the generated frame, which fits the TCP headers.
+     */
+    public static final int MIN_FRAME_LENGTH = ETHERNET_HEADER_LENGTH + IPV4_HEADER_LENGTH + TCP_HEADER_LENGTH;
+
+    // snapshot length of the generated capture files
+    private static final int SNAP_LEN = 65536;
+
+    // IMIX sizes, one per twelve packets
+    private static final int[] IMIX = {64, 64, 64, 64, 64, 64, 64, 576, 576, 576, 576, 1500};
+
+    private final int flows;
+    private final SizeDistribution sizes;
+    private final int maxSize;
+    private final long packetsPerSecond;
+    private final SplittableRandom random;
+
+    // generator of the flows, null for the uniform distribution
+    private final ZipfGenerator zipf;
+
+    // interval between the packets in nanoseconds
+    private final long intervalNanos;
+
+    // state of the current packet
+    private long timestamp;
+    private int flow;
+    private int length;
+
+    /**
+     * @param flows            number of the flows.
+     * @param skew             exponent of the Zipf distribution of the flows, 0 for the uniform one.
+     * @param sizes            distribution of the packet sizes.
+     * @param maxSize          maximum size of the packet for the {@link SizeDistribution#FIXED}
+     *                         and {@link SizeDistribution#UNIFORM} distributions.
+     * @param packetsPerSecond rate of the traffic, 0 - as fast as possible (packets are 1 us apart).
+     * @param seed             seed of the random generator.
+     */
+    public SyntheticTraffic(int flows, double skew, SizeDistribution sizes, int maxSize, long packetsPerSecond, long seed) {
+        if (flows <= 0 || skew < 0 || maxSize < MIN_FRAME_LENGTH || maxSize > SNAP_LEN || packetsPerSecond < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid synthetic traffic: %d flows, skew %s, max size %d, %d pps",
+                    flows, skew, maxSize, packetsPerSecond
+            ));
+        }
+        this.flows = flows;
+        this.sizes = sizes;
+        this.maxSize = maxSize;
+        this.packetsPerSecond = packetsPerSecond;
+        this.random = new SplittableRandom(seed);
+        this.zipf = skew == 0 ? null : new ZipfGenerator(flows, skew, seed);
+        this.intervalNanos = packetsPerSecond == 0
+                ? TimeUnit.MICROSECONDS.toNanos(1)
+                : Math.max(1, TimeUnit.SECONDS.toNanos(1) / packetsPerSecond);
+        this.timestamp = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    /**
+     * Moves to the next packet.
+     *
+     * @return original length of the packet in bytes.
+     */
+    public int next() {
+        timestamp += intervalNanos;
+        flow = zipf == null ? random.nextInt(flows) : zipf.next();
+        switch (sizes) {
+            case FIXED:
+                length = maxSize;
+                break;
+            case UNIFORM:
+                length = MIN_FRAME_LENGTH + random.nextInt(maxSize - MIN_FRAME_LENGTH + 1);
+                break;
+            default:
+                length = IMIX[random.nextInt(IMIX.length)];
+        }
+        return length;
+    }
+
+    /**
+     * @return capture timestamp of the current packet in nanoseconds since epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return index of the flow of the current packet.
+     */
+    public int getFlow() {
+        return flow;
+    }
+
+    /**
+     * Writes the headers of the current packet: Ethernet, IPv4 and UDP or TCP.
+     *
+     * @param target array, at least {@link #MIN_FRAME_LENGTH} bytes long.
+     * @return number of the written bytes.
+     */
+    public int writeHeaders(byte[] target) {
+        boolean tcp = (flow & 1) == 1;
+        int transportLength = tcp ? TCP_HEADER_LENGTH : UDP_HEADER_LENGTH;
+        int ipLength = Math.max(length - ETHERNET_HEADER_LENGTH, IPV4_HEADER_LENGTH + transportLength);
+
+        // ethernet: destination and source MAC are zero, ethertype IPv4
+        Arrays.fill(target, 0, 12, (byte) 0);
+        target[12] = 0x08;
+        target[13] = 0x00;
+
+        int ip = ETHERNET_HEADER_LENGTH;
+        target[ip] = 0x45;
+        target[ip + 1] = 0;
+        putShort(target, ip + 2, ipLength);
+        putInt(target, ip + 4, 0);
+        target[ip + 8] = 64;
+        target[ip + 9] = (byte) (tcp ? 6 : 17);
+        putShort(target, ip + 10, 0);
+        putInt(target, ip + 12, 0x0A000000 | flow & 0xFFFFFF);
+        putInt(target, ip + 16, 0xC0A80000 | flow % 251);
+
+        int transport = ip + IPV4_HEADER_LENGTH;
+        putShort(target, transport, 1024 + flow % 60000);
+        putShort(target, transport + 2, tcp ? 443 : 53);
+        if (tcp) {
+            Arrays.fill(target, transport + 4, transport + TCP_HEADER_LENGTH, (byte) 0);
+            target[transport + 12] = 0x50;
+        } else {
+            putShort(target, transport + 4, ipLength - IPV4_HEADER_LENGTH);
+            putShort(target, transport + 6, 0);
+        }
+        return transport + transportLength;
+    }
+
+    /**
+     * Feeds the packets into the handler, as the capture pipeline worker does. If the rate
+     * is set, the caller is paced to it.
+     *
+     * @param handler handler of the packets.
+     * @param worker  index of the worker, which is passed to the handler.
+     * @param packets number of the packets.
+     */
+    public void feed(PacketHandler handler, int worker, long packets) {
+        byte[] headers = new byte[PacketRingBuffer.HEADER_LENGTH];
+        handler.onStart(worker, DataLinkType.EN10MB);
+        long start = System.nanoTime();
+        for (long i = 0; i < packets; i++) {
+            int packetLength = next();
+            int headerLength = writeHeaders(headers);
+            if (packetsPerSecond != 0) {
+                long deadline = start + i * intervalNanos;
+                while (System.nanoTime() - deadline < 0) {
+                    LockSupport.parkNanos(deadline - System.nanoTime());
+                }
+            }
+            handler.onPacket(worker, packetLength, timestamp, headers, 0, headerLength);
+        }
+    }
+
+    /**
+     * Writes the packets into the Ethernet capture file, which can be replayed by the application
+     * with the capture.replay.files property. Requires libpcap, but no network interface.
+     *
+     * @param file    capture file.
+     * @param packets number of the packets.
+     * @throws PcapNativeException if the file can not be opened.
+     * @throws NotOpenException    if the dumper is closed.
+     */
+    public void writeCaptureFile(File file, long packets) throws PcapNativeException, NotOpenException {
+        PcapHandle handle = Pcaps.openDead(DataLinkType.EN10MB, SNAP_LEN);
+        PcapDumper dumper = handle.dumpOpen(file.getAbsolutePath());
+        try {
+            byte[][] frames = new byte[SNAP_LEN + 1][];
+            for (long i = 0; i < packets; i++) {
+                int packetLength = next();
+                if (frames[packetLength] == null) {
+                    frames[packetLength] = new byte[packetLength];
+                }
+                byte[] frame = frames[packetLength];
+                writeHeaders(frame);
+                dumper.dumpRaw(frame, Instant.ofEpochSecond(0, timestamp));
+            }
+            dumper.flush();
+        } finally {
+            dumper.close();
+            handle.close();
+        }
+    }
+
+    private static void putShort(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >>> 8);
+        array[offset + 1] = (byte) value;
+    }
+
+    private static void putInt(byte[] array, int offset, int value) {
+        putShort(array, offset, value >>> 16);
+        putShort(array, offset + 2, value);
+    }
+
+    /**
+     * Writes the synthetic capture file.
+     * <p>
+     * Usage: {@code SyntheticTraffic <file> <packets> [flows] [skew] [FIXED|UNIFORM|IMIX] [max size] [pps]}
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) throws PcapNativeException, NotOpenException {
+        if (args.length < 2) {
+            System.err.println(
+                    "Usage: SyntheticTraffic <file> <packets> [flows] [skew] [FIXED|UNIFORM|IMIX] [max size] [pps]"
+            );
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        long packets = Long.parseLong(args[1]);
+        SyntheticTraffic traffic = new SyntheticTraffic(
+                args.length > 2 ? Integer.parseInt(args[2]) : 10_000,
+                args.length > 3 ? Double.parseDouble(args[3]) : 1.0,
+                args.length > 4 ? SizeDistribution.valueOf(args[4]) : SizeDistribution.IMIX,
+                args.length > 5 ? Integer.parseInt(args[5]) : 1514,
+                args.length > 6 ? Long.parseLong(args[6]) : 0,
+                42
+        );
+        long start = System.nanoTime();
+        traffic.writeCaptureFile(file, packets);
+        System.out.printf(
+                "Written %d packets to %s in %d ms%n",
+                packets, file.getAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        );
+    }
+}
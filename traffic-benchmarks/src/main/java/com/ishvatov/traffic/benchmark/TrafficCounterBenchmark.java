@@ -0,0 +1,141 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.capture.SingleWriterTrafficCounter;
+import com.ishvatov.traffic.capture.StripedTrafficCounter;
+import com.ishvatov.traffic.capture.TrafficCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the {@link TrafficCounter} implementations with the legacy plain int
+ * counter. Throughput of the writer threads is the packets per second rate, the
+ * amount of updates, lost by each approach, is printed after each iteration.
+ * <p>
+ * Group "capture" - one pcap loop thread and one validation thread,
+ * group "contended" - four writers and one validation thread.
+ *
+ * @author ishvatov
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficCounterBenchmark {
+    // sizes of the packets, which are added to the counter
+    private static final int[] PACKET_SIZES = {60, 1514, 576, 1514, 40, 1514, 1280, 9000};
+
+    @State(Scope.Group)
+    public static class CounterState {
+        @Param({"LEGACY_INT", "SINGLE_WRITER", "STRIPED"})
+        public String type;
+
+        TrafficCounter counter;
+        final AtomicLong added = new AtomicLong();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            switch (type) {
+                case "SINGLE_WRITER":
+                    counter = new SingleWriterTrafficCounter();
+                    break;
+                case "STRIPED":
+                    counter = new StripedTrafficCounter();
+                    break;
+                default:
+                    counter = new LegacyIntCounter();
+            }
+            added.set(0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            long total = counter.sum();
+            System.out.printf(
+                    "%n[%s] added: %d, counted: %d, lost: %d%n",
+                    type, added.get(), total, added.get() - total
+            );
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class WriterState {
+        CounterState counterState;
+        long added;
+        int index;
+
+        @Setup(Level.Iteration)
+        public void setUp(CounterState counterState) {
+            this.counterState = counterState;
+            this.added = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            counterState.added.addAndGet(added);
+        }
+    }
+
+    @Benchmark
+    @Group("capture")
+    @GroupThreads(1)
+    public void captureAdd(CounterState counter, WriterState writer) {
+        add(counter, writer);
+    }
+
+    @Benchmark
+    @Group("capture")
+    @GroupThreads(1)
+    public long captureSum(CounterState counter) {
+        return counter.counter.sum();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public void contendedAdd(CounterState counter, WriterState writer) {
+        add(counter, writer);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public long contendedSum(CounterState counter) {
+        return counter.counter.sum();
+    }
+
+    private static void add(CounterState counter, WriterState writer) {
+        int size = PACKET_SIZES[writer.index++ & (PACKET_SIZES.length - 1)];
+        // all the writers use the same index, like the pcap loop threads without the pipeline
+        counter.counter.add(0, size);
+        writer.added += size;
+    }
+
+    /**
+     * Plain int counter, which was used before {@link TrafficCounter}.
+     */
+    private static final class LegacyIntCounter implements TrafficCounter {
+        private int totalTransferredData = 0;
+
+        @Override
+        public void add(int worker, long bytes) {
+            totalTransferredData += bytes;
+        }
+
+        @Override
+        public long sum() {
+            return totalTransferredData;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(TrafficCounterBenchmark.class)
+                        .build()
+        ).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.ishvatov.traffic.benchmark;
+
+import com.ishvatov.traffic.alert.AlertPublisher;
+import com.ishvatov.traffic.alert.AlertTracker;
+import com.ishvatov.traffic.flow.TopTalker;
+import com.ishvatov.traffic.flow.TopTalkers;
+import com.ishvatov.traffic.limits.Limits;
+import com.ishvatov.traffic.service.TrafficService;
+import com.ishvatov.traffic.service.TrafficServiceImpl;
+import com.ishvatov.traffic.wire.BinaryRecordSerializer;
+import com.ishvatov.traffic.wire.TrafficRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the {@link TrafficService#validateTrafficAndSendNotification}, which runs on every evaluation:
+ * the traffic is either in range (the common case) or out of range, then the alert with the top talkers
+ * is built and serialized by the publisher, which replaces the kafka send. The alerts are not coalesced,
+ * so every out of range evaluation is sent.
+ *
+ * @author ishvatov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficValidationBenchmark {
+    private static final Limits LIMITS = new Limits(1, 1024, 1_073_741_824, System.currentTimeMillis());
+
+    @Param({"IN_RANGE", "OUT_OF_RANGE"})
+    public String traffic;
+
+    private TrafficService trafficService;
+    private Map<String, Long> interfaces;
+    private Supplier<TopTalkers> topTalkers;
+    private long current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trafficService = new TrafficServiceImpl(
+                null, null, new SerializingAlertPublisher(), new AlertTracker(0, 0, 0, 0, 0)
+        );
+        current = "IN_RANGE".equals(traffic) ? 1_000_000 : 2_000_000_000L;
+
+        interfaces = new LinkedHashMap<>();
+        interfaces.put("eth0", current / 2);
+        interfaces.put("eth1", current - current / 2);
+        TopTalkers talkers = new TopTalkers(
+                talkers("10.0.0.%d"),
+                talkers("10.0.0.%d:443 -> 10.0.1.1:50000 TCP"),
+                talkers("10.0.2.%d"),
+                talkers("10.0.3.%d")
+        );
+        topTalkers = () -> talkers;
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return trafficService.validateTrafficAndSendNotification(
+                System.currentTimeMillis(), current, interfaces, LIMITS, topTalkers
+        );
+    }
+
+    private static List<TopTalker> talkers(String format) {
+        List<TopTalker> talkers = new ArrayList<>(10);
+        for (int i = 0; i < 10; i++) {
+            talkers.add(new TopTalker(String.format(format, i), 100_000_000L >> i, 80_000 >> i, 0));
+        }
+        return talkers;
+    }
+
+    /**
+     * Publisher, which only serializes the alert, as the kafka producer does before the send.
+     */
+    private static final class SerializingAlertPublisher extends AlertPublisher {
+        private final BinaryRecordSerializer serializer = new BinaryRecordSerializer();
+        private long serializedBytes;
+
+        private SerializingAlertPublisher() {
+            super(null, null, null, "alert", "benchmark", 1, 0, 0);
+        }
+
+        @Override
+        public boolean publish(String source, TrafficRecord record) {
+            serializedBytes += serializer.serialize("alert", record).length;
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+                BenchmarkRunner.options(TrafficValidationBenchmark.class)
+                        .build()
+        ).run();
+    }
+}